@@ -11,7 +11,7 @@ import static io.cucumber.junit.platform.engine.Constants.PLUGIN_PROPERTY_NAME;
 @Suite
 @IncludeEngines("cucumber")
 @SelectClasspathResource("ca/mcgill/story_testing")
-@ConfigurationParameter(key = PLUGIN_PROPERTY_NAME, value = "pretty")
+@ConfigurationParameter(key = PLUGIN_PROPERTY_NAME, value = "pretty, ca.mcgill.story_testing.plugins.StartupProfilePlugin, ca.mcgill.story_testing.plugins.DurationHistoryPlugin, ca.mcgill.story_testing.plugins.ImpactIndexPlugin, ca.mcgill.story_testing.plugins.MetricsPlugin, ca.mcgill.story_testing.plugins.ExchangeLogPlugin")
 @ConfigurationParameter(key = GLUE_PROPERTY_NAME, value = "ca.mcgill.story_testing.stepdefs")
 public class CucumberTestRunner {
 }
@@ -1,19 +1,27 @@
 package ca.mcgill.story_testing;
 
-import java.io.File;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.junit.jupiter.api.Test;
 
-import io.cucumber.core.cli.Main;
+import ca.mcgill.story_testing.scenarios.CucumberLauncher;
+import ca.mcgill.story_testing.scenarios.DurationHistory;
+import ca.mcgill.story_testing.scenarios.FeatureIndex;
+import ca.mcgill.story_testing.scenarios.ScenarioRef;
+import ca.mcgill.story_testing.sharding.ScenarioScheduler;
 
 public class RandomOrderTestRunner {
     private static final int NUMBER_OF_RUNS = 5;
     private static final String FEATURE_PATH = "src/test/resources/ca/mcgill/story_testing/features";
+    // random: shuffled features; lpt: heaviest features first by duration history; lpt-random: seeded scheduler order
+    private static final String ORDER = System.getProperty("story.order", "random");
+    private static final long SEED = Long.getLong(ScenarioScheduler.SEED_PROPERTY, System.nanoTime());
     private final List<List<String>> executionOrders = new ArrayList<>();
     private final Set<String> uniqueOrders = new HashSet<>();
 
@@ -21,40 +29,39 @@ public class RandomOrderTestRunner {
     void runTestsInRandomOrder() {
         List<Integer> failedRuns = new ArrayList<>();
         System.out.println("\n=== Random Order Test Runner ===");
-        System.out.println("Running all feature files " + NUMBER_OF_RUNS + " times in random order\n");
+        System.out.println("Running all feature files " + NUMBER_OF_RUNS + " times in " + ORDER + " order");
+        if (ORDER.equals("lpt-random")) {
+            System.out.println("Seed: " + SEED + " (rerun with -Dstory.order.seed=" + SEED + ")");
+        }
+        System.out.println();
         
-        List<String> baseFeatureFiles = findFeatureFiles();
-        int totalFeatures = baseFeatureFiles.size();
+        Map<Path, List<ScenarioRef>> baseFeatures = FeatureIndex.byFeature(FeatureIndex.scan(Path.of(FEATURE_PATH)));
+        int totalFeatures = baseFeatures.size();
         
         for (int run = 1; run <= NUMBER_OF_RUNS; run++) {
             System.out.println("\n=== Starting Test Run " + run + " of " + NUMBER_OF_RUNS + " ===\n");
             
-            // Create a new copy and shuffle
-            List<String> featureFiles = new ArrayList<>(baseFeatureFiles);
-            Collections.shuffle(featureFiles);
+            List<ScenarioRef> scenarios = orderScenarios(baseFeatures, run);
             
             // Store and print execution order
             List<String> thisRunOrder = new ArrayList<>();
             System.out.println("Execution order for run " + run + ":");
-            for (int i = 0; i < featureFiles.size(); i++) {
-                String featureName = getFeatureName(featureFiles.get(i));
-                thisRunOrder.add(featureName);
-                System.out.println((i + 1) + ". " + featureName);
+            for (ScenarioRef scenario : scenarios) {
+                String featureName = scenario.featureName();
+                if (!thisRunOrder.contains(featureName)) {
+                    thisRunOrder.add(featureName);
+                    System.out.println(thisRunOrder.size() + ". " + featureName);
+                }
             }
             executionOrders.add(thisRunOrder);
             uniqueOrders.add(String.join(",", thisRunOrder));
             System.out.println();
 
-            // Prepare Cucumber arguments
-            List<String> args = new ArrayList<>();
-            args.add("--glue");
-            args.add("ca.mcgill.story_testing.stepdefs");
-            args.add("--plugin");
-            args.add("pretty");
-            args.addAll(featureFiles);
-
-            // Run Cucumber with the specified features
-            byte exitStatus = Main.run(args.toArray(String[]::new));
+            // Run Cucumber feature by feature; given all at once it would sort them by path
+            byte exitStatus = CucumberLauncher.runInOrder(scenarios,
+                    List.of("pretty", "ca.mcgill.story_testing.plugins.DurationHistoryPlugin",
+                            "ca.mcgill.story_testing.plugins.MetricsPlugin",
+                            "ca.mcgill.story_testing.plugins.ExchangeLogPlugin"));
             
             if (exitStatus != 0) {
                 failedRuns.add(run);
@@ -86,27 +93,24 @@ public class RandomOrderTestRunner {
         }
     }
 
-    private List<String> findFeatureFiles() {
-        File featuresDir = new File(FEATURE_PATH);
-        List<String> features = new ArrayList<>();
-        
-        if (featuresDir.exists() && featuresDir.isDirectory()) {
-            File[] files = featuresDir.listFiles((dir, name) -> name.endsWith(".feature"));
-            if (files != null) {
-                for (File file : files) {
-                    features.add(file.getAbsolutePath());
-                }
-            }
+    private List<ScenarioRef> orderScenarios(Map<Path, List<ScenarioRef>> features, int run) {
+        if (ORDER.equals("random")) {
+            // Create a new copy and shuffle
+            List<List<ScenarioRef>> featureGroups = new ArrayList<>(features.values());
+            Collections.shuffle(featureGroups);
+            List<ScenarioRef> scenarios = new ArrayList<>();
+            featureGroups.forEach(scenarios::addAll);
+            return scenarios;
         }
-        
-        return features;
+        if (!ORDER.equals("lpt") && !ORDER.equals("lpt-random")) {
+            throw new IllegalArgumentException("Unsupported story.order: " + ORDER + " (expected random, lpt or lpt-random)");
+        }
+        Long seed = ORDER.equals("lpt-random") ? SEED + run : null;
+        List<ScenarioRef> all = new ArrayList<>();
+        features.values().forEach(all::addAll);
+        return new ScenarioScheduler(DurationHistory.load(), seed, ScenarioScheduler.jitterFromSystemProperties()).schedule(all, 1).get(0).scenarios();
     }
 
-    private String getFeatureName(String path) {
-        String name = new File(path).getName();
-        return name.substring(0, name.length() - 8); // Remove .feature
-    }
-    
     private long factorial(int n) {
         if (n <= 1) return 1;
         return n * factorial(n - 1);
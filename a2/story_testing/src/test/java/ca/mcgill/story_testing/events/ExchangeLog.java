@@ -0,0 +1,286 @@
+package ca.mcgill.story_testing.events;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+// Every HTTP exchange of a run as one JSON line (build/events/exchanges.jsonl), tagged with the scenario and step
+// that sent it. Each thread appends to its own preallocated ring (single producer, no locks, no allocation) and a
+// daemon writer drains all rings; a full ring drops the event and counts it rather than stalling the request. The ring
+// of a thread that has ended is dropped once drained, so runners that start a thread per request or per scenario
+// only hold rings for the threads still alive.
+public final class ExchangeLog {
+    public static final String ENABLED_PROPERTY = "story.events";
+    public static final String FILE_PROPERTY = "story.events.file";
+    public static final String CAPACITY_PROPERTY = "story.events.capacity";
+    private static final long DRAIN_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+    private static ExchangeLog global;
+
+    private final Path file;
+    private final int capacity;
+    private final List<Producer> producers = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<Producer> local = ThreadLocal.withInitial(this::register);
+    private final LongAdder dropped = new LongAdder();
+    private final long epochNanos = System.nanoTime();
+    private final long epochMillis = System.currentTimeMillis();
+    private final StringBuilder line = new StringBuilder(512);
+    private final Writer out;
+    private long written;
+    private volatile boolean closed;
+
+    public ExchangeLog(Path file, int capacity) {
+        if (Integer.bitCount(capacity) != 1) throw new IllegalArgumentException("Ring capacity must be a power of two: " + capacity);
+        this.file = file;
+        this.capacity = capacity;
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            out = new BufferedWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8), 1 << 16);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open " + file, e);
+        }
+        Thread writer = new Thread(this::drainLoop, "exchange-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close, "exchange-log-close"));
+    }
+
+    public static boolean enabled() {
+        return Boolean.parseBoolean(System.getProperty(ENABLED_PROPERTY, "true"));
+    }
+
+    // One log per JVM; shard JVMs each write their own file
+    public static synchronized ExchangeLog global() {
+        if (global == null) {
+            String shard = System.getProperty("story.shard.index");
+            String name = shard == null ? "exchanges.jsonl" : "exchanges-shard-" + shard + ".jsonl";
+            global = new ExchangeLog(Path.of(System.getProperty(FILE_PROPERTY, "build/events/" + name)),
+                    Integer.getInteger(CAPACITY_PROPERTY, 8192));
+        }
+        return global;
+    }
+
+    public Path file() {
+        return file;
+    }
+
+    public long dropped() {
+        return dropped.sum();
+    }
+
+    public synchronized long written() {
+        return written;
+    }
+
+    // Scenario and step of the calling thread, set by ExchangeLogPlugin as Cucumber runs them
+    public void enterScenario(String scenario) {
+        Producer producer = local.get();
+        producer.scenario = scenario;
+        producer.step = null;
+    }
+
+    public void enterStep(String step) {
+        local.get().step = step;
+    }
+
+    // Hot path: the bodies are kept by reference and only measured by the writer
+    public void record(String method, String path, int status, String requestBody, String responseBody,
+                       long startNanos, long endNanos, String error) {
+        Producer producer = local.get();
+        long tail = producer.tail.get();
+        if (tail - producer.headCache >= capacity) {
+            producer.headCache = producer.head.get();
+            if (tail - producer.headCache >= capacity) {
+                dropped.increment();
+                return;
+            }
+        }
+        Event event = producer.ring[(int) tail & (capacity - 1)];
+        event.scenario = producer.scenario;
+        event.step = producer.step;
+        event.method = method;
+        event.path = path;
+        event.status = status;
+        event.requestBody = requestBody;
+        event.responseBody = responseBody;
+        event.startNanos = startNanos;
+        event.durationNanos = endNanos - startNanos;
+        event.error = error;
+        producer.tail.lazySet(tail + 1);
+    }
+
+    // Writes out everything recorded so far; called when a run finishes
+    public synchronized void flush() {
+        if (closed) return;
+        try {
+            drain();
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write " + file, e);
+        }
+    }
+
+    public synchronized void close() {
+        if (closed) return;
+        closed = true;
+        try {
+            drain();
+            out.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to close " + file, e);
+        }
+    }
+
+    private Producer register() {
+        Producer producer = new Producer(Thread.currentThread(), capacity);
+        producers.add(producer);
+        return producer;
+    }
+
+    private void drainLoop() {
+        while (!closed) {
+            int drained;
+            try {
+                synchronized (this) {
+                    if (closed) return;
+                    drained = drain();
+                }
+            } catch (IOException e) {
+                System.out.println("Exchange log stopped: " + e.getMessage());
+                return;
+            }
+            if (drained == 0) LockSupport.parkNanos(DRAIN_INTERVAL_NANOS);
+        }
+    }
+
+    private int drain() throws IOException {
+        int drained = 0;
+        for (Producer producer : producers) {
+            // Read before the tail: everything a thread wrote is visible once it is seen to have ended
+            boolean ended = !producer.owner.isAlive();
+            long head = producer.head.get();
+            long tail = producer.tail.get();
+            for (; head < tail; head++) {
+                Event event = producer.ring[(int) head & (capacity - 1)];
+                write(producer.thread, event);
+                event.clear();
+                drained++;
+            }
+            producer.head.lazySet(head);
+            if (ended) producers.remove(producer);
+        }
+        return drained;
+    }
+
+    private void write(String thread, Event event) throws IOException {
+        line.setLength(0);
+        line.append("{\"seq\":").append(written++);
+        line.append(",\"epochMs\":").append(epochMillis + TimeUnit.NANOSECONDS.toMillis(event.startNanos - epochNanos));
+        line.append(",\"startNs\":").append(event.startNanos - epochNanos);
+        line.append(",\"durationNs\":").append(event.durationNanos);
+        field("thread", thread);
+        field("scenario", event.scenario);
+        field("step", event.step);
+        field("method", event.method);
+        field("path", event.path);
+        line.append(",\"status\":").append(event.status);
+        line.append(",\"requestBytes\":").append(utf8Length(event.requestBody));
+        line.append(",\"responseBytes\":").append(utf8Length(event.responseBody));
+        if (event.error != null) field("error", event.error);
+        line.append("}\n");
+        out.append(line);
+    }
+
+    private void field(String name, String value) {
+        line.append(",\"").append(name).append("\":");
+        if (value == null) {
+            line.append("null");
+            return;
+        }
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> line.append("\\\"");
+                case '\\' -> line.append("\\\\");
+                case '\n' -> line.append("\\n");
+                case '\r' -> line.append("\\r");
+                case '\t' -> line.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        line.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        line.append(c);
+                    }
+                }
+            }
+        }
+        line.append('"');
+    }
+
+    static int utf8Length(String text) {
+        if (text == null) return 0;
+        int bytes = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                bytes++;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length() && Character.isLowSurrogate(text.charAt(i + 1))) {
+                bytes += 4;
+                i++;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+
+    // Per-thread ring; tail is only written by its thread and head only by the writer
+    private static final class Producer {
+        private final Thread owner;
+        private final String thread;
+        private final Event[] ring;
+        private final AtomicLong head = new AtomicLong();
+        private final AtomicLong tail = new AtomicLong();
+        private long headCache;
+        private String scenario;
+        private String step;
+
+        Producer(Thread owner, int capacity) {
+            this.owner = owner;
+            this.thread = owner.getName();
+            this.ring = new Event[capacity];
+            for (int i = 0; i < capacity; i++) {
+                ring[i] = new Event();
+            }
+        }
+    }
+
+    private static final class Event {
+        private String scenario;
+        private String step;
+        private String method;
+        private String path;
+        private int status;
+        private String requestBody;
+        private String responseBody;
+        private long startNanos;
+        private long durationNanos;
+        private String error;
+
+        void clear() {
+            scenario = step = method = path = requestBody = responseBody = error = null;
+        }
+    }
+}
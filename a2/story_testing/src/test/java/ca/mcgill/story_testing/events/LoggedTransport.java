@@ -0,0 +1,30 @@
+package ca.mcgill.story_testing.events;
+
+import java.io.IOException;
+import java.net.http.HttpResponse;
+
+import ca.mcgill.story_testing.http.HttpTransport;
+
+// Records every exchange of the wrapped transport into an ExchangeLog; failed sends are logged with status -1.
+public class LoggedTransport implements HttpTransport {
+    private final HttpTransport delegate;
+    private final ExchangeLog log;
+
+    public LoggedTransport(HttpTransport delegate, ExchangeLog log) {
+        this.delegate = delegate;
+        this.log = log;
+    }
+
+    @Override
+    public HttpResponse<String> send(String method, String endpoint, String body) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        try {
+            HttpResponse<String> response = delegate.send(method, endpoint, body);
+            log.record(method, endpoint, response.statusCode(), body, response.body(), start, System.nanoTime(), null);
+            return response;
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            log.record(method, endpoint, -1, body, null, start, System.nanoTime(), e.getClass().getName());
+            throw e;
+        }
+    }
+}
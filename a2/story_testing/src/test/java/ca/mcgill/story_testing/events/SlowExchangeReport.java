@@ -0,0 +1,114 @@
+package ca.mcgill.story_testing.events;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.json.JSONObject;
+
+import ca.mcgill.story_testing.http.Routes;
+import ca.mcgill.story_testing.perf.LatencyHistogram;
+import ca.mcgill.story_testing.perf.SteadyState;
+
+// Reads an exchange log and prints the slowest exchanges with the scenario and step that sent them, then the
+// steps that spent the most time waiting on the server. -Dstory.events.top=<n> rows (default 15).
+// The first exchanges of a run pay for JIT compilation and connection setup on both sides, so SteadyState cuts them
+// off first. Scenarios mix fast and slow endpoints, so each exchange is taken in start order as its log latency
+// relative to its route's median; a run that never settles gets no timing tables at all.
+public class SlowExchangeReport {
+    public static final String TOP_PROPERTY = "story.events.top";
+
+    record Exchange(String scenario, String step, String method, String path, int status, long startNanos,
+                    long durationNanos, int requestBytes, int responseBytes) {
+        String route() {
+            return Routes.template(method, path);
+        }
+    }
+
+    public static void main(String[] args) {
+        Path file = Path.of(args.length > 0 ? args[0] : System.getProperty(ExchangeLog.FILE_PROPERTY, "build/events/exchanges.jsonl"));
+        int top = Integer.getInteger(TOP_PROPERTY, 15);
+        List<Exchange> all = read(file);
+        System.out.println("=== Slowest exchanges: " + file.toAbsolutePath() + " (" + all.size() + ") ===");
+        if (all.isEmpty()) return;
+        all.sort(Comparator.comparingLong(Exchange::startNanos));
+        SteadyState.Cut cut = warmup(all);
+        if (!cut.stable()) {
+            System.out.println("NO STEADY STATE (" + cut.reason() + "), no timings published");
+            return;
+        }
+        List<Exchange> exchanges = all.subList(cut.warmup(), all.size());
+        long warmupEnd = all.subList(0, cut.warmup()).stream()
+                .mapToLong(exchange -> exchange.startNanos() + exchange.durationNanos()).max().orElse(all.get(0).startNanos());
+        System.out.printf(Locale.ROOT, "Warm-up: %d exchanges in %.2f s, left out%n", cut.warmup(),
+                (warmupEnd - all.get(0).startNanos()) / 1e9);
+
+        List<Exchange> slowest = new ArrayList<>(exchanges);
+        slowest.sort(Comparator.comparingLong(Exchange::durationNanos).reversed());
+        System.out.printf("%-9s | %-6s | %-34s | %-36s | %s%n", "ms", "Status", "Request", "Scenario", "Step");
+        System.out.println("-".repeat(130));
+        for (Exchange exchange : slowest.subList(0, Math.min(top, slowest.size()))) {
+            System.out.printf(Locale.ROOT, "%-9.2f | %-6d | %-34s | %-36s | %s%n", exchange.durationNanos() / 1e6,
+                    exchange.status(), exchange.method() + " " + exchange.path(), exchange.scenario(), exchange.step());
+        }
+
+        Map<String, LatencyHistogram> bySteps = new LinkedHashMap<>();
+        Map<String, Long> totals = new LinkedHashMap<>();
+        for (Exchange exchange : exchanges) {
+            String key = exchange.step() + " -> " + exchange.route();
+            bySteps.computeIfAbsent(key, k -> new LatencyHistogram()).record(exchange.durationNanos());
+            totals.merge(key, exchange.durationNanos(), Long::sum);
+        }
+        List<String> keys = new ArrayList<>(totals.keySet());
+        keys.sort(Comparator.comparing(totals::get, Comparator.reverseOrder()));
+        System.out.println();
+        System.out.printf("%-9s | %-6s | %-9s | %-9s | %s%n", "Total ms", "Count", "p50 ms", "max ms", "Step -> endpoint");
+        System.out.println("-".repeat(130));
+        for (String key : keys.subList(0, Math.min(top, keys.size()))) {
+            LatencyHistogram latency = bySteps.get(key);
+            System.out.printf(Locale.ROOT, "%-9.2f | %-6d | %-9.2f | %-9.2f | %s%n", totals.get(key) / 1e6, latency.count(),
+                    latency.percentile(50) / 1e6, latency.max() / 1e6, key);
+        }
+    }
+
+    // MSER-5 over log(duration / route median), so that a slow endpoint late in the run does not look like warm-up
+    static SteadyState.Cut warmup(List<Exchange> exchanges) {
+        Map<String, LatencyHistogram> byRoute = new LinkedHashMap<>();
+        for (Exchange exchange : exchanges) {
+            byRoute.computeIfAbsent(exchange.route(), k -> new LatencyHistogram()).record(exchange.durationNanos());
+        }
+        double[] values = new double[exchanges.size()];
+        for (int i = 0; i < values.length; i++) {
+            Exchange exchange = exchanges.get(i);
+            double median = Math.max(1, byRoute.get(exchange.route()).percentile(50));
+            values[i] = Math.log(Math.max(1, exchange.durationNanos()) / median);
+        }
+        return SteadyState.mser5(values, values.length);
+    }
+
+    static List<Exchange> read(Path file) {
+        List<Exchange> exchanges = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) continue;
+                JSONObject event = new JSONObject(line);
+                exchanges.add(new Exchange(event.optString("scenario", "-"), event.optString("step", "-"),
+                        event.getString("method"), event.getString("path"), event.getInt("status"),
+                        event.optLong("startNs", exchanges.size()), event.getLong("durationNs"), event.getInt("requestBytes"), event.getInt("responseBytes")));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read " + file, e);
+        }
+        return exchanges;
+    }
+}
@@ -0,0 +1,391 @@
+package ca.mcgill.story_testing.faults;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.UnaryOperator;
+
+import ca.mcgill.story_testing.http.Routes;
+
+// HTTP/1.1 proxy on a free local port in front of the Todo Manager API that injects the faults of the matching
+// FaultRule: delays, error responses and connection resets (both instead of forwarding), and throttled responses.
+// One thread per client connection, each with its own keep-alive connection to the server.
+public final class FaultProxy implements AutoCloseable {
+    private static final int MAX_HEAD_BYTES = 64 * 1024;
+
+    public record Stats(long forwarded, long delayed, long errors, long resets) {
+    }
+
+    private final String targetHost;
+    private final int targetPort;
+    private final ServerSocket server;
+    private final ExecutorService pool;
+    private final SplittableRandom seeds;
+    private final Map<String, FaultRule> rules = new ConcurrentHashMap<>();
+    private final Set<Socket> sockets = ConcurrentHashMap.newKeySet();
+    private final LongAdder forwarded = new LongAdder();
+    private final LongAdder delayed = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder resets = new LongAdder();
+
+    private FaultProxy(String targetBaseUrl, long seed) throws IOException {
+        URI target = URI.create(targetBaseUrl);
+        this.targetHost = target.getHost();
+        this.targetPort = target.getPort() < 0 ? 80 : target.getPort();
+        this.seeds = new SplittableRandom(seed);
+        this.server = new ServerSocket(0, 128, InetAddress.getLoopbackAddress());
+        this.pool = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "fault-proxy");
+            thread.setDaemon(true);
+            return thread;
+        });
+        pool.execute(this::acceptLoop);
+    }
+
+    public static FaultProxy start(String targetBaseUrl) {
+        return start(targetBaseUrl, System.nanoTime());
+    }
+
+    public static FaultProxy start(String targetBaseUrl, long seed) {
+        try {
+            return new FaultProxy(targetBaseUrl, seed);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to start the fault proxy for " + targetBaseUrl, e);
+        }
+    }
+
+    public String baseUrl() {
+        return "http://127.0.0.1:" + server.getLocalPort();
+    }
+
+    // Adds to the faults already set for the route, e.g. configure("GET /todos", rule -> rule.withLatency("exp:20"))
+    public FaultProxy configure(String route, UnaryOperator<FaultRule> change) {
+        rules.compute(route.trim(), (key, rule) -> change.apply(rule == null ? FaultRule.on(key) : rule));
+        return this;
+    }
+
+    public FaultProxy add(FaultRule rule) {
+        rules.put(rule.route(), rule);
+        return this;
+    }
+
+    public List<FaultRule> rules() {
+        return new ArrayList<>(rules.values());
+    }
+
+    public void clear() {
+        rules.clear();
+    }
+
+    public Stats stats() {
+        return new Stats(forwarded.sum(), delayed.sum(), errors.sum(), resets.sum());
+    }
+
+    @Override
+    public void close() {
+        try {
+            server.close();
+        } catch (IOException e) {
+            // already closed
+        }
+        for (Socket socket : sockets) {
+            closeQuietly(socket);
+        }
+        pool.shutdownNow();
+    }
+
+    // The most specific rule wins: exact route, then "METHOD *", then "* /path", then "*"
+    FaultRule match(String method, String path) {
+        String template = Routes.template(path);
+        FaultRule best = null;
+        int bestScore = -1;
+        for (FaultRule rule : rules.values()) {
+            if (!rule.matches(method, template)) continue;
+            int score = rule.route().equals("*") ? 0
+                    : (rule.route().startsWith("* ") ? 1 : 2) + (rule.route().endsWith(" *") ? 0 : 2);
+            if (score > bestScore) {
+                best = rule;
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+
+    private void acceptLoop() {
+        while (!server.isClosed()) {
+            try {
+                Socket client = server.accept();
+                SplittableRandom random;
+                synchronized (seeds) {
+                    random = seeds.split();
+                }
+                pool.execute(() -> serve(client, random));
+            } catch (IOException e) {
+                // closed
+            }
+        }
+    }
+
+    private void serve(Socket client, SplittableRandom random) {
+        sockets.add(client);
+        Upstream upstream = null;
+        try {
+            client.setTcpNoDelay(true);
+            InputStream in = new BufferedInputStream(client.getInputStream());
+            OutputStream out = client.getOutputStream();
+            while (true) {
+                Message request = Message.read(in, null);
+                if (request == null) return;
+                FaultRule rule = match(request.method(), request.target());
+                long bytesPerSecond = rule == null ? 0 : rule.bytesPerSecond();
+                if (rule != null) {
+                    if (rule.resetRate() > 0 && random.nextDouble() < rule.resetRate()) {
+                        resets.increment();
+                        // SO_LINGER 0 makes close() send an RST instead of a FIN
+                        client.setSoLinger(true, 0);
+                        return;
+                    }
+                    long delay = rule.latency().sampleNanos(random);
+                    if (delay > 0) {
+                        delayed.increment();
+                        TimeUnit.NANOSECONDS.sleep(delay);
+                    }
+                    if (rule.errorRate() > 0 && random.nextDouble() < rule.errorRate()) {
+                        errors.increment();
+                        write(out, Message.error(rule.errorStatus()), bytesPerSecond);
+                        continue;
+                    }
+                }
+                Message response;
+                boolean reused = upstream != null;
+                if (upstream == null) upstream = connect();
+                boolean sent = false;
+                try {
+                    send(upstream, request);
+                    sent = true;
+                    response = receive(upstream, request);
+                } catch (IOException e) {
+                    // The server may have dropped an idle keep-alive connection; retry once on a new one, unless the
+                    // request went out and resending it could apply it twice (a POST creating a second object)
+                    if (!reused || sent && !request.idempotent()) throw e;
+                    closeQuietly(upstream);
+                    upstream = connect();
+                    send(upstream, request);
+                    response = receive(upstream, request);
+                }
+                forwarded.increment();
+                write(out, response.bytes(), bytesPerSecond);
+                if (request.closes() || response.closes()) return;
+            }
+        } catch (SocketException | EOFException e) {
+            // client or server went away
+        } catch (IOException e) {
+            System.out.println("Fault proxy: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            closeQuietly(client);
+            if (upstream != null) closeQuietly(upstream);
+        }
+    }
+
+    private record Upstream(Socket socket, InputStream in, OutputStream out) {
+    }
+
+    private Upstream connect() throws IOException {
+        Socket socket = new Socket();
+        socket.connect(new InetSocketAddress(targetHost, targetPort));
+        socket.setTcpNoDelay(true);
+        sockets.add(socket);
+        return new Upstream(socket, new BufferedInputStream(socket.getInputStream()), socket.getOutputStream());
+    }
+
+    private static void send(Upstream upstream, Message request) throws IOException {
+        upstream.out().write(request.bytes());
+        upstream.out().flush();
+    }
+
+    private static Message receive(Upstream upstream, Message request) throws IOException {
+        Message response = Message.read(upstream.in(), request.method());
+        if (response == null) throw new EOFException("Server closed the connection");
+        return response;
+    }
+
+    private static void write(OutputStream out, byte[] bytes, long bytesPerSecond) throws IOException, InterruptedException {
+        if (bytesPerSecond <= 0) {
+            out.write(bytes);
+            out.flush();
+            return;
+        }
+        // About 50 writes per second, each followed by a pause that keeps the average at the cap
+        int chunk = (int) Math.max(1, Math.min(bytes.length, bytesPerSecond / 50));
+        long start = System.nanoTime();
+        for (int offset = 0; offset < bytes.length; offset += chunk) {
+            int length = Math.min(chunk, bytes.length - offset);
+            out.write(bytes, offset, length);
+            out.flush();
+            long due = start + (offset + length) * 1_000_000_000L / bytesPerSecond;
+            long wait = due - System.nanoTime();
+            if (wait > 0) TimeUnit.NANOSECONDS.sleep(wait);
+        }
+    }
+
+    private void closeQuietly(Upstream upstream) {
+        closeQuietly(upstream.socket());
+    }
+
+    private void closeQuietly(Socket socket) {
+        sockets.remove(socket);
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // nothing left to do
+        }
+    }
+
+    // One request or response: start line, headers and the complete body
+    private record Message(String startLine, List<String> headers, byte[] body, boolean closes) {
+
+        String method() {
+            return startLine.substring(0, startLine.indexOf(' '));
+        }
+
+        boolean idempotent() {
+            return switch (method()) {
+                case "GET", "HEAD", "OPTIONS", "PUT", "DELETE" -> true;
+                default -> false;
+            };
+        }
+
+        String target() {
+            String[] parts = startLine.split(" ");
+            return parts.length > 1 ? parts[1] : "/";
+        }
+
+        byte[] bytes() {
+            StringBuilder head = new StringBuilder(startLine).append("\r\n");
+            for (String header : headers) {
+                head.append(header).append("\r\n");
+            }
+            head.append("\r\n");
+            byte[] headBytes = head.toString().getBytes(StandardCharsets.ISO_8859_1);
+            byte[] bytes = new byte[headBytes.length + body.length];
+            System.arraycopy(headBytes, 0, bytes, 0, headBytes.length);
+            System.arraycopy(body, 0, bytes, headBytes.length, body.length);
+            return bytes;
+        }
+
+        static byte[] error(int status) {
+            byte[] body = ("{\"errorMessages\":[\"Injected fault: " + status + "\"]}").getBytes(StandardCharsets.UTF_8);
+            return new Message("HTTP/1.1 " + status + " Injected Fault",
+                    List.of("Content-Type: application/json", "Content-Length: " + body.length), body, false).bytes();
+        }
+
+        // requestMethod is null when reading a request, else the method of the request this response answers
+        static Message read(InputStream in, String requestMethod) throws IOException {
+            String startLine = readLine(in);
+            if (startLine == null) return null;
+            if (startLine.isEmpty()) startLine = readLine(in);
+            if (startLine == null) return null;
+            List<String> headers = new ArrayList<>();
+            long contentLength = -1;
+            boolean chunked = false;
+            boolean close = startLine.startsWith("HTTP/1.0");
+            for (String line; (line = readLine(in)) != null && !line.isEmpty(); ) {
+                int colon = line.indexOf(':');
+                String name = colon < 0 ? line : line.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+                String value = colon < 0 ? "" : line.substring(colon + 1).trim();
+                // The JDK client asks for an h2c upgrade; keep both legs on plain HTTP/1.1
+                if (name.equals("upgrade") || name.equals("http2-settings")) continue;
+                if (name.equals("connection")) {
+                    if (value.toLowerCase(Locale.ROOT).contains("close")) close = true;
+                    if (value.toLowerCase(Locale.ROOT).contains("upgrade")) continue;
+                }
+                if (name.equals("content-length")) contentLength = Long.parseLong(value);
+                if (name.equals("transfer-encoding") && value.toLowerCase(Locale.ROOT).contains("chunked")) chunked = true;
+                headers.add(line);
+            }
+
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            if (chunked) {
+                copyChunks(in, body);
+            } else if (contentLength >= 0) {
+                copy(in, body, contentLength);
+            } else if (requestMethod != null && hasBody(startLine, requestMethod)) {
+                // No length: the body runs until the server closes the connection
+                in.transferTo(body);
+                close = true;
+            }
+            return new Message(startLine, headers, body.toByteArray(), close);
+        }
+
+        private static boolean hasBody(String statusLine, String requestMethod) {
+            int status = Integer.parseInt(statusLine.split(" ")[1]);
+            return !requestMethod.equals("HEAD") && status >= 200 && status != 204 && status != 304;
+        }
+
+        private static void copyChunks(InputStream in, ByteArrayOutputStream body) throws IOException {
+            while (true) {
+                String sizeLine = readLine(in);
+                if (sizeLine == null) throw new EOFException("Truncated chunked body");
+                body.writeBytes((sizeLine + "\r\n").getBytes(StandardCharsets.ISO_8859_1));
+                int semicolon = sizeLine.indexOf(';');
+                long size = Long.parseLong((semicolon < 0 ? sizeLine : sizeLine.substring(0, semicolon)).trim(), 16);
+                if (size == 0) {
+                    // trailers up to the empty line
+                    for (String line; (line = readLine(in)) != null; ) {
+                        body.writeBytes((line + "\r\n").getBytes(StandardCharsets.ISO_8859_1));
+                        if (line.isEmpty()) return;
+                    }
+                    throw new EOFException("Truncated chunked body");
+                }
+                copy(in, body, size + 2);
+            }
+        }
+
+        private static void copy(InputStream in, ByteArrayOutputStream body, long length) throws IOException {
+            byte[] buffer = new byte[8192];
+            for (long remaining = length; remaining > 0; ) {
+                int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (read < 0) throw new EOFException("Body ended " + remaining + " bytes early");
+                body.write(buffer, 0, read);
+                remaining -= read;
+            }
+        }
+
+        private static String readLine(InputStream in) throws IOException {
+            StringBuilder line = new StringBuilder();
+            for (int c; (c = in.read()) >= 0; ) {
+                if (c == '\n') {
+                    int end = line.length();
+                    if (end > 0 && line.charAt(end - 1) == '\r') line.setLength(end - 1);
+                    return line.toString();
+                }
+                if (line.length() >= MAX_HEAD_BYTES) throw new IOException("Header line too long");
+                line.append((char) c);
+            }
+            return line.length() == 0 ? null : line.toString();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package ca.mcgill.story_testing.faults;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+// Faults for one route template ("GET /todos/{id}", "POST *" for every POST, "*" for everything):
+// a delay before forwarding, a share of requests answered with an error status or a connection reset instead,
+// and a cap on the bytes per second of the response.
+public record FaultRule(String route, String latencySpec, LatencyDistribution latency, double errorRate, int errorStatus,
+                        double resetRate, long bytesPerSecond) {
+
+    public static FaultRule on(String route) {
+        return new FaultRule(route.trim(), "none", LatencyDistribution.NONE, 0, 503, 0, 0);
+    }
+
+    public FaultRule withLatency(String spec) {
+        return new FaultRule(route, spec, LatencyDistribution.parse(spec), errorRate, errorStatus, resetRate, bytesPerSecond);
+    }
+
+    public FaultRule withErrors(double rate, int status) {
+        return new FaultRule(route, latencySpec, latency, checkRate(rate), status, resetRate, bytesPerSecond);
+    }
+
+    public FaultRule withResets(double rate) {
+        return new FaultRule(route, latencySpec, latency, errorRate, errorStatus, checkRate(rate), bytesPerSecond);
+    }
+
+    public FaultRule withBandwidth(long bytesPerSecond) {
+        return new FaultRule(route, latencySpec, latency, errorRate, errorStatus, resetRate, bytesPerSecond);
+    }
+
+    public boolean matches(String method, String template) {
+        if (route.equals("*")) return true;
+        int space = route.indexOf(' ');
+        String ruleMethod = route.substring(0, space);
+        String rulePath = route.substring(space + 1).trim();
+        return (ruleMethod.equals("*") || ruleMethod.equalsIgnoreCase(method))
+                && (rulePath.equals("*") || rulePath.equals(template));
+    }
+
+    // "GET /todos/{id}: latency=exp:20, error=0.02:503, reset=0.01, bandwidth=50000; POST *: latency=fixed:100"
+    public static List<FaultRule> parseAll(String spec) {
+        List<FaultRule> rules = new ArrayList<>();
+        for (String part : spec.split(";")) {
+            if (!part.isBlank()) rules.add(parse(part));
+        }
+        return rules;
+    }
+
+    public static FaultRule parse(String spec) {
+        int colon = spec.indexOf(':');
+        if (colon < 0) throw new IllegalArgumentException("Fault rule needs '<route>: <faults>': " + spec);
+        FaultRule rule = on(spec.substring(0, colon));
+        for (String setting : spec.substring(colon + 1).split(",(?=\\s*[a-z]+=)")) {
+            if (setting.isBlank()) continue;
+            String[] pair = setting.trim().split("=", 2);
+            String value = pair.length == 2 ? pair[1].trim() : "";
+            rule = switch (pair[0].trim().toLowerCase(Locale.ROOT)) {
+                case "latency" -> rule.withLatency(value);
+                case "error" -> {
+                    String[] rate = value.split(":");
+                    yield rule.withErrors(Double.parseDouble(rate[0]), rate.length > 1 ? Integer.parseInt(rate[1]) : 503);
+                }
+                case "reset" -> rule.withResets(Double.parseDouble(value));
+                case "bandwidth" -> rule.withBandwidth(Long.parseLong(value));
+                default -> throw new IllegalArgumentException("Unknown fault '" + pair[0].trim() + "' in: " + spec);
+            };
+        }
+        return rule;
+    }
+
+    public String describe() {
+        List<String> parts = new ArrayList<>();
+        if (latency != LatencyDistribution.NONE) parts.add("latency=" + latencySpec);
+        if (errorRate > 0) parts.add("error=" + errorRate + ":" + errorStatus);
+        if (resetRate > 0) parts.add("reset=" + resetRate);
+        if (bytesPerSecond > 0) parts.add("bandwidth=" + bytesPerSecond);
+        return route + ": " + (parts.isEmpty() ? "none" : String.join(", ", parts));
+    }
+
+    private static double checkRate(double rate) {
+        if (rate < 0 || rate > 1) throw new IllegalArgumentException("Fault rate must be within [0, 1]: " + rate);
+        return rate;
+    }
+}
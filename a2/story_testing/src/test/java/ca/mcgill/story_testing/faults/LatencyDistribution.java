@@ -0,0 +1,65 @@
+package ca.mcgill.story_testing.faults;
+
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+// Delay added by the fault proxy before a request is forwarded, in milliseconds:
+// "fixed:50", "uniform:10-200", "exp:20" (mean), "lognormal:20,1.0" (median, sigma) or "none".
+public interface LatencyDistribution {
+    LatencyDistribution NONE = random -> 0;
+
+    long sampleNanos(SplittableRandom random);
+
+    static LatencyDistribution fixed(double millis) {
+        long nanos = toNanos(millis);
+        return random -> nanos;
+    }
+
+    static LatencyDistribution uniform(double minMillis, double maxMillis) {
+        long min = toNanos(minMillis);
+        long max = toNanos(maxMillis);
+        if (max < min) throw new IllegalArgumentException("uniform:" + minMillis + "-" + maxMillis + " has max < min");
+        return random -> min + (max == min ? 0 : random.nextLong(max - min + 1));
+    }
+
+    static LatencyDistribution exponential(double meanMillis) {
+        double mean = toNanos(meanMillis);
+        return random -> (long) (-mean * Math.log(1 - random.nextDouble()));
+    }
+
+    // Long right tail: most requests near the median, a few many times slower
+    static LatencyDistribution logNormal(double medianMillis, double sigma) {
+        double mu = Math.log(toNanos(medianMillis));
+        return random -> (long) Math.exp(mu + sigma * gaussian(random));
+    }
+
+    static LatencyDistribution parse(String spec) {
+        String text = spec.trim().toLowerCase(Locale.ROOT);
+        if (text.isEmpty() || text.equals("none")) return NONE;
+        int colon = text.indexOf(':');
+        if (colon < 0) return fixed(Double.parseDouble(text));
+        String kind = text.substring(0, colon);
+        String[] args = text.substring(colon + 1).split("[-,]");
+        try {
+            return switch (kind) {
+                case "fixed" -> fixed(Double.parseDouble(args[0]));
+                case "uniform" -> uniform(Double.parseDouble(args[0]), Double.parseDouble(args[1]));
+                case "exp" -> exponential(Double.parseDouble(args[0]));
+                case "lognormal" -> logNormal(Double.parseDouble(args[0]), Double.parseDouble(args[1]));
+                default -> throw new IllegalArgumentException("Unknown latency distribution: " + spec);
+            };
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed latency distribution: " + spec, e);
+        }
+    }
+
+    private static long toNanos(double millis) {
+        return Math.round(millis * 1_000_000);
+    }
+
+    private static double gaussian(SplittableRandom random) {
+        // Box-Muller; SplittableRandom has no nextGaussian on JDK 17
+        double u = 1 - random.nextDouble();
+        return Math.sqrt(-2 * Math.log(u)) * Math.cos(2 * Math.PI * random.nextDouble());
+    }
+}
@@ -0,0 +1,73 @@
+package ca.mcgill.story_testing.fixtures;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+// Serializes JSON with sorted keys so that equal documents always produce the same text.
+public final class CanonicalJson {
+    private CanonicalJson() {
+    }
+
+    public static String normalize(String body) {
+        if (body == null || body.isBlank()) {
+            return "";
+        }
+        try {
+            Object value = new JSONTokener(body).nextValue();
+            if (value instanceof JSONObject || value instanceof JSONArray) {
+                return write(value, false);
+            }
+        } catch (JSONException e) {
+            // not JSON, keep the raw text
+        }
+        return body.trim();
+    }
+
+    public static String write(Object value, boolean pretty) {
+        StringBuilder out = new StringBuilder();
+        write(value, pretty, 0, out);
+        return out.toString();
+    }
+
+    private static void write(Object value, boolean pretty, int depth, StringBuilder out) {
+        if (value instanceof JSONObject object) {
+            List<String> keys = new ArrayList<>(object.keySet());
+            Collections.sort(keys);
+            out.append('{');
+            for (int i = 0; i < keys.size(); i++) {
+                if (i > 0) out.append(',');
+                newline(pretty, depth + 1, out);
+                out.append(JSONObject.quote(keys.get(i))).append(pretty ? ": " : ":");
+                write(object.get(keys.get(i)), pretty, depth + 1, out);
+            }
+            if (!keys.isEmpty()) newline(pretty, depth, out);
+            out.append('}');
+        } else if (value instanceof JSONArray array) {
+            out.append('[');
+            for (int i = 0; i < array.length(); i++) {
+                if (i > 0) out.append(',');
+                newline(pretty, depth + 1, out);
+                write(array.get(i), pretty, depth + 1, out);
+            }
+            if (!array.isEmpty()) newline(pretty, depth, out);
+            out.append(']');
+        } else if (value instanceof String text) {
+            out.append(JSONObject.quote(text));
+        } else {
+            out.append(JSONObject.valueToString(value));
+        }
+    }
+
+    private static void newline(boolean pretty, int depth, StringBuilder out) {
+        if (pretty) {
+            out.append('\n');
+            out.append("  ".repeat(depth));
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package ca.mcgill.story_testing.fixtures;
+
+public enum FixtureMode {
+    LIVE,
+    RECORD,
+    REPLAY;
+
+    public static FixtureMode parse(String value) {
+        if (value == null || value.isBlank()) {
+            return LIVE;
+        }
+        try {
+            return valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unsupported transport mode: " + value + " (expected live, record or replay)", e);
+        }
+    }
+}
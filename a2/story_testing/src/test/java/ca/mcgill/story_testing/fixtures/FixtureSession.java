@@ -0,0 +1,56 @@
+package ca.mcgill.story_testing.fixtures;
+
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.function.Supplier;
+
+import ca.mcgill.story_testing.http.HttpTransport;
+
+// Fixture state of a single scenario: what has been recorded so far, or the stub replaying it.
+public class FixtureSession {
+    private final Fixtures fixtures;
+    private final String scenarioKey;
+    private final IdRewriter ids = new IdRewriter();
+    private final List<RecordedExchange> recorded = new ArrayList<>();
+    private StubTransport stub;
+
+    FixtureSession(Fixtures fixtures, String scenarioKey) {
+        this.fixtures = fixtures;
+        this.scenarioKey = scenarioKey;
+    }
+
+    public HttpTransport transport(String baseUrl, Supplier<HttpTransport> live) {
+        return switch (fixtures.mode()) {
+            case LIVE -> live.get();
+            case RECORD -> new RecordingTransport(live.get(), this);
+            case REPLAY -> stub(baseUrl);
+        };
+    }
+
+    private StubTransport stub(String baseUrl) {
+        if (stub == null) {
+            ScenarioFixture fixture = scenarioKey == null ? null : fixtures.store().get(scenarioKey);
+            RouteTrie routes = fixture == null ? null : fixtures.routesFor(scenarioKey, fixture);
+            stub = new StubTransport(baseUrl, scenarioKey, fixture, routes, fixtures.latencyNanos());
+        }
+        return stub;
+    }
+
+    synchronized void record(String method, String endpoint, String body, HttpResponse<String> response) {
+        String path = ids.aliasPath(endpoint);
+        String requestBody = CanonicalJson.normalize(ids.aliasBody(body));
+        ids.learn(response.body());
+        String contentType = response.headers().firstValue("Content-Type").orElse(null);
+        recorded.add(new RecordedExchange(method.toUpperCase(), path, requestBody, response.statusCode(),
+                contentType, ids.aliasBody(response.body())));
+    }
+
+    public void close() {
+        if (fixtures.mode() == FixtureMode.RECORD && scenarioKey != null) {
+            fixtures.store().put(scenarioKey, new ScenarioFixture(new LinkedHashMap<>(ids.aliasTable()), List.copyOf(recorded)));
+            fixtures.store().save(scenarioKey);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package ca.mcgill.story_testing.fixtures;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.json.JSONObject;
+
+// One JSON file per feature, holding the recorded exchanges of each of its scenarios.
+public class FixtureStore {
+    private final Path directory;
+    private final Map<String, Map<String, ScenarioFixture>> features = new HashMap<>();
+
+    public FixtureStore(Path directory) {
+        this.directory = directory;
+    }
+
+    public static FixtureStore load(Path directory) {
+        FixtureStore store = new FixtureStore(directory);
+        if (!Files.isDirectory(directory)) {
+            return store;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.json")) {
+            for (Path file : files) {
+                String feature = file.getFileName().toString().replaceFirst("\\.json$", "");
+                JSONObject scenarios = new JSONObject(Files.readString(file, StandardCharsets.UTF_8)).getJSONObject("scenarios");
+                Map<String, ScenarioFixture> byKey = new TreeMap<>();
+                for (String key : scenarios.keySet()) {
+                    byKey.put(key, ScenarioFixture.fromJson(scenarios.getJSONObject(key)));
+                }
+                store.features.put(feature, byKey);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to load fixtures from " + directory, e);
+        }
+        return store;
+    }
+
+    public synchronized ScenarioFixture get(String scenarioKey) {
+        Map<String, ScenarioFixture> scenarios = features.get(featureOf(scenarioKey));
+        return scenarios == null ? null : scenarios.get(scenarioKey);
+    }
+
+    public synchronized void put(String scenarioKey, ScenarioFixture fixture) {
+        features.computeIfAbsent(featureOf(scenarioKey), feature -> new TreeMap<>()).put(scenarioKey, fixture);
+    }
+
+    public synchronized void save(String scenarioKey) {
+        String feature = featureOf(scenarioKey);
+        JSONObject scenarios = new JSONObject();
+        for (Map.Entry<String, ScenarioFixture> entry : features.getOrDefault(feature, Map.of()).entrySet()) {
+            scenarios.put(entry.getKey(), entry.getValue().toJson());
+        }
+        JSONObject root = new JSONObject();
+        root.put("scenarios", scenarios);
+        try {
+            Files.createDirectories(directory);
+            Files.writeString(directory.resolve(feature + ".json"), CanonicalJson.write(root, true) + "\n", StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write fixtures for " + feature, e);
+        }
+    }
+
+    private static String featureOf(String scenarioKey) {
+        String feature = scenarioKey.substring(0, scenarioKey.lastIndexOf(':'));
+        return feature.endsWith(".feature") ? feature.substring(0, feature.length() - 8) : feature;
+    }
+}
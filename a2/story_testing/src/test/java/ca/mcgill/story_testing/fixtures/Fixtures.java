@@ -0,0 +1,62 @@
+package ca.mcgill.story_testing.fixtures;
+
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class Fixtures {
+    public static final String MODE_PROPERTY = "story.transport";
+    public static final String DIRECTORY_PROPERTY = "story.fixtures.dir";
+    public static final String DEFAULT_DIRECTORY = "src/test/resources/fixtures";
+    // Milliseconds every replayed answer waits first, standing in for the server's time (default 0)
+    public static final String LATENCY_PROPERTY = "story.fixtures.latency";
+
+    private final FixtureMode mode;
+    private final FixtureStore store;
+    private final long latencyNanos;
+    private final Map<String, RouteTrie> routes = new ConcurrentHashMap<>();
+
+    public Fixtures(FixtureMode mode, FixtureStore store) {
+        this(mode, store, 0);
+    }
+
+    public Fixtures(FixtureMode mode, FixtureStore store, long latencyNanos) {
+        this.mode = mode;
+        this.store = store;
+        this.latencyNanos = latencyNanos;
+    }
+
+    public static Fixtures fromSystemProperties() {
+        FixtureMode mode = FixtureMode.parse(System.getProperty(MODE_PROPERTY));
+        Path directory = Path.of(System.getProperty(DIRECTORY_PROPERTY, DEFAULT_DIRECTORY));
+        // A re-record starts from an empty store so that removed scenarios disappear from the files
+        FixtureStore store = mode == FixtureMode.REPLAY ? FixtureStore.load(directory) : new FixtureStore(directory);
+        return new Fixtures(mode, store, Long.getLong(LATENCY_PROPERTY, 0) * 1_000_000);
+    }
+
+    public FixtureMode mode() {
+        return mode;
+    }
+
+    public FixtureSession openSession(String scenarioKey) {
+        return new FixtureSession(this, scenarioKey);
+    }
+
+    long latencyNanos() {
+        return latencyNanos;
+    }
+
+    FixtureStore store() {
+        return store;
+    }
+
+    RouteTrie routesFor(String scenarioKey, ScenarioFixture fixture) {
+        return routes.computeIfAbsent(scenarioKey, key -> {
+            RouteTrie trie = new RouteTrie();
+            for (RecordedExchange exchange : fixture.exchanges()) {
+                trie.add(exchange);
+            }
+            return trie;
+        });
+    }
+}
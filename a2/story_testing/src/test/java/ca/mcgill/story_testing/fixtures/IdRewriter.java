@@ -0,0 +1,73 @@
+package ca.mcgill.story_testing.fixtures;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Maps server-assigned ids to stable aliases ($id1, $id2, ...) in order of first appearance within a scenario.
+public class IdRewriter {
+    private static final Pattern ID_FIELD = Pattern.compile("(\"id\"\\s*:\\s*\")([^\"]+)(\")");
+    private static final Pattern PATH_SEGMENT = Pattern.compile("(?<=/)([^/?]+)(?=/|\\?|$)");
+    private static final Pattern ALIAS = Pattern.compile("\\$id\\d+");
+
+    private final Map<String, String> aliases = new HashMap<>();
+    private final Map<String, String> concrete = new LinkedHashMap<>();
+
+    public IdRewriter() {
+    }
+
+    public IdRewriter(Map<String, String> aliasToId) {
+        for (Map.Entry<String, String> entry : aliasToId.entrySet()) {
+            concrete.put(entry.getKey(), entry.getValue());
+            aliases.put(entry.getValue(), entry.getKey());
+        }
+    }
+
+    public void learn(String responseBody) {
+        if (responseBody == null) return;
+        Matcher matcher = ID_FIELD.matcher(responseBody);
+        while (matcher.find()) {
+            String id = matcher.group(2);
+            if (!aliases.containsKey(id)) {
+                String alias = "$id" + (concrete.size() + 1);
+                aliases.put(id, alias);
+                concrete.put(alias, id);
+            }
+        }
+    }
+
+    public String aliasPath(String path) {
+        return replace(PATH_SEGMENT, path, 1, aliases::get);
+    }
+
+    public String aliasBody(String body) {
+        return replace(ID_FIELD, body, 2, aliases::get);
+    }
+
+    public String concretize(String text) {
+        return replace(ALIAS, text, 0, concrete::get);
+    }
+
+    public Map<String, String> aliasTable() {
+        return concrete;
+    }
+
+    private static String replace(Pattern pattern, String text, int group, Function<String, String> lookup) {
+        if (text == null || text.isEmpty()) return text;
+        Matcher matcher = pattern.matcher(text);
+        StringBuilder out = new StringBuilder(text.length());
+        int last = 0;
+        while (matcher.find()) {
+            String replacement = lookup.apply(matcher.group(group));
+            if (replacement != null) {
+                out.append(text, last, matcher.start(group)).append(replacement);
+                last = matcher.end(group);
+            }
+        }
+        if (last == 0) return text;
+        return out.append(text, last, text.length()).toString();
+    }
+}
@@ -0,0 +1,28 @@
+package ca.mcgill.story_testing.fixtures;
+
+import org.json.JSONObject;
+
+public record RecordedExchange(String method, String path, String body, int status, String contentType, String response) {
+
+    public JSONObject toJson() {
+        JSONObject json = new JSONObject();
+        json.put("method", method);
+        json.put("path", path);
+        json.put("body", body);
+        json.put("status", status);
+        json.put("contentType", contentType == null ? "" : contentType);
+        json.put("response", response);
+        return json;
+    }
+
+    public static RecordedExchange fromJson(JSONObject json) {
+        String contentType = json.optString("contentType");
+        return new RecordedExchange(
+                json.getString("method"),
+                json.getString("path"),
+                json.optString("body"),
+                json.getInt("status"),
+                contentType.isEmpty() ? null : contentType,
+                json.optString("response"));
+    }
+}
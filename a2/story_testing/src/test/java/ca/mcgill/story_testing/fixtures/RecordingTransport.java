@@ -0,0 +1,23 @@
+package ca.mcgill.story_testing.fixtures;
+
+import java.io.IOException;
+import java.net.http.HttpResponse;
+
+import ca.mcgill.story_testing.http.HttpTransport;
+
+public class RecordingTransport implements HttpTransport {
+    private final HttpTransport delegate;
+    private final FixtureSession session;
+
+    RecordingTransport(HttpTransport delegate, FixtureSession session) {
+        this.delegate = delegate;
+        this.session = session;
+    }
+
+    @Override
+    public HttpResponse<String> send(String method, String endpoint, String body) throws IOException, InterruptedException {
+        HttpResponse<String> response = delegate.send(method, endpoint, body);
+        session.record(method, endpoint, body, response);
+        return response;
+    }
+}
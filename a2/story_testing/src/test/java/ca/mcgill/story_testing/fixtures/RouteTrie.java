@@ -0,0 +1,54 @@
+package ca.mcgill.story_testing.fixtures;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Indexes recorded exchanges by method, then path segment, then canonical request body.
+public class RouteTrie {
+    private final Node root = new Node();
+
+    public void add(RecordedExchange exchange) {
+        Node node = walk(exchange.method(), exchange.path(), true);
+        node.exchanges.computeIfAbsent(exchange.body(), body -> new ArrayList<>()).add(exchange);
+    }
+
+    public List<RecordedExchange> find(String method, String path, String body) {
+        Node node = walk(method, path, false);
+        return node == null ? null : node.exchanges.get(body);
+    }
+
+    private Node walk(String method, String path, boolean create) {
+        Node node = child(root, method, create);
+        int query = path.indexOf('?');
+        String route = query < 0 ? path : path.substring(0, query);
+        int start = 0;
+        while (node != null && start < route.length()) {
+            int end = route.indexOf('/', start);
+            if (end < 0) end = route.length();
+            if (end > start) {
+                node = child(node, route.substring(start, end), create);
+            }
+            start = end + 1;
+        }
+        if (node != null && query >= 0) {
+            node = child(node, path.substring(query), create);
+        }
+        return node;
+    }
+
+    private static Node child(Node node, String segment, boolean create) {
+        Node child = node.children.get(segment);
+        if (child == null && create) {
+            child = new Node();
+            node.children.put(segment, child);
+        }
+        return child;
+    }
+
+    private static class Node {
+        private final Map<String, Node> children = new HashMap<>();
+        private final Map<String, List<RecordedExchange>> exchanges = new HashMap<>();
+    }
+}
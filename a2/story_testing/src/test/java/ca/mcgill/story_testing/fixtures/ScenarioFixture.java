@@ -0,0 +1,39 @@
+package ca.mcgill.story_testing.fixtures;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+public record ScenarioFixture(Map<String, String> ids, List<RecordedExchange> exchanges) {
+
+    public JSONObject toJson() {
+        JSONObject json = new JSONObject();
+        json.put("ids", new JSONObject(ids));
+        JSONArray array = new JSONArray();
+        for (RecordedExchange exchange : exchanges) {
+            array.put(exchange.toJson());
+        }
+        json.put("exchanges", array);
+        return json;
+    }
+
+    public static ScenarioFixture fromJson(JSONObject json) {
+        Map<String, String> ids = new LinkedHashMap<>();
+        JSONObject idsJson = json.optJSONObject("ids");
+        if (idsJson != null) {
+            for (String alias : idsJson.keySet()) {
+                ids.put(alias, idsJson.getString(alias));
+            }
+        }
+        List<RecordedExchange> exchanges = new ArrayList<>();
+        JSONArray array = json.getJSONArray("exchanges");
+        for (int i = 0; i < array.length(); i++) {
+            exchanges.add(RecordedExchange.fromJson(array.getJSONObject(i)));
+        }
+        return new ScenarioFixture(ids, exchanges);
+    }
+}
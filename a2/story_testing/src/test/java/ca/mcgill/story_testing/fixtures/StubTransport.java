@@ -0,0 +1,56 @@
+package ca.mcgill.story_testing.fixtures;
+
+import java.net.URI;
+import java.net.http.HttpResponse;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import ca.mcgill.story_testing.http.HttpTransport;
+import ca.mcgill.story_testing.http.SimpleHttpResponse;
+
+// Answers from the recorded fixture of one scenario; repeated identical requests get the responses in recorded order.
+// With a latency every answer waits that long first, outside the lock: a virtual thread sleeping inside a
+// synchronized block would hold on to its carrier thread.
+public class StubTransport implements HttpTransport {
+    private final String baseUrl;
+    private final String scenarioKey;
+    private final RouteTrie routes;
+    private final IdRewriter ids;
+    private final Map<List<RecordedExchange>, Integer> cursors = new IdentityHashMap<>();
+    private final long latencyNanos;
+
+    StubTransport(String baseUrl, String scenarioKey, ScenarioFixture fixture, RouteTrie routes, long latencyNanos) {
+        this.baseUrl = baseUrl;
+        this.latencyNanos = latencyNanos;
+        this.scenarioKey = scenarioKey;
+        this.routes = routes;
+        this.ids = fixture == null ? new IdRewriter() : new IdRewriter(fixture.ids());
+    }
+
+    @Override
+    public HttpResponse<String> send(String method, String endpoint, String body) throws InterruptedException {
+        if (latencyNanos > 0) TimeUnit.NANOSECONDS.sleep(latencyNanos);
+        return answer(method, endpoint, body);
+    }
+
+    private synchronized HttpResponse<String> answer(String method, String endpoint, String body) {
+        if (routes == null) {
+            throw new IllegalStateException("No fixture recorded for scenario " + scenarioKey
+                    + "; run 'gradle recordFixtures' against a live server first");
+        }
+        String path = ids.aliasPath(endpoint);
+        String requestBody = CanonicalJson.normalize(ids.aliasBody(body));
+        List<RecordedExchange> candidates = routes.find(method.toUpperCase(), path, requestBody);
+        if (candidates == null) {
+            throw new IllegalStateException("No recorded response for " + method + " " + path + " " + requestBody
+                    + " in scenario " + scenarioKey + "; the fixtures may be stale, run 'gradle recordFixtures'");
+        }
+        int index = cursors.getOrDefault(candidates, 0);
+        cursors.put(candidates, index + 1);
+        RecordedExchange exchange = candidates.get(Math.min(index, candidates.size() - 1));
+        return new SimpleHttpResponse(method, URI.create(baseUrl + endpoint), exchange.status(),
+                exchange.contentType(), ids.concretize(exchange.response()));
+    }
+}
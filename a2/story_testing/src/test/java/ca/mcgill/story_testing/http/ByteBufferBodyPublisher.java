@@ -0,0 +1,50 @@
+package ca.mcgill.story_testing.http;
+
+import java.net.http.HttpRequest;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Flow;
+
+// Publishes the remaining bytes of a (typically reused, direct) buffer without copying them to a byte[] or String.
+// The buffer must not change until the request has been sent, which holds for HttpClient.send but not sendAsync.
+public final class ByteBufferBodyPublisher implements HttpRequest.BodyPublisher {
+    private final ByteBuffer body;
+
+    public ByteBufferBodyPublisher(ByteBuffer body) {
+        this.body = body;
+    }
+
+    // A view of the body for clients that write it themselves
+    public ByteBuffer buffer() {
+        return body.duplicate();
+    }
+
+    @Override
+    public long contentLength() {
+        return body.remaining();
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+        ByteBuffer view = body.duplicate();
+        subscriber.onSubscribe(new Flow.Subscription() {
+            private boolean done;
+
+            @Override
+            public void request(long n) {
+                if (done) return;
+                done = true;
+                if (n <= 0) {
+                    subscriber.onError(new IllegalArgumentException("non-positive request: " + n));
+                    return;
+                }
+                if (view.hasRemaining()) subscriber.onNext(view);
+                subscriber.onComplete();
+            }
+
+            @Override
+            public void cancel() {
+                done = true;
+            }
+        });
+    }
+}
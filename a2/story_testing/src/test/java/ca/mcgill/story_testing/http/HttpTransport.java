@@ -0,0 +1,8 @@
+package ca.mcgill.story_testing.http;
+
+import java.io.IOException;
+import java.net.http.HttpResponse;
+
+public interface HttpTransport {
+    HttpResponse<String> send(String method, String endpoint, String body) throws IOException, InterruptedException;
+}
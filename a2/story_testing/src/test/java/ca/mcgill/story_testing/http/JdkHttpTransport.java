@@ -0,0 +1,90 @@
+package ca.mcgill.story_testing.http;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+
+public class JdkHttpTransport implements HttpTransport, TemplateTransport {
+    public static final String RESTRICTED_HEADERS_PROPERTY = "jdk.httpclient.allowRestrictedHeaders";
+
+    private final HttpClient httpClient;
+    private final String baseUrl;
+    private final Duration timeout;
+    private final boolean keepAlive;
+
+    public JdkHttpTransport(HttpClient httpClient, String baseUrl) {
+        this(httpClient, baseUrl, null);
+    }
+
+    // timeout: response deadline of each request (HttpTimeoutException), null for none
+    public JdkHttpTransport(HttpClient httpClient, String baseUrl, Duration timeout) {
+        this(httpClient, baseUrl, timeout, true);
+    }
+
+    // keepAlive false sends "Connection: close" so that every request opens its own connection, like a fresh
+    // Python requests call; the JDK only allows that header with -Djdk.httpclient.allowRestrictedHeaders=connection
+    public JdkHttpTransport(HttpClient httpClient, String baseUrl, Duration timeout, boolean keepAlive) {
+        if (!keepAlive && !System.getProperty(RESTRICTED_HEADERS_PROPERTY, "").toLowerCase().contains("connection")) {
+            throw new IllegalStateException("Closing connections per request needs -D" + RESTRICTED_HEADERS_PROPERTY + "=connection");
+        }
+        this.httpClient = httpClient;
+        this.baseUrl = baseUrl;
+        this.timeout = timeout;
+        this.keepAlive = keepAlive;
+    }
+
+    // A client with the policy's connect timeout, for the transports of that policy
+    public static JdkHttpTransport create(String baseUrl, RequestPolicy policy) {
+        return create(baseUrl, policy, HttpClient.Version.HTTP_2, true);
+    }
+
+    // version HTTP_2 upgrades cleartext connections when the server agrees and stays on HTTP/1.1 otherwise
+    public static JdkHttpTransport create(String baseUrl, RequestPolicy policy, HttpClient.Version version, boolean keepAlive) {
+        HttpClient.Builder client = HttpClient.newBuilder().version(version);
+        if (policy.connectTimeout() != null) client.connectTimeout(policy.connectTimeout());
+        return new JdkHttpTransport(client.build(), baseUrl, policy.timeout(), keepAlive);
+    }
+
+    @Override
+    public HttpResponse<String> send(String method, String endpoint, String body) throws IOException, InterruptedException {
+        HttpRequest.Builder requestBuilder = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + endpoint));
+        if (timeout != null) requestBuilder.timeout(timeout);
+        if (!keepAlive) requestBuilder.header("Connection", "close");
+
+        switch (method.toUpperCase()) {
+            case "GET" -> requestBuilder.GET();
+            case "POST" -> requestBuilder.header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(body != null ? body : ""));
+            case "PUT" -> requestBuilder.header("Content-Type", "application/json")
+                    .PUT(HttpRequest.BodyPublishers.ofString(body != null ? body : ""));
+            case "DELETE" -> requestBuilder.DELETE();
+            default -> throw new IllegalArgumentException("Unsupported HTTP method: " + method);
+        }
+
+        return httpClient.send(requestBuilder.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    // For requests built from a RequestTemplate; load runs can pass BodyHandlers.discarding()
+    public <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> handler) throws IOException, InterruptedException {
+        return httpClient.send(request, handler);
+    }
+
+    @Override
+    public HttpResponse<String> send(HttpRequest request, boolean readBody) throws IOException, InterruptedException {
+        return httpClient.send(request, readBody ? HttpResponse.BodyHandlers.ofString() : HttpResponse.BodyHandlers.replacing(null));
+    }
+
+    @Override
+    public String baseUrl() {
+        return baseUrl;
+    }
+
+    @Override
+    public boolean keepAlive() {
+        return keepAlive;
+    }
+}
@@ -0,0 +1,136 @@
+package ca.mcgill.story_testing.http;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// A JSON body with ${name} slots, e.g. {"title":${title},"doneStatus":${doneStatus}}. The literal parts are encoded
+// once; a Filler writes the slot values straight into its own direct buffer, so filling allocates nothing.
+public final class JsonTemplate {
+    private static final Pattern SLOT = Pattern.compile("\\$\\{(\\w+)}");
+    private static final byte[] TRUE = "true".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] FALSE = "false".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NULL = "null".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private final byte[][] literals;
+    private final List<String> slots;
+
+    private JsonTemplate(byte[][] literals, List<String> slots) {
+        this.literals = literals;
+        this.slots = slots;
+    }
+
+    public static JsonTemplate compile(String skeleton) {
+        List<byte[]> literals = new ArrayList<>();
+        List<String> slots = new ArrayList<>();
+        Matcher matcher = SLOT.matcher(skeleton);
+        int last = 0;
+        while (matcher.find()) {
+            literals.add(skeleton.substring(last, matcher.start()).getBytes(StandardCharsets.UTF_8));
+            slots.add(matcher.group(1));
+            last = matcher.end();
+        }
+        literals.add(skeleton.substring(last).getBytes(StandardCharsets.UTF_8));
+        return new JsonTemplate(literals.toArray(byte[][]::new), List.copyOf(slots));
+    }
+
+    public List<String> slots() {
+        return slots;
+    }
+
+    // One filler per thread; the buffer it returns is only valid until the next start()
+    public Filler newFiller(int capacity) {
+        return new Filler(ByteBuffer.allocateDirect(capacity));
+    }
+
+    public final class Filler {
+        private final ByteBuffer buffer;
+        private int slot;
+
+        private Filler(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        public Filler start() {
+            buffer.clear();
+            slot = 0;
+            buffer.put(literals[0]);
+            return this;
+        }
+
+        public Filler string(CharSequence value) {
+            if (value == null) return raw(NULL);
+            buffer.put((byte) '"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '"' || c == '\\') {
+                    buffer.put((byte) '\\').put((byte) c);
+                } else if (c < 0x20) {
+                    buffer.put((byte) '\\').put((byte) 'u').put((byte) '0').put((byte) '0')
+                            .put(HEX[c >> 4]).put(HEX[c & 0xF]);
+                } else if (c < 0x80) {
+                    buffer.put((byte) c);
+                } else if (c < 0x800) {
+                    buffer.put((byte) (0xC0 | c >> 6)).put((byte) (0x80 | c & 0x3F));
+                } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                    buffer.put((byte) (0xF0 | codePoint >> 18)).put((byte) (0x80 | codePoint >> 12 & 0x3F))
+                            .put((byte) (0x80 | codePoint >> 6 & 0x3F)).put((byte) (0x80 | codePoint & 0x3F));
+                } else {
+                    buffer.put((byte) (0xE0 | c >> 12)).put((byte) (0x80 | c >> 6 & 0x3F)).put((byte) (0x80 | c & 0x3F));
+                }
+            }
+            buffer.put((byte) '"');
+            return next();
+        }
+
+        public Filler bool(boolean value) {
+            return raw(value ? TRUE : FALSE);
+        }
+
+        public Filler number(long value) {
+            if (value == Long.MIN_VALUE) return raw(Long.toString(value).getBytes(StandardCharsets.US_ASCII));
+            if (value < 0) {
+                buffer.put((byte) '-');
+                value = -value;
+            }
+            int start = buffer.position();
+            do {
+                buffer.put((byte) ('0' + value % 10));
+                value /= 10;
+            } while (value > 0);
+            // Digits were written least significant first
+            for (int i = start, j = buffer.position() - 1; i < j; i++, j--) {
+                byte swap = buffer.get(i);
+                buffer.put(i, buffer.get(j));
+                buffer.put(j, swap);
+            }
+            return next();
+        }
+
+        // Flipped view of the body, ready to publish
+        public ByteBuffer finish() {
+            if (slot != slots.size()) {
+                throw new IllegalStateException("Filled " + slot + " of " + slots.size() + " slots " + slots);
+            }
+            return buffer.flip();
+        }
+
+        private Filler raw(byte[] bytes) {
+            buffer.put(bytes);
+            return next();
+        }
+
+        private Filler next() {
+            if (slot >= slots.size()) {
+                throw new IllegalStateException("Template has only " + slots.size() + " slots " + slots);
+            }
+            buffer.put(literals[++slot]);
+            return this;
+        }
+    }
+}
@@ -0,0 +1,765 @@
+package ca.mcgill.story_testing.http;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.net.URI;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+// Minimal HTTP/1.1 client for load generation: one selector thread drives a few non-blocking connections and pipelines
+// up to `depth` idempotent requests on each, so a request costs no futures, header maps or executor hops. Requests are
+// encoded straight into a reused direct buffer per connection and responses are parsed in place in another; a body is
+// only copied out when the caller wants it as a String. It speaks just what the Todo Manager API needs: GET, POST, PUT
+// and DELETE with JSON bodies, and Content-Length, chunked or close-delimited responses. A POST, or a request sent
+// again after its connection broke, is never pipelined, neither behind other requests nor ahead of them. A connection
+// whose oldest request is past its timeout is dropped, so that a stalled server does not hold requests that were
+// already given up on. The selector thread starts with the first request and stops after IDLE_NANOS without one,
+// closing its connections.
+public final class PipelinedHttpTransport implements HttpTransport, TemplateTransport, AutoCloseable {
+    public static final String CONNECTIONS_PROPERTY = "story.http.pipelined.connections";
+    public static final String DEPTH_PROPERTY = "story.http.pipelined.depth";
+    private static final long IDLE_NANOS = TimeUnit.SECONDS.toNanos(5);
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String JSON = "application/json";
+    private static final byte[] JSON_VALUE = ascii(JSON);
+    private static final byte[] VERSION_LINE = ascii(" HTTP/1.1\r\n");
+    private static final byte[] JSON_HEADER = ascii("Content-Type: application/json\r\nContent-Length: ");
+    private static final byte[] CRLF = ascii("\r\n");
+    private static final byte[] CONTENT_LENGTH = ascii("content-length");
+    private static final byte[] TRANSFER_ENCODING = ascii("transfer-encoding");
+    private static final byte[] CONNECTION = ascii("connection");
+    private static final byte[] CONTENT_TYPE = ascii("content-type");
+    private static final byte[] CHUNKED = ascii("chunked");
+    private static final byte[] CLOSE = ascii("close");
+    private static final byte[] KEEP_ALIVE = ascii("keep-alive");
+
+    private final String baseUrl;
+    private final InetSocketAddress address;
+    private final byte[] hostHeader;
+    private final Duration connectTimeout;
+    private final Duration timeout;
+    private final int maxConnections;
+    private final int depth;
+    private final long idleNanos;
+    private final ConcurrentLinkedQueue<Exchange> queue = new ConcurrentLinkedQueue<>();
+    // Set by the selector thread while it blocks in select(), so that only then a new request pays for a wakeup
+    private final AtomicBoolean selecting = new AtomicBoolean();
+    private volatile Selector selector;
+    private volatile boolean running;
+    private volatile boolean closed;
+
+    public PipelinedHttpTransport(String baseUrl, RequestPolicy policy) {
+        this(baseUrl, policy.connectTimeout(), policy.timeout(), Integer.getInteger(CONNECTIONS_PROPERTY, 4),
+                Integer.getInteger(DEPTH_PROPERTY, 8));
+    }
+
+    // timeout: response deadline of each request (HttpTimeoutException), connectTimeout: of each connection; null for none
+    public PipelinedHttpTransport(String baseUrl, Duration connectTimeout, Duration timeout, int connections, int depth) {
+        this(baseUrl, connectTimeout, timeout, connections, depth, IDLE_NANOS);
+    }
+
+    PipelinedHttpTransport(String baseUrl, Duration connectTimeout, Duration timeout, int connections, int depth,
+                           long idleNanos) {
+        URI uri = URI.create(baseUrl);
+        if (!"http".equalsIgnoreCase(uri.getScheme())) {
+            throw new IllegalArgumentException("Only http:// URLs are supported: " + baseUrl);
+        }
+        if (connections < 1 || depth < 1) {
+            throw new IllegalArgumentException("connections and depth must be >= 1: " + connections + ", " + depth);
+        }
+        int port = uri.getPort() < 0 ? 80 : uri.getPort();
+        this.baseUrl = baseUrl;
+        this.address = new InetSocketAddress(uri.getHost(), port);
+        this.hostHeader = ascii("Host: " + uri.getHost() + (uri.getPort() < 0 ? "" : ":" + port) + "\r\n");
+        this.connectTimeout = connectTimeout;
+        this.timeout = timeout;
+        this.maxConnections = connections;
+        this.depth = depth;
+        this.idleNanos = idleNanos;
+    }
+
+    @Override
+    public HttpResponse<String> send(String method, String endpoint, String body) throws IOException, InterruptedException {
+        String upper = method.toUpperCase(Locale.ROOT);
+        ByteBuffer encoded = switch (upper) {
+            case "GET", "DELETE" -> null;
+            case "POST", "PUT" -> StandardCharsets.UTF_8.encode(body != null ? body : "");
+            default -> throw new IllegalArgumentException("Unsupported HTTP method: " + method);
+        };
+        Exchange exchange = exchange(upper, endpoint, encoded, true, timeout);
+        return new SimpleHttpResponse(upper, URI.create(baseUrl + endpoint), exchange.status, exchange.contentType,
+                exchange.responseBody);
+    }
+
+    // The request's URI only contributes its path and query; it is sent to this transport's server
+    @Override
+    public HttpResponse<String> send(HttpRequest request, boolean readBody) throws IOException, InterruptedException {
+        URI uri = request.uri();
+        String target = uri.getRawQuery() == null ? uri.getRawPath() : uri.getRawPath() + "?" + uri.getRawQuery();
+        Exchange exchange = exchange(request.method(), target, body(request), readBody, request.timeout().orElse(timeout));
+        return new SimpleHttpResponse(request.method(), uri, exchange.status, exchange.contentType, exchange.responseBody);
+    }
+
+    @Override
+    public String baseUrl() {
+        return baseUrl;
+    }
+
+    @Override
+    public boolean keepAlive() {
+        return true;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        Selector current = selector;
+        if (current != null) current.wakeup();
+        synchronized (this) {
+            if (!running) failAll(queue, new IOException("Transport closed"));
+        }
+    }
+
+    private Exchange exchange(String method, String target, ByteBuffer body, boolean readBody, Duration timeout)
+            throws IOException, InterruptedException {
+        if (closed) throw new IOException("Transport closed");
+        Exchange exchange = new Exchange(method, target, body, readBody, timeout);
+        queue.add(exchange);
+        if (!running) {
+            start();
+        } else if (selecting.getAndSet(false)) {
+            selector.wakeup();
+        }
+        exchange.await();
+        if (exchange.failure != null) throw rethrow(exchange.failure);
+        return exchange;
+    }
+
+    private static ByteBuffer body(HttpRequest request) {
+        Optional<HttpRequest.BodyPublisher> publisher = request.bodyPublisher();
+        if (publisher.isEmpty() || publisher.get().contentLength() == 0) return null;
+        if (publisher.get() instanceof ByteBufferBodyPublisher buffer) return buffer.buffer();
+        throw new IllegalArgumentException("Only ByteBufferBodyPublisher bodies can be sent: " + publisher.get());
+    }
+
+    // A fresh exception of the same kind for the caller's stack, the selector thread's as its cause
+    private static IOException rethrow(IOException failure) {
+        IOException thrown;
+        if (failure instanceof HttpConnectTimeoutException) thrown = new HttpConnectTimeoutException(failure.getMessage());
+        else if (failure instanceof ConnectException) thrown = new ConnectException(failure.getMessage());
+        else thrown = new IOException(failure.getMessage());
+        thrown.initCause(failure);
+        return thrown;
+    }
+
+    private synchronized void start() {
+        if (running) return;
+        if (closed) {
+            failAll(queue, new IOException("Transport closed"));
+            return;
+        }
+        running = true;
+        Thread thread = new Thread(new Io(), "pipelined-http");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // Called by an idle selector thread; false if a request came in meanwhile and the thread has to go on
+    private synchronized boolean stop() {
+        if (!queue.isEmpty() && !closed) return false;
+        running = false;
+        return true;
+    }
+
+    private static void failAll(Queue<Exchange> exchanges, IOException cause) {
+        for (Exchange exchange; (exchange = exchanges.poll()) != null; ) {
+            exchange.fail(cause);
+        }
+    }
+
+    private static final class Exchange {
+        final String method;
+        final String target;
+        final ByteBuffer body;
+        final boolean hasBody;
+        final boolean idempotent;
+        final boolean readBody;
+        final Thread waiter = Thread.currentThread();
+        final boolean timed;
+        final long deadline;
+        int attempts;
+        // Written by the selector thread before done
+        int status;
+        String contentType;
+        String responseBody;
+        IOException failure;
+        volatile boolean done;
+        volatile boolean abandoned;
+
+        Exchange(String method, String target, ByteBuffer body, boolean readBody, Duration timeout) {
+            this.timed = timeout != null;
+            this.deadline = timed ? System.nanoTime() + timeout.toNanos() : 0;
+            this.method = method;
+            this.target = target;
+            this.body = body;
+            this.hasBody = method.equals("POST") || method.equals("PUT");
+            this.idempotent = RequestPolicy.idempotent(method);
+            this.readBody = readBody;
+        }
+
+        // Alone on its connection until answered
+        boolean exclusive() {
+            return !idempotent || attempts > 0;
+        }
+
+        boolean expired(long now) {
+            return timed && now - deadline >= 0;
+        }
+
+        void await() throws InterruptedException, HttpTimeoutException {
+            while (!done) {
+                if (!timed) {
+                    LockSupport.park(this);
+                } else {
+                    long left = deadline - System.nanoTime();
+                    if (left <= 0) {
+                        abandoned = true;
+                        throw new HttpTimeoutException("request timed out");
+                    }
+                    LockSupport.parkNanos(this, left);
+                }
+                if (Thread.interrupted()) {
+                    abandoned = true;
+                    throw new InterruptedException();
+                }
+            }
+        }
+
+        void complete(int status, String contentType, String body) {
+            this.status = status;
+            this.contentType = contentType;
+            this.responseBody = body;
+            done = true;
+            LockSupport.unpark(waiter);
+        }
+
+        void fail(IOException cause) {
+            failure = cause;
+            done = true;
+            LockSupport.unpark(waiter);
+        }
+    }
+
+    // One run of the selector thread, from the first request after an idle period to the next idle period
+    private final class Io implements Runnable {
+        private final List<Connection> connections = new ArrayList<>();
+        // Unanswered idempotent requests of a connection the server closed, sent again before anything new
+        private final ArrayDeque<Exchange> retries = new ArrayDeque<>();
+        private Selector io;
+
+        @Override
+        public void run() {
+            IOException failure = new IOException("Transport closed");
+            // Once stop() let this thread go, a new one may already own the queue and the running flag
+            boolean stoppedIdle = false;
+            try (Selector opened = Selector.open()) {
+                io = opened;
+                selector = opened;
+                long idleSince = System.nanoTime();
+                while (!closed) {
+                    boolean saturated = dispatch();
+                    if (!queue.isEmpty() || !retries.isEmpty() || busy()) {
+                        idleSince = System.nanoTime();
+                    } else if (System.nanoTime() - idleSince > idleNanos && stop()) {
+                        stoppedIdle = true;
+                        break;
+                    }
+                    selecting.set(true);
+                    if (!saturated && !queue.isEmpty()) {
+                        io.selectNow();
+                    } else {
+                        io.select(connecting() ? 10 : 1000);
+                    }
+                    selecting.set(false);
+                    for (SelectionKey key : io.selectedKeys()) {
+                        handle((Connection) key.attachment(), key);
+                    }
+                    io.selectedKeys().clear();
+                    expireConnects();
+                    expireResponses();
+                }
+            } catch (IOException e) {
+                failure = e;
+            } catch (RuntimeException e) {
+                failure = new IOException("Pipelined client failed", e);
+            } finally {
+                for (Connection connection : new ArrayList<>(connections)) {
+                    for (Exchange exchange : connection.inflight) {
+                        exchange.fail(failure);
+                    }
+                    connection.inflight.clear();
+                    connection.close();
+                }
+                failAll(retries, failure);
+                if (!stoppedIdle) {
+                    // Under the lock, so that a request added meanwhile is either failed here or starts a new thread
+                    synchronized (PipelinedHttpTransport.this) {
+                        running = false;
+                        failAll(queue, failure);
+                    }
+                }
+            }
+        }
+
+        // Moves waiting requests onto connections with room; true when some are left waiting for a free slot
+        private boolean dispatch() throws IOException {
+            boolean saturated = false;
+            while (true) {
+                ArrayDeque<Exchange> retry = retries;
+                Exchange next = retry.isEmpty() ? queue.peek() : retry.peek();
+                if (next == null) break;
+                if (next.abandoned) {
+                    if (retry.isEmpty()) queue.poll(); else retry.poll();
+                    continue;
+                }
+                Connection target = pick(next);
+                if (target == null) {
+                    // One connection at a time, so that a single waiting request does not open all of them
+                    if (connections.size() < maxConnections && !connecting()) {
+                        connect();
+                        continue;
+                    }
+                    saturated = true;
+                    break;
+                }
+                if (retry.isEmpty()) queue.poll(); else retry.poll();
+                target.write(next);
+            }
+            for (Connection connection : new ArrayList<>(connections)) {
+                try {
+                    connection.flush();
+                } catch (IOException e) {
+                    drop(connection, e, false);
+                }
+            }
+            return saturated;
+        }
+
+        // The least loaded connected connection that may take the request, or null
+        private Connection pick(Exchange exchange) {
+            Connection best = null;
+            for (Connection connection : connections) {
+                if (!connection.connected || connection.exclusive) continue;
+                int load = connection.inflight.size();
+                boolean room = exchange.exclusive() ? load == 0 : load < depth;
+                if (room && (best == null || load < best.inflight.size())) best = connection;
+            }
+            return best;
+        }
+
+        private boolean busy() {
+            for (Connection connection : connections) {
+                if (!connection.inflight.isEmpty()) return true;
+            }
+            return false;
+        }
+
+        private boolean connecting() {
+            for (Connection connection : connections) {
+                if (!connection.connected) return true;
+            }
+            return false;
+        }
+
+        private void connect() throws IOException {
+            SocketChannel channel = SocketChannel.open();
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            Connection connection = new Connection(channel);
+            connections.add(connection);
+            try {
+                if (channel.connect(address)) {
+                    connection.connected = true;
+                    connection.key = channel.register(io, SelectionKey.OP_READ, connection);
+                } else {
+                    connection.key = channel.register(io, SelectionKey.OP_CONNECT, connection);
+                }
+            } catch (IOException e) {
+                connectFailed(connection, e);
+            }
+        }
+
+        private void handle(Connection connection, SelectionKey key) {
+            try {
+                if (!key.isValid()) return;
+                if (key.isConnectable()) {
+                    try {
+                        connection.channel.finishConnect();
+                    } catch (IOException e) {
+                        connectFailed(connection, e);
+                        return;
+                    }
+                    connection.connected = true;
+                    key.interestOps(SelectionKey.OP_READ);
+                    return;
+                }
+                if (key.isReadable()) connection.read();
+                if (key.isValid() && key.isWritable()) connection.flush();
+            } catch (IOException e) {
+                drop(connection, e, false);
+            }
+        }
+
+        private void expireConnects() {
+            if (connectTimeout == null) return;
+            long now = System.nanoTime();
+            for (Connection connection : new ArrayList<>(connections)) {
+                if (!connection.connected && now - connection.opened > connectTimeout.toNanos()) {
+                    connectFailed(connection, new HttpConnectTimeoutException("HTTP connect timed out"));
+                }
+            }
+        }
+
+        // The oldest request of a connection is answered first, so once it is past its deadline the connection is
+        // stalled; it fails and the requests behind it go out again elsewhere
+        private void expireResponses() {
+            long now = System.nanoTime();
+            for (Connection connection : new ArrayList<>(connections)) {
+                Exchange oldest = connection.inflight.peek();
+                if (oldest == null || !oldest.expired(now)) continue;
+                HttpTimeoutException timedOut = new HttpTimeoutException("request timed out");
+                connection.inflight.poll().fail(timedOut);
+                drop(connection, timedOut, true);
+            }
+        }
+
+        // Without any other connection, the waiting requests fail like they would with the JDK client
+        private void connectFailed(Connection connection, IOException cause) {
+            connection.close();
+            connections.remove(connection);
+            IOException failure = cause instanceof ConnectException || cause instanceof HttpConnectTimeoutException
+                    ? cause : (IOException) new ConnectException(String.valueOf(cause.getMessage())).initCause(cause);
+            if (connections.isEmpty()) {
+                failAll(retries, failure);
+                failAll(queue, failure);
+            }
+        }
+
+        // Unanswered idempotent requests go out again on another connection, each alone on it. After a close the server
+        // announced, it has not seen them; after a reset or an unexpected end, the oldest may have caused it and is
+        // retried only once.
+        private void drop(Connection connection, IOException cause, boolean announced) {
+            connection.close();
+            connections.remove(connection);
+            boolean oldest = !announced;
+            for (Exchange exchange; (exchange = connection.inflight.poll()) != null; oldest = false) {
+                if (exchange.idempotent && !exchange.abandoned && !closed && (!oldest || exchange.attempts == 0)) {
+                    exchange.attempts++;
+                    retries.add(exchange);
+                } else {
+                    exchange.fail(cause);
+                }
+            }
+        }
+
+        private final class Connection {
+            final SocketChannel channel;
+            final long opened = System.nanoTime();
+            final ArrayDeque<Exchange> inflight = new ArrayDeque<>();
+            SelectionKey key;
+            boolean connected;
+            // An exclusive request is on the wire, nothing else may follow it until its response is in
+            boolean exclusive;
+            // Both in fill mode: out holds encoded requests not yet written, in holds unparsed response bytes from 0
+            ByteBuffer out = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            ByteBuffer in = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            byte[] scratch = new byte[1024];
+            boolean eof;
+            // Parse state of the response at the start of `in`
+            int headerEnd = -1;
+            int scanned;
+            int status;
+            long contentLength = -1;
+            boolean chunked;
+            boolean closeAfter;
+            String contentType;
+            int chunkAt;
+            int bodyEnd;
+
+            Connection(SocketChannel channel) {
+                this.channel = channel;
+            }
+
+            void write(Exchange exchange) {
+                int bodyLength = exchange.body == null ? 0 : exchange.body.remaining();
+                reserve(exchange.method.length() + exchange.target.length() * 9 + hostHeader.length + 96 + bodyLength);
+                text(exchange.method);
+                out.put((byte) ' ');
+                text(exchange.target);
+                out.put(VERSION_LINE).put(hostHeader);
+                if (exchange.hasBody) {
+                    out.put(JSON_HEADER);
+                    text(Integer.toString(bodyLength));
+                    out.put(CRLF);
+                }
+                out.put(CRLF);
+                if (exchange.body != null) out.put(exchange.body.duplicate());
+                inflight.add(exchange);
+                if (exchange.exclusive()) exclusive = true;
+            }
+
+            void flush() throws IOException {
+                if (out.position() == 0) return;
+                out.flip();
+                channel.write(out);
+                out.compact();
+                key.interestOps(out.position() > 0 ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+            }
+
+            void read() throws IOException {
+                if (!in.hasRemaining()) in = grow(in, in.capacity() * 2);
+                if (channel.read(in) < 0) eof = true;
+                while (!inflight.isEmpty() && parse()) {
+                    if (closeAfter) {
+                        drop(this, new IOException("Connection closed by server"), true);
+                        return;
+                    }
+                }
+                if (eof) {
+                    drop(this, new IOException("Connection closed by server before the response"), false);
+                } else if (inflight.isEmpty() && in.position() > 0) {
+                    drop(this, new IOException("Unexpected bytes from server without a request"), false);
+                }
+            }
+
+            // Completes the response at the start of `in` if all of it is there; false to wait for more bytes
+            private boolean parse() throws IOException {
+                int limit = in.position();
+                if (headerEnd < 0) {
+                    int end = indexOfBlankLine(scanned, limit);
+                    if (end < 0) {
+                        scanned = Math.max(0, limit - 3);
+                        return false;
+                    }
+                    headerEnd = end + 4;
+                    head(end);
+                    chunkAt = headerEnd;
+                    bodyEnd = headerEnd;
+                }
+                int consumed;
+                if (chunked) {
+                    consumed = dechunk(limit);
+                    if (consumed < 0) return false;
+                } else if (contentLength >= 0) {
+                    if (limit - headerEnd < contentLength) {
+                        if (headerEnd + contentLength > in.capacity()) in = grow(in, (int) (headerEnd + contentLength));
+                        return false;
+                    }
+                    bodyEnd = headerEnd + (int) contentLength;
+                    consumed = bodyEnd;
+                } else if (status == 204 || status == 304 || status < 200) {
+                    consumed = headerEnd;
+                } else {
+                    // Neither length nor chunked: the body ends with the connection
+                    if (!eof) return false;
+                    bodyEnd = limit;
+                    consumed = limit;
+                    closeAfter = true;
+                }
+                Exchange exchange = inflight.poll();
+                if (exchange.exclusive()) exclusive = false;
+                String body = exchange.readBody && !exchange.abandoned ? decode(headerEnd, bodyEnd) : null;
+                exchange.complete(status, contentType, body);
+                in.flip();
+                in.position(consumed);
+                in.compact();
+                boolean close = closeAfter;
+                headerEnd = -1;
+                scanned = 0;
+                contentLength = -1;
+                chunked = false;
+                closeAfter = close;
+                contentType = null;
+                return true;
+            }
+
+            // Status line and the four headers that matter, read in place; end is where the blank line starts
+            private void head(int end) throws IOException {
+                if (end < 12 || in.get(0) != 'H' || in.get(4) != '/') throw new IOException("Not an HTTP/1.x response");
+                status = (in.get(9) - '0') * 100 + (in.get(10) - '0') * 10 + (in.get(11) - '0');
+                closeAfter = in.get(7) == '0';
+                int line = indexOf(CRLF, 0, end) + 2;
+                while (line > 1 && line < end) {
+                    int lineEnd = indexOf(CRLF, line, end);
+                    if (lineEnd < 0) lineEnd = end;
+                    int colon = indexOf((byte) ':', line, lineEnd);
+                    if (colon > 0) {
+                        int value = colon + 1;
+                        while (value < lineEnd && in.get(value) == ' ') value++;
+                        if (equalsIgnoreCase(line, colon, CONTENT_LENGTH)) {
+                            contentLength = 0;
+                            for (int i = value; i < lineEnd && in.get(i) >= '0' && in.get(i) <= '9'; i++) {
+                                contentLength = contentLength * 10 + (in.get(i) - '0');
+                            }
+                        } else if (equalsIgnoreCase(line, colon, TRANSFER_ENCODING)) {
+                            chunked = containsIgnoreCase(value, lineEnd, CHUNKED);
+                        } else if (equalsIgnoreCase(line, colon, CONNECTION)) {
+                            if (containsIgnoreCase(value, lineEnd, CLOSE)) closeAfter = true;
+                            else if (containsIgnoreCase(value, lineEnd, KEEP_ALIVE)) closeAfter = false;
+                        } else if (equalsIgnoreCase(line, colon, CONTENT_TYPE)) {
+                            contentType = equalsIgnoreCase(value, lineEnd, JSON_VALUE) ? JSON : string(value, lineEnd);
+                        }
+                    }
+                    line = lineEnd + 2;
+                }
+                // Chunked wins over a Content-Length sent alongside it
+                if (chunked) contentLength = -1;
+            }
+
+            // Moves chunk payloads down behind the headers as they complete, so that the body ends up contiguous
+            // at [headerEnd, bodyEnd); returns the end of the response or -1 while chunks are missing
+            private int dechunk(int limit) throws IOException {
+                while (true) {
+                    int lineEnd = indexOf(CRLF, chunkAt, limit);
+                    if (lineEnd < 0) return -1;
+                    long size = 0;
+                    for (int i = chunkAt; i < lineEnd && in.get(i) != ';'; i++) {
+                        int digit = Character.digit(in.get(i), 16);
+                        if (digit < 0) throw new IOException("Malformed chunk size");
+                        size = size * 16 + digit;
+                    }
+                    if (size == 0) {
+                        // Optional trailers, then a blank line
+                        int end = indexOfBlankLine(lineEnd, limit);
+                        return end < 0 ? -1 : end + 4;
+                    }
+                    int dataStart = lineEnd + 2;
+                    long chunkEnd = dataStart + size + 2;
+                    if (chunkEnd > limit) {
+                        if (chunkEnd > in.capacity()) in = grow(in, (int) chunkEnd);
+                        return -1;
+                    }
+                    for (int i = 0; i < size; i++) {
+                        in.put(bodyEnd + i, in.get(dataStart + i));
+                    }
+                    bodyEnd += (int) size;
+                    chunkAt = (int) chunkEnd;
+                }
+            }
+
+            private String decode(int from, int to) {
+                int length = to - from;
+                if (scratch.length < length) scratch = new byte[Math.max(length, scratch.length * 2)];
+                in.get(from, scratch, 0, length);
+                return new String(scratch, 0, length, StandardCharsets.UTF_8);
+            }
+
+            private String string(int from, int to) {
+                byte[] bytes = new byte[to - from];
+                in.get(from, bytes);
+                return new String(bytes, StandardCharsets.ISO_8859_1).trim();
+            }
+
+            private int indexOfBlankLine(int from, int limit) {
+                for (int i = from; i + 3 < limit; i++) {
+                    if (in.get(i) == '\r' && in.get(i + 1) == '\n' && in.get(i + 2) == '\r' && in.get(i + 3) == '\n') {
+                        return i;
+                    }
+                }
+                return -1;
+            }
+
+            private int indexOf(byte[] pattern, int from, int limit) {
+                for (int i = from; i + pattern.length <= limit; i++) {
+                    int j = 0;
+                    while (j < pattern.length && in.get(i + j) == pattern[j]) j++;
+                    if (j == pattern.length) return i;
+                }
+                return -1;
+            }
+
+            private int indexOf(byte value, int from, int limit) {
+                for (int i = from; i < limit; i++) {
+                    if (in.get(i) == value) return i;
+                }
+                return -1;
+            }
+
+            // lower is lower case; setting 0x20 lowers ASCII letters and keeps '-' and '/'
+            private boolean equalsIgnoreCase(int from, int to, byte[] lower) {
+                if (to - from != lower.length) return false;
+                for (int i = 0; i < lower.length; i++) {
+                    if ((in.get(from + i) | 0x20) != lower[i]) return false;
+                }
+                return true;
+            }
+
+            private boolean containsIgnoreCase(int from, int to, byte[] lower) {
+                for (int i = from; i + lower.length <= to; i++) {
+                    if (equalsIgnoreCase(i, i + lower.length, lower)) return true;
+                }
+                return false;
+            }
+
+            // Request line text; anything outside printable ASCII is percent-encoded as UTF-8
+            private void text(String value) {
+                for (int i = 0; i < value.length(); ) {
+                    int c = value.codePointAt(i);
+                    i += Character.charCount(c);
+                    if (c > ' ' && c < 0x7F) {
+                        out.put((byte) c);
+                    } else {
+                        for (byte b : Character.toString(c).getBytes(StandardCharsets.UTF_8)) {
+                            out.put((byte) '%').put((byte) Character.forDigit((b >> 4) & 0xF, 16))
+                                    .put((byte) Character.forDigit(b & 0xF, 16));
+                        }
+                    }
+                }
+            }
+
+            private void reserve(int bytes) {
+                if (out.remaining() < bytes) out = grow(out, Math.max(out.capacity() * 2, out.position() + bytes));
+            }
+
+            void close() {
+                if (key != null) key.cancel();
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    // already gone
+                }
+            }
+        }
+    }
+
+    private static ByteBuffer grow(ByteBuffer buffer, int capacity) {
+        ByteBuffer bigger = ByteBuffer.allocateDirect(Math.max(capacity, buffer.capacity()));
+        buffer.flip();
+        bigger.put(buffer);
+        return bigger;
+    }
+
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,152 @@
+package ca.mcgill.story_testing.http;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+// Against a local com.sun.net.httpserver server: /echo answers with the request body (Content-Length), /chunked with a
+// body larger than the read buffer in several chunks, /close with Connection: close and /stall not at all
+class PipelinedHttpTransportTest {
+    private static final String TEXT = "{\"title\":\"café 東京 🚀\"}";
+
+    private final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private HttpServer server;
+    private String baseUrl;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/echo", exchange -> {
+            clientPorts.add(exchange.getRemoteAddress().getPort());
+            byte[] body = exchange.getRequestBody().readAllBytes();
+            if (body.length == 0) body = exchange.getRequestURI().getPath().getBytes(StandardCharsets.UTF_8);
+            respond(exchange, body, body.length);
+        });
+        server.createContext("/chunked", exchange -> {
+            StringBuilder body = new StringBuilder();
+            while (body.length() < 200_000) body.append(TEXT);
+            byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = exchange.getResponseBody()) {
+                for (int offset = 0; offset < bytes.length; offset += 10_000) {
+                    out.write(bytes, offset, Math.min(10_000, bytes.length - offset));
+                    out.flush();
+                }
+            }
+        });
+        server.createContext("/close", exchange -> {
+            clientPorts.add(exchange.getRemoteAddress().getPort());
+            exchange.getResponseHeaders().add("Connection", "close");
+            byte[] body = "{}".getBytes(StandardCharsets.UTF_8);
+            respond(exchange, body, body.length);
+        });
+        server.createContext("/stall", exchange -> {
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.close();
+        });
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @AfterEach
+    void stopServer() {
+        release.countDown();
+        server.stop(0);
+    }
+
+    @Test
+    void utf8BodiesAndPathsRoundTrip() throws Exception {
+        try (PipelinedHttpTransport transport = new PipelinedHttpTransport(baseUrl, null, Duration.ofSeconds(5), 1, 4)) {
+            HttpResponse<String> posted = transport.send("POST", "/echo", TEXT);
+            assertEquals(200, posted.statusCode());
+            assertEquals(TEXT, posted.body());
+            assertEquals("/echo/café", transport.send("GET", "/echo/café", null).body());
+        }
+    }
+
+    @Test
+    void chunkedBodyLargerThanTheBufferIsReassembled() throws Exception {
+        StringBuilder expected = new StringBuilder();
+        while (expected.length() < 200_000) expected.append(TEXT);
+        try (PipelinedHttpTransport transport = new PipelinedHttpTransport(baseUrl, null, Duration.ofSeconds(5), 1, 4)) {
+            for (int i = 0; i < 3; i++) {
+                assertEquals(expected.toString(), transport.send("GET", "/chunked", null).body());
+            }
+        }
+    }
+
+    @Test
+    void connectionCloseOpensANewConnectionForTheNextRequest() throws Exception {
+        try (PipelinedHttpTransport transport = new PipelinedHttpTransport(baseUrl, null, Duration.ofSeconds(5), 1, 4)) {
+            for (int i = 0; i < 3; i++) {
+                assertEquals(200, transport.send("GET", "/close", null).statusCode());
+            }
+        }
+        assertEquals(3, clientPorts.size());
+    }
+
+    @Test
+    void keepAliveReusesTheConnection() throws Exception {
+        try (PipelinedHttpTransport transport = new PipelinedHttpTransport(baseUrl, null, Duration.ofSeconds(5), 1, 4)) {
+            for (int i = 0; i < 3; i++) {
+                assertEquals(200, transport.send("GET", "/echo", null).statusCode());
+            }
+        }
+        assertEquals(1, clientPorts.size());
+    }
+
+    // The stalled request gives up its only connection at its deadline, so the next one gets through
+    @Test
+    void stalledConnectionIsDroppedAtTheDeadline() throws Exception {
+        try (PipelinedHttpTransport transport = new PipelinedHttpTransport(baseUrl, null, Duration.ofMillis(200), 1, 4)) {
+            assertThrows(HttpTimeoutException.class, () -> transport.send("GET", "/stall", null));
+            assertEquals(200, transport.send("GET", "/echo", null).statusCode());
+        }
+    }
+
+    // Requests that arrive just as the selector thread stops for idleness are served by a new one, not failed by the old
+    @Test
+    void requestsAroundTheIdleStopAreServed() throws Exception {
+        long idle = TimeUnit.MILLISECONDS.toNanos(5);
+        try (PipelinedHttpTransport transport = new PipelinedHttpTransport(baseUrl, null, Duration.ofSeconds(5), 2, 4, idle)) {
+            for (int i = 0; i < 200; i++) {
+                assertEquals(200, transport.send("GET", "/echo", null).statusCode());
+                TimeUnit.MICROSECONDS.sleep(4_000 + (i % 20) * 100);
+            }
+        }
+    }
+
+    private static void respond(HttpExchange exchange, byte[] body, long length) throws IOException {
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
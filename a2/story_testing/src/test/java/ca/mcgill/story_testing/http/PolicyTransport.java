@@ -0,0 +1,113 @@
+package ca.mcgill.story_testing.http;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import ca.mcgill.story_testing.metrics.Metrics;
+
+// Applies a RequestPolicy to the wrapped transport: retries with jittered exponential backoff for idempotent
+// methods, and hedged GETs. Timeouts come from the wrapped transport. Every effect is counted into the
+// route's Metrics.Endpoint, with the first attempt timed on its own to show what the policy did to the tail.
+public class PolicyTransport implements HttpTransport {
+    private static final ExecutorService HEDGES = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "hedged-request");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final HttpTransport delegate;
+    private final RequestPolicy policy;
+    private final Metrics metrics;
+
+    public PolicyTransport(HttpTransport delegate, RequestPolicy policy, Metrics metrics) {
+        this.delegate = delegate;
+        this.policy = policy;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public HttpResponse<String> send(String method, String endpoint, String body) throws IOException, InterruptedException {
+        Metrics.Endpoint metered = metrics.endpoint(Routes.template(method, endpoint));
+        int attempts = policy.retries(method) ? 1 + policy.retries() : 1;
+        boolean firstFailed = false;
+        for (int attempt = 0; ; attempt++) {
+            if (attempt > 0) {
+                metered.retried();
+                TimeUnit.NANOSECONDS.sleep(policy.backoffNanos(attempt, ThreadLocalRandom.current().nextDouble()));
+            }
+            boolean last = attempt == attempts - 1;
+            try {
+                HttpResponse<String> response = attempt(method, endpoint, body, metered, attempt == 0);
+                if (response.statusCode() < 500 || last) {
+                    if (firstFailed && response.statusCode() < 500) metered.recovered();
+                    return response;
+                }
+            } catch (HttpTimeoutException e) {
+                metered.timedOut();
+                if (last) throw e;
+            } catch (InterruptedIOException e) {
+                throw e;
+            } catch (IOException e) {
+                if (last) throw e;
+            }
+            firstFailed = true;
+        }
+    }
+
+    // One attempt, hedged once it runs past the route's percentile; `first` times the first request for the metrics
+    private HttpResponse<String> attempt(String method, String endpoint, String body, Metrics.Endpoint metered,
+                                         boolean first) throws IOException, InterruptedException {
+        long hedgeAfter = policy.hedges(method) && metered.firstAttempt().count() >= RequestPolicy.HEDGE_MIN_SAMPLES
+                ? metered.firstAttempt().percentile(policy.hedgePercentile()) : -1;
+        if (hedgeAfter < 0) {
+            return sendTimed(method, endpoint, body, metered, first);
+        }
+        ExecutorCompletionService<HttpResponse<String>> race = new ExecutorCompletionService<>(HEDGES);
+        Future<HttpResponse<String>> original = race.submit(() -> sendTimed(method, endpoint, body, metered, first));
+        Future<HttpResponse<String>> winner = race.poll(hedgeAfter, TimeUnit.NANOSECONDS);
+        int running = 1;
+        if (winner == null) {
+            metered.hedged();
+            race.submit(() -> sendTimed(method, endpoint, body, metered, false));
+            running = 2;
+            winner = race.take();
+        }
+        // The slower request is left to finish (bounded by the timeout) so its first-attempt time is still recorded
+        for (; ; running--) {
+            try {
+                HttpResponse<String> response = winner.get();
+                if (winner != original) metered.hedgeWon();
+                return response;
+            } catch (ExecutionException e) {
+                if (running == 1) throw unwrap(e);
+                winner = race.take();
+            }
+        }
+    }
+
+    private HttpResponse<String> sendTimed(String method, String endpoint, String body, Metrics.Endpoint metered,
+                                           boolean first) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        try {
+            return delegate.send(method, endpoint, body);
+        } finally {
+            if (first) metered.firstAttempt(System.nanoTime() - start);
+        }
+    }
+
+    private static IOException unwrap(ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof IOException io) return io;
+        if (cause instanceof RuntimeException runtime) throw runtime;
+        return new IOException(cause);
+    }
+}
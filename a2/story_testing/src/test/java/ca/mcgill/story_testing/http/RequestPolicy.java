@@ -0,0 +1,93 @@
+package ca.mcgill.story_testing.http;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+// What a client does about a slow or failing request. connectTimeout and timeout (response deadline) are null to
+// wait forever. Idempotent requests (GET/PUT/DELETE) are sent up to `retries` more times after a timeout,
+// connection error or 5xx, sleeping a random time of up to backoff * 2^(retry-1), capped at maxBackoff, in between.
+// hedgePercentile > 0 sends a second GET once the first has taken longer than that percentile of the route so far.
+public record RequestPolicy(Duration connectTimeout, Duration timeout, int retries, Duration backoff, Duration maxBackoff,
+                            double hedgePercentile) {
+    public static final String POLICY_PROPERTY = "story.http.policy";
+    public static final RequestPolicy NONE = new RequestPolicy(null, null, 0, Duration.ZERO, Duration.ZERO, 0);
+    // Bounded waits for the Cucumber suite, so a hung server fails a scenario instead of blocking the run
+    public static final String DEFAULT_SPEC = "connect=5000,timeout=30000,retries=2,backoff=100,maxBackoff=2000";
+    // Routes need this many first attempts before their percentile is trusted for hedging
+    public static final int HEDGE_MIN_SAMPLES = 20;
+
+    public RequestPolicy {
+        if (retries < 0) throw new IllegalArgumentException("retries must be >= 0: " + retries);
+        if (hedgePercentile < 0 || hedgePercentile >= 100) {
+            throw new IllegalArgumentException("hedge percentile must be within [0, 100): " + hedgePercentile);
+        }
+    }
+
+    public static RequestPolicy fromSystemProperties() {
+        return parse(System.getProperty(POLICY_PROPERTY, DEFAULT_SPEC));
+    }
+
+    // "none" or settings in ms: "connect=1000,timeout=200,retries=2,backoff=50,maxBackoff=1000,hedge=95"
+    public static RequestPolicy parse(String spec) {
+        Duration connectTimeout = null;
+        Duration timeout = null;
+        int retries = 0;
+        Duration backoff = Duration.ofMillis(50);
+        Duration maxBackoff = Duration.ofSeconds(1);
+        double hedge = 0;
+        for (String setting : spec.split(",")) {
+            String text = setting.trim().toLowerCase(Locale.ROOT);
+            if (text.isEmpty() || text.equals("none")) continue;
+            String[] pair = text.split("=", 2);
+            if (pair.length != 2) throw new IllegalArgumentException("Malformed request policy: " + spec);
+            String value = pair[1].trim();
+            switch (pair[0].trim()) {
+                case "connect" -> connectTimeout = Duration.ofMillis(Long.parseLong(value));
+                case "timeout" -> timeout = Duration.ofMillis(Long.parseLong(value));
+                case "retries" -> retries = Integer.parseInt(value);
+                case "backoff" -> backoff = Duration.ofMillis(Long.parseLong(value));
+                case "maxbackoff" -> maxBackoff = Duration.ofMillis(Long.parseLong(value));
+                case "hedge" -> hedge = Double.parseDouble(value);
+                default -> throw new IllegalArgumentException("Unknown request policy setting '" + pair[0] + "' in: " + spec);
+            }
+        }
+        return new RequestPolicy(connectTimeout, timeout, retries, backoff, maxBackoff, hedge);
+    }
+
+    public boolean retries(String method) {
+        return retries > 0 && idempotent(method);
+    }
+
+    public boolean hedges(String method) {
+        return hedgePercentile > 0 && method.equalsIgnoreCase("GET");
+    }
+
+    public static boolean idempotent(String method) {
+        return switch (method.toUpperCase(Locale.ROOT)) {
+            case "GET", "HEAD", "PUT", "DELETE", "OPTIONS" -> true;
+            default -> false;
+        };
+    }
+
+    // "Full jitter": uniform in [0, min(maxBackoff, backoff * 2^(retry-1))); random is in [0, 1)
+    public long backoffNanos(int retry, double random) {
+        long ceiling = backoff.toNanos() << Math.min(30, Math.max(0, retry - 1));
+        if (ceiling < 0 || ceiling > maxBackoff.toNanos()) ceiling = maxBackoff.toNanos();
+        return (long) (random * ceiling);
+    }
+
+    public String describe() {
+        List<String> parts = new ArrayList<>();
+        if (connectTimeout != null) parts.add("connect=" + connectTimeout.toMillis());
+        if (timeout != null) parts.add("timeout=" + timeout.toMillis());
+        if (retries > 0) {
+            parts.add("retries=" + retries);
+            parts.add("backoff=" + backoff.toMillis());
+            parts.add("maxBackoff=" + maxBackoff.toMillis());
+        }
+        if (hedgePercentile > 0) parts.add("hedge=" + (hedgePercentile % 1 == 0 ? String.valueOf((long) hedgePercentile) : hedgePercentile));
+        return parts.isEmpty() ? "none" : String.join(",", parts);
+    }
+}
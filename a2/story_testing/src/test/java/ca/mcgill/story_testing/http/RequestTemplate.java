@@ -0,0 +1,120 @@
+package ca.mcgill.story_testing.http;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+// A request shape prepared once per load worker: method, URI prefix around an optional {id} and a shared header set.
+// Requests built from it skip HttpRequest.Builder, which copies and re-validates the headers on every build.
+public final class RequestTemplate {
+    private static final HttpHeaders JSON_HEADERS = HttpHeaders.of(
+            Map.of("Content-Type", List.of("application/json")), (name, value) -> true);
+    private static final HttpHeaders NO_HEADERS = HttpHeaders.of(Map.of(), (name, value) -> true);
+    private static final HttpHeaders JSON_CLOSE_HEADERS = HttpHeaders.of(Map.of("Content-Type", List.of("application/json"),
+            "Connection", List.of("close")), (name, value) -> true);
+    private static final HttpHeaders CLOSE_HEADERS = HttpHeaders.of(Map.of("Connection", List.of("close")), (name, value) -> true);
+
+    private final String method;
+    private final String prefix;
+    private final String suffix;
+    private final URI fixedUri;
+    private final HttpHeaders headers;
+    private final Optional<Duration> timeout;
+    private final Optional<HttpRequest.BodyPublisher> noBody = Optional.of(HttpRequest.BodyPublishers.noBody());
+
+    private RequestTemplate(String method, String prefix, String suffix, HttpHeaders headers, Duration timeout) {
+        this.method = method;
+        this.prefix = prefix;
+        this.suffix = suffix;
+        this.headers = headers;
+        this.timeout = Optional.ofNullable(timeout);
+        this.fixedUri = suffix == null ? URI.create(prefix) : null;
+    }
+
+    // path may contain one "{id}", e.g. "/todos/{id}/categories"
+    public static RequestTemplate of(String baseUrl, String method, String path) {
+        return of(baseUrl, method, path, null);
+    }
+
+    // timeout: response deadline of every request built from the template, null for none
+    public static RequestTemplate of(String baseUrl, String method, String path, Duration timeout) {
+        return of(baseUrl, method, path, timeout, true);
+    }
+
+    // keepAlive false adds "Connection: close", see JdkHttpTransport
+    public static RequestTemplate of(String baseUrl, String method, String path, Duration timeout, boolean keepAlive) {
+        String upper = method.toUpperCase();
+        boolean json = upper.equals("POST") || upper.equals("PUT");
+        HttpHeaders headers = keepAlive ? (json ? JSON_HEADERS : NO_HEADERS) : (json ? JSON_CLOSE_HEADERS : CLOSE_HEADERS);
+        int slot = path.indexOf("{id}");
+        if (slot < 0) {
+            return new RequestTemplate(upper, baseUrl + path, null, headers, timeout);
+        }
+        return new RequestTemplate(upper, baseUrl + path.substring(0, slot), path.substring(slot + 4), headers, timeout);
+    }
+
+    public String method() {
+        return method;
+    }
+
+    public HttpRequest request(ByteBuffer body) {
+        if (fixedUri == null) throw new IllegalStateException("Template " + prefix + "{id}" + suffix + " needs an id");
+        return new TemplateRequest(fixedUri, body);
+    }
+
+    public HttpRequest request(long id, ByteBuffer body) {
+        if (fixedUri != null) throw new IllegalStateException("Template " + prefix + " has no {id}");
+        return new TemplateRequest(URI.create(prefix + id + suffix), body);
+    }
+
+    private final class TemplateRequest extends HttpRequest {
+        private final URI uri;
+        private final Optional<BodyPublisher> body;
+
+        private TemplateRequest(URI uri, ByteBuffer body) {
+            this.uri = uri;
+            this.body = body == null ? noBody : Optional.of(new ByteBufferBodyPublisher(body));
+        }
+
+        @Override
+        public Optional<BodyPublisher> bodyPublisher() {
+            return body;
+        }
+
+        @Override
+        public String method() {
+            return method;
+        }
+
+        @Override
+        public Optional<Duration> timeout() {
+            return timeout;
+        }
+
+        @Override
+        public boolean expectContinue() {
+            return false;
+        }
+
+        @Override
+        public URI uri() {
+            return uri;
+        }
+
+        @Override
+        public Optional<HttpClient.Version> version() {
+            return Optional.empty();
+        }
+
+        @Override
+        public HttpHeaders headers() {
+            return headers;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package ca.mcgill.story_testing.http;
+
+import java.util.regex.Pattern;
+
+// Collapses concrete request paths into route templates, e.g. "/todos/12/categories" -> "/todos/{id}/categories".
+public final class Routes {
+    private static final Pattern ID_SEGMENT = Pattern.compile("(?<=/)(\\d+|\\$id\\d+)(?=/|$)");
+
+    private Routes() {
+    }
+
+    public static String template(String endpoint) {
+        if (endpoint == null) return "/";
+        int query = endpoint.indexOf('?');
+        String path = query < 0 ? endpoint : endpoint.substring(0, query);
+        return ID_SEGMENT.matcher(path).replaceAll("{id}");
+    }
+
+    public static String template(String method, String endpoint) {
+        return method + " " + template(endpoint);
+    }
+}
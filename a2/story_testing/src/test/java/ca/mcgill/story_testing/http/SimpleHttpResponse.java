@@ -0,0 +1,74 @@
+package ca.mcgill.story_testing.http;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import javax.net.ssl.SSLSession;
+
+// Response produced without the JDK client (stubs, custom clients); the request is only built if asked for.
+public class SimpleHttpResponse implements HttpResponse<String> {
+    private final String method;
+    private final URI uri;
+    private final int statusCode;
+    private final HttpHeaders headers;
+    private final String body;
+
+    public SimpleHttpResponse(String method, URI uri, int statusCode, String contentType, String body) {
+        this(method, uri, statusCode, contentType == null
+                ? HttpHeaders.of(Map.of(), (name, value) -> true)
+                : HttpHeaders.of(Map.of("Content-Type", List.of(contentType)), (name, value) -> true), body);
+    }
+
+    public SimpleHttpResponse(String method, URI uri, int statusCode, HttpHeaders headers, String body) {
+        this.method = method;
+        this.uri = uri;
+        this.statusCode = statusCode;
+        this.headers = headers;
+        this.body = body;
+    }
+
+    @Override
+    public int statusCode() {
+        return statusCode;
+    }
+
+    @Override
+    public HttpRequest request() {
+        return HttpRequest.newBuilder(uri).method(method, HttpRequest.BodyPublishers.noBody()).build();
+    }
+
+    @Override
+    public Optional<HttpResponse<String>> previousResponse() {
+        return Optional.empty();
+    }
+
+    @Override
+    public HttpHeaders headers() {
+        return headers;
+    }
+
+    @Override
+    public String body() {
+        return body;
+    }
+
+    @Override
+    public Optional<SSLSession> sslSession() {
+        return Optional.empty();
+    }
+
+    @Override
+    public URI uri() {
+        return uri;
+    }
+
+    @Override
+    public HttpClient.Version version() {
+        return HttpClient.Version.HTTP_1_1;
+    }
+}
@@ -0,0 +1,16 @@
+package ca.mcgill.story_testing.http;
+
+import java.io.IOException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+// What the load engine needs from a client: send a request built from a RequestTemplate and, only when asked for,
+// keep the response body (creates parse the new id from it; everything else only looks at the status).
+public interface TemplateTransport {
+    String baseUrl();
+
+    // false when every request closes its connection; templates then carry "Connection: close"
+    boolean keepAlive();
+
+    HttpResponse<String> send(HttpRequest request, boolean readBody) throws IOException, InterruptedException;
+}
@@ -0,0 +1,26 @@
+package ca.mcgill.story_testing.impact;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import ca.mcgill.story_testing.http.Routes;
+
+// Route templates requested by each running scenario, drained by ImpactIndexPlugin when the scenario finishes.
+public final class EndpointLog {
+    private static final Map<String, Set<String>> endpoints = new ConcurrentHashMap<>();
+
+    private EndpointLog() {
+    }
+
+    public static void record(String scenarioKey, String method, String endpoint) {
+        if (scenarioKey == null) return;
+        endpoints.computeIfAbsent(scenarioKey, key -> ConcurrentHashMap.newKeySet()).add(Routes.template(method, endpoint));
+    }
+
+    public static Set<String> drain(String scenarioKey) {
+        Set<String> touched = endpoints.remove(scenarioKey);
+        return touched == null ? new TreeSet<>() : new TreeSet<>(touched);
+    }
+}
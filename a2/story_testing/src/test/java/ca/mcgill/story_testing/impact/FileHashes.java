@@ -0,0 +1,93 @@
+package ca.mcgill.story_testing.impact;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.json.JSONObject;
+
+import ca.mcgill.story_testing.fixtures.CanonicalJson;
+
+// SHA-256 of files keyed by path, re-read only when the size or modification time changes (the server jar is ~20 MB).
+public class FileHashes {
+    private final Path file;
+    private final Map<String, JSONObject> entries = new TreeMap<>();
+    private boolean dirty;
+
+    private FileHashes(Path file) {
+        this.file = file;
+    }
+
+    public static FileHashes load(Path file) {
+        FileHashes hashes = new FileHashes(file);
+        if (Files.exists(file)) {
+            try {
+                JSONObject json = new JSONObject(Files.readString(file, StandardCharsets.UTF_8));
+                for (String key : json.keySet()) {
+                    hashes.entries.put(key, json.getJSONObject(key));
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to read file hashes " + file, e);
+            }
+        }
+        return hashes;
+    }
+
+    // "missing" for files that do not exist, so that a removed file still counts as a change
+    public String hash(Path path) {
+        try {
+            if (!Files.exists(path)) return "missing";
+            String key = path.toAbsolutePath().normalize().toString();
+            long size = Files.size(path);
+            long modified = Files.getLastModifiedTime(path).toMillis();
+            JSONObject cached = entries.get(key);
+            if (cached != null && cached.getLong("size") == size && cached.getLong("modified") == modified) {
+                return cached.getString("sha256");
+            }
+            MessageDigest digest = sha256();
+            try (InputStream in = Files.newInputStream(path)) {
+                byte[] buffer = new byte[64 * 1024];
+                for (int read; (read = in.read(buffer)) > 0; ) {
+                    digest.update(buffer, 0, read);
+                }
+            }
+            String sha = HexFormat.of().formatHex(digest.digest());
+            entries.put(key, new JSONObject().put("size", size).put("modified", modified).put("sha256", sha));
+            dirty = true;
+            return sha;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to hash " + path, e);
+        }
+    }
+
+    public void save() {
+        if (!dirty) return;
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            Files.writeString(file, CanonicalJson.write(new JSONObject(entries), true) + "\n", StandardCharsets.UTF_8);
+            dirty = false;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write file hashes " + file, e);
+        }
+    }
+
+    public static String sha256(String text) {
+        return HexFormat.of().formatHex(sha256().digest(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package ca.mcgill.story_testing.impact;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import ca.mcgill.story_testing.fixtures.FixtureMode;
+import ca.mcgill.story_testing.fixtures.Fixtures;
+import ca.mcgill.story_testing.scenarios.FeatureIndex;
+import ca.mcgill.story_testing.scenarios.ScenarioRef;
+import ca.mcgill.story_testing.server.TodoServer;
+
+// Compares the current step code, feature text and server jar against the index to find the scenarios worth rerunning.
+public class ImpactAnalyzer {
+    public static final String HASHES_FILE = "build/impact/file-hashes.json";
+
+    private final ImpactIndex index;
+    private final FileHashes files;
+    private final StepDefinitionIndex glue;
+    private final FixtureMode mode;
+    private final Path jar;
+    private final Path fixtureDirectory;
+    private final Map<Path, String> argumentHashes = new HashMap<>();
+
+    public ImpactAnalyzer(ImpactIndex index, FileHashes files, StepDefinitionIndex glue, FixtureMode mode, Path jar, Path fixtureDirectory) {
+        this.index = index;
+        this.files = files;
+        this.glue = glue;
+        this.mode = mode;
+        this.jar = jar;
+        this.fixtureDirectory = fixtureDirectory;
+    }
+
+    public static ImpactAnalyzer fromSystemProperties() {
+        FileHashes files = FileHashes.load(Path.of(HASHES_FILE));
+        return new ImpactAnalyzer(ImpactIndex.load(), files, StepDefinitionIndex.scan(files),
+                FixtureMode.parse(System.getProperty(Fixtures.MODE_PROPERTY)),
+                Path.of(System.getProperty(TodoServer.JAR_PROPERTY, TodoServer.DEFAULT_JAR)),
+                Path.of(System.getProperty(Fixtures.DIRECTORY_PROPERTY, Fixtures.DEFAULT_DIRECTORY)));
+    }
+
+    public ImpactIndex index() {
+        return index;
+    }
+
+    // Current dependencies of a scenario; step matches are reused while neither the scenario nor the glue changed
+    public ImpactIndex.Entry current(ScenarioRef scenario) {
+        String fingerprint = fingerprint(scenario);
+        ImpactIndex.Entry previous = index.get(scenario.key());
+        List<String> steps;
+        if (previous != null && previous.fingerprint().equals(fingerprint) && previous.glue().equals(glue.glueHash())) {
+            steps = previous.steps();
+        } else {
+            steps = new ArrayList<>();
+            for (String step : scenario.steps()) {
+                for (String id : glue.match(step)) {
+                    if (!steps.contains(id)) steps.add(id);
+                }
+            }
+        }
+
+        Map<String, String> dependencies = new TreeMap<>();
+        for (String step : steps) {
+            if (step.startsWith("undefined:")) {
+                dependencies.put(step, "undefined");
+                continue;
+            }
+            dependencies.put(step, glue.hash(step));
+            String className = step.substring("step:".length(), step.indexOf('#'));
+            dependencies.put("class:" + className, glue.hash("class:" + className));
+        }
+        dependencies.put("support", glue.hash("support"));
+        // Replayed scenarios answer from their fixture file instead of the server jar
+        if (mode == FixtureMode.REPLAY) {
+            Path fixture = fixtureDirectory.resolve(scenario.featureName() + ".json");
+            dependencies.put("fixture:" + fixture.getFileName(), files.hash(fixture));
+        } else {
+            dependencies.put("jar", files.hash(jar));
+        }
+        Set<String> endpoints = previous == null ? Set.of() : previous.endpoints();
+        return new ImpactIndex.Entry(fingerprint, glue.glueHash(), steps, dependencies, endpoints, false);
+    }
+
+    // Affected scenarios in the given order with the first reason found for each
+    public Map<ScenarioRef, String> affected(List<ScenarioRef> scenarios, Set<String> changedEndpoints) {
+        Map<ScenarioRef, String> affected = new LinkedHashMap<>();
+        for (ScenarioRef scenario : scenarios) {
+            String reason = reason(scenario, changedEndpoints);
+            if (reason != null) {
+                affected.put(scenario, reason);
+            }
+        }
+        files.save();
+        return affected;
+    }
+
+    private String reason(ScenarioRef scenario, Set<String> changedEndpoints) {
+        ImpactIndex.Entry previous = index.get(scenario.key());
+        if (previous == null) return "not in the index";
+        if (!previous.passed()) return "failed last run";
+        ImpactIndex.Entry current = current(scenario);
+        if (!current.fingerprint().equals(previous.fingerprint())) return "scenario text changed";
+        for (Map.Entry<String, String> dependency : current.dependencies().entrySet()) {
+            String before = previous.dependencies().get(dependency.getKey());
+            if (dependency.getKey().startsWith("undefined:")) return "undefined step " + dependency.getKey().substring(10);
+            if (before == null) return "now uses " + dependency.getKey();
+            if (!before.equals(dependency.getValue())) return dependency.getKey() + " changed";
+        }
+        for (String dependency : previous.dependencies().keySet()) {
+            if (!current.dependencies().containsKey(dependency)) return "no longer uses " + dependency;
+        }
+        for (String endpoint : previous.endpoints()) {
+            if (changedEndpoints.contains(endpoint)) return "touches " + endpoint;
+        }
+        return null;
+    }
+
+    public void saveHashes() {
+        files.save();
+    }
+
+    private String fingerprint(ScenarioRef scenario) {
+        String arguments = argumentHashes.computeIfAbsent(scenario.feature(),
+                feature -> FileHashes.sha256(String.join("\n", FeatureIndex.stepArguments(feature))));
+        return FileHashes.sha256(scenario.featureName() + "\n" + scenario.name() + "\n"
+                + String.join("\n", scenario.steps()) + "\n" + arguments);
+    }
+}
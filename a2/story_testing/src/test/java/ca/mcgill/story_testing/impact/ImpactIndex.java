@@ -0,0 +1,128 @@
+package ca.mcgill.story_testing.impact;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import ca.mcgill.story_testing.fixtures.CanonicalJson;
+
+// What each scenario depended on the last time it ran, keyed by scenario key; lives in build/impact/index.json.
+public class ImpactIndex {
+    public static final String FILE_PROPERTY = "story.impact.index";
+    public static final String DEFAULT_FILE = "build/impact/index.json";
+
+    // fingerprint: scenario text; glue: StepDefinitionIndex.glueHash() when the steps were matched;
+    // steps: matched step definition ids; dependencies: dependency id -> hash at the time of the run
+    public record Entry(String fingerprint, String glue, List<String> steps, Map<String, String> dependencies,
+                        Set<String> endpoints, boolean passed) {
+
+        JSONObject toJson() {
+            return new JSONObject()
+                    .put("fingerprint", fingerprint)
+                    .put("glue", glue)
+                    .put("steps", new JSONArray(steps))
+                    .put("dependencies", new JSONObject(dependencies))
+                    .put("endpoints", new JSONArray(endpoints))
+                    .put("passed", passed);
+        }
+
+        static Entry fromJson(JSONObject json) {
+            List<String> steps = new ArrayList<>();
+            for (Object step : json.getJSONArray("steps")) {
+                steps.add((String) step);
+            }
+            Map<String, String> dependencies = new TreeMap<>();
+            JSONObject deps = json.getJSONObject("dependencies");
+            for (String key : deps.keySet()) {
+                dependencies.put(key, deps.getString(key));
+            }
+            Set<String> endpoints = new TreeSet<>();
+            for (Object endpoint : json.getJSONArray("endpoints")) {
+                endpoints.add((String) endpoint);
+            }
+            return new Entry(json.getString("fingerprint"), json.getString("glue"), steps, dependencies,
+                    endpoints, json.getBoolean("passed"));
+        }
+    }
+
+    private final Path file;
+    private final Map<String, Entry> entries;
+
+    private ImpactIndex(Path file, Map<String, Entry> entries) {
+        this.file = file;
+        this.entries = entries;
+    }
+
+    public static ImpactIndex load() {
+        return load(Path.of(System.getProperty(FILE_PROPERTY, DEFAULT_FILE)));
+    }
+
+    public static ImpactIndex load(Path file) {
+        return new ImpactIndex(file, read(file));
+    }
+
+    public Path file() {
+        return file;
+    }
+
+    public Entry get(String scenarioKey) {
+        return entries.get(scenarioKey);
+    }
+
+    public Map<String, Entry> entries() {
+        return entries;
+    }
+
+    // Merges the entries of the scenarios that just ran, under a file lock like DurationHistory
+    public synchronized void update(Map<String, Entry> results) {
+        if (results.isEmpty()) return;
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            Path lockFile = file.resolveSibling(file.getFileName() + ".lock");
+            try (FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                // Released when the channel closes
+                channel.lock();
+                entries.putAll(read(file));
+                entries.putAll(results);
+                JSONObject json = new JSONObject();
+                for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                    json.put(entry.getKey(), entry.getValue().toJson());
+                }
+                Files.writeString(file, CanonicalJson.write(json, true) + "\n", StandardCharsets.UTF_8);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to update impact index " + file, e);
+        }
+    }
+
+    private static Map<String, Entry> read(Path file) {
+        Map<String, Entry> entries = new TreeMap<>();
+        if (!Files.exists(file)) {
+            return entries;
+        }
+        try {
+            String text = Files.readString(file, StandardCharsets.UTF_8);
+            if (text.isBlank()) return entries;
+            JSONObject json = new JSONObject(text);
+            for (String key : json.keySet()) {
+                entries.put(key, Entry.fromJson(json.getJSONObject(key)));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read impact index " + file, e);
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,46 @@
+package ca.mcgill.story_testing.impact;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import ca.mcgill.story_testing.scenarios.CucumberLauncher;
+import ca.mcgill.story_testing.scenarios.FeatureIndex;
+import ca.mcgill.story_testing.scenarios.ScenarioRef;
+
+// Runs only the scenarios affected by changes since they last passed, according to build/impact/index.json.
+// -Dstory.impact.endpoints="PUT /todos/{id},POST /todos" also reruns every scenario that touches those endpoints,
+// e.g. after a server change that is known to affect them; -Dstory.impact.dryRun=true only prints the selection.
+public class ImpactTestRunner {
+    public static final String ENDPOINTS_PROPERTY = "story.impact.endpoints";
+    public static final String DRY_RUN_PROPERTY = "story.impact.dryRun";
+
+    public static void main(String[] args) {
+        List<ScenarioRef> scenarios = FeatureIndex.scan();
+        Set<String> endpoints = new TreeSet<>();
+        for (String endpoint : System.getProperty(ENDPOINTS_PROPERTY, "").split(",")) {
+            if (!endpoint.isBlank()) endpoints.add(endpoint.trim());
+        }
+
+        ImpactAnalyzer analyzer = ImpactAnalyzer.fromSystemProperties();
+        Map<ScenarioRef, String> affected = analyzer.affected(scenarios, endpoints);
+
+        System.out.println("=== Impact Analysis ===");
+        System.out.println("Index: " + analyzer.index().file().toAbsolutePath());
+        for (Map.Entry<ScenarioRef, String> entry : affected.entrySet()) {
+            System.out.printf("  %-40s %s (%s)%n", entry.getKey().key(), entry.getKey().name(), entry.getValue());
+        }
+        System.out.println(affected.size() + " of " + scenarios.size() + " scenarios affected");
+
+        if (affected.isEmpty() || Boolean.getBoolean(DRY_RUN_PROPERTY)) {
+            System.exit(0);
+        }
+        List<String> plugins = List.of("progress",
+                "ca.mcgill.story_testing.plugins.ImpactIndexPlugin",
+                "ca.mcgill.story_testing.plugins.DurationHistoryPlugin");
+        byte status = CucumberLauncher.run(new ArrayList<>(affected.keySet()), plugins);
+        System.exit(status);
+    }
+}
@@ -0,0 +1,219 @@
+package ca.mcgill.story_testing.impact;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import ca.mcgill.story_testing.scenarios.CucumberLauncher;
+import io.cucumber.core.resource.ClasspathScanner;
+import io.cucumber.cucumberexpressions.Expression;
+import io.cucumber.cucumberexpressions.ExpressionFactory;
+import io.cucumber.cucumberexpressions.ParameterTypeRegistry;
+import io.cucumber.java.StepDefinitionAnnotation;
+
+// The @Given/@When/@Then methods of the glue package with a hash of each method's source and of the code around them.
+// Dependency ids: "step:Class#method" for a step method, "class:Class" for the rest of a step definition class
+// (fields, hooks, helpers), and "support" for glue classes without steps plus the SUPPORT_PACKAGES.
+public class StepDefinitionIndex {
+    public static final String SOURCE_ROOT_PROPERTY = "story.impact.sources";
+    public static final String DEFAULT_SOURCE_ROOT = "src/test/java";
+    // Everything SharedTestContext sends a request through, and the proxy the fault steps route it via
+    private static final String[] SUPPORT_PACKAGES = {"ca/mcgill/story_testing/http", "ca/mcgill/story_testing/fixtures",
+            "ca/mcgill/story_testing/events", "ca/mcgill/story_testing/metrics", "ca/mcgill/story_testing/perf",
+            "ca/mcgill/story_testing/faults"};
+
+    public record StepDefinition(String id, String className, String pattern, Expression expression) {
+    }
+
+    private final List<StepDefinition> definitions;
+    private final Map<String, String> hashes;
+    private final String glueHash;
+
+    private StepDefinitionIndex(List<StepDefinition> definitions, Map<String, String> hashes) {
+        this.definitions = definitions;
+        this.hashes = hashes;
+        StringBuilder patterns = new StringBuilder();
+        for (StepDefinition definition : definitions) {
+            patterns.append(definition.id()).append('=').append(definition.pattern()).append('\n');
+        }
+        this.glueHash = FileHashes.sha256(patterns.toString());
+    }
+
+    public static StepDefinitionIndex scan(FileHashes files) {
+        return scan(Path.of(System.getProperty(SOURCE_ROOT_PROPERTY, DEFAULT_SOURCE_ROOT)), files);
+    }
+
+    public static StepDefinitionIndex scan(Path sourceRoot, FileHashes files) {
+        ParameterTypeRegistry registry = new ParameterTypeRegistry(Locale.ENGLISH);
+        ExpressionFactory expressions = new ExpressionFactory(registry);
+        List<StepDefinition> definitions = new ArrayList<>();
+        Map<String, String> hashes = new TreeMap<>();
+        StringBuilder support = new StringBuilder();
+
+        List<Class<?>> classes = new ClasspathScanner(StepDefinitionIndex.class::getClassLoader)
+                .scanForClassesInPackage(CucumberLauncher.GLUE);
+        for (Class<?> type : classes.stream().sorted(Comparator.comparing(Class::getName)).toList()) {
+            if (type.getEnclosingClass() != null) continue;
+            Path sourceFile = sourceRoot.resolve(type.getName().replace('.', '/') + ".java");
+            String source = source(type, sourceFile);
+            List<int[]> spans = new ArrayList<>();
+            for (Method method : type.getDeclaredMethods()) {
+                String pattern = stepPattern(method);
+                if (pattern == null) continue;
+                String id = "step:" + type.getSimpleName() + "#" + method.getName();
+                definitions.add(new StepDefinition(id, type.getSimpleName(), pattern, expressions.createExpression(pattern)));
+                int[] span = methodSpan(source, method.getName());
+                if (span != null) {
+                    spans.add(span);
+                    hashes.put(id, FileHashes.sha256(source.substring(span[0], span[1])));
+                } else {
+                    // Without the source the method can only be tracked together with its class
+                    hashes.put(id, FileHashes.sha256(pattern));
+                }
+            }
+            if (spans.isEmpty()) {
+                support.append(type.getName()).append('=').append(FileHashes.sha256(source)).append('\n');
+            } else {
+                hashes.put("class:" + type.getSimpleName(), FileHashes.sha256(without(source, spans)));
+            }
+        }
+        for (String directory : SUPPORT_PACKAGES) {
+            Path packageDir = sourceRoot.resolve(directory);
+            if (!Files.isDirectory(packageDir)) continue;
+            try (var listing = Files.list(packageDir)) {
+                for (Path file : listing.filter(path -> path.toString().endsWith(".java")).sorted().toList()) {
+                    support.append(sourceRoot.relativize(file)).append('=').append(files.hash(file)).append('\n');
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to list " + packageDir, e);
+            }
+        }
+        hashes.put("support", FileHashes.sha256(support.toString()));
+        definitions.sort(Comparator.comparing(StepDefinition::id));
+        return new StepDefinitionIndex(List.copyOf(definitions), hashes);
+    }
+
+    public List<StepDefinition> definitions() {
+        return definitions;
+    }
+
+    // Hash of every step id and pattern; when it is unchanged, earlier step-to-method matches are still valid
+    public String glueHash() {
+        return glueHash;
+    }
+
+    public String hash(String dependency) {
+        return hashes.get(dependency);
+    }
+
+    // Ids of the step definitions matching a step text; an undefined step maps to "undefined:<text>"
+    public List<String> match(String stepText) {
+        List<String> matches = new ArrayList<>();
+        for (StepDefinition definition : definitions) {
+            if (definition.expression().match(stepText) != null) {
+                matches.add(definition.id());
+            }
+        }
+        if (matches.isEmpty()) {
+            matches.add("undefined:" + stepText);
+        }
+        return matches;
+    }
+
+    private static String stepPattern(Method method) {
+        for (Annotation annotation : method.getAnnotations()) {
+            if (annotation.annotationType().isAnnotationPresent(StepDefinitionAnnotation.class)) {
+                try {
+                    return (String) annotation.annotationType().getMethod("value").invoke(annotation);
+                } catch (ReflectiveOperationException e) {
+                    throw new IllegalStateException("Unreadable step annotation on " + method, e);
+                }
+            }
+        }
+        return null;
+    }
+
+    private static String source(Class<?> type, Path sourceFile) {
+        try {
+            if (Files.exists(sourceFile)) {
+                return Files.readString(sourceFile, StandardCharsets.UTF_8);
+            }
+            // Fall back to the class file, which at least changes whenever the code does
+            try (InputStream in = type.getResourceAsStream(type.getSimpleName() + ".class")) {
+                return in == null ? "" : new String(in.readAllBytes(), StandardCharsets.ISO_8859_1);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read source of " + type.getName(), e);
+        }
+    }
+
+    // Start of the annotations above the method declaration to the end of its body, or null if not found
+    static int[] methodSpan(String source, String name) {
+        Pattern declaration = Pattern.compile("(?m)^[ \\t]*[\\w<>\\[\\],.? \\t]*\\s" + Pattern.quote(name) + "\\s*\\(");
+        Matcher matcher = declaration.matcher(source);
+        while (matcher.find()) {
+            int open = source.indexOf('{', matcher.end());
+            int semicolon = source.indexOf(';', matcher.end());
+            if (open < 0 || (semicolon >= 0 && semicolon < open)) continue;
+            int close = closingBrace(source, open);
+            if (close < 0) return null;
+            int start = matcher.start();
+            while (start > 0) {
+                int previous = source.lastIndexOf('\n', start - 2) + 1;
+                if (!source.substring(previous, start).trim().startsWith("@")) break;
+                start = previous;
+            }
+            return new int[] {start, close + 1};
+        }
+        return null;
+    }
+
+    private static int closingBrace(String source, int open) {
+        int depth = 0;
+        for (int i = open; i < source.length(); i++) {
+            char c = source.charAt(i);
+            if (c == '"' || c == '\'') {
+                for (i++; i < source.length() && source.charAt(i) != c; i++) {
+                    if (source.charAt(i) == '\\') i++;
+                }
+            } else if (c == '/' && i + 1 < source.length() && source.charAt(i + 1) == '/') {
+                i = source.indexOf('\n', i);
+                if (i < 0) return -1;
+            } else if (c == '/' && i + 1 < source.length() && source.charAt(i + 1) == '*') {
+                i = source.indexOf("*/", i + 2);
+                if (i < 0) return -1;
+                i++;
+            } else if (c == '{') {
+                depth++;
+            } else if (c == '}' && --depth == 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String without(String source, List<int[]> spans) {
+        spans.sort(Comparator.comparingInt(span -> span[0]));
+        StringBuilder rest = new StringBuilder(source.length());
+        int last = 0;
+        for (int[] span : spans) {
+            if (span[0] < last) continue;
+            rest.append(source, last, span[0]);
+            last = span[1];
+        }
+        return rest.append(source.substring(last)).toString();
+    }
+}
@@ -0,0 +1,80 @@
+package ca.mcgill.story_testing.load;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+import org.json.JSONObject;
+
+// The coordinator/agent protocol: one JSON object per line over a TCP connection, each with a "type". The coordinator
+// sends setup, clock, run and stop; the agent answers hello (first, unasked), ready, clock, result and done, or error
+// with a message instead of any of them.
+final class AgentChannel implements AutoCloseable {
+    private final Socket socket;
+    private final BufferedReader in;
+    private final BufferedWriter out;
+
+    AgentChannel(Socket socket) throws IOException {
+        this.socket = socket;
+        socket.setTcpNoDelay(true);
+        this.in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        this.out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+    }
+
+    void send(JSONObject message) {
+        try {
+            out.write(message.toString());
+            out.write('\n');
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to send " + message.optString("type") + " to " + peer(), e);
+        }
+    }
+
+    // The next message, which must be of the expected type
+    JSONObject receive(String expected, long timeoutMillis) {
+        JSONObject message = receive(timeoutMillis);
+        String type = message.getString("type");
+        if (!type.equals(expected)) throw new IllegalStateException("Expected " + expected + " from " + peer() + ", got " + type);
+        return message;
+    }
+
+    // The next message of any type (0: wait for ever); an error message from the other side is thrown
+    JSONObject receive(long timeoutMillis) {
+        try {
+            socket.setSoTimeout((int) Math.min(Integer.MAX_VALUE, timeoutMillis));
+            String line = in.readLine();
+            if (line == null) throw new EOFException(peer() + " closed the connection");
+            JSONObject message = new JSONObject(line);
+            if (message.getString("type").equals("error")) {
+                throw new IllegalStateException(peer() + ": " + message.getString("message"));
+            }
+            return message;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to receive from " + peer(), e);
+        }
+    }
+
+    String peer() {
+        return String.valueOf(socket.getRemoteSocketAddress());
+    }
+
+    static JSONObject message(String type) {
+        return new JSONObject().put("type", type);
+    }
+
+    @Override
+    public void close() {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // already gone
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package ca.mcgill.story_testing.load;
+
+import org.json.JSONObject;
+
+import ca.mcgill.story_testing.perf.LatencyHistogram;
+
+// One agent's share of a distributed step as it travels back to the coordinator: counters, the steady-state window
+// and its latency histogram, all of which merge across agents. slackMillis is how long before the synchronized start
+// the run command arrived; below 0 the agent started late.
+record AgentResult(String agent, long requests, long errors, long retries, long timeouts, long warmupRequests,
+                   long warmupNanos, long steadyRequests, long steadyNanos, boolean stable, String reason,
+                   LatencyHistogram latency, long slackMillis) {
+
+    static AgentResult of(String agent, LoadEngine.PhaseResult result, long slackMillis) {
+        return new AgentResult(agent, result.requests(), result.errors(), result.retries(), result.timeouts(),
+                result.steady().warmupSamples(), result.steady().warmupNanos(), result.steady().samples(),
+                result.steady().nanos(), result.stable(), result.steady().reason(), result.latency(), slackMillis);
+    }
+
+    double throughput() {
+        return steadyNanos == 0 ? 0 : steadyRequests / (steadyNanos / 1e9);
+    }
+
+    JSONObject toJson() {
+        return new JSONObject()
+                .put("agent", agent)
+                .put("requests", requests)
+                .put("errors", errors)
+                .put("retries", retries)
+                .put("timeouts", timeouts)
+                .put("warmupRequests", warmupRequests)
+                .put("warmupNanos", warmupNanos)
+                .put("steadyRequests", steadyRequests)
+                .put("steadyNanos", steadyNanos)
+                .put("stable", stable)
+                .put("reason", reason)
+                .put("latency", latency.toJson())
+                .put("slackMillis", slackMillis);
+    }
+
+    static AgentResult fromJson(JSONObject json) {
+        return new AgentResult(json.getString("agent"), json.getLong("requests"), json.getLong("errors"),
+                json.getLong("retries"), json.getLong("timeouts"), json.getLong("warmupRequests"),
+                json.getLong("warmupNanos"), json.getLong("steadyRequests"), json.getLong("steadyNanos"),
+                json.getBoolean("stable"), json.getString("reason"), LatencyHistogram.fromJson(json.getJSONObject("latency")),
+                json.getLong("slackMillis"));
+    }
+}
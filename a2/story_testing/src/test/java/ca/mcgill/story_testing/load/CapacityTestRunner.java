@@ -0,0 +1,83 @@
+package ca.mcgill.story_testing.load;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import ca.mcgill.story_testing.fixtures.CanonicalJson;
+import ca.mcgill.story_testing.stepdefs.SharedTestContext;
+
+// Recommended capacity per endpoint: ConcurrencyController windows of LoadEngine.measure against the running server.
+// -Dstory.capacity.window=2000 (ms per step), .warmup=300 (ms), .max=256, .gain=0.05, .latency=0.25, .seedObjects=200
+public class CapacityTestRunner {
+    public static final Path REPORT = Path.of("build/perf/capacity.json");
+    private static final Operation[] OPERATIONS = {Operation.LIST, Operation.READ, Operation.UPDATE, Operation.CREATE};
+
+    public static void main(String[] args) throws Exception {
+        String baseUrl = System.getProperty(SharedTestContext.BASE_URL_PROPERTY, "http://localhost:4567");
+        long window = Long.getLong("story.capacity.window", 2000) * 1_000_000;
+        long warmup = Long.getLong("story.capacity.warmup", 300) * 1_000_000;
+        int seedObjects = Integer.getInteger("story.capacity.seedObjects", 200);
+        ConcurrencyController controller = new ConcurrencyController(
+                Integer.getInteger("story.capacity.max", 256),
+                Double.parseDouble(System.getProperty("story.capacity.gain", "0.05")),
+                Double.parseDouble(System.getProperty("story.capacity.latency", "0.25")),
+                2);
+
+        List<ConcurrencyController.Knee> knees = new ArrayList<>();
+        try (LoadEngine engine = new LoadEngine(baseUrl, 4, Long.getLong(LoadTestRunner.SEED_PROPERTY, System.nanoTime()))) {
+            for (ResourceType type : LoadTestRunner.types()) {
+                System.out.println("=== Capacity: " + type.path() + " ===");
+                IdStore ids = new IdStore();
+                engine.create(type, seedObjects, ids);
+                try {
+                    // CREATE goes last so that the other endpoints see a collection of seedObjects
+                    for (Operation operation : OPERATIONS) {
+                        knees.add(controller.find(operation.endpoint(type), concurrency -> {
+                            try {
+                                LoadEngine.PhaseResult result = engine.measure(type, operation, ids, concurrency, warmup, window);
+                                // One more try with a window twice as long before giving up on a steady state
+                                if (!result.stable()) result = engine.measure(type, operation, ids, concurrency, 0, 2 * window);
+                                return new ConcurrencyController.Step(concurrency, result.requests(), result.errors(),
+                                        result.throughput(), result.latency().percentile(50), result.latency().percentile(99),
+                                        result.stable());
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                                throw new IllegalStateException("Interrupted while measuring " + operation.endpoint(type), e);
+                            }
+                        }));
+                    }
+                } finally {
+                    LoadEngine.PhaseResult cleanup = engine.delete(type, ids);
+                    System.out.println("  cleaned up " + cleanup.requests() + " " + type.path());
+                }
+            }
+        }
+
+        System.out.println("\n" + "=".repeat(100));
+        System.out.printf("%-24s | %-6s | %-10s | %-9s | %-6s | %s%n", "Endpoint", "Knee", "req/s", "p99 ms", "Best", "Stopped because");
+        System.out.println("-".repeat(100));
+        JSONArray report = new JSONArray();
+        for (ConcurrencyController.Knee knee : knees) {
+            report.put(knee.toJson());
+            if (knee.knee() == null) {
+                System.out.printf("%-24s | %-6s | %-10s | %-9s | %-6s | %s%n", knee.endpoint(), "-", "-", "-", "-", knee.reason());
+                continue;
+            }
+            System.out.printf(Locale.ROOT, "%-24s | %-6d | %-10.1f | %-9.2f | %-6d | %s%n", knee.endpoint(),
+                    knee.knee().concurrency(), knee.knee().throughput(), knee.knee().p99Nanos() / 1e6,
+                    knee.best().concurrency(), knee.reason());
+        }
+        System.out.println("=".repeat(100));
+        Files.createDirectories(REPORT.getParent());
+        Files.writeString(REPORT, CanonicalJson.write(new JSONObject().put("baseUrl", baseUrl).put("endpoints", report), true) + "\n",
+                StandardCharsets.UTF_8);
+        System.out.println("Report: " + REPORT.toAbsolutePath());
+    }
+}
@@ -0,0 +1,118 @@
+package ca.mcgill.story_testing.load;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.IntFunction;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+// Finds the knee of one endpoint the way TCP finds a congestion window: double the concurrency while throughput
+// keeps growing (slow start), back off to the best level seen once it stops, then probe upwards additively until
+// throughput gains stay below gainThreshold while p99 grows by more than latencyThreshold. The knee is the lowest
+// concurrency within gainThreshold of the best throughput measured. A window that never reached a steady state counts
+// as a stall and is never the best or the knee.
+public class ConcurrencyController {
+    public record Step(int concurrency, long requests, long errors, double throughput, long p50Nanos, long p99Nanos,
+                       boolean stable) {
+        JSONObject toJson() {
+            JSONObject json = new JSONObject().put("concurrency", concurrency).put("requests", requests)
+                    .put("errors", errors).put("stable", stable);
+            if (!stable) return json;
+            return json.put("throughput", Math.round(throughput * 10) / 10.0)
+                    .put("p50Ms", p50Nanos / 1e6).put("p99Ms", p99Nanos / 1e6);
+        }
+    }
+
+    // knee and best are null when no window reached a steady state
+    public record Knee(String endpoint, Step knee, Step best, List<Step> steps, String reason) {
+        public JSONObject toJson() {
+            JSONArray all = new JSONArray();
+            steps.forEach(step -> all.put(step.toJson()));
+            return new JSONObject().put("endpoint", endpoint)
+                    .put("knee", knee == null ? JSONObject.NULL : knee.toJson())
+                    .put("best", best == null ? JSONObject.NULL : best.toJson())
+                    .put("reason", reason).put("steps", all);
+        }
+    }
+
+    private final int maxConcurrency;
+    private final double gainThreshold;
+    private final double latencyThreshold;
+    private final int patience;
+
+    public ConcurrencyController(int maxConcurrency, double gainThreshold, double latencyThreshold, int patience) {
+        this.maxConcurrency = maxConcurrency;
+        this.gainThreshold = gainThreshold;
+        this.latencyThreshold = latencyThreshold;
+        this.patience = patience;
+    }
+
+    // measure runs one window at the given concurrency
+    public Knee find(String endpoint, IntFunction<Step> measure) {
+        List<Step> steps = new ArrayList<>();
+        Step best = null;
+        boolean slowStart = true;
+        int increment = 1;
+        int stalls = 0;
+        int concurrency = 1;
+        String reason = "reached max concurrency " + maxConcurrency;
+
+        while (concurrency <= maxConcurrency) {
+            Step step = measure.apply(concurrency);
+            steps.add(step);
+            if (!step.stable()) {
+                System.out.printf(Locale.ROOT, "  %-24s c=%-4d no steady state%n", endpoint, concurrency);
+                if (++stalls >= patience) {
+                    reason = "no steady state in " + patience + " windows";
+                    break;
+                }
+                concurrency = slowStart ? concurrency * 2 : concurrency + increment;
+                continue;
+            }
+            System.out.printf(Locale.ROOT, "  %-24s c=%-4d %8.1f req/s  p50 %7.2f ms  p99 %7.2f ms%s%n", endpoint, concurrency,
+                    step.throughput(), step.p50Nanos() / 1e6, step.p99Nanos() / 1e6, step.errors() > 0 ? "  errors " + step.errors() : "");
+
+            if (best == null || step.throughput() > best.throughput() * (1 + gainThreshold)) {
+                best = step;
+                stalls = 0;
+                concurrency = slowStart ? concurrency * 2 : concurrency + increment;
+                continue;
+            }
+            if (step.p99Nanos() > best.p99Nanos() * (1 + latencyThreshold) && !slowStart) {
+                reason = "p99 up " + percent(step.p99Nanos(), best.p99Nanos()) + " with no throughput gain at c=" + step.concurrency();
+                break;
+            }
+            if (slowStart) {
+                // Multiplicative decrease: the knee lies between the best level and this one
+                slowStart = false;
+                increment = Math.max(1, best.concurrency() / 4);
+                concurrency = best.concurrency() + increment;
+                if (concurrency >= step.concurrency()) {
+                    reason = "no throughput gain between c=" + best.concurrency() + " and c=" + step.concurrency();
+                    break;
+                }
+                continue;
+            }
+            if (++stalls >= patience) {
+                reason = "no throughput gain in " + patience + " steps above c=" + best.concurrency();
+                break;
+            }
+            concurrency += increment;
+        }
+
+        if (best == null) return new Knee(endpoint, null, null, steps, "no window reached a steady state");
+        Step knee = best;
+        for (Step step : steps) {
+            if (step.stable() && step.throughput() >= best.throughput() / (1 + gainThreshold) && step.concurrency() < knee.concurrency()) {
+                knee = step;
+            }
+        }
+        return new Knee(endpoint, knee, best, steps, reason);
+    }
+
+    private static String percent(long value, long base) {
+        return Math.round((value - base) * 100.0 / Math.max(1, base)) + "%";
+    }
+}
@@ -0,0 +1,275 @@
+package ca.mcgill.story_testing.load;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import static ca.mcgill.story_testing.load.AgentChannel.message;
+import static ca.mcgill.story_testing.load.ScalingTestRunner.round;
+
+import ca.mcgill.story_testing.fixtures.CanonicalJson;
+import ca.mcgill.story_testing.perf.LatencyHistogram;
+import ca.mcgill.story_testing.stepdefs.SharedTestContext;
+
+// Coordinator for load from several processes, for when one JVM's workers and HTTP client give out before the server
+// does. It listens on -Dstory.distributed.port=4900, starts -Dstory.distributed.agents=3 LoadAgent processes on this
+// machine (logs in build/agents) and waits for -Dstory.distributed.remote=0 more started elsewhere with `gradle loadAgent`.
+// Every step paces one operation at a total rate split evenly across the agents. The coordinator reads each agent's
+// clock, picks a common start and sends it in that agent's time; the agents send back counters and steady-state
+// histograms, which merge into the step's result. An agent whose achieved rate falls short of its share is behind:
+// its latency, counted from the scheduled starts, includes its own queueing. A rate above what the server (or the
+// agents) can sustain builds an ever longer queue, which SteadyState reports as never settling.
+// -Dstory.distributed.rates=200,400 (requests/s in total) .operations=READ,UPDATE .concurrency=32 (per agent)
+// .window=5000 (ms) .warmup=500 (ms) .seedObjects=100 (per agent and type) .lead=1000 (ms from command to start)
+public class DistributedLoadRunner {
+    public static final Path REPORT = Path.of("build/perf/distributed.json");
+    public static final String PORT_PROPERTY = "story.distributed.port";
+    private static final long SETUP_TIMEOUT_MS = 300_000;
+    private static final long WARMUP_PASS_MS = 2000;
+    // An agent below this share of its rate is reported as behind
+    private static final double BEHIND = 0.95;
+
+    record Agent(String name, int cores, AgentChannel channel) {
+    }
+
+    // syncMillis: the largest half round trip of the clock readings, a bound on how far apart the agents started
+    record Step(String endpoint, double rate, long syncMillis, List<AgentResult> agents) {
+        boolean stable() {
+            return agents.stream().allMatch(AgentResult::stable);
+        }
+
+        long requests() {
+            return agents.stream().mapToLong(AgentResult::requests).sum();
+        }
+
+        long errors() {
+            return agents.stream().mapToLong(AgentResult::errors).sum();
+        }
+
+        // The agents run over the same window, so their steady rates add up
+        double throughput() {
+            return agents.stream().mapToDouble(AgentResult::throughput).sum();
+        }
+
+        LatencyHistogram latency() {
+            LatencyHistogram all = new LatencyHistogram();
+            agents.forEach(agent -> all.merge(agent.latency()));
+            return all;
+        }
+
+        List<String> behind() {
+            double share = rate / agents.size();
+            return agents.stream().filter(agent -> agent.throughput() < BEHIND * share).map(AgentResult::agent).toList();
+        }
+
+        List<String> late() {
+            return agents.stream().filter(agent -> agent.slackMillis() < 0).map(AgentResult::agent).toList();
+        }
+
+        String unstable() {
+            return agents.stream().filter(agent -> !agent.stable())
+                    .map(agent -> agent.agent() + ": " + agent.reason()).reduce((a, b) -> a + "; " + b).orElse("");
+        }
+
+        JSONObject toJson() {
+            JSONArray shares = new JSONArray();
+            agents.forEach(agent -> shares.put(agent.toJson()));
+            JSONObject json = new JSONObject().put("endpoint", endpoint).put("rate", rate).put("syncMillis", syncMillis)
+                    .put("stable", stable()).put("requests", requests()).put("errors", errors())
+                    .put("behind", new JSONArray(behind())).put("late", new JSONArray(late())).put("agents", shares);
+            if (!stable()) return json.put("reason", unstable());
+            return json.put("throughput", round(throughput())).put("latency", latency().toJson());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        String baseUrl = System.getProperty(SharedTestContext.BASE_URL_PROPERTY, "http://localhost:4567");
+        int port = Integer.getInteger(PORT_PROPERTY, 4900);
+        int local = Integer.getInteger("story.distributed.agents", 3);
+        int remote = Integer.getInteger("story.distributed.remote", 0);
+        List<Double> rates = new ArrayList<>();
+        for (String rate : System.getProperty("story.distributed.rates", "200,400").split(",")) {
+            rates.add(Double.parseDouble(rate.trim()));
+        }
+        List<Operation> operations = new ArrayList<>();
+        for (String name : System.getProperty("story.distributed.operations", "READ,UPDATE").split(",")) {
+            Operation operation = Operation.valueOf(name.trim().toUpperCase(Locale.ROOT));
+            if (operation == Operation.DELETE) throw new IllegalArgumentException("DELETE cannot be paced");
+            operations.add(operation);
+        }
+        int concurrency = Integer.getInteger("story.distributed.concurrency", 32);
+        long window = Long.getLong("story.distributed.window", 5000);
+        long warmup = Long.getLong("story.distributed.warmup", 500);
+        long lead = Long.getLong("story.distributed.lead", 1000);
+        int seedObjects = Integer.getInteger("story.distributed.seedObjects", 100);
+        long seed = Long.getLong(LoadTestRunner.SEED_PROPERTY, System.nanoTime());
+        if (local + remote < 1) throw new IllegalArgumentException("No agents to run");
+
+        System.out.println("=== Distributed load: " + baseUrl + ", " + local + " local and " + remote + " remote agents ===");
+        List<Agent> agents = new ArrayList<>();
+        List<Process> processes = new ArrayList<>();
+        List<Step> steps = new ArrayList<>();
+        try (ServerSocket server = new ServerSocket(port)) {
+            for (int i = 0; i < local; i++) {
+                processes.add(spawn(port, "local-" + i));
+            }
+            if (remote > 0) System.out.println("Waiting for " + remote + " agents on port " + port);
+            server.setSoTimeout((int) TimeUnit.SECONDS.toMillis(remote > 0 ? 600 : 60));
+            while (agents.size() < local + remote) {
+                Socket socket;
+                try {
+                    socket = server.accept();
+                } catch (SocketTimeoutException e) {
+                    throw new IllegalStateException("Only " + agents.size() + " of " + (local + remote)
+                            + " agents connected; the local ones log to build/agents", e);
+                }
+                AgentChannel channel = new AgentChannel(socket);
+                JSONObject hello = channel.receive("hello", 10_000);
+                agents.add(new Agent(hello.getString("agent"), hello.getInt("cores"), channel));
+                System.out.println("  " + hello.getString("agent") + " (" + hello.getInt("cores") + " cores) from " + channel.peer());
+            }
+
+            JSONArray types = new JSONArray();
+            LoadTestRunner.types().forEach(type -> types.put(type.name()));
+            for (int i = 0; i < agents.size(); i++) {
+                agents.get(i).channel().send(message("setup").put("baseUrl", baseUrl).put("seed", seed + i)
+                        .put("concurrency", concurrency).put("seedObjects", seedObjects).put("types", types));
+            }
+            for (Agent agent : agents) {
+                agent.channel().receive("ready", SETUP_TIMEOUT_MS);
+            }
+
+            // Fresh agent JVMs compile as they go; one untimed pass per endpoint at the lowest rate keeps that out
+            // of the first step
+            double lowest = rates.stream().mapToDouble(Double::doubleValue).min().orElseThrow();
+            for (ResourceType type : LoadTestRunner.types()) {
+                for (Operation operation : operations) {
+                    step(agents, type, operation, lowest, lead, 0, WARMUP_PASS_MS);
+                }
+            }
+            System.out.println("  agents warmed up");
+            for (ResourceType type : LoadTestRunner.types()) {
+                for (Operation operation : operations) {
+                    for (double rate : rates) {
+                        Step step = step(agents, type, operation, rate, lead, warmup, window);
+                        steps.add(step);
+                        print(step);
+                    }
+                }
+            }
+        } finally {
+            stop(agents, processes);
+        }
+
+        System.out.println("\n" + "=".repeat(118));
+        System.out.printf("%-22s | %-9s | %-10s | %-8s | %-8s | %-9s | %-8s | %-6s | %-7s | %s%n", "Endpoint", "Target/s",
+                "Achieved/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms", "errors", "sync ms", "behind");
+        System.out.println("-".repeat(118));
+        JSONArray report = new JSONArray();
+        for (Step step : steps) {
+            report.put(step.toJson());
+            if (!step.stable()) {
+                System.out.printf(Locale.ROOT, "%-22s | %-9.0f | NO STEADY STATE (%s), not published%n", step.endpoint(),
+                        step.rate(), step.unstable());
+                continue;
+            }
+            LatencyHistogram latency = step.latency();
+            System.out.printf(Locale.ROOT, "%-22s | %-9.0f | %-10.1f | %-8.2f | %-8.2f | %-9.2f | %-8.2f | %-6d | %-7d | %s%n",
+                    step.endpoint(), step.rate(), step.throughput(), latency.percentile(50) / 1e6,
+                    latency.percentile(99) / 1e6, latency.percentile(99.9) / 1e6, latency.max() / 1e6, step.errors(),
+                    step.syncMillis(), step.behind().isEmpty() ? "-" : String.join(", ", step.behind()));
+        }
+        System.out.println("=".repeat(118));
+        JSONArray names = new JSONArray();
+        agents.forEach(agent -> names.put(new JSONObject().put("agent", agent.name()).put("cores", agent.cores())));
+        Files.createDirectories(REPORT.getParent());
+        Files.writeString(REPORT, CanonicalJson.write(new JSONObject().put("baseUrl", baseUrl).put("seed", seed)
+                .put("concurrency", concurrency).put("windowMs", window).put("warmupMs", warmup).put("agents", names)
+                .put("steps", report), true) + "\n", StandardCharsets.UTF_8);
+        System.out.println("Report: " + REPORT.toAbsolutePath());
+    }
+
+    // Reads every agent's clock, sends the common start in its own time and collects the shares
+    private static Step step(List<Agent> agents, ResourceType type, Operation operation, double rate, long lead,
+                             long warmup, long window) {
+        long[] offsets = new long[agents.size()];
+        long sync = 0;
+        for (int i = 0; i < agents.size(); i++) {
+            AgentChannel channel = agents.get(i).channel();
+            long sent = System.currentTimeMillis();
+            channel.send(message("clock"));
+            long agentMillis = channel.receive("clock", 10_000).getLong("millis");
+            long received = System.currentTimeMillis();
+            offsets[i] = agentMillis - (sent + received) / 2;
+            sync = Math.max(sync, (received - sent + 1) / 2);
+        }
+        long start = System.currentTimeMillis() + lead;
+        for (int i = 0; i < agents.size(); i++) {
+            agents.get(i).channel().send(message("run").put("resource", type.name()).put("operation", operation.name())
+                    .put("rate", rate / agents.size()).put("startAt", start + offsets[i]).put("warmupMs", warmup)
+                    .put("windowMs", window));
+        }
+        List<AgentResult> shares = new ArrayList<>();
+        for (Agent agent : agents) {
+            shares.add(AgentResult.fromJson(agent.channel().receive("result", lead + warmup + window + 120_000)
+                    .getJSONObject("result")));
+        }
+        return new Step(operation.endpoint(type), rate, sync, shares);
+    }
+
+    private static void print(Step step) {
+        StringBuilder shares = new StringBuilder();
+        for (AgentResult agent : step.agents()) {
+            shares.append(String.format(Locale.ROOT, " %s %.1f/s", agent.agent(), agent.throughput()));
+        }
+        if (!step.stable()) {
+            System.out.printf(Locale.ROOT, "  %-22s at %.0f/s: NO STEADY STATE (%s)%n", step.endpoint(), step.rate(), step.unstable());
+        } else {
+            System.out.printf(Locale.ROOT, "  %-22s at %.0f/s: %.1f/s, p99 %.2f ms [%s ]%n", step.endpoint(), step.rate(),
+                    step.throughput(), step.latency().percentile(99) / 1e6, shares.toString().trim());
+        }
+        if (!step.late().isEmpty()) {
+            System.out.println("    started late: " + String.join(", ", step.late()) + "; raise -Dstory.distributed.lead");
+        }
+    }
+
+    private static Process spawn(int port, String name) throws IOException {
+        Path log = Path.of("build", "agents", name + ".log");
+        Files.createDirectories(log.getParent());
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        return new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                "-D" + LoadAgent.COORDINATOR_PROPERTY + "=127.0.0.1:" + port, "-D" + LoadAgent.NAME_PROPERTY + "=" + name,
+                LoadAgent.class.getName())
+                .redirectErrorStream(true)
+                .redirectOutput(log.toFile())
+                .start();
+    }
+
+    // Every agent deletes what it created before it answers; local processes get a while to exit after that
+    private static void stop(List<Agent> agents, List<Process> processes) throws InterruptedException {
+        for (Agent agent : agents) {
+            try {
+                agent.channel().send(message("stop"));
+                long deleted = agent.channel().receive("done", SETUP_TIMEOUT_MS).getLong("deleted");
+                System.out.println("  " + agent.name() + " cleaned up " + deleted + " objects");
+            } catch (RuntimeException e) {
+                System.out.println("  " + agent.name() + " did not stop cleanly: " + e.getMessage());
+            } finally {
+                agent.channel().close();
+            }
+        }
+        for (Process process : processes) {
+            if (!process.waitFor(30, TimeUnit.SECONDS)) process.destroyForcibly().waitFor();
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package ca.mcgill.story_testing.load;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import ca.mcgill.story_testing.faults.FaultProxy;
+import ca.mcgill.story_testing.faults.FaultRule;
+import ca.mcgill.story_testing.fixtures.CanonicalJson;
+import ca.mcgill.story_testing.http.RequestPolicy;
+import ca.mcgill.story_testing.stepdefs.SharedTestContext;
+
+// Load through a FaultProxy: first without faults as the baseline, then with -Dstory.faults for every client policy
+// in -Dstory.faults.policies, to show what timeouts and retries do to the tail and throughput of a flaky server.
+// -Dstory.faults.window=5000 (ms per run), .warmup=500 (ms), .concurrency=8, .operations=READ,UPDATE, .seedObjects=100
+public class FaultLoadTestRunner {
+    public static final Path REPORT = Path.of("build/perf/faults.json");
+    public static final String FAULTS_PROPERTY = "story.faults";
+    public static final String POLICIES_PROPERTY = "story.faults.policies";
+    private static final String DEFAULT_FAULTS = "*: latency=lognormal:2,1.0, error=0.02:503, reset=0.01";
+    private static final String DEFAULT_POLICIES = "none;timeout=50;timeout=50,retries=2,backoff=5";
+
+    record Run(String policy, String endpoint, boolean faults, LoadEngine.PhaseResult result) {
+        JSONObject toJson() {
+            LoadEngine.PhaseResult r = result;
+            JSONObject json = new JSONObject()
+                    .put("policy", policy)
+                    .put("endpoint", endpoint)
+                    .put("faults", faults)
+                    .put("stable", r.stable())
+                    .put("warmupRequests", r.steady().warmupSamples())
+                    .put("warmupSeconds", r.steady().warmupNanos() / 1e9);
+            // A run that never settled is not published
+            if (!r.stable()) return json.put("reason", r.steady().reason());
+            return json
+                    .put("requests", r.requests())
+                    .put("errors", r.errors())
+                    .put("retries", r.retries())
+                    .put("timeouts", r.timeouts())
+                    .put("throughput", r.throughput())
+                    .put("latency", r.latency().toJson());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        String baseUrl = System.getProperty(SharedTestContext.BASE_URL_PROPERTY, "http://localhost:4567");
+        List<FaultRule> faults = FaultRule.parseAll(System.getProperty(FAULTS_PROPERTY, DEFAULT_FAULTS));
+        Map<String, RequestPolicy> policies = new LinkedHashMap<>();
+        for (String spec : System.getProperty(POLICIES_PROPERTY, DEFAULT_POLICIES).split(";")) {
+            policies.put(spec.trim(), RequestPolicy.parse(spec));
+        }
+        List<Operation> operations = new ArrayList<>();
+        for (String name : System.getProperty("story.faults.operations", "READ,UPDATE").split(",")) {
+            operations.add(Operation.valueOf(name.trim().toUpperCase(Locale.ROOT)));
+        }
+        long window = Long.getLong("story.faults.window", 5000) * 1_000_000;
+        long warmup = Long.getLong("story.faults.warmup", 500) * 1_000_000;
+        int concurrency = Integer.getInteger("story.faults.concurrency", 8);
+        int seedObjects = Integer.getInteger("story.faults.seedObjects", 100);
+        long seed = Long.getLong(LoadTestRunner.SEED_PROPERTY, System.nanoTime());
+
+        System.out.println("=== Fault injection ===");
+        for (FaultRule rule : faults) {
+            System.out.println("  " + rule.describe());
+        }
+        List<Run> runs = new ArrayList<>();
+        try (FaultProxy proxy = FaultProxy.start(baseUrl, seed);
+             LoadEngine direct = new LoadEngine(baseUrl, 4, seed)) {
+            for (ResourceType type : LoadTestRunner.types()) {
+                // Seeded and cleaned up directly, so that the faults only hit the measured requests
+                IdStore ids = new IdStore();
+                direct.create(type, seedObjects, ids);
+                try {
+                    for (Operation operation : operations) {
+                        String endpoint = operation.endpoint(type);
+                        proxy.clear();
+                        runs.add(new Run("none", endpoint, false,
+                                measure(proxy, RequestPolicy.NONE, seed, type, operation, ids, concurrency, warmup, window)));
+                        faults.forEach(proxy::add);
+                        for (Map.Entry<String, RequestPolicy> policy : policies.entrySet()) {
+                            runs.add(new Run(policy.getKey(), endpoint, true,
+                                    measure(proxy, policy.getValue(), seed, type, operation, ids, concurrency, warmup, window)));
+                        }
+                    }
+                } finally {
+                    proxy.clear();
+                    LoadEngine.PhaseResult cleanup = direct.delete(type, ids);
+                    System.out.println("  cleaned up " + cleanup.requests() + " " + type.path());
+                }
+            }
+            FaultProxy.Stats stats = proxy.stats();
+            System.out.printf("Proxy: %d forwarded, %d delayed, %d injected errors, %d resets%n",
+                    stats.forwarded(), stats.delayed(), stats.errors(), stats.resets());
+        }
+
+        System.out.println("\n" + "=".repeat(122));
+        System.out.printf("%-22s | %-24s | %-9s | %-7s | %-8s | %-8s | %-9s | %-9s | %-7s | %s%n", "Endpoint", "Policy",
+                "req/s", "errors", "p50 ms", "p99 ms", "p99.9 ms", "max ms", "retries", "timeouts");
+        System.out.println("-".repeat(122));
+        JSONArray report = new JSONArray();
+        for (Run run : runs) {
+            LoadEngine.PhaseResult r = run.result();
+            report.put(run.toJson());
+            if (!r.stable()) {
+                System.out.printf("%-22s | %-24s | %s%n", run.endpoint(), run.faults() ? run.policy() : "(no faults)",
+                        r.steady().describe());
+                continue;
+            }
+            System.out.printf(Locale.ROOT, "%-22s | %-24s | %-9.1f | %-6.2f%% | %-8.2f | %-8.2f | %-9.2f | %-9.2f | %-7d | %d%n",
+                    run.endpoint(), run.faults() ? run.policy() : "(no faults)", r.throughput(),
+                    r.requests() == 0 ? 0 : 100.0 * r.errors() / r.requests(), r.latency().percentile(50) / 1e6,
+                    r.latency().percentile(99) / 1e6, r.latency().percentile(99.9) / 1e6, r.latency().max() / 1e6,
+                    r.retries(), r.timeouts());
+        }
+        System.out.println("=".repeat(122));
+        JSONArray rules = new JSONArray();
+        faults.forEach(rule -> rules.put(rule.describe()));
+        Files.createDirectories(REPORT.getParent());
+        Files.writeString(REPORT, CanonicalJson.write(new JSONObject().put("baseUrl", baseUrl).put("faults", rules)
+                .put("concurrency", concurrency).put("runs", report), true) + "\n", StandardCharsets.UTF_8);
+        System.out.println("Report: " + REPORT.toAbsolutePath());
+    }
+
+    private static LoadEngine.PhaseResult measure(FaultProxy proxy, RequestPolicy policy, long seed, ResourceType type,
+                                                  Operation operation, IdStore ids, int concurrency, long warmup,
+                                                  long window) throws InterruptedException {
+        try (LoadEngine engine = new LoadEngine(proxy.baseUrl(), concurrency, seed, policy)) {
+            return engine.measure(type, operation, ids, concurrency, warmup, window);
+        }
+    }
+}
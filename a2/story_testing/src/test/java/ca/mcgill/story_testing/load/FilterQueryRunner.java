@@ -0,0 +1,229 @@
+package ca.mcgill.story_testing.load;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeSet;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import static ca.mcgill.story_testing.load.ScalingTestRunner.round;
+
+import ca.mcgill.story_testing.fixtures.CanonicalJson;
+import ca.mcgill.story_testing.perf.ComplexityFit;
+import ca.mcgill.story_testing.perf.SampleSeries;
+import ca.mcgill.story_testing.perf.SteadyState;
+import ca.mcgill.story_testing.stepdefs.SharedTestContext;
+
+// Times filtered list queries (?field=value) against the unfiltered list as each collection grows, counting response
+// bytes as well as latency. Every query's result is first checked against the unfiltered list filtered client-side.
+// If a query matching one object still slows down with the collection, the server scans the whole collection for it
+// and a filter only saves transfer, not work. SteadyState cuts each query's warm-up; a query that never settles at
+// some size is left out of its fit.
+// -Dstory.filter.sizes=1000,10000,100000 (objects per collection; 1000000 needs a few GB of heap on both sides)
+// .requests=50 (timed per query and size; SteadyState needs 50) .warmup=0 (untimed before those) .growth=0.25 .minR2=0.5
+public class FilterQueryRunner {
+    public static final Path REPORT = Path.of("build/perf/filter-queries.json");
+    private static final String ALL = "all";
+
+    // filters is what the server should apply; query may say more (an ignored parameter) or the same
+    record Query(String name, String query, Map<String, String> filters) {
+        String endpoint(ResourceType type) {
+            return type.path() + (query.isEmpty() ? "" : "?" + query);
+        }
+    }
+
+    record Point(int size, long matches, long bytes, double p50Ms, double p99Ms, SteadyState.Window steady) {
+        JSONObject toJson() {
+            JSONObject json = new JSONObject().put("size", size).put("matches", matches).put("bytes", bytes)
+                    .put("stable", steady.stable());
+            if (!steady.stable()) return json.put("reason", steady.reason());
+            return json.put("warmupRequests", steady.warmupSamples()).put("p50Ms", round(p50Ms)).put("p99Ms", round(p99Ms));
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        String baseUrl = System.getProperty(SharedTestContext.BASE_URL_PROPERTY, "http://localhost:4567");
+        List<Integer> sizes = ScalingTestRunner.ints(System.getProperty("story.filter.sizes", "1000,10000,100000"));
+        int requests = Integer.getInteger("story.filter.requests", 50);
+        int warmup = Integer.getInteger("story.filter.warmup", 0);
+        double growthThreshold = Double.parseDouble(System.getProperty("story.filter.growth", "0.25"));
+        double minR2 = Double.parseDouble(System.getProperty("story.filter.minR2", "0.5"));
+        long seed = Long.getLong(LoadTestRunner.SEED_PROPERTY, System.nanoTime());
+        sizes.sort(null);
+
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        SplittableRandom random = new SplittableRandom(seed);
+        Map<String, List<Point>> points = new LinkedHashMap<>();
+        boolean wrong = false;
+        try (LoadEngine engine = new LoadEngine(baseUrl, 4, seed)) {
+            for (ResourceType type : LoadTestRunner.types()) {
+                IdStore ids = new IdStore();
+                int current = 0;
+                try {
+                    for (int size : sizes) {
+                        engine.create(type, size - current, ids);
+                        current = size;
+                        System.out.println("=== " + type.path() + " with " + size + " objects ===");
+                        JSONArray all = items(type, get(client, baseUrl + type.path()).body());
+                        System.out.printf("  %-44s | %-8s | %-12s | %-9s | %-9s | %s%n",
+                                "Query", "Matches", "Bytes", "p50(ms)", "p99(ms)", "vs all (time / bytes)");
+                        Point unfiltered = null;
+                        for (Query query : queries(type, all.getJSONObject(random.nextInt(all.length())))) {
+                            String url = baseUrl + query.endpoint(type);
+                            TreeSet<String> expected = matching(all, query.filters());
+                            TreeSet<String> actual = ids(items(type, get(client, url).body()));
+                            if (!actual.equals(expected)) {
+                                wrong = true;
+                                System.out.println("  WRONG RESULT for " + query.endpoint(type) + ": expected "
+                                        + expected.size() + " objects, got " + actual.size());
+                            }
+                            Point point = time(client, url, size, expected.size(), warmup, requests);
+                            if (query.name().equals(ALL)) unfiltered = point;
+                            points.computeIfAbsent(type.path() + " " + query.name(), k -> new ArrayList<>()).add(point);
+                            String shown = query.query().isEmpty() ? "(unfiltered)" : query.query();
+                            if (!point.steady().stable() || !unfiltered.steady().stable()) {
+                                System.out.printf("  %-44s | %-8d | %-12d | %s%n", shown, point.matches(), point.bytes(),
+                                        point.steady().stable() ? "unfiltered list has no steady state" : point.steady().describe());
+                                continue;
+                            }
+                            System.out.printf(Locale.ROOT, "  %-44s | %-8d | %-12d | %-9.2f | %-9.2f | %.2f / %.4f%n",
+                                    shown, point.matches(), point.bytes(),
+                                    point.p50Ms(), point.p99Ms(), point.p50Ms() / unfiltered.p50Ms(),
+                                    point.bytes() / (double) unfiltered.bytes());
+                        }
+                    }
+                } finally {
+                    System.out.println("  cleaned up " + engine.delete(type, ids).requests() + " " + type.path());
+                }
+            }
+        }
+
+        System.out.println("\n" + "=".repeat(108));
+        System.out.printf("%-44s | %-9s | %-11s | %-11s | %-7s | %s%n", "Query", "Model", "ms @ min n", "ms @ max n", "R^2", "Verdict");
+        System.out.println("-".repeat(108));
+        JSONArray series = new JSONArray();
+        for (Map.Entry<String, List<Point>> entry : points.entrySet()) {
+            JSONArray data = new JSONArray();
+            entry.getValue().forEach(point -> data.put(point.toJson()));
+            List<Point> cell = entry.getValue().stream().filter(point -> point.steady().stable()).toList();
+            if (cell.size() < 2) {
+                System.out.printf("%-44s | NO STEADY STATE at %d of %d sizes, not published%n", entry.getKey(),
+                        entry.getValue().size() - cell.size(), entry.getValue().size());
+                series.put(new JSONObject().put("query", entry.getKey()).put("points", data));
+                continue;
+            }
+            double[] n = cell.stream().mapToDouble(Point::size).toArray();
+            double[] y = cell.stream().mapToDouble(Point::p50Ms).toArray();
+            ComplexityFit.Fit fit = ComplexityFit.best(n, y);
+            double from = cell.get(0).size();
+            double to = cell.get(cell.size() - 1).size();
+            double growth = fit.growth(from, to);
+            boolean grows = fit.model() != ComplexityFit.Model.CONSTANT && growth > 1 + growthThreshold && fit.r2() >= minR2;
+            boolean selective = cell.get(cell.size() - 1).matches() <= 1;
+            // An intercept at or below zero makes the growth factor infinite
+            String factor = Double.isFinite(growth) ? " x" + round(growth) : "";
+            String verdict = !grows ? "" : (selective ? "SCANS: " : "") + "grows" + factor;
+            System.out.printf(Locale.ROOT, "%-44s | %-9s | %-11.3f | %-11.3f | %-7.3f | %s%n", entry.getKey(),
+                    fit.model().label(), fit.predict(from), fit.predict(to), fit.r2(), verdict);
+            series.put(new JSONObject().put("query", entry.getKey()).put("model", fit.model().label())
+                    .put("r2", round(fit.r2())).put("growth", Double.isFinite(growth) ? round(growth) : JSONObject.NULL).put("grows", grows)
+                    .put("selective", selective).put("points", data));
+        }
+        System.out.println("=".repeat(108));
+
+        JSONObject report = new JSONObject().put("baseUrl", baseUrl).put("seed", seed).put("sizes", new JSONArray(sizes))
+                .put("requests", requests).put("warmup", warmup).put("correct", !wrong).put("queries", series);
+        Files.createDirectories(REPORT.getParent());
+        Files.writeString(REPORT, CanonicalJson.write(report, true) + "\n", StandardCharsets.UTF_8);
+        System.out.println("Report: " + REPORT.toAbsolutePath());
+        if (wrong) System.exit(1);
+    }
+
+    // The unfiltered list, a filter on a boolean field, one on a title that exists once, both together, a title that
+    // does not exist, and a field-selection parameter that the Todo Manager does not support and ignores
+    private static List<Query> queries(ResourceType type, JSONObject target) {
+        String title = target.getString("title");
+        String flag = switch (type) {
+            case TODOS -> "doneStatus";
+            case PROJECTS -> "completed";
+            case CATEGORIES -> null;
+        };
+        List<Query> queries = new ArrayList<>();
+        queries.add(new Query(ALL, "", Map.of()));
+        if (flag != null) queries.add(new Query(flag, flag + "=true", Map.of(flag, "true")));
+        queries.add(new Query("title", "title=" + encode(title), Map.of("title", title)));
+        if (flag != null) {
+            String value = target.getString(flag);
+            queries.add(new Query("title+" + flag, "title=" + encode(title) + "&" + flag + "=" + value,
+                    Map.of("title", title, flag, value)));
+        }
+        queries.add(new Query("no match", "title=" + encode("no such title"), Map.of("title", "no such title")));
+        queries.add(new Query("ignored", "fields=title", Map.of()));
+        return queries;
+    }
+
+    private static Point time(HttpClient client, String url, int size, long matches, int warmup, int requests) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url)).timeout(Duration.ofMinutes(5)).build();
+        SampleSeries samples = new SampleSeries();
+        long[] bytes = new long[1];
+        HttpResponse.BodyHandler<Void> counting = HttpResponse.BodyHandlers.ofByteArrayConsumer(chunk -> chunk.ifPresent(b -> bytes[0] += b.length));
+        for (int i = 0; i < warmup + requests; i++) {
+            bytes[0] = 0;
+            long start = System.nanoTime();
+            HttpResponse<Void> response = client.send(request, counting);
+            long nanos = System.nanoTime() - start;
+            if (response.statusCode() != 200) throw new IllegalStateException("GET " + url + " answered " + response.statusCode());
+            if (i >= warmup) samples.record(start, nanos);
+        }
+        SteadyState.Window steady = samples.steadyState();
+        return new Point(size, matches, bytes[0], steady.latency().percentile(50) / 1e6,
+                steady.latency().percentile(99) / 1e6, steady);
+    }
+
+    private static HttpResponse<String> get(HttpClient client, String url) throws Exception {
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(URI.create(url)).timeout(Duration.ofMinutes(5)).build(),
+                HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) throw new IllegalStateException("GET " + url + " answered " + response.statusCode());
+        return response;
+    }
+
+    private static JSONArray items(ResourceType type, String body) {
+        return new JSONObject(body).getJSONArray(type.path().substring(1));
+    }
+
+    private static TreeSet<String> matching(JSONArray all, Map<String, String> filters) {
+        TreeSet<String> ids = new TreeSet<>();
+        for (int i = 0; i < all.length(); i++) {
+            JSONObject item = all.getJSONObject(i);
+            boolean matches = true;
+            for (Map.Entry<String, String> filter : filters.entrySet()) {
+                matches &= filter.getValue().equals(item.optString(filter.getKey(), null));
+            }
+            if (matches) ids.add(item.getString("id"));
+        }
+        return ids;
+    }
+
+    private static TreeSet<String> ids(JSONArray items) {
+        TreeSet<String> ids = new TreeSet<>();
+        for (int i = 0; i < items.length(); i++) ids.add(items.getJSONObject(i).getString("id"));
+        return ids;
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,114 @@
+package ca.mcgill.story_testing.load;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Append-only store of positive ids in fixed-size chunks of primitive longs: no boxing, no copying on growth and
+// no lock on append. Workers reserve a slot with one atomic increment and publish the id with a release write;
+// 0 marks a slot that is reserved but not yet written, or already drained.
+public final class IdStore {
+    private static final int CHUNK_BITS = 14;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int MAX_CHUNKS = 1 << 16;
+
+    private final AtomicReferenceArray<AtomicLongArray> chunks = new AtomicReferenceArray<>(MAX_CHUNKS);
+    private final AtomicLong reserved = new AtomicLong();
+
+    public void add(long id) {
+        if (id <= 0) throw new IllegalArgumentException("ids must be positive: " + id);
+        long slot = reserved.getAndIncrement();
+        chunk((int) (slot >>> CHUNK_BITS)).setRelease((int) (slot & (CHUNK_SIZE - 1)), id);
+    }
+
+    // Slots reserved so far, including ids still being written and drained ones
+    public long size() {
+        return reserved.get();
+    }
+
+    // The id at a slot, or 0 if it is not written yet or was drained
+    public long get(long slot) {
+        if (slot < 0 || slot >= reserved.get()) throw new IndexOutOfBoundsException(slot);
+        AtomicLongArray chunk = chunks.get((int) (slot >>> CHUNK_BITS));
+        return chunk == null ? 0 : chunk.getAcquire((int) (slot & (CHUNK_SIZE - 1)));
+    }
+
+    // A uniformly chosen live id, or 0 when none is found in a few tries (store empty or mostly drained)
+    public long sample(SplittableRandom random) {
+        long size = reserved.get();
+        if (size == 0) return 0;
+        for (int attempt = 0; attempt < 8; attempt++) {
+            long id = get(random.nextLong(size));
+            if (id != 0) return id;
+        }
+        return 0;
+    }
+
+    // Shared cursor over the slots appended so far; several workers can pull disjoint batches from one cursor
+    public Cursor cursor() {
+        return new Cursor(false);
+    }
+
+    // Like cursor(), but every id handed out is removed from the store
+    public Cursor drainingCursor() {
+        return new Cursor(true);
+    }
+
+    public long count() {
+        long live = 0;
+        long size = reserved.get();
+        for (long slot = 0; slot < size; slot++) {
+            if (get(slot) != 0) live++;
+        }
+        return live;
+    }
+
+    // Only safe while no worker is appending
+    public void clear() {
+        for (int i = 0; i < MAX_CHUNKS && chunks.get(i) != null; i++) {
+            chunks.set(i, null);
+        }
+        reserved.set(0);
+    }
+
+    private AtomicLongArray chunk(int index) {
+        if (index >= MAX_CHUNKS) throw new IllegalStateException("IdStore is full at " + ((long) MAX_CHUNKS << CHUNK_BITS) + " ids");
+        AtomicLongArray chunk = chunks.get(index);
+        if (chunk == null) {
+            chunks.compareAndSet(index, null, new AtomicLongArray(CHUNK_SIZE));
+            chunk = chunks.get(index);
+        }
+        return chunk;
+    }
+
+    public final class Cursor {
+        private final boolean draining;
+        private final AtomicLong next = new AtomicLong();
+        private final long end = reserved.get();
+
+        private Cursor(boolean draining) {
+            this.draining = draining;
+        }
+
+        // Fills the batch with the next live ids and returns how many were written; 0 once the cursor is exhausted.
+        // Slots appended after the cursor was created, or still being written then, are not visited.
+        public int next(long[] batch) {
+            if (batch.length == 0) throw new IllegalArgumentException("Batch must hold at least one id");
+            int filled = 0;
+            while (filled == 0) {
+                long start = next.getAndAdd(batch.length);
+                if (start >= end) return 0;
+                long stop = Math.min(end, start + batch.length);
+                for (long slot = start; slot < stop; slot++) {
+                    AtomicLongArray chunk = chunks.get((int) (slot >>> CHUNK_BITS));
+                    if (chunk == null) continue;
+                    int offset = (int) (slot & (CHUNK_SIZE - 1));
+                    long id = draining ? chunk.getAndSet(offset, 0) : chunk.getAcquire(offset);
+                    if (id != 0) batch[filled++] = id;
+                }
+            }
+            return filled;
+        }
+    }
+}
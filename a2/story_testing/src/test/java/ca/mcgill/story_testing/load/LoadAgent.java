@@ -0,0 +1,117 @@
+package ca.mcgill.story_testing.load;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import static ca.mcgill.story_testing.load.AgentChannel.message;
+
+// A load generator process for DistributedLoadRunner. It connects to -Dstory.distributed.coordinator=host:port
+// (default localhost:4900), seeds its own objects when set up, paces every step it is sent from the synchronized
+// start and answers with its counters and histogram; on stop, or when anything fails, it deletes what it created.
+// The coordinator starts local agents itself; `gradle loadAgent` starts one more here or on another machine.
+public class LoadAgent {
+    public static final String COORDINATOR_PROPERTY = "story.distributed.coordinator";
+    public static final String NAME_PROPERTY = "story.distributed.name";
+    private static final long CONNECT_TIMEOUT_MS = 30_000;
+
+    public static void main(String[] args) throws Exception {
+        String coordinator = System.getProperty(COORDINATOR_PROPERTY, "localhost:4900");
+        String name = System.getProperty(NAME_PROPERTY, "agent-" + ProcessHandle.current().pid());
+        LoadEngine engine = null;
+        int concurrency = 0;
+        Map<ResourceType, IdStore> ids = new EnumMap<>(ResourceType.class);
+        try (AgentChannel channel = connect(coordinator)) {
+            channel.send(message("hello").put("agent", name).put("cores", Runtime.getRuntime().availableProcessors()));
+            System.out.println(name + " connected to " + channel.peer());
+            try {
+                for (boolean running = true; running; ) {
+                    JSONObject command = channel.receive(0);
+                    switch (command.getString("type")) {
+                        case "setup" -> {
+                            concurrency = command.getInt("concurrency");
+                            engine = new LoadEngine(command.getString("baseUrl"), concurrency, command.getLong("seed"));
+                            JSONArray types = command.getJSONArray("types");
+                            for (int i = 0; i < types.length(); i++) {
+                                ResourceType type = ResourceType.valueOf(types.getString(i));
+                                ids.put(type, new IdStore());
+                                engine.create(type, command.getInt("seedObjects"), ids.get(type));
+                            }
+                            System.out.println("  seeded " + command.getInt("seedObjects") + " objects of " + types);
+                            channel.send(message("ready"));
+                        }
+                        case "clock" -> channel.send(message("clock").put("millis", System.currentTimeMillis()));
+                        case "run" -> {
+                            if (engine == null) throw new IllegalStateException("run before setup");
+                            ResourceType type = ResourceType.valueOf(command.getString("resource"));
+                            Operation operation = Operation.valueOf(command.getString("operation"));
+                            double rate = command.getDouble("rate");
+                            // A late command starts at once rather than bursting to catch up with the schedule
+                            long slack = command.getLong("startAt") - System.currentTimeMillis();
+                            long start = System.nanoTime() + Math.max(0, slack) * 1_000_000;
+                            LoadEngine.PhaseResult result = engine.pace(type, operation, ids.get(type), concurrency, rate,
+                                    start, command.getLong("warmupMs") * 1_000_000, command.getLong("windowMs") * 1_000_000);
+                            AgentResult share = AgentResult.of(name, result, slack);
+                            System.out.printf(Locale.ROOT, "  %s at %.1f/s: %.1f/s, %d errors, %s%n", operation.endpoint(type), rate,
+                                    share.throughput(), share.errors(), result.steady().describe());
+                            channel.send(message("result").put("result", share.toJson()));
+                        }
+                        case "stop" -> {
+                            long deleted = cleanup(engine, ids);
+                            channel.send(message("done").put("deleted", deleted));
+                            running = false;
+                        }
+                        default -> throw new IllegalStateException("Unknown command " + command.getString("type"));
+                    }
+                }
+            } catch (RuntimeException | InterruptedException e) {
+                try {
+                    channel.send(message("error").put("message", name + ": " + e));
+                } catch (UncheckedIOException closed) {
+                    // the coordinator is gone already
+                }
+                throw e;
+            }
+        } finally {
+            cleanup(engine, ids);
+            if (engine != null) engine.close();
+        }
+    }
+
+    private static AgentChannel connect(String coordinator) throws IOException, InterruptedException {
+        int colon = coordinator.lastIndexOf(':');
+        InetSocketAddress address = new InetSocketAddress(coordinator.substring(0, colon),
+                Integer.parseInt(coordinator.substring(colon + 1)));
+        long deadline = System.currentTimeMillis() + CONNECT_TIMEOUT_MS;
+        while (true) {
+            Socket socket = new Socket();
+            try {
+                socket.connect(address, 1000);
+                return new AgentChannel(socket);
+            } catch (ConnectException e) {
+                socket.close();
+                if (System.currentTimeMillis() > deadline) {
+                    throw new IllegalStateException("No coordinator at " + coordinator + " within " + CONNECT_TIMEOUT_MS / 1000 + "s", e);
+                }
+                Thread.sleep(200);
+            }
+        }
+    }
+
+    private static long cleanup(LoadEngine engine, Map<ResourceType, IdStore> ids) throws InterruptedException {
+        long deleted = 0;
+        if (engine == null) return deleted;
+        for (Map.Entry<ResourceType, IdStore> entry : ids.entrySet()) {
+            deleted += engine.delete(entry.getKey(), entry.getValue()).requests();
+        }
+        ids.clear();
+        return deleted;
+    }
+}
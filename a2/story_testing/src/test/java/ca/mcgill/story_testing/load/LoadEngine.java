@@ -0,0 +1,365 @@
+package ca.mcgill.story_testing.load;
+
+import java.io.IOException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import ca.mcgill.story_testing.http.JdkHttpTransport;
+import ca.mcgill.story_testing.http.JsonTemplate;
+import ca.mcgill.story_testing.http.RequestPolicy;
+import ca.mcgill.story_testing.http.RequestTemplate;
+import ca.mcgill.story_testing.http.TemplateTransport;
+import ca.mcgill.story_testing.metrics.Metrics;
+import ca.mcgill.story_testing.metrics.MetricsServer;
+import ca.mcgill.story_testing.perf.LatencyHistogram;
+import ca.mcgill.story_testing.perf.SampleSeries;
+import ca.mcgill.story_testing.perf.SteadyState;
+import ca.mcgill.story_testing.results.ResultsStore;
+
+// Java counterpart of a3's BasePerformanceTester: create N objects, update each, delete each, timing every phase.
+// Phases run on a fixed number of workers (1 reproduces the sequential Python loop); created ids go to an IdStore.
+public class LoadEngine implements AutoCloseable {
+    private static final int BATCH = 64;
+    // Samples a phase keeps for SteadyState across its workers (16 bytes each); past that every worker thins its own
+    private static final int SAMPLE_LIMIT = 1 << 20;
+
+    // latency is per logical request, including its retries, after the warm-up that steady cuts off; retries and
+    // timeouts count attempts. seconds() is the whole phase, throughput() the steady part when there is one.
+    public record PhaseResult(String phase, long requests, long errors, long nanos, LatencyHistogram latency,
+                              long retries, long timeouts, SteadyState.Window steady) {
+        public double seconds() {
+            return nanos / 1e9;
+        }
+
+        public double throughput() {
+            if (steady.stable()) return steady.throughput();
+            return nanos == 0 ? 0 : requests / seconds();
+        }
+
+        public boolean stable() {
+            return steady.stable();
+        }
+
+        public PhaseResult named(String phase) {
+            return new PhaseResult(phase, requests, errors, nanos, latency, retries, timeouts, steady);
+        }
+    }
+
+    public record ExperimentResult(ResourceType type, int loadCount, PhaseResult create, PhaseResult update, PhaseResult delete) {
+    }
+
+    // Per-worker state; nothing here is shared between threads except the phase's sample series
+    private static final class Worker {
+        final JsonTemplate.Filler filler;
+        final SplittableRandom random;
+        final SampleSeries samples;
+        final StringBuilder scratch = new StringBuilder(64);
+        final long[] batch = new long[BATCH];
+        long requests;
+        long errors;
+        long retries;
+        long timeouts;
+
+        Worker(ResourceType type, SplittableRandom random, SampleSeries samples) {
+            this.filler = type.template().newFiller(16 * 1024);
+            this.random = random;
+            this.samples = samples;
+        }
+    }
+
+    private interface Task {
+        void run(Worker worker) throws InterruptedException;
+    }
+
+    private final TemplateTransport transport;
+    private final RequestPolicy policy;
+    private final int workers;
+    private final SplittableRandom seeds;
+    private final ExecutorService pool;
+    private final Map<ResourceType, Map<Operation, RequestTemplate>> templates = new EnumMap<>(ResourceType.class);
+    private final Map<ResourceType, Map<Operation, Metrics.Endpoint>> metered = new EnumMap<>(ResourceType.class);
+    private final Map<ResourceType, Map<Operation, String>> names = new EnumMap<>(ResourceType.class);
+    private volatile ResultsStore.Writer results;
+
+    public LoadEngine(String baseUrl, int workers, long seed) {
+        this(baseUrl, workers, seed, RequestPolicy.NONE);
+    }
+
+    public LoadEngine(String baseUrl, int workers, long seed, RequestPolicy policy) {
+        this(JdkHttpTransport.create(baseUrl, policy), workers, seed, policy);
+    }
+
+    public LoadEngine(TemplateTransport transport, int workers, long seed) {
+        this(transport, workers, seed, RequestPolicy.NONE);
+    }
+
+    public LoadEngine(TemplateTransport transport, int workers, long seed, RequestPolicy policy) {
+        this.transport = transport;
+        this.policy = policy;
+        this.workers = workers;
+        this.seeds = new SplittableRandom(seed);
+        this.pool = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "load-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (ResourceType type : ResourceType.values()) {
+            Map<Operation, RequestTemplate> byOperation = new EnumMap<>(Operation.class);
+            Map<Operation, Metrics.Endpoint> endpoints = new EnumMap<>(Operation.class);
+            Map<Operation, String> byName = new EnumMap<>(Operation.class);
+            for (Operation operation : Operation.values()) {
+                byOperation.put(operation, RequestTemplate.of(transport.baseUrl(), operation.method(),
+                        operation.path(type), policy.timeout(), transport.keepAlive()));
+                endpoints.put(operation, Metrics.global().endpoint(operation.endpoint(type)));
+                byName.put(operation, operation.endpoint(type));
+            }
+            templates.put(type, byOperation);
+            metered.put(type, endpoints);
+            names.put(type, byName);
+        }
+        Metrics.global().watchServer(transport.baseUrl());
+        MetricsServer.startIfConfigured();
+    }
+
+    public int workers() {
+        return workers;
+    }
+
+    // Every measured request from now on also goes to the writer as one sample; null stops recording
+    public void recordTo(ResultsStore.Writer writer) {
+        this.results = writer;
+    }
+
+    public ExperimentResult runExperiment(ResourceType type, int count) throws InterruptedException {
+        IdStore ids = new IdStore();
+        PhaseResult create = create(type, count, ids);
+        PhaseResult update = update(type, ids);
+        PhaseResult delete = delete(type, ids);
+        return new ExperimentResult(type, count, create, update, delete);
+    }
+
+    public PhaseResult create(ResourceType type, int count, IdStore ids) throws InterruptedException {
+        AtomicLong remaining = new AtomicLong(count);
+        return runPhase("Create", type, workers, 0, worker -> {
+            while (remaining.getAndDecrement() > 0) {
+                perform(worker, type, Operation.CREATE, 0, ids);
+            }
+        });
+    }
+
+    public PhaseResult read(ResourceType type, IdStore ids) throws InterruptedException {
+        return walk("Read", type, Operation.READ, ids.cursor(), ids);
+    }
+
+    public PhaseResult update(ResourceType type, IdStore ids) throws InterruptedException {
+        return walk("Update", type, Operation.UPDATE, ids.cursor(), ids);
+    }
+
+    public PhaseResult delete(ResourceType type, IdStore ids) throws InterruptedException {
+        return walk("Delete", type, Operation.DELETE, ids.drainingCursor(), ids);
+    }
+
+    // Closed loop of one operation on `concurrency` workers for a fixed time; READ and UPDATE pick random ids from
+    // the store, CREATE adds to it. Requests finishing within the first warmupNanos are not recorded.
+    public PhaseResult measure(ResourceType type, Operation operation, IdStore ids, int concurrency,
+                               long warmupNanos, long durationNanos) throws InterruptedException {
+        if (operation == Operation.DELETE) {
+            throw new IllegalArgumentException("DELETE consumes ids; use delete(...) instead");
+        }
+        long recordFrom = System.nanoTime() + warmupNanos;
+        long deadline = recordFrom + durationNanos;
+        return runPhase(operation.endpoint(type), type, concurrency, warmupNanos, worker -> {
+            while (System.nanoTime() < deadline) {
+                long id = operation.needsId() ? ids.sample(worker.random) : 0;
+                boolean recorded = System.nanoTime() >= recordFrom;
+                if (operation.needsId() && id == 0) {
+                    throw new IllegalStateException("No ids to " + operation + " " + type.path());
+                }
+                perform(recorded ? worker : null, worker, type, operation, id, ids, 0);
+            }
+        });
+    }
+
+    // Open loop: `rate` requests per second started on schedule from startNanos (a System.nanoTime() value, possibly
+    // still ahead) whatever the answers take, on at most `concurrency` workers. Latency counts from the scheduled
+    // start, so a server or a generator that falls behind shows up as latency rather than as fewer requests.
+    // Requests scheduled within the first warmupNanos are not recorded.
+    public PhaseResult pace(ResourceType type, Operation operation, IdStore ids, int concurrency, double rate,
+                            long startNanos, long warmupNanos, long durationNanos) throws InterruptedException {
+        if (operation == Operation.DELETE) {
+            throw new IllegalArgumentException("DELETE consumes ids; use delete(...) instead");
+        }
+        if (rate <= 0) throw new IllegalArgumentException("Rate must be positive: " + rate);
+        double interval = 1e9 / rate;
+        long recordFrom = startNanos + warmupNanos;
+        long deadline = recordFrom + durationNanos;
+        AtomicLong tickets = new AtomicLong();
+        return runPhase(operation.endpoint(type), type, concurrency, recordFrom - System.nanoTime(), worker -> {
+            for (long scheduled; (scheduled = startNanos + Math.round(tickets.getAndIncrement() * interval)) < deadline; ) {
+                for (long wait; (wait = scheduled - System.nanoTime()) > 0; ) {
+                    LockSupport.parkNanos(wait);
+                    if (Thread.interrupted()) throw new InterruptedException();
+                }
+                long id = operation.needsId() ? ids.sample(worker.random) : 0;
+                if (operation.needsId() && id == 0) {
+                    throw new IllegalStateException("No ids to " + operation + " " + type.path());
+                }
+                perform(scheduled >= recordFrom ? worker : null, worker, type, operation, id, ids, scheduled);
+            }
+        });
+    }
+
+    private PhaseResult walk(String phase, ResourceType type, Operation operation, IdStore.Cursor cursor, IdStore ids) throws InterruptedException {
+        return runPhase(phase, type, workers, 0, worker -> {
+            for (int n; (n = cursor.next(worker.batch)) > 0; ) {
+                for (int i = 0; i < n; i++) {
+                    perform(worker, type, operation, worker.batch[i], ids);
+                }
+            }
+        });
+    }
+
+    private void perform(Worker worker, ResourceType type, Operation operation, long id, IdStore ids) throws InterruptedException {
+        perform(worker, worker, type, operation, id, ids, 0);
+    }
+
+    // Sends one request, again on timeouts, connection errors and 5xx while the policy allows it for the method;
+    // counts and times it into `stats` unless that is null (warm-up), from `scheduled` if that is not 0
+    private void perform(Worker stats, Worker worker, ResourceType type, Operation operation, long id, IdStore ids,
+                         long scheduled) throws InterruptedException {
+        RequestTemplate template = templates.get(type).get(operation);
+        ByteBuffer body = operation.hasBody() ? type.payload(worker.filler, worker.random, worker.scratch) : null;
+        HttpRequest request = operation.needsId() ? template.request(id, body) : template.request(body);
+        Metrics.Endpoint endpoint = metered.get(type).get(operation);
+        int attempts = policy.retries(operation.method()) ? 1 + policy.retries() : 1;
+        endpoint.begin();
+        long start = scheduled != 0 ? scheduled : System.nanoTime();
+        boolean failed = true;
+        int status = 0;
+        try {
+            for (int attempt = 0; attempt < attempts; attempt++) {
+                if (attempt > 0) {
+                    if (stats != null) stats.retries++;
+                    endpoint.retried();
+                    TimeUnit.NANOSECONDS.sleep(policy.backoffNanos(attempt, worker.random.nextDouble()));
+                }
+                status = 0;
+                try {
+                    if (operation == Operation.CREATE) {
+                        HttpResponse<String> response = transport.send(request, true);
+                        status = response.statusCode();
+                        long created = response.statusCode() < 300 ? parseId(response.body()) : 0;
+                        if (created > 0) ids.add(created);
+                        failed = created == 0;
+                    } else {
+                        status = transport.send(request, false).statusCode();
+                        failed = status >= 300;
+                    }
+                } catch (HttpTimeoutException e) {
+                    failed = true;
+                    if (stats != null) stats.timeouts++;
+                    endpoint.timedOut();
+                } catch (IOException e) {
+                    // Like the Python harness, a failed request counts as an error and the worker carries on
+                    failed = true;
+                }
+                if (attempt == 0) {
+                    endpoint.firstAttempt(System.nanoTime() - start);
+                } else if (status != 0 && status < 500) {
+                    endpoint.recovered();
+                }
+                if (status != 0 && status < 500) break;
+            }
+        } catch (InterruptedException e) {
+            endpoint.failed(System.nanoTime() - start);
+            throw e;
+        }
+        long nanos = System.nanoTime() - start;
+        if (status == 0) {
+            endpoint.failed(nanos);
+        } else {
+            endpoint.end(status, nanos);
+        }
+        if (stats != null) {
+            stats.samples.record(start, nanos);
+            stats.requests++;
+            if (failed) stats.errors++;
+            ResultsStore.Writer writer = results;
+            if (writer != null) writer.append(names.get(type).get(operation), start, nanos, status);
+        }
+    }
+
+    private PhaseResult runPhase(String phase, ResourceType type, int concurrency, long warmupNanos, Task task) throws InterruptedException {
+        List<Worker> states = new ArrayList<>();
+        for (int i = 0; i < concurrency; i++) {
+            states.add(new Worker(type, seeds.split(), new SampleSeries(Math.max(4096, SAMPLE_LIMIT / concurrency))));
+        }
+        List<Future<?>> futures = new ArrayList<>();
+        long start = System.nanoTime();
+        for (Worker worker : states) {
+            futures.add(pool.submit(() -> {
+                task.run(worker);
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(phase + " phase failed", e.getCause());
+            }
+        }
+        long nanos = System.nanoTime() - start - warmupNanos;
+        long requests = 0;
+        long errors = 0;
+        long retries = 0;
+        long timeouts = 0;
+        List<SampleSeries> samples = new ArrayList<>();
+        for (Worker worker : states) {
+            samples.add(worker.samples);
+            requests += worker.requests;
+            errors += worker.errors;
+            retries += worker.retries;
+            timeouts += worker.timeouts;
+        }
+        SteadyState.Window steady = SampleSeries.merge(samples).steadyState();
+        return new PhaseResult(phase, requests, errors, nanos, steady.latency(), retries, timeouts, steady);
+    }
+
+    // The "id" of a created object without parsing the whole body into a JSONObject; 0 if absent
+    static long parseId(String body) {
+        int key = body.indexOf("\"id\"");
+        if (key < 0) return 0;
+        long id = 0;
+        boolean digits = false;
+        for (int i = body.indexOf(':', key) + 1; i > 0 && i < body.length(); i++) {
+            char c = body.charAt(i);
+            if (c >= '0' && c <= '9') {
+                id = id * 10 + (c - '0');
+                digits = true;
+            } else if (digits || (c != '"' && c != ' ')) {
+                break;
+            }
+        }
+        return id;
+    }
+
+    @Override
+    public void close() {
+        pool.shutdownNow();
+    }
+}
@@ -0,0 +1,159 @@
+package ca.mcgill.story_testing.load;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+
+import ca.mcgill.story_testing.perf.LatencyComparison;
+import ca.mcgill.story_testing.perf.LatencyHistogram;
+import ca.mcgill.story_testing.perf.SampleSeries;
+import ca.mcgill.story_testing.perf.SteadyState;
+import ca.mcgill.story_testing.results.ResultsStore;
+import ca.mcgill.story_testing.server.TodoServer;
+import ca.mcgill.story_testing.stepdefs.SharedTestContext;
+
+// Java version of a3/TestRunner.py: create/update/delete experiments per object type and load level.
+// -Dstory.load.levels=10,100,500,1000 -Dstory.load.types=todos,projects -Dstory.load.workers=1 -Dstory.load.seed=<n>
+// Each experiment's requests are kept in the results store (-Dstory.results.record=false to skip) and compared with
+// the latest earlier run of the same type, level and worker count; -Dstory.server.jar names the jar being measured.
+public class LoadTestRunner {
+    public static final String LEVELS_PROPERTY = "story.load.levels";
+    public static final String TYPES_PROPERTY = "story.load.types";
+    public static final String WORKERS_PROPERTY = "story.load.workers";
+    public static final String SEED_PROPERTY = "story.load.seed";
+    public static final String RECORD_PROPERTY = "story.results.record";
+
+    public static void main(String[] args) throws Exception {
+        String baseUrl = System.getProperty(SharedTestContext.BASE_URL_PROPERTY, "http://localhost:4567");
+        int workers = Integer.getInteger(WORKERS_PROPERTY, 1);
+        long seed = Long.getLong(SEED_PROPERTY, System.nanoTime());
+        boolean record = Boolean.parseBoolean(System.getProperty(RECORD_PROPERTY, "true"));
+        String jar = System.getProperty(TodoServer.JAR_PROPERTY, TodoServer.DEFAULT_JAR);
+
+        System.out.println("==========================================================");
+        System.out.println("      Load Test: create / update / delete phases          ");
+        System.out.println("==========================================================");
+        try {
+            HttpClient.newHttpClient().send(HttpRequest.newBuilder(URI.create(baseUrl + "/todos"))
+                    .timeout(Duration.ofSeconds(2)).build(), HttpResponse.BodyHandlers.discarding());
+            System.out.println("Target API is online at " + baseUrl);
+        } catch (Exception e) {
+            System.out.println("Error: Could not connect to " + baseUrl);
+            System.out.println("   Please ensure the Todo Manager server is running.");
+            System.exit(1);
+        }
+        System.out.println("Workers: " + workers + ", seed: " + seed);
+
+        List<LoadEngine.ExperimentResult> results = new ArrayList<>();
+        try (LoadEngine engine = new LoadEngine(baseUrl, workers, seed);
+             ResultsStore store = record ? ResultsStore.open() : null) {
+            for (ResourceType type : types()) {
+                System.out.println("\n--- Testing Object Type: " + type.label() + " ---");
+                for (int level : levels()) {
+                    ResultsStore.Writer run = store == null ? null
+                            : store.begin(new ResultsStore.RunInfo("loadTest " + type.path(), seed, jar, level, workers));
+                    engine.recordTo(run);
+                    LoadEngine.ExperimentResult result = engine.runExperiment(type, level);
+                    engine.recordTo(null);
+                    print(result);
+                    if (run != null) compare(store, run.commit());
+                    results.add(result);
+                    // Cool-down pause between experiments, as in the Python runner
+                    Thread.sleep(1000);
+                }
+            }
+        }
+
+        System.out.println("\n" + "=".repeat(104));
+        System.out.printf("%-8s | %-8s | %-10s | %-10s | %-10s | %-10s | %-10s | %-10s | %s%n",
+                "Type", "Objects", "Create(s)", "Update(s)", "Delete(s)", "Create/s", "Update/s", "Delete/s", "Errors");
+        System.out.println("-".repeat(104));
+        for (LoadEngine.ExperimentResult r : results) {
+            System.out.printf(Locale.ROOT, "%-8s | %-8d | %-10.4f | %-10.4f | %-10.4f | %-10s | %-10s | %-10s | %d%n",
+                    r.type().label(), r.loadCount(), r.create().seconds(), r.update().seconds(), r.delete().seconds(),
+                    rate(r.create()), rate(r.update()), rate(r.delete()),
+                    r.create().errors() + r.update().errors() + r.delete().errors());
+        }
+        System.out.println("=".repeat(104));
+    }
+
+    private static void print(LoadEngine.ExperimentResult r) {
+        System.out.println("Results for " + r.type().path() + " (" + r.loadCount() + " objects):");
+        for (LoadEngine.PhaseResult phase : List.of(r.create(), r.update(), r.delete())) {
+            System.out.printf(Locale.ROOT, "  [%s] Time: %.4fs | %s req/s | errors: %d | %s%n",
+                    phase.phase(), phase.seconds(), rate(phase), phase.errors(), phase.steady().describe());
+        }
+    }
+
+    // Steady-state throughput, or "-" for a phase that never settled
+    private static String rate(LoadEngine.PhaseResult phase) {
+        return phase.stable() ? String.format(Locale.ROOT, "%.1f", phase.throughput()) : "-";
+    }
+
+    // Median and p99 per endpoint against the latest earlier run with the same kind, level and concurrency, both
+    // without their warm-up (a compacted run only has its full histograms left)
+    private static void compare(ResultsStore store, ResultsStore.Run run) {
+        Optional<ResultsStore.Run> baseline = store.latest(earlier -> earlier.id() < run.id()
+                && earlier.info().kind().equals(run.info().kind()) && earlier.info().level() == run.info().level()
+                && earlier.info().concurrency() == run.info().concurrency());
+        if (baseline.isEmpty()) {
+            System.out.println("  Recorded as run " + run.id() + ", no earlier run to compare with");
+            return;
+        }
+        Map<String, LatencyHistogram> before = steady(store, baseline.get());
+        System.out.println("  Recorded as run " + run.id() + ", compared with run " + baseline.get().id() + " ("
+                + baseline.get().info().jarVersion() + ", " + baseline.get().started() + "):");
+        steady(store, run).forEach((endpoint, now) -> {
+            if (!before.containsKey(endpoint)) return;
+            LatencyHistogram then = before.get(endpoint);
+            if (then == null || now == null) {
+                System.out.printf("    %-24s no steady state in %s, not compared%n", endpoint, now == null ? "this run" : "the baseline");
+                return;
+            }
+            LatencyComparison.MannWhitney test = LatencyComparison.mannWhitney(then, now);
+            System.out.printf(Locale.ROOT, "    %-24s p50 %.2f -> %.2f ms | p99 %.2f -> %.2f ms | P(slower) %.2f%n",
+                    endpoint, then.percentile(50) / 1e6, now.percentile(50) / 1e6,
+                    then.percentile(99) / 1e6, now.percentile(99) / 1e6, test.superiority());
+        });
+    }
+
+    // Steady-state latency per endpoint, null for an endpoint that never settled
+    private static Map<String, LatencyHistogram> steady(ResultsStore store, ResultsStore.Run run) {
+        Map<String, LatencyHistogram> latency = new LinkedHashMap<>();
+        if (run.compacted()) {
+            store.summarize(run).forEach((endpoint, summary) -> latency.put(endpoint, summary.latency()));
+            return latency;
+        }
+        Map<String, SampleSeries> series = new LinkedHashMap<>();
+        store.scan(run, (endpoint, start, nanos, status) -> series.computeIfAbsent(endpoint, k -> new SampleSeries()).record(start, nanos));
+        series.forEach((endpoint, samples) -> {
+            SteadyState.Window window = samples.steadyState();
+            latency.put(endpoint, window.stable() ? window.latency() : null);
+        });
+        return latency;
+    }
+
+    static List<ResourceType> types() {
+        List<ResourceType> types = new ArrayList<>();
+        for (String name : System.getProperty(TYPES_PROPERTY, "todos,projects").split(",")) {
+            types.add(ResourceType.valueOf(name.trim().toUpperCase(Locale.ROOT)));
+        }
+        return types;
+    }
+
+    static List<Integer> levels() {
+        List<Integer> levels = new ArrayList<>();
+        for (String level : System.getProperty(LEVELS_PROPERTY, "10,100,500,1000").split(",")) {
+            levels.add(Integer.parseInt(level.trim()));
+        }
+        return levels;
+    }
+}
@@ -0,0 +1,39 @@
+package ca.mcgill.story_testing.load;
+
+// The requests the load engine issues against a collection; path is appended to the collection path.
+public enum Operation {
+    LIST("GET", ""),
+    READ("GET", "/{id}"),
+    CREATE("POST", ""),
+    UPDATE("PUT", "/{id}"),
+    DELETE("DELETE", "/{id}");
+
+    private final String method;
+    private final String path;
+
+    Operation(String method, String path) {
+        this.method = method;
+        this.path = path;
+    }
+
+    public String method() {
+        return method;
+    }
+
+    public boolean needsId() {
+        return path.contains("{id}");
+    }
+
+    public boolean hasBody() {
+        return this == CREATE || this == UPDATE;
+    }
+
+    // Route template, e.g. "PUT /todos/{id}", matching http.Routes
+    public String endpoint(ResourceType type) {
+        return method + " " + type.path() + path;
+    }
+
+    String path(ResourceType type) {
+        return type.path() + path;
+    }
+}
@@ -0,0 +1,267 @@
+package ca.mcgill.story_testing.load;
+
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import static ca.mcgill.story_testing.load.ScalingTestRunner.round;
+
+import ca.mcgill.story_testing.events.ExchangeLog;
+import ca.mcgill.story_testing.fixtures.CanonicalJson;
+import ca.mcgill.story_testing.perf.ComplexityFit;
+import ca.mcgill.story_testing.perf.LatencyHistogram;
+import ca.mcgill.story_testing.perf.SampleSeries;
+import ca.mcgill.story_testing.perf.SteadyState;
+import ca.mcgill.story_testing.stepdefs.SharedTestContext;
+
+// POSTs and PUTs objects whose title or description is 16 code points to a megabyte or more, in ASCII and in mixed
+// 2-, 3- and 4-byte UTF-8, through SharedTestContext as the scenarios do. Serializing the body (JSONObject.toString),
+// the exchange and parsing the answer are timed apart, and every object is read back to check that the text came
+// through unchanged. Per-request overhead is the lowest median latency of any size, cost per byte the slope of a
+// linear fit over all sizes; their ratio is the payload size from which the bytes cost more than the request itself.
+// Each cell's warm-up is cut off by SteadyState on its exchange latencies; a cell that never settles is left out.
+// -Dstory.payload.sizes=16,256,4096,65536,1048576 (code points) .alphabets=ascii,utf8 .fields=title,description
+// .requests=50 (per method and size; SteadyState needs 50) .warmup=0 (untimed requests before those)
+public class PayloadSizeRunner {
+    public static final Path REPORT = Path.of("build/perf/payload-size.json");
+    private static final String SHORT = "payload";
+
+    record Cell(ResourceType type, String field, String alphabet, int size, String method, long requestBytes,
+                long responseBytes, LatencyHistogram exchange, LatencyHistogram serialize, LatencyHistogram parse,
+                long nanos, long requests, SteadyState.Window steady) {
+        double throughput() {
+            return requests / (nanos / 1e9);
+        }
+
+        double megabytesPerSecond() {
+            return requestBytes * (double) requests / (nanos / 1e9) / 1e6;
+        }
+
+        JSONObject toJson() {
+            if (!steady.stable()) return new JSONObject().put("size", size).put("stable", false).put("reason", steady.reason());
+            return new JSONObject().put("size", size).put("stable", true).put("warmupRequests", steady.warmupSamples()).put("requestBytes", requestBytes).put("responseBytes", responseBytes)
+                    .put("p50Ms", round(exchange.percentile(50) / 1e6)).put("p99Ms", round(exchange.percentile(99) / 1e6))
+                    .put("serializeMs", round(serialize.percentile(50) / 1e6)).put("parseMs", round(parse.percentile(50) / 1e6))
+                    .put("requestsPerSecond", round(throughput())).put("megabytesPerSecond", round(megabytesPerSecond()));
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<Integer> sizes = ScalingTestRunner.ints(System.getProperty("story.payload.sizes", "16,256,4096,65536,1048576"));
+        List<String> alphabets = names(System.getProperty("story.payload.alphabets", "ascii,utf8"), "ascii", "utf8");
+        List<String> fields = names(System.getProperty("story.payload.fields", "title,description"), "title", "description");
+        int requests = Integer.getInteger("story.payload.requests", 50);
+        int warmup = Integer.getInteger("story.payload.warmup", 0);
+        long seed = Long.getLong(LoadTestRunner.SEED_PROPERTY, System.nanoTime());
+        // The exchange log would keep a copy of every megabyte body
+        if (System.getProperty(ExchangeLog.ENABLED_PROPERTY) == null) System.setProperty(ExchangeLog.ENABLED_PROPERTY, "false");
+        sizes.sort(null);
+
+        SharedTestContext context = SharedTestContext.getInstance();
+        SplittableRandom random = new SplittableRandom(seed);
+        List<Cell> cells = new ArrayList<>();
+        long mismatches = 0;
+        System.out.println("=== Payload size: " + context.getBaseUrl() + ", seed " + seed + " ===");
+        for (ResourceType type : LoadTestRunner.types()) {
+            for (String field : fields) {
+                for (String alphabet : alphabets) {
+                    System.out.printf("%n%s %s, %s%n  %-10s | %-6s | %-11s | %-11s | %-9s | %-9s | %-9s | %-9s | %-8s | %s%n",
+                            type.path(), field, alphabet, "Chars", "Method", "Req bytes", "Resp bytes", "p50(ms)", "p99(ms)",
+                            "ser(ms)", "parse(ms)", "req/s", "MB/s");
+                    for (int size : sizes) {
+                        String text = text(random, alphabet, size);
+                        JSONObject fieldsJson = new JSONObject()
+                                .put("title", field.equals("title") ? text : SHORT)
+                                .put("description", field.equals("description") ? text : SHORT);
+                        Measurement post = new Measurement();
+                        Measurement put = new Measurement();
+                        List<String> ids = new ArrayList<>();
+                        for (int i = 0; i < warmup + requests; i++) {
+                            boolean timed = i >= warmup;
+                            JSONObject created = post.send(context, "POST", type.path(), fieldsJson, 201, timed);
+                            String id = created.getString("id");
+                            ids.add(id);
+                            mismatches += check(type, "POST", created, fieldsJson);
+                            mismatches += check(type, "PUT", put.send(context, "PUT", type.path() + "/" + id, fieldsJson, 200, timed), fieldsJson);
+                        }
+                        // Read back once per cell: what the server kept, not just what it echoed
+                        context.sendRequest("GET", type.path() + "/" + ids.get(ids.size() - 1), null);
+                        mismatches += check(type, "GET", new JSONObject(context.getResponse().body())
+                                .getJSONArray(type.path().substring(1)).getJSONObject(0), fieldsJson);
+                        for (String id : ids) context.sendRequest("DELETE", type.path() + "/" + id, null);
+                        for (Cell cell : List.of(post.cell(type, field, alphabet, size, "POST"),
+                                put.cell(type, field, alphabet, size, "PUT"))) {
+                            cells.add(cell);
+                            if (!cell.steady().stable()) {
+                                System.out.printf("  %-10d | %-6s | %s%n", size, cell.method(), cell.steady().describe());
+                                continue;
+                            }
+                            System.out.printf(Locale.ROOT, "  %-10d | %-6s | %-11d | %-11d | %-9.2f | %-9.2f | %-9.3f | %-9.3f | %-8.1f | %.2f%n",
+                                    size, cell.method(), cell.requestBytes(), cell.responseBytes(),
+                                    cell.exchange().percentile(50) / 1e6, cell.exchange().percentile(99) / 1e6,
+                                    cell.serialize().percentile(50) / 1e6, cell.parse().percentile(50) / 1e6,
+                                    cell.throughput(), cell.megabytesPerSecond());
+                        }
+                    }
+                }
+            }
+        }
+
+        System.out.println("\n" + "=".repeat(100));
+        System.out.printf("%-36s | %-6s | %-13s | %-12s | %-10s | %s%n", "Series", "Method", "Overhead(ms)", "us per KB",
+                "Knee", "Client share @ max");
+        System.out.println("-".repeat(100));
+        Map<String, List<Cell>> runs = new LinkedHashMap<>();
+        for (Cell cell : cells) {
+            runs.computeIfAbsent(cell.type().path() + " " + cell.field() + " " + cell.alphabet() + " " + cell.method(),
+                    key -> new ArrayList<>()).add(cell);
+        }
+        JSONArray series = new JSONArray();
+        runs.values().forEach(run -> series.put(summarize(run)));
+        System.out.println("=".repeat(100));
+
+        JSONObject report = new JSONObject().put("baseUrl", context.getBaseUrl()).put("seed", seed)
+                .put("sizes", new JSONArray(sizes)).put("requests", requests).put("warmup", warmup)
+                .put("mismatches", mismatches).put("series", series);
+        Files.createDirectories(REPORT.getParent());
+        Files.writeString(REPORT, CanonicalJson.write(report, true) + "\n", StandardCharsets.UTF_8);
+        System.out.println("Report: " + REPORT.toAbsolutePath());
+        if (mismatches > 0) {
+            System.out.println(mismatches + " objects did not round-trip intact");
+            System.exit(1);
+        }
+        System.out.println("Every title and description round-tripped intact.");
+    }
+
+    // Overhead: lowest p50 of any size (a noisy first size cannot inflate it); cost per byte: slope of p50 against
+    // request bytes; knee: overhead / slope. Only cells that reached a steady state count.
+    private static JSONObject summarize(List<Cell> cells) {
+        Cell first = cells.get(0);
+        String name = first.type().path() + " " + first.field() + " " + first.alphabet();
+        JSONArray points = new JSONArray();
+        cells.forEach(cell -> points.put(cell.toJson()));
+        JSONObject json = new JSONObject().put("type", first.type().path()).put("field", first.field())
+                .put("alphabet", first.alphabet()).put("method", first.method()).put("points", points);
+        List<Cell> run = cells.stream().filter(cell -> cell.steady().stable()).toList();
+        if (run.size() < 2) {
+            System.out.printf("%-36s | %-6s | NO STEADY STATE in %d of %d sizes, not published%n", name, first.method(),
+                    cells.size() - run.size(), cells.size());
+            return json;
+        }
+        Cell last = run.get(run.size() - 1);
+        double[] bytes = run.stream().mapToDouble(Cell::requestBytes).toArray();
+        double[] p50 = run.stream().mapToDouble(cell -> cell.exchange().percentile(50)).toArray();
+        ComplexityFit.Fit linear = ComplexityFit.fitAll(bytes, p50).stream()
+                .filter(fit -> fit.model() == ComplexityFit.Model.LINEAR).findFirst().orElse(null);
+        double overhead = Double.MAX_VALUE;
+        for (double median : p50) overhead = Math.min(overhead, median);
+        double slope = linear == null ? 0 : linear.slope();
+        long knee = slope > 0 ? Math.round(overhead / slope) : -1;
+        double client = last.serialize().percentile(50) + last.parse().percentile(50);
+        double share = client / (client + last.exchange().percentile(50));
+        System.out.printf(Locale.ROOT, "%-36s | %-6s | %-13.3f | %-12.3f | %-10s | %.1f%%%n", name, first.method(),
+                overhead / 1e6, slope * 1024 / 1e3, knee < 0 ? "none" : bytes(knee), share * 100);
+        return json.put("overheadMs", round(overhead / 1e6)).put("nanosPerByte", round(slope)).put("kneeBytes", knee)
+                .put("clientShare", round(share));
+    }
+
+    // Times one request's serialization, exchange and parsing when timed; the cell drops the warm-up SteadyState
+    // finds in the exchange latencies from all three
+    private static final class Measurement {
+        final SampleSeries exchange = new SampleSeries();
+        final List<long[]> client = new ArrayList<>();
+        long requestBytes;
+        long responseBytes;
+
+        JSONObject send(SharedTestContext context, String method, String endpoint, JSONObject fields, int expected,
+                        boolean timed) throws Exception {
+            long start = System.nanoTime();
+            String body = new JSONObject().put("title", fields.get("title")).put("description", fields.get("description")).toString();
+            long serialized = System.nanoTime();
+            HttpResponse<String> response = context.sendRequest(method, endpoint, body);
+            long exchanged = System.nanoTime();
+            if (response.statusCode() != expected) {
+                throw new IllegalStateException(method + " " + endpoint + " answered " + response.statusCode() + ": "
+                        + response.body().substring(0, Math.min(200, response.body().length())));
+            }
+            JSONObject parsed = new JSONObject(response.body());
+            long end = System.nanoTime();
+            if (timed) {
+                exchange.record(serialized, context.getLastRequestNanos());
+                client.add(new long[] {serialized - start, end - exchanged, end - start});
+                requestBytes = body.getBytes(StandardCharsets.UTF_8).length;
+                responseBytes = response.body().getBytes(StandardCharsets.UTF_8).length;
+            }
+            return parsed;
+        }
+
+        Cell cell(ResourceType type, String field, String alphabet, int size, String method) {
+            SteadyState.Window steady = exchange.steadyState();
+            LatencyHistogram serialize = new LatencyHistogram();
+            LatencyHistogram parse = new LatencyHistogram();
+            long nanos = 0;
+            for (int i = (int) steady.warmupSamples(); i < client.size(); i++) {
+                serialize.record(client.get(i)[0]);
+                parse.record(client.get(i)[1]);
+                nanos += client.get(i)[2];
+            }
+            return new Cell(type, field, alphabet, size, method, requestBytes, responseBytes, steady.latency(), serialize,
+                    parse, nanos, steady.samples(), steady);
+        }
+    }
+
+    private static long check(ResourceType type, String method, JSONObject object, JSONObject fields) {
+        long wrong = 0;
+        for (String field : List.of("title", "description")) {
+            String sent = fields.getString(field);
+            String stored = object.optString(field, null);
+            if (!sent.equals(stored)) {
+                wrong++;
+                System.out.println("  MISMATCH after " + method + " " + type.path() + "/" + object.optString("id") + " " + field
+                        + ": sent " + sent.length() + " chars, got " + (stored == null ? "nothing" : stored.length() + " chars"));
+            }
+        }
+        return wrong;
+    }
+
+    // size code points of letters (ascii) or of a mix of 1-, 2-, 3- and 4-byte UTF-8 characters (utf8)
+    static String text(SplittableRandom random, String alphabet, int size) {
+        StringBuilder text = new StringBuilder(size * 2);
+        for (int i = 0; i < size; i++) {
+            int codePoint = switch (alphabet.equals("utf8") ? random.nextInt(4) : 0) {
+                case 0 -> random.nextBoolean() ? 'a' + random.nextInt(26) : 'A' + random.nextInt(26);
+                case 1 -> 0x00C0 + random.nextInt(0x40);
+                case 2 -> 0x4E00 + random.nextInt(0x5200);
+                default -> 0x1F600 + random.nextInt(0x50);
+            };
+            text.appendCodePoint(codePoint);
+        }
+        return text.toString();
+    }
+
+    private static List<String> names(String csv, String... allowed) {
+        List<String> names = new ArrayList<>();
+        for (String name : csv.split(",")) {
+            if (!List.of(allowed).contains(name.trim())) {
+                throw new IllegalArgumentException("Unknown value " + name + ", expected one of " + List.of(allowed));
+            }
+            names.add(name.trim());
+        }
+        return names;
+    }
+
+    private static String bytes(long bytes) {
+        if (bytes >= 1 << 20) return String.format(Locale.ROOT, "%.1f MB", bytes / (double) (1 << 20));
+        if (bytes >= 1 << 10) return String.format(Locale.ROOT, "%.1f KB", bytes / (double) (1 << 10));
+        return bytes + " B";
+    }
+}
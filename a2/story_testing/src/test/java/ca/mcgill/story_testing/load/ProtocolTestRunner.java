@@ -0,0 +1,295 @@
+package ca.mcgill.story_testing.load;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import ca.mcgill.story_testing.fixtures.CanonicalJson;
+import ca.mcgill.story_testing.http.JdkHttpTransport;
+import ca.mcgill.story_testing.http.PipelinedHttpTransport;
+import ca.mcgill.story_testing.http.RequestPolicy;
+import ca.mcgill.story_testing.http.TemplateTransport;
+import ca.mcgill.story_testing.metrics.SocketStats;
+import ca.mcgill.story_testing.perf.LatencyHistogram;
+import ca.mcgill.story_testing.stepdefs.SharedTestContext;
+
+// The same create/read/update/delete workload with different connection handling: HTTP/1.1 with a new connection per
+// request (what a3's Python requests calls do), HTTP/1.1 over the JDK client's pool, HTTP/2, and HTTP/1.1 pipelined
+// over a few connections by http.PipelinedHttpTransport (-Dstory.http.pipelined.connections/.depth). The JDK client has
+// no prior-knowledge mode for cleartext HTTP/2, so h2 asks for an h2c upgrade and the version the server agreed to is
+// reported; whether the server would accept prior knowledge is probed separately with a raw connection preface.
+// -Dstory.protocol.modes=h1-pooled,h2,nio-pipelined,h1-close -Dstory.protocol.count=500 -Dstory.protocol.concurrency=8
+// -Dstory.protocol.warmup=200 (objects per type, run untimed first so that no mode pays for JIT compilation)
+public class ProtocolTestRunner {
+    public static final Path REPORT = Path.of("build/perf/protocols.json");
+    public static final String MODES_PROPERTY = "story.protocol.modes";
+    // h1-close last, so that its TIME_WAIT sockets do not linger into the other modes
+    private static final String DEFAULT_MODES = "h1-pooled,h2,nio-pipelined,h1-close";
+    private static final long SOCKET_SAMPLE_MILLIS = 50;
+
+    enum Mode {
+        H1_CLOSE("h1-close", HttpClient.Version.HTTP_1_1, false),
+        H1_POOLED("h1-pooled", HttpClient.Version.HTTP_1_1, true),
+        H2("h2", HttpClient.Version.HTTP_2, true),
+        NIO_PIPELINED("nio-pipelined", HttpClient.Version.HTTP_1_1, true);
+
+        final String label;
+        final HttpClient.Version version;
+        final boolean keepAlive;
+
+        Mode(String label, HttpClient.Version version, boolean keepAlive) {
+            this.label = label;
+            this.version = version;
+            this.keepAlive = keepAlive;
+        }
+
+        static Mode parse(String label) {
+            for (Mode mode : values()) {
+                if (mode.label.equalsIgnoreCase(label.trim())) return mode;
+            }
+            throw new IllegalArgumentException("Unknown protocol mode '" + label
+                    + "', expected h1-close, h1-pooled, h2 or nio-pipelined");
+        }
+
+        TemplateTransport transport(String baseUrl) {
+            return this == NIO_PIPELINED ? new PipelinedHttpTransport(baseUrl, RequestPolicy.NONE)
+                    : JdkHttpTransport.create(baseUrl, RequestPolicy.NONE, version, keepAlive);
+        }
+    }
+
+    // socketsOpened: connections the host opened during the run; peakOpen: most client sockets to the server at once,
+    // beyond those already open before (JDK clients keep idle connections of earlier modes in their pools). Throughput
+    // and latency cover the steady part of the phases that reached one; the others are counted but not published.
+    record Run(Mode mode, String negotiated, List<LoadEngine.PhaseResult> phases, long socketsOpened, int peakOpen,
+               int timeWait) {
+        long requests() {
+            return phases.stream().mapToLong(LoadEngine.PhaseResult::requests).sum();
+        }
+
+        long errors() {
+            return phases.stream().mapToLong(LoadEngine.PhaseResult::errors).sum();
+        }
+
+        long stable() {
+            return phases.stream().filter(LoadEngine.PhaseResult::stable).count();
+        }
+
+        double throughput() {
+            long samples = 0;
+            long nanos = 0;
+            for (LoadEngine.PhaseResult phase : phases) {
+                if (!phase.stable()) continue;
+                samples += phase.steady().samples();
+                nanos += phase.steady().nanos();
+            }
+            return nanos == 0 ? 0 : samples / (nanos / 1e9);
+        }
+
+        LatencyHistogram latency() {
+            LatencyHistogram all = new LatencyHistogram();
+            phases.stream().filter(LoadEngine.PhaseResult::stable).forEach(phase -> all.merge(phase.latency()));
+            return all;
+        }
+
+        JSONObject toJson() {
+            JSONArray phaseJson = new JSONArray();
+            for (LoadEngine.PhaseResult phase : phases) {
+                JSONObject json = new JSONObject().put("phase", phase.phase()).put("requests", phase.requests())
+                        .put("errors", phase.errors()).put("stable", phase.stable())
+                        .put("warmupRequests", phase.steady().warmupSamples());
+                phaseJson.put(phase.stable()
+                        ? json.put("throughput", phase.throughput()).put("latency", phase.latency().toJson())
+                        : json.put("reason", phase.steady().reason()));
+            }
+            return new JSONObject()
+                    .put("mode", mode.label)
+                    .put("negotiated", negotiated)
+                    .put("requests", requests())
+                    .put("errors", errors())
+                    .put("stablePhases", stable())
+                    .put("throughput", throughput())
+                    .put("socketsOpened", socketsOpened)
+                    .put("peakOpen", peakOpen)
+                    .put("timeWait", timeWait)
+                    .put("latency", latency().toJson())
+                    .put("phases", phaseJson);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        // Read once when the JDK client is first used, so it has to be set before anything builds one
+        if (System.getProperty(JdkHttpTransport.RESTRICTED_HEADERS_PROPERTY) == null) {
+            System.setProperty(JdkHttpTransport.RESTRICTED_HEADERS_PROPERTY, "connection");
+        }
+        String baseUrl = System.getProperty(SharedTestContext.BASE_URL_PROPERTY, "http://localhost:4567");
+        URI uri = URI.create(baseUrl);
+        List<Mode> modes = new ArrayList<>();
+        for (String label : System.getProperty(MODES_PROPERTY, DEFAULT_MODES).split(",")) {
+            modes.add(Mode.parse(label));
+        }
+        int count = Integer.getInteger("story.protocol.count", 500);
+        int concurrency = Integer.getInteger("story.protocol.concurrency", 8);
+        int warmup = Integer.getInteger("story.protocol.warmup", 200);
+        long seed = Long.getLong(LoadTestRunner.SEED_PROPERTY, System.nanoTime());
+
+        String priorKnowledge = priorKnowledge(uri.getHost(), uri.getPort());
+        System.out.println("=== Connection reuse and protocol ===");
+        System.out.println("HTTP/2 with prior knowledge: " + priorKnowledge);
+        System.out.println(count + " objects per type, " + concurrency + " workers, seed " + seed);
+
+        if (warmup > 0) {
+            try (LoadEngine engine = new LoadEngine(baseUrl, concurrency, seed)) {
+                for (ResourceType type : LoadTestRunner.types()) {
+                    crud(engine, type, warmup);
+                }
+            }
+        }
+        List<Run> runs = new ArrayList<>();
+        for (Mode mode : modes) {
+            TemplateTransport transport = mode.transport(baseUrl);
+            String negotiated = negotiate(transport);
+            try (LoadEngine engine = new LoadEngine(transport, concurrency, seed);
+                 SocketSampler sockets = new SocketSampler(uri.getPort())) {
+                List<LoadEngine.PhaseResult> phases = new ArrayList<>();
+                for (ResourceType type : LoadTestRunner.types()) {
+                    phases.addAll(crud(engine, type, count));
+                }
+                SocketStats.Snapshot end = SocketStats.sample(uri.getPort());
+                Run run = new Run(mode, negotiated, phases, end.activeOpens() - sockets.start.activeOpens(),
+                        sockets.peak(), Math.max(0, end.timeWait() - sockets.start.timeWait()));
+                runs.add(run);
+                System.out.printf(Locale.ROOT, "  %-13s (%s): %.1f req/s, %d sockets opened, %d of %d phases steady%n",
+                        mode.label, negotiated, run.throughput(), run.socketsOpened(), run.stable(), phases.size());
+            } finally {
+                if (transport instanceof AutoCloseable closeable) closeable.close();
+            }
+        }
+
+        System.out.println("\n" + "=".repeat(122));
+        System.out.printf("%-13s | %-10s | %-9s | %-8s | %-8s | %-8s | %-6s | %-14s | %-9s | %s%n", "Mode", "Protocol",
+                "req/s", "p50 ms", "p99 ms", "max ms", "errors", "sockets opened", "peak open", "TIME_WAIT");
+        System.out.println("-".repeat(122));
+        JSONArray report = new JSONArray();
+        for (Run run : runs) {
+            report.put(run.toJson());
+            if (run.stable() == 0) {
+                System.out.printf("%-13s | %-10s | NO STEADY STATE in any phase, not published%n", run.mode().label,
+                        run.negotiated());
+                continue;
+            }
+            LatencyHistogram latency = run.latency();
+            System.out.printf(Locale.ROOT, "%-13s | %-10s | %-9.1f | %-8.2f | %-8.2f | %-8.2f | %-6d | %-14d | %-9d | %d%n",
+                    run.mode().label, run.negotiated(), run.throughput(), latency.percentile(50) / 1e6,
+                    latency.percentile(99) / 1e6, latency.max() / 1e6, run.errors(), run.socketsOpened(),
+                    run.peakOpen(), run.timeWait());
+        }
+        System.out.println("=".repeat(122));
+        for (Run run : runs) {
+            System.out.println(run.mode().label + ":");
+            for (LoadEngine.PhaseResult phase : run.phases()) {
+                if (!phase.stable()) {
+                    System.out.printf("  %-18s %s%n", phase.phase(), phase.steady().describe());
+                    continue;
+                }
+                System.out.printf(Locale.ROOT, "  %-18s %9.1f req/s | p50 %7.2f ms | p99 %7.2f ms | errors: %d%n",
+                        phase.phase(), phase.throughput(), phase.latency().percentile(50) / 1e6,
+                        phase.latency().percentile(99) / 1e6, phase.errors());
+            }
+        }
+        Files.createDirectories(REPORT.getParent());
+        Files.writeString(REPORT, CanonicalJson.write(new JSONObject().put("baseUrl", baseUrl)
+                .put("priorKnowledge", priorKnowledge).put("objects", count).put("concurrency", concurrency)
+                .put("runs", report), true) + "\n", StandardCharsets.UTF_8);
+        System.out.println("Report: " + REPORT.toAbsolutePath());
+    }
+
+    private static List<LoadEngine.PhaseResult> crud(LoadEngine engine, ResourceType type, int count) throws InterruptedException {
+        IdStore ids = new IdStore();
+        return List.of(label(type, engine.create(type, count, ids)), label(type, engine.read(type, ids)),
+                label(type, engine.update(type, ids)), label(type, engine.delete(type, ids)));
+    }
+
+    private static LoadEngine.PhaseResult label(ResourceType type, LoadEngine.PhaseResult phase) {
+        return phase.named(phase.phase() + " " + type.path());
+    }
+
+    // One request before the measurement, so that an h2c upgrade is settled and its version can be reported
+    private static String negotiate(TemplateTransport transport) throws IOException, InterruptedException {
+        HttpRequest probe = HttpRequest.newBuilder(URI.create(transport.baseUrl() + "/todos")).build();
+        HttpClient.Version version = transport.send(probe, false).version();
+        return version == HttpClient.Version.HTTP_2 ? "HTTP/2" : "HTTP/1.1";
+    }
+
+    // Sends the HTTP/2 connection preface and an empty SETTINGS frame; an HTTP/2 server answers with its own SETTINGS
+    static String priorKnowledge(String host, int port) {
+        byte[] preface = "PRI * HTTP/2.0\r\n\r\nSM\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+        byte[] settings = {0, 0, 0, 4, 0, 0, 0, 0, 0};
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(host, port), 2000);
+            socket.setSoTimeout(2000);
+            OutputStream out = socket.getOutputStream();
+            out.write(preface);
+            out.write(settings);
+            out.flush();
+            InputStream in = socket.getInputStream();
+            byte[] header = in.readNBytes(9);
+            if (header.length == 9 && header[3] == 4) return "supported";
+            String answer = new String(header, StandardCharsets.US_ASCII);
+            return answer.startsWith("HTTP/") ? "not supported (HTTP/1.1 answer)" : "not supported";
+        } catch (IOException e) {
+            return "not supported (" + e.getClass().getSimpleName() + ")";
+        }
+    }
+
+    // Highest number of client sockets to the server seen while the mode ran
+    private static final class SocketSampler implements AutoCloseable {
+        final SocketStats.Snapshot start;
+        private final Thread thread;
+        private volatile int peak;
+
+        SocketSampler(int port) {
+            this.start = SocketStats.sample(port);
+            this.peak = start.established();
+            this.thread = new Thread(() -> {
+                while (!Thread.currentThread().isInterrupted()) {
+                    peak = Math.max(peak, SocketStats.sample(port).established());
+                    try {
+                        Thread.sleep(SOCKET_SAMPLE_MILLIS);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }, "socket-sampler");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        int peak() {
+            return Math.max(0, peak - start.established());
+        }
+
+        @Override
+        public void close() {
+            thread.interrupt();
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
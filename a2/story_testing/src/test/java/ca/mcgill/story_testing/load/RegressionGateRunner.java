@@ -0,0 +1,214 @@
+package ca.mcgill.story_testing.load;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import ca.mcgill.story_testing.faults.FaultProxy;
+import ca.mcgill.story_testing.faults.FaultRule;
+import ca.mcgill.story_testing.fixtures.CanonicalJson;
+import ca.mcgill.story_testing.perf.LatencyComparison;
+import ca.mcgill.story_testing.perf.LatencyHistogram;
+import ca.mcgill.story_testing.server.TodoServer;
+
+// Runs the same workload against a baseline and a candidate Todo Manager jar, each started on its own port, and
+// compares every endpoint's latency distribution. Rounds interleave the two servers endpoint by endpoint and swap who
+// goes first, so drift on the machine hits both alike; each fork restarts both servers, because one JVM can settle
+// faster than another running the very same jar. An endpoint regresses when its median grew by more than the
+// threshold and a bootstrap over the forks and paired rounds says the candidate is slower (p < alpha split evenly across the
+// endpoints, so an A/A run fails with probability alpha at most, not once per endpoint); Mann-Whitney's
+// P(candidate slower) is reported as the effect size. Any regression exits with status 1, which fails
+// `gradle regressionGate`. So does an endpoint with a window that never reached a steady state: it cannot be judged
+// and its numbers are not published; a longer window usually settles it.
+// -Dstory.regression.baseline=../runTodoManagerRestAPI-1.5.5.jar -Dstory.regression.candidate=<jar> (default: the
+// baseline again, an A/A run that should pass) -Dstory.regression.forks=4 .rounds=3 (per fork) .window=1000 (ms per endpoint and round)
+// .warmup=300 .concurrency=4 .operations=LIST,READ,CREATE,UPDATE .seedObjects=100 .threshold=0.10 .alpha=0.05
+// .ports=4700,4701 .resamples=1000
+// -Dstory.regression.candidateFaults="GET /todos: latency=fixed:5" puts a FaultProxy in front of the candidate, to see
+// the gate catch a known slowdown
+public class RegressionGateRunner {
+    public static final Path REPORT = Path.of("build/perf/regression.json");
+    private static final double CONFIDENCE = 0.95;
+
+    record Verdict(String endpoint, LatencyHistogram baseline, LatencyHistogram candidate, long baselineErrors,
+                   long candidateErrors, long unstable, LatencyComparison.MannWhitney test,
+                   LatencyComparison.Interval ratio, boolean regressed) {
+        JSONObject toJson() {
+            JSONObject json = new JSONObject().put("endpoint", endpoint).put("unstableWindows", unstable);
+            if (unstable > 0) return json;
+            return json
+                    .put("regressed", regressed)
+                    .put("medianRatio", ratio.estimate())
+                    .put("medianRatioLower", ratio.lower())
+                    .put("medianRatioUpper", ratio.upper())
+                    .put("pSlower", ratio.pSlower())
+                    .put("superiority", test.superiority())
+                    .put("baselineErrors", baselineErrors)
+                    .put("candidateErrors", candidateErrors)
+                    .put("baseline", baseline.toJson())
+                    .put("candidate", candidate.toJson());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path baselineJar = Path.of(System.getProperty("story.regression.baseline", TodoServer.DEFAULT_JAR));
+        Path candidateJar = Path.of(System.getProperty("story.regression.candidate", baselineJar.toString()));
+        int forks = Integer.getInteger("story.regression.forks", 4);
+        int rounds = Integer.getInteger("story.regression.rounds", 3);
+        long window = Long.getLong("story.regression.window", 1000) * 1_000_000;
+        long warmup = Long.getLong("story.regression.warmup", 300) * 1_000_000;
+        int concurrency = Integer.getInteger("story.regression.concurrency", 4);
+        int seedObjects = Integer.getInteger("story.regression.seedObjects", 100);
+        double threshold = Double.parseDouble(System.getProperty("story.regression.threshold", "0.10"));
+        double alpha = Double.parseDouble(System.getProperty("story.regression.alpha", "0.05"));
+        int resamples = Integer.getInteger("story.regression.resamples", 1000);
+        String[] ports = System.getProperty("story.regression.ports", "4700,4701").split(",");
+        long seed = Long.getLong(LoadTestRunner.SEED_PROPERTY, System.nanoTime());
+        List<Operation> operations = new ArrayList<>();
+        for (String name : System.getProperty("story.regression.operations", "LIST,READ,CREATE,UPDATE").split(",")) {
+            Operation operation = Operation.valueOf(name.trim().toUpperCase(Locale.ROOT));
+            if (operation == Operation.DELETE) throw new IllegalArgumentException("DELETE cannot be measured in rounds");
+            operations.add(operation);
+        }
+
+        System.out.println("=== Performance regression gate ===");
+        System.out.println("Baseline:  " + baselineJar);
+        System.out.println("Candidate: " + candidateJar);
+        System.out.printf(Locale.ROOT, "%d forks x %d rounds x %d ms per endpoint, %d workers, regression: median +%.0f%% at p < %s%n",
+                forks, rounds, window / 1_000_000, concurrency, threshold * 100, alpha);
+
+        // [0] baseline, [1] candidate: per fork, one histogram per round
+        Map<String, List<List<List<LatencyHistogram>>>> latency = new LinkedHashMap<>();
+        Map<String, long[]> errors = new LinkedHashMap<>();
+        Map<String, long[]> unstable = new LinkedHashMap<>();
+        String candidateFaults = System.getProperty("story.regression.candidateFaults", "");
+        for (int fork = 0; fork < forks; fork++) {
+            measureFork(fork, baselineJar, candidateJar, ports, candidateFaults, seed + fork, operations, rounds,
+                    concurrency, seedObjects, warmup, window, latency, errors, unstable);
+            System.out.println("  fork " + (fork + 1) + " of " + forks + " done");
+        }
+
+        SplittableRandom random = new SplittableRandom(seed);
+        double endpointAlpha = alpha / latency.size();
+        List<Verdict> verdicts = new ArrayList<>();
+        for (Map.Entry<String, List<List<List<LatencyHistogram>>>> entry : latency.entrySet()) {
+            List<List<LatencyHistogram>> baselineForks = entry.getValue().get(0);
+            List<List<LatencyHistogram>> candidateForks = entry.getValue().get(1);
+            LatencyHistogram a = new LatencyHistogram();
+            LatencyHistogram b = new LatencyHistogram();
+            baselineForks.forEach(fork -> fork.forEach(a::merge));
+            candidateForks.forEach(fork -> fork.forEach(b::merge));
+            LatencyComparison.MannWhitney test = LatencyComparison.mannWhitney(a, b);
+            LatencyComparison.Interval ratio = LatencyComparison.medianRatio(baselineForks, candidateForks, resamples,
+                    CONFIDENCE, random);
+            boolean regressed = ratio.pSlower() < endpointAlpha && ratio.estimate() > 1 + threshold;
+            long[] failed = errors.get(entry.getKey());
+            long[] unsettled = unstable.get(entry.getKey());
+            verdicts.add(new Verdict(entry.getKey(), a, b, failed[0], failed[1], unsettled[0] + unsettled[1], test, ratio,
+                    regressed));
+        }
+
+        System.out.println("\n" + "=".repeat(124));
+        System.out.printf("%-22s | %-9s | %-9s | %-22s | %-9s | %-9s | %-9s | %-13s | %s%n", "Endpoint", "base p50",
+                "cand p50", "median ratio (95% CI)", "P(slower)", "p-value", "cand p99", "errors (b/c)", "verdict");
+        System.out.println("-".repeat(124));
+        JSONArray report = new JSONArray();
+        List<String> regressions = new ArrayList<>();
+        List<String> unjudged = new ArrayList<>();
+        for (Verdict v : verdicts) {
+            report.put(v.toJson());
+            if (v.unstable() > 0) {
+                System.out.printf("%-22s | NO STEADY STATE in %d of %d windows, not published%n", v.endpoint(),
+                        v.unstable(), 2L * forks * rounds);
+                unjudged.add(v.endpoint());
+                continue;
+            }
+            System.out.printf(Locale.ROOT, "%-22s | %-9.2f | %-9.2f | %-22s | %-9.3f | %-9.2g | %-9.2f | %-13s | %s%n",
+                    v.endpoint(), v.baseline().percentile(50) / 1e6, v.candidate().percentile(50) / 1e6,
+                    String.format(Locale.ROOT, "%.3f [%.3f, %.3f]", v.ratio().estimate(), v.ratio().lower(), v.ratio().upper()),
+                    v.test().superiority(), v.ratio().pSlower(), v.candidate().percentile(99) / 1e6,
+                    v.baselineErrors() + "/" + v.candidateErrors(), v.regressed() ? "REGRESSED" : "ok");
+            if (v.regressed()) regressions.add(v.endpoint());
+        }
+        System.out.println("=".repeat(124));
+        Files.createDirectories(REPORT.getParent());
+        Files.writeString(REPORT, CanonicalJson.write(new JSONObject()
+                .put("baseline", baselineJar.toString()).put("candidate", candidateJar.toString())
+                .put("forks", forks).put("rounds", rounds).put("threshold", threshold).put("alpha", alpha)
+                .put("regressions", new JSONArray(regressions)).put("unjudged", new JSONArray(unjudged))
+                .put("endpoints", report), true) + "\n", StandardCharsets.UTF_8);
+        System.out.println("Report: " + REPORT.toAbsolutePath());
+        if (!regressions.isEmpty()) {
+            System.out.println("Performance regression in " + String.join(", ", regressions));
+            System.exit(1);
+        }
+        if (!unjudged.isEmpty()) {
+            System.out.println("No steady state for " + String.join(", ", unjudged) + "; rerun with a longer window");
+            System.exit(1);
+        }
+        System.out.println("No endpoint regressed.");
+    }
+
+    private static void measureFork(int fork, Path baselineJar, Path candidateJar, String[] ports, String candidateFaults,
+                                    long seed, List<Operation> operations, int rounds, int concurrency, int seedObjects,
+                                    long warmup, long window, Map<String, List<List<List<LatencyHistogram>>>> latency,
+                                    Map<String, long[]> errors, Map<String, long[]> unstable) throws IOException, InterruptedException {
+        try (TodoServer baseline = TodoServer.start(baselineJar, Integer.parseInt(ports[0].trim()));
+             TodoServer candidate = TodoServer.start(candidateJar, Integer.parseInt(ports[1].trim()));
+             FaultProxy proxy = FaultProxy.start(candidate.baseUrl(), seed);
+             LoadEngine baselineEngine = new LoadEngine(baseline.baseUrl(), concurrency, seed);
+             LoadEngine candidateEngine = new LoadEngine(candidateFaults.isBlank() ? candidate.baseUrl() : proxy.baseUrl(),
+                     concurrency, seed)) {
+            if (!candidateFaults.isBlank()) {
+                FaultRule.parseAll(candidateFaults).forEach(proxy::add);
+                if (fork == 0) System.out.println("Candidate faults: " + candidateFaults);
+            }
+            LoadEngine[] engines = {baselineEngine, candidateEngine};
+            List<ResourceType> types = LoadTestRunner.types();
+            IdStore[][] ids = new IdStore[2][types.size()];
+            for (int side = 0; side < 2; side++) {
+                for (int t = 0; t < types.size(); t++) {
+                    ids[side][t] = new IdStore();
+                    engines[side].create(types.get(t), seedObjects, ids[side][t]);
+                }
+            }
+            for (int round = 0; round < rounds; round++) {
+                for (int t = 0; t < types.size(); t++) {
+                    for (Operation operation : operations) {
+                        String endpoint = operation.endpoint(types.get(t));
+                        List<List<List<LatencyHistogram>>> sides = latency.computeIfAbsent(endpoint,
+                                key -> List.of(new ArrayList<>(), new ArrayList<>()));
+                        for (List<List<LatencyHistogram>> side : sides) {
+                            if (side.size() == fork) side.add(new ArrayList<>());
+                        }
+                        long[] failed = errors.computeIfAbsent(endpoint, key -> new long[2]);
+                        long[] unsettled = unstable.computeIfAbsent(endpoint, key -> new long[2]);
+                        for (int k = 0; k < 2; k++) {
+                            // forks start on alternating sides too, so an odd number of rounds still balances out
+                            int side = (fork + round + k) % 2;
+                            // CREATE adds as many objects as the side manages in the window; they go again right away,
+                            // so that a faster side does not go on to LIST and READ a larger collection
+                            IdStore target = operation == Operation.CREATE ? new IdStore() : ids[side][t];
+                            LoadEngine.PhaseResult result = engines[side].measure(types.get(t), operation, target,
+                                    concurrency, warmup, window);
+                            if (operation == Operation.CREATE) engines[side].delete(types.get(t), target);
+                            sides.get(side).get(fork).add(result.latency());
+                            failed[side] += result.errors();
+                            if (!result.stable()) unsettled[side]++;
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
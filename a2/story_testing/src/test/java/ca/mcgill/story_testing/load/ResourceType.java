@@ -0,0 +1,78 @@
+package ca.mcgill.story_testing.load;
+
+import java.nio.ByteBuffer;
+import java.util.SplittableRandom;
+
+import ca.mcgill.story_testing.http.JsonTemplate;
+
+// The collections exercised by the load engine and their random payloads, as in a3's TodoTester and ProjectTester.
+public enum ResourceType {
+    TODOS("Todo", "/todos", "{\"title\":${title},\"description\":${description},\"doneStatus\":${doneStatus}}") {
+        @Override
+        ByteBuffer payload(JsonTemplate.Filler filler, SplittableRandom random, StringBuilder scratch) {
+            return filler.start()
+                    .string(letters(scratch, random, 10, LETTERS))
+                    .string(letters(scratch, random, 20, LOWERCASE))
+                    .bool(random.nextBoolean())
+                    .finish();
+        }
+    },
+    PROJECTS("Project", "/projects", "{\"title\":${title},\"completed\":${completed},\"active\":true,\"description\":\"Project test description\"}") {
+        @Override
+        ByteBuffer payload(JsonTemplate.Filler filler, SplittableRandom random, StringBuilder scratch) {
+            scratch.setLength(0);
+            scratch.append("Proj-");
+            appendLetters(scratch, random, 8, LETTERS);
+            return filler.start().string(scratch).bool(random.nextBoolean()).finish();
+        }
+    },
+    CATEGORIES("Category", "/categories", "{\"title\":${title},\"description\":${description}}") {
+        @Override
+        ByteBuffer payload(JsonTemplate.Filler filler, SplittableRandom random, StringBuilder scratch) {
+            return filler.start()
+                    .string(letters(scratch, random, 10, LETTERS))
+                    .string(letters(scratch, random, 20, LOWERCASE))
+                    .finish();
+        }
+    };
+
+    private static final String LETTERS = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ";
+    private static final String LOWERCASE = "abcdefghijklmnopqrstuvwxyz";
+
+    private final String label;
+    private final String path;
+    private final JsonTemplate template;
+
+    ResourceType(String label, String path, String body) {
+        this.label = label;
+        this.path = path;
+        this.template = JsonTemplate.compile(body);
+    }
+
+    public String label() {
+        return label;
+    }
+
+    public String path() {
+        return path;
+    }
+
+    public JsonTemplate template() {
+        return template;
+    }
+
+    // Writes a fresh random body into the filler's buffer; scratch is reused for the random strings
+    abstract ByteBuffer payload(JsonTemplate.Filler filler, SplittableRandom random, StringBuilder scratch);
+
+    private static StringBuilder letters(StringBuilder scratch, SplittableRandom random, int length, String alphabet) {
+        scratch.setLength(0);
+        appendLetters(scratch, random, length, alphabet);
+        return scratch;
+    }
+
+    private static void appendLetters(StringBuilder scratch, SplittableRandom random, int length, String alphabet) {
+        for (int i = 0; i < length; i++) {
+            scratch.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package ca.mcgill.story_testing.load;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// Self-contained HTML page with one inline SVG chart per endpoint: trial means against collection size (log x),
+// one colour per concurrency, with the selected fit drawn dashed. No scripts or external resources.
+final class ScalingReport {
+    private static final String[] COLORS = {"#1f77b4", "#d62728", "#2ca02c", "#9467bd", "#ff7f0e", "#8c564b"};
+    private static final int WIDTH = 520;
+    private static final int HEIGHT = 300;
+    private static final int LEFT = 60;
+    private static final int RIGHT = 20;
+    private static final int TOP = 40;
+    private static final int BOTTOM = 45;
+
+    private ScalingReport() {
+    }
+
+    static String html(List<ScalingTestRunner.Series> series, List<Integer> sizes) {
+        Map<String, List<ScalingTestRunner.Series>> byEndpoint = new LinkedHashMap<>();
+        for (ScalingTestRunner.Series s : series) {
+            byEndpoint.computeIfAbsent(s.endpoint(), endpoint -> new ArrayList<>()).add(s);
+        }
+        StringBuilder html = new StringBuilder();
+        html.append("<!DOCTYPE html>\n<html><head><meta charset=\"utf-8\"><title>Scaling curves</title>\n")
+                .append("<style>body{font-family:sans-serif;margin:20px}figure{display:inline-block;margin:8px;")
+                .append("border:1px solid #ddd;padding:4px}.grows{color:#d62728;font-weight:bold}")
+                .append("text{font-size:11px}</style></head><body>\n<h1>Per-request cost vs collection size</h1>\n")
+                .append("<p>Mean latency per trial (dots) and best fit (dashed) per concurrency. Flagged endpoints get ")
+                .append("more expensive per request as the collection grows.</p>\n");
+        for (Map.Entry<String, List<ScalingTestRunner.Series>> entry : byEndpoint.entrySet()) {
+            html.append(chart(entry.getKey(), entry.getValue(), sizes));
+        }
+        return html.append("</body></html>\n").toString();
+    }
+
+    private static String chart(String endpoint, List<ScalingTestRunner.Series> series, List<Integer> sizes) {
+        double minX = Math.log10(Math.max(1, sizes.get(0)));
+        double maxX = Math.log10(Math.max(sizes.get(sizes.size() - 1), sizes.get(0) + 1));
+        if (maxX == minX) maxX = minX + 1;
+        double maxY = 0;
+        for (ScalingTestRunner.Series s : series) {
+            for (ScalingTestRunner.Point point : s.points()) {
+                maxY = Math.max(maxY, point.meanMs());
+            }
+        }
+        maxY = maxY <= 0 ? 1 : maxY * 1.1;
+
+        StringBuilder svg = new StringBuilder();
+        svg.append("<figure><svg width=\"").append(WIDTH).append("\" height=\"").append(HEIGHT)
+                .append("\" xmlns=\"http://www.w3.org/2000/svg\">\n");
+        svg.append(String.format(Locale.ROOT, "<text x=\"%d\" y=\"18\" font-weight=\"bold\">%s</text>%n", LEFT, escape(endpoint)));
+        int bottom = HEIGHT - BOTTOM;
+        svg.append(String.format(Locale.ROOT, "<line x1=\"%d\" y1=\"%d\" x2=\"%d\" y2=\"%d\" stroke=\"#333\"/>%n", LEFT, bottom, WIDTH - RIGHT, bottom));
+        svg.append(String.format(Locale.ROOT, "<line x1=\"%d\" y1=\"%d\" x2=\"%d\" y2=\"%d\" stroke=\"#333\"/>%n", LEFT, TOP, LEFT, bottom));
+        for (int size : sizes) {
+            double x = x(Math.log10(Math.max(1, size)), minX, maxX);
+            svg.append(String.format(Locale.ROOT, "<line x1=\"%.1f\" y1=\"%d\" x2=\"%.1f\" y2=\"%d\" stroke=\"#333\"/>", x, bottom, x, bottom + 4))
+                    .append(String.format(Locale.ROOT, "<text x=\"%.1f\" y=\"%d\" text-anchor=\"middle\">%d</text>%n", x, bottom + 16, size));
+        }
+        for (int i = 0; i <= 4; i++) {
+            double value = maxY * i / 4;
+            double y = y(value, maxY);
+            svg.append(String.format(Locale.ROOT, "<line x1=\"%d\" y1=\"%.1f\" x2=\"%d\" y2=\"%.1f\" stroke=\"#eee\"/>", LEFT, y, WIDTH - RIGHT, y))
+                    .append(String.format(Locale.ROOT, "<text x=\"%d\" y=\"%.1f\" text-anchor=\"end\">%.2f</text>%n", LEFT - 4, y + 4, value));
+        }
+        svg.append(String.format(Locale.ROOT, "<text x=\"%d\" y=\"%d\" text-anchor=\"middle\">objects (log)</text>%n", (LEFT + WIDTH - RIGHT) / 2, HEIGHT - 8));
+        svg.append(String.format(Locale.ROOT, "<text x=\"14\" y=\"%d\" transform=\"rotate(-90 14 %d)\" text-anchor=\"middle\">mean ms</text>%n", (TOP + bottom) / 2, (TOP + bottom) / 2));
+
+        StringBuilder legend = new StringBuilder();
+        for (int i = 0; i < series.size(); i++) {
+            ScalingTestRunner.Series s = series.get(i);
+            String color = COLORS[i % COLORS.length];
+            for (ScalingTestRunner.Point point : s.points()) {
+                svg.append(String.format(Locale.ROOT, "<circle cx=\"%.1f\" cy=\"%.1f\" r=\"2.5\" fill=\"%s\" fill-opacity=\"0.6\"/>%n",
+                        x(Math.log10(Math.max(1, point.size())), minX, maxX), y(point.meanMs(), maxY), color));
+            }
+            StringBuilder curve = new StringBuilder();
+            for (int step = 0; step <= 40; step++) {
+                double logN = minX + (maxX - minX) * step / 40;
+                double value = Math.min(maxY, Math.max(0, s.fit().predict(Math.pow(10, logN))));
+                curve.append(String.format(Locale.ROOT, "%.1f,%.1f ", x(logN, minX, maxX), y(value, maxY)));
+            }
+            svg.append("<polyline fill=\"none\" stroke=\"").append(color).append("\" stroke-dasharray=\"5,3\" points=\"")
+                    .append(curve.toString().trim()).append("\"/>\n");
+            legend.append("<span style=\"color:").append(color).append("\">c=").append(s.concurrency()).append(": ")
+                    .append(s.fit().model().label()).append("</span>")
+                    .append(s.grows() ? String.format(Locale.ROOT, " <span class=\"grows\">grows x%.2f</span>", s.growth()) : "")
+                    .append("<br>");
+        }
+        svg.append("</svg><figcaption>").append(legend).append("</figcaption></figure>\n");
+        return svg.toString();
+    }
+
+    private static double x(double logN, double minX, double maxX) {
+        return LEFT + (logN - minX) / (maxX - minX) * (WIDTH - LEFT - RIGHT);
+    }
+
+    private static double y(double value, double maxY) {
+        return HEIGHT - BOTTOM - value / maxY * (HEIGHT - BOTTOM - TOP);
+    }
+
+    private static String escape(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+}
@@ -0,0 +1,156 @@
+package ca.mcgill.story_testing.load;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import ca.mcgill.story_testing.fixtures.CanonicalJson;
+import ca.mcgill.story_testing.perf.ComplexityFit;
+import ca.mcgill.story_testing.stepdefs.SharedTestContext;
+
+// Sweeps collection size (objects already on the server) and concurrency as separate axes; every cell gets a
+// warm-up window and several timed trials per endpoint. Mean latency per trial is fitted against size for every
+// endpoint and concurrency, and endpoints whose per-request cost grows with the collection are flagged.
+// A flag needs the fit to explain at least minR2 of the variance, so that noise alone does not raise it. Trials that
+// never reached a steady state are left out of the fit.
+// -Dstory.scaling.sizes=10,100,1000,5000 .concurrency=1,4 .trials=3 .window=1000 (ms) .growth=0.25 .minR2=0.5
+public class ScalingTestRunner {
+    public static final Path JSON_REPORT = Path.of("build/perf/scaling.json");
+    public static final Path HTML_REPORT = Path.of("build/perf/scaling.html");
+    private static final Operation[] OPERATIONS = {Operation.LIST, Operation.READ, Operation.UPDATE, Operation.CREATE};
+
+    public record Point(int size, int concurrency, int trial, double meanMs, double p50Ms, double p99Ms, double throughput, long errors) {
+        JSONObject toJson() {
+            return new JSONObject().put("size", size).put("concurrency", concurrency).put("trial", trial)
+                    .put("meanMs", round(meanMs)).put("p50Ms", round(p50Ms)).put("p99Ms", round(p99Ms))
+                    .put("throughput", round(throughput)).put("errors", errors);
+        }
+    }
+
+    public record Series(String endpoint, int concurrency, List<Point> points, ComplexityFit.Fit fit, double growth, boolean grows) {
+    }
+
+    public static void main(String[] args) throws Exception {
+        String baseUrl = System.getProperty(SharedTestContext.BASE_URL_PROPERTY, "http://localhost:4567");
+        List<Integer> sizes = ints(System.getProperty("story.scaling.sizes", "10,100,1000,5000"));
+        List<Integer> concurrencies = ints(System.getProperty("story.scaling.concurrency", "1,4"));
+        int trials = Integer.getInteger("story.scaling.trials", 3);
+        long window = Long.getLong("story.scaling.window", 1000) * 1_000_000;
+        double growthThreshold = Double.parseDouble(System.getProperty("story.scaling.growth", "0.25"));
+        double minR2 = Double.parseDouble(System.getProperty("story.scaling.minR2", "0.5"));
+        sizes.sort(null);
+
+        Map<String, List<Point>> points = new LinkedHashMap<>();
+        try (LoadEngine engine = new LoadEngine(baseUrl, 4, Long.getLong(LoadTestRunner.SEED_PROPERTY, System.nanoTime()))) {
+            for (ResourceType type : LoadTestRunner.types()) {
+                IdStore ids = new IdStore();
+                int current = 0;
+                try {
+                    for (int size : sizes) {
+                        engine.create(type, size - current, ids);
+                        current = size;
+                        System.out.println("=== " + type.path() + " with " + size + " objects ===");
+                        for (int concurrency : concurrencies) {
+                            for (Operation operation : OPERATIONS) {
+                                String key = operation.endpoint(type) + "|" + concurrency;
+                                // Objects created by a CREATE window are removed again so that the size stays put
+                                IdStore target = operation == Operation.CREATE ? new IdStore() : ids;
+                                engine.measure(type, operation, target, concurrency, 0, window / 2);
+                                if (operation == Operation.CREATE) engine.delete(type, target);
+                                List<Point> cell = new ArrayList<>();
+                                for (int trial = 1; trial <= trials; trial++) {
+                                    LoadEngine.PhaseResult result = engine.measure(type, operation, target, concurrency, 0, window);
+                                    if (operation == Operation.CREATE) engine.delete(type, target);
+                                    if (!result.stable()) {
+                                        System.out.printf("  %-22s c=%-3d trial %d left out: %s%n", operation.endpoint(type),
+                                                concurrency, trial, result.steady().describe());
+                                        continue;
+                                    }
+                                    cell.add(new Point(size, concurrency, trial, result.latency().mean() / 1e6,
+                                            result.latency().percentile(50) / 1e6, result.latency().percentile(99) / 1e6,
+                                            result.throughput(), result.errors()));
+                                }
+                                if (cell.isEmpty()) continue;
+                                points.computeIfAbsent(key, k -> new ArrayList<>()).addAll(cell);
+                                System.out.printf(Locale.ROOT, "  %-22s c=%-3d mean %7.2f ms  p99 %7.2f ms  %8.1f req/s%n",
+                                        operation.endpoint(type), concurrency, cell.stream().mapToDouble(Point::meanMs).average().orElse(0),
+                                        cell.stream().mapToDouble(Point::p99Ms).average().orElse(0),
+                                        cell.stream().mapToDouble(Point::throughput).average().orElse(0));
+                            }
+                        }
+                    }
+                } finally {
+                    System.out.println("  cleaned up " + engine.delete(type, ids).requests() + " " + type.path());
+                }
+            }
+        }
+
+        List<Series> series = new ArrayList<>();
+        for (Map.Entry<String, List<Point>> entry : points.entrySet()) {
+            List<Point> cell = entry.getValue();
+            double[] n = cell.stream().mapToDouble(Point::size).toArray();
+            double[] y = cell.stream().mapToDouble(Point::meanMs).toArray();
+            ComplexityFit.Fit fit = ComplexityFit.best(n, y);
+            double growth = fit.growth(sizes.get(0), sizes.get(sizes.size() - 1));
+            boolean grows = fit.model() != ComplexityFit.Model.CONSTANT && growth > 1 + growthThreshold && fit.r2() >= minR2;
+            series.add(new Series(entry.getKey().substring(0, entry.getKey().indexOf('|')), cell.get(0).concurrency(), cell, fit, growth, grows));
+        }
+
+        System.out.println("\n" + "=".repeat(96));
+        System.out.printf("%-22s | %-4s | %-9s | %-12s | %-12s | %-7s | %s%n", "Endpoint", "c", "Model", "ms @ min n", "ms @ max n", "R^2", "Flag");
+        System.out.println("-".repeat(96));
+        for (Series s : series) {
+            System.out.printf(Locale.ROOT, "%-22s | %-4d | %-9s | %-12.3f | %-12.3f | %-7.3f | %s%n", s.endpoint(), s.concurrency(),
+                    s.fit().model().label(), s.fit().predict(sizes.get(0)), s.fit().predict(sizes.get(sizes.size() - 1)),
+                    s.fit().r2(), s.grows() ? "GROWS x" + round(s.growth()) : "");
+        }
+        System.out.println("=".repeat(96));
+
+        JSONObject report = json(baseUrl, sizes, concurrencies, trials, window, series);
+        Files.createDirectories(JSON_REPORT.getParent());
+        Files.writeString(JSON_REPORT, CanonicalJson.write(report, true) + "\n", StandardCharsets.UTF_8);
+        Files.writeString(HTML_REPORT, ScalingReport.html(series, sizes), StandardCharsets.UTF_8);
+        System.out.println("Report: " + JSON_REPORT.toAbsolutePath() + "\nChart:  " + HTML_REPORT.toAbsolutePath());
+    }
+
+    private static JSONObject json(String baseUrl, List<Integer> sizes, List<Integer> concurrencies, int trials, long window, List<Series> series) {
+        JSONArray endpoints = new JSONArray();
+        for (Series s : series) {
+            JSONArray fits = new JSONArray();
+            double[] n = s.points().stream().mapToDouble(Point::size).toArray();
+            double[] y = s.points().stream().mapToDouble(Point::meanMs).toArray();
+            for (ComplexityFit.Fit fit : ComplexityFit.fitAll(n, y)) {
+                fits.put(new JSONObject().put("model", fit.model().label()).put("intercept", fit.intercept())
+                        .put("slope", fit.slope()).put("bic", round(fit.bic())).put("r2", round(fit.r2())));
+            }
+            JSONArray points = new JSONArray();
+            s.points().forEach(point -> points.put(point.toJson()));
+            endpoints.put(new JSONObject().put("endpoint", s.endpoint()).put("concurrency", s.concurrency())
+                    .put("model", s.fit().model().label()).put("growth", round(s.growth())).put("grows", s.grows())
+                    .put("fits", fits).put("points", points));
+        }
+        return new JSONObject().put("baseUrl", baseUrl).put("sizes", new JSONArray(sizes))
+                .put("concurrency", new JSONArray(concurrencies)).put("trials", trials)
+                .put("windowMs", window / 1_000_000).put("series", endpoints);
+    }
+
+    static double round(double value) {
+        return Math.round(value * 1000) / 1000.0;
+    }
+
+    static List<Integer> ints(String csv) {
+        List<Integer> values = new ArrayList<>();
+        for (String value : csv.split(",")) {
+            values.add(Integer.parseInt(value.trim()));
+        }
+        return values;
+    }
+}
@@ -0,0 +1,33 @@
+package ca.mcgill.story_testing.metrics;
+
+import java.io.IOException;
+import java.net.http.HttpResponse;
+
+import ca.mcgill.story_testing.http.HttpTransport;
+import ca.mcgill.story_testing.http.Routes;
+
+// Counts and times every request of the wrapped transport into Metrics under its route template.
+public class MeteredTransport implements HttpTransport {
+    private final HttpTransport delegate;
+    private final Metrics metrics;
+
+    public MeteredTransport(HttpTransport delegate, Metrics metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public HttpResponse<String> send(String method, String endpoint, String body) throws IOException, InterruptedException {
+        Metrics.Endpoint metered = metrics.endpoint(Routes.template(method, endpoint));
+        metered.begin();
+        long start = System.nanoTime();
+        try {
+            HttpResponse<String> response = delegate.send(method, endpoint, body);
+            metered.end(response.statusCode(), System.nanoTime() - start);
+            return response;
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            metered.failed(System.nanoTime() - start);
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package ca.mcgill.story_testing.metrics;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import ca.mcgill.story_testing.perf.LatencyHistogram;
+
+// Process-wide counters for the harness: requests by endpoint and status, latency per endpoint, requests in flight,
+// scenario results and the Todo Manager server's CPU and RSS. Rendered in the Prometheus text format by MetricsServer.
+public final class Metrics {
+    private static final Metrics GLOBAL = new Metrics();
+    private static final double[] BUCKETS_SECONDS = {0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10};
+
+    private final AtomicLong inFlight = new AtomicLong();
+    private final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> scenarios = new ConcurrentHashMap<>();
+    private volatile int serverPort = -1;
+    private volatile long serverPid = -1;
+
+    public static Metrics global() {
+        return GLOBAL;
+    }
+
+    // endpoint is a route template such as "GET /todos/{id}"; resolve once and keep the handle on hot paths
+    public Endpoint endpoint(String endpoint) {
+        return endpoints.computeIfAbsent(endpoint, Endpoint::new);
+    }
+
+    public void scenarioFinished(String result) {
+        scenarios.computeIfAbsent(result.toLowerCase(Locale.ROOT), key -> new LongAdder()).increment();
+    }
+
+    public void watchServer(String baseUrl) {
+        int port = URI.create(baseUrl).getPort();
+        if (port != serverPort) {
+            serverPort = port;
+            serverPid = -1;
+        }
+    }
+
+    public final class Endpoint {
+        private final String name;
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+        private final LongAdder ioErrors = new LongAdder();
+        // RequestPolicy effects: the first attempt alone is what the latency would have been without the policy
+        private final LatencyHistogram firstAttempt = new LatencyHistogram();
+        private final LongAdder retries = new LongAdder();
+        private final LongAdder timeouts = new LongAdder();
+        private final LongAdder hedges = new LongAdder();
+        private final LongAdder hedgeWins = new LongAdder();
+        private final LongAdder recovered = new LongAdder();
+
+        private Endpoint(String name) {
+            this.name = name;
+        }
+
+        public void begin() {
+            inFlight.incrementAndGet();
+        }
+
+        public void end(int status, long nanos) {
+            inFlight.decrementAndGet();
+            latency.record(nanos);
+            statuses.computeIfAbsent(status, key -> new LongAdder()).increment();
+        }
+
+        public void failed(long nanos) {
+            inFlight.decrementAndGet();
+            latency.record(nanos);
+            ioErrors.increment();
+        }
+
+        public LatencyHistogram latency() {
+            return latency;
+        }
+
+        public LatencyHistogram firstAttempt() {
+            return firstAttempt;
+        }
+
+        public void firstAttempt(long nanos) {
+            firstAttempt.record(nanos);
+        }
+
+        public void retried() {
+            retries.increment();
+        }
+
+        public void timedOut() {
+            timeouts.increment();
+        }
+
+        public void hedged() {
+            hedges.increment();
+        }
+
+        public void hedgeWon() {
+            hedgeWins.increment();
+        }
+
+        // The first attempt failed but a retry or hedge got a response
+        public void recovered() {
+            recovered.increment();
+        }
+
+        boolean policyActive() {
+            return retries.sum() + timeouts.sum() + hedges.sum() > 0;
+        }
+    }
+
+    // One line per endpoint where a RequestPolicy retried, timed out or hedged, comparing the tail with and without it
+    public List<String> policySummary() {
+        List<String> lines = new ArrayList<>();
+        for (Endpoint endpoint : new TreeMap<>(endpoints).values()) {
+            if (!endpoint.policyActive() || endpoint.firstAttempt.count() == 0) continue;
+            lines.add(String.format(Locale.ROOT,
+                    "%-28s p99 %.1f -> %.1f ms, max %.1f -> %.1f ms, %d retries, %d timeouts, %d hedges (%d won), %d recovered",
+                    endpoint.name, endpoint.firstAttempt.percentile(99) / 1e6, endpoint.latency.percentile(99) / 1e6,
+                    endpoint.firstAttempt.max() / 1e6, endpoint.latency.max() / 1e6, endpoint.retries.sum(),
+                    endpoint.timeouts.sum(), endpoint.hedges.sum(), endpoint.hedgeWins.sum(), endpoint.recovered.sum()));
+        }
+        return lines;
+    }
+
+    public String render() {
+        StringBuilder out = new StringBuilder(4096);
+        // Endpoints are registered up front by the load engine; only those with traffic are exported
+        Map<String, Endpoint> sorted = new TreeMap<>();
+        endpoints.forEach((name, endpoint) -> {
+            if (endpoint.latency.count() > 0) sorted.put(name, endpoint);
+        });
+
+        header(out, "story_http_in_flight_requests", "gauge", "Requests sent and not yet answered.");
+        out.append("story_http_in_flight_requests ").append(inFlight.get()).append('\n');
+
+        header(out, "story_http_requests_total", "counter", "Requests by endpoint and status code (io_error: no response).");
+        for (Endpoint endpoint : sorted.values()) {
+            for (Map.Entry<Integer, LongAdder> status : new TreeMap<>(endpoint.statuses).entrySet()) {
+                sample(out, "story_http_requests_total", endpoint.name, "status", status.getKey().toString(), status.getValue().sum());
+            }
+            if (endpoint.ioErrors.sum() > 0) {
+                sample(out, "story_http_requests_total", endpoint.name, "status", "io_error", endpoint.ioErrors.sum());
+            }
+        }
+
+        header(out, "story_http_errors_total", "counter", "Responses with status >= 400 and failed requests by endpoint and status.");
+        for (Endpoint endpoint : sorted.values()) {
+            for (Map.Entry<Integer, LongAdder> status : new TreeMap<>(endpoint.statuses).entrySet()) {
+                if (status.getKey() >= 400) {
+                    sample(out, "story_http_errors_total", endpoint.name, "status", status.getKey().toString(), status.getValue().sum());
+                }
+            }
+            if (endpoint.ioErrors.sum() > 0) {
+                sample(out, "story_http_errors_total", endpoint.name, "status", "io_error", endpoint.ioErrors.sum());
+            }
+        }
+
+        header(out, "story_http_request_duration_seconds", "histogram", "Request latency by endpoint.");
+        for (Endpoint endpoint : sorted.values()) {
+            histogram(out, "story_http_request_duration_seconds", endpoint.name, endpoint.latency);
+        }
+
+        header(out, "story_http_first_attempt_duration_seconds", "histogram",
+                "Latency of the first attempt alone, i.e. without retries and hedging, by endpoint.");
+        for (Endpoint endpoint : sorted.values()) {
+            if (endpoint.firstAttempt.count() > 0) {
+                histogram(out, "story_http_first_attempt_duration_seconds", endpoint.name, endpoint.firstAttempt);
+            }
+        }
+
+        header(out, "story_http_policy_actions_total", "counter", "Retries, timeouts, hedged requests, hedges that "
+                + "answered first and requests recovered after a failed first attempt, by endpoint.");
+        for (Endpoint endpoint : sorted.values()) {
+            if (!endpoint.policyActive()) continue;
+            sample(out, "story_http_policy_actions_total", endpoint.name, "action", "retry", endpoint.retries.sum());
+            sample(out, "story_http_policy_actions_total", endpoint.name, "action", "timeout", endpoint.timeouts.sum());
+            sample(out, "story_http_policy_actions_total", endpoint.name, "action", "hedge", endpoint.hedges.sum());
+            sample(out, "story_http_policy_actions_total", endpoint.name, "action", "hedge_won", endpoint.hedgeWins.sum());
+            sample(out, "story_http_policy_actions_total", endpoint.name, "action", "recovered", endpoint.recovered.sum());
+        }
+
+        header(out, "story_scenarios_total", "counter", "Finished Cucumber scenarios by result.");
+        for (Map.Entry<String, LongAdder> result : new TreeMap<>(scenarios).entrySet()) {
+            out.append("story_scenarios_total{result=\"").append(result.getKey()).append("\"} ").append(result.getValue().sum()).append('\n');
+        }
+
+        process(out, "story_harness", ProcessHandle.current().pid());
+        if (serverPort > 0) {
+            if (serverPid <= 0 || ProcessStats.sample(serverPid) == null) {
+                serverPid = ProcessStats.listeningPid(serverPort);
+            }
+            if (serverPid > 0) process(out, "story_server", serverPid);
+        }
+        return out.toString();
+    }
+
+    private static void histogram(StringBuilder out, String name, String endpoint, LatencyHistogram latency) {
+        for (double bucket : BUCKETS_SECONDS) {
+            sample(out, name + "_bucket", endpoint, "le", BigDecimal.valueOf(bucket).toPlainString(),
+                    latency.countAtOrBelow((long) (bucket * 1e9)));
+        }
+        sample(out, name + "_bucket", endpoint, "le", "+Inf", latency.count());
+        out.append(name).append("_sum{endpoint=\"").append(escape(endpoint)).append("\"} ")
+                .append(format(latency.sum() / 1e9)).append('\n');
+        out.append(name).append("_count{endpoint=\"").append(escape(endpoint)).append("\"} ")
+                .append(latency.count()).append('\n');
+    }
+
+    private static void process(StringBuilder out, String prefix, long pid) {
+        ProcessStats.Sample sample = ProcessStats.sample(pid);
+        if (sample == null) return;
+        header(out, prefix + "_cpu_seconds_total", "counter", "User and system CPU time of pid " + pid + ".");
+        out.append(prefix).append("_cpu_seconds_total ").append(format(sample.cpuSeconds())).append('\n');
+        header(out, prefix + "_resident_memory_bytes", "gauge", "Resident set size of pid " + pid + ".");
+        out.append(prefix).append("_resident_memory_bytes ").append(sample.rssBytes()).append('\n');
+    }
+
+    private static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String name, String endpoint, String label, String value, long count) {
+        out.append(name).append("{endpoint=\"").append(escape(endpoint)).append("\",").append(label).append("=\"")
+                .append(value).append("\"} ").append(count).append('\n');
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%s", value);
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
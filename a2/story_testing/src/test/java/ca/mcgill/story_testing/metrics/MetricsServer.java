@@ -0,0 +1,73 @@
+package ca.mcgill.story_testing.metrics;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+// Serves Metrics.global() at http://localhost:<port>/metrics (Prometheus text format) and the dashboard at /.
+// Started once per JVM when -Dstory.metrics.port is set; its threads are daemons so test and load runs still exit.
+public final class MetricsServer {
+    public static final String PORT_PROPERTY = "story.metrics.port";
+    private static final String DASHBOARD = "/metrics/dashboard.html";
+    private static HttpServer server;
+
+    private MetricsServer() {
+    }
+
+    public static synchronized void startIfConfigured() {
+        Integer port = Integer.getInteger(PORT_PROPERTY);
+        if (port != null && server == null) {
+            start(port);
+        }
+    }
+
+    public static synchronized void start(int port) {
+        if (server != null) return;
+        try {
+            HttpServer created = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+            created.createContext("/metrics", exchange -> respond(exchange, "text/plain; version=0.0.4; charset=utf-8",
+                    Metrics.global().render().getBytes(StandardCharsets.UTF_8)));
+            created.createContext("/", exchange -> respond(exchange, "text/html; charset=utf-8", dashboard()));
+            created.setExecutor(Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "metrics-server");
+                thread.setDaemon(true);
+                return thread;
+            }));
+            // The dispatcher thread inherits the daemon flag of the thread that starts the server
+            Thread starter = new Thread(created::start, "metrics-server-start");
+            starter.setDaemon(true);
+            starter.start();
+            starter.join();
+            server = created;
+            System.out.println("Metrics: http://localhost:" + port + "/metrics, dashboard at http://localhost:" + port + "/");
+        } catch (IOException e) {
+            // e.g. several shard JVMs given the same port: the run goes on without live metrics
+            System.out.println("Metrics server not started on port " + port + ": " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while starting the metrics server", e);
+        }
+    }
+
+    private static void respond(HttpExchange exchange, String contentType, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.getResponseHeaders().set("Access-Control-Allow-Origin", "*");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static byte[] dashboard() throws IOException {
+        try (InputStream in = MetricsServer.class.getResourceAsStream(DASHBOARD)) {
+            if (in == null) return "dashboard.html is missing from the test resources".getBytes(StandardCharsets.UTF_8);
+            return in.readAllBytes();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package ca.mcgill.story_testing.metrics;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+
+// CPU time and resident memory of a process from /proc (Linux only; other systems report nothing).
+public final class ProcessStats {
+    // USER_HZ is 100 on every mainstream Linux build
+    private static final double CLOCK_TICKS = 100.0;
+
+    public record Sample(double cpuSeconds, long rssBytes) {
+    }
+
+    private ProcessStats() {
+    }
+
+    // null when the process is gone or /proc is not available
+    public static Sample sample(long pid) {
+        try {
+            String stat = Files.readString(Path.of("/proc", Long.toString(pid), "stat"));
+            // Fields after the parenthesised command name, which may itself contain spaces
+            String[] fields = stat.substring(stat.lastIndexOf(')') + 2).split(" ");
+            double cpu = (Long.parseLong(fields[11]) + Long.parseLong(fields[12])) / CLOCK_TICKS;
+            long rss = 0;
+            for (String line : Files.readAllLines(Path.of("/proc", Long.toString(pid), "status"))) {
+                if (line.startsWith("VmRSS:")) {
+                    rss = Long.parseLong(line.replaceAll("[^0-9]", "")) * 1024;
+                }
+            }
+            return new Sample(cpu, rss);
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    // Pid of the process listening on a local TCP port, found through the socket inode in /proc/net/tcp*; -1 if none
+    public static long listeningPid(int port) {
+        String inode = listeningInode(port);
+        if (inode == null) return -1;
+        String target = "socket:[" + inode + "]";
+        try (DirectoryStream<Path> processes = Files.newDirectoryStream(Path.of("/proc"), path -> path.getFileName().toString().matches("\\d+"))) {
+            for (Path process : processes) {
+                try (DirectoryStream<Path> fds = Files.newDirectoryStream(process.resolve("fd"))) {
+                    for (Path fd : fds) {
+                        if (target.equals(Files.readSymbolicLink(fd).toString())) {
+                            return Long.parseLong(process.getFileName().toString());
+                        }
+                    }
+                } catch (IOException | SecurityException e) {
+                    // process exited or belongs to another user
+                }
+            }
+        } catch (IOException e) {
+            return -1;
+        }
+        return -1;
+    }
+
+    private static String listeningInode(int port) {
+        String hexPort = String.format(Locale.ROOT, "%04X", port);
+        for (String table : List.of("/proc/net/tcp", "/proc/net/tcp6")) {
+            try {
+                for (String line : Files.readAllLines(Path.of(table))) {
+                    String[] fields = line.trim().split("\\s+");
+                    // local_address is ADDR:PORT in hex; state 0A is LISTEN
+                    if (fields.length > 9 && fields[1].endsWith(":" + hexPort) && fields[3].equals("0A")) {
+                        return fields[9];
+                    }
+                }
+            } catch (IOException e) {
+                // table not available
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,57 @@
+package ca.mcgill.story_testing.metrics;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+
+// TCP sockets to a server port from /proc/net/tcp* and the kernel's count of connections opened from /proc/net/snmp
+// (Linux only; elsewhere everything reads 0).
+public final class SocketStats {
+    // established: this host's open connections to the server; timeWait: closed connections to or from the port still
+    // in TIME_WAIT, on whichever side closed first (the server's side too when it runs on this host)
+    public record Snapshot(int established, int timeWait, long activeOpens) {
+    }
+
+    private SocketStats() {
+    }
+
+    public static Snapshot sample(int port) {
+        String hexPort = String.format(Locale.ROOT, ":%04X", port);
+        int established = 0;
+        int timeWait = 0;
+        for (String table : List.of("/proc/net/tcp", "/proc/net/tcp6")) {
+            try {
+                for (String line : Files.readAllLines(Path.of(table))) {
+                    String[] fields = line.trim().split("\\s+");
+                    // local_address and rem_address are ADDR:PORT in hex; state 01 is ESTABLISHED, 06 is TIME_WAIT
+                    if (fields.length < 4) continue;
+                    if (fields[3].equals("01") && fields[2].endsWith(hexPort)) established++;
+                    else if (fields[3].equals("06") && (fields[1].endsWith(hexPort) || fields[2].endsWith(hexPort))) timeWait++;
+                }
+            } catch (IOException e) {
+                // table not available
+            }
+        }
+        return new Snapshot(established, timeWait, activeOpens());
+    }
+
+    // Connections this host has opened since boot, to any destination
+    private static long activeOpens() {
+        try {
+            List<String> lines = Files.readAllLines(Path.of("/proc/net/snmp"));
+            for (int i = 0; i + 1 < lines.size(); i++) {
+                // A "Tcp:" line of names is followed by a "Tcp:" line of values
+                if (!lines.get(i).startsWith("Tcp:")) continue;
+                List<String> names = List.of(lines.get(i).split("\\s+"));
+                String[] values = lines.get(i + 1).split("\\s+");
+                int column = names.indexOf("ActiveOpens");
+                return column < 0 ? 0 : Long.parseLong(values[column]);
+            }
+        } catch (IOException | RuntimeException e) {
+            // not Linux
+        }
+        return 0;
+    }
+}
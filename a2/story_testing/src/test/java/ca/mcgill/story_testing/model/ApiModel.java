@@ -0,0 +1,204 @@
+package ca.mcgill.story_testing.model;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import ca.mcgill.story_testing.load.ResourceType;
+
+// In-memory reference of what the Todo Manager should hold after each command of one sequence, and what it should
+// answer. Objects are keyed by handle; a deleted object keeps its entry (dead) so dangling links can still name it.
+public final class ApiModel {
+    // Observed 1.5.5 behaviour the model expects unless told otherwise (-Dstory.model.quirks=, see ModelCheckRunner);
+    // without them the model asks for what the relationships promise and the generator reports each one it meets
+    public enum Quirk {
+        // PUT /todos/{id} (any type) drops every link the object made, and their reverses
+        PUT_DROPS_RELATIONSHIPS,
+        // deleting an object leaves it in links made from the other side only, e.g. in a category's todos when the
+        // todo never linked the category
+        DELETE_KEEPS_ONE_WAY_LINKS,
+        // DELETE /{type}/{id}/{field}/{id} on an object that does not exist answers 400 (a NullPointerException)
+        // instead of 404 when some other object holds that same link
+        UNLINK_MISSING_PARENT_FAILS
+    }
+
+    enum Field { TEXT, REQUIRED_TEXT, BOOLEAN }
+
+    static final Map<ResourceType, Map<String, Field>> SCHEMA = new EnumMap<>(Map.of(
+            ResourceType.TODOS, fields("title", Field.REQUIRED_TEXT, "description", Field.TEXT, "doneStatus", Field.BOOLEAN),
+            ResourceType.PROJECTS, fields("title", Field.TEXT, "description", Field.TEXT, "completed", Field.BOOLEAN,
+                    "active", Field.BOOLEAN),
+            ResourceType.CATEGORIES, fields("title", Field.REQUIRED_TEXT, "description", Field.TEXT)));
+
+    // An object as the API shows it: every field as a string, and the handles in each non-empty relationship
+    public record Snapshot(ResourceType type, Map<String, String> fields, Map<Relation, Set<Integer>> links) {
+    }
+
+    // entity is null when there is nothing to compare beyond the status
+    public record Expectation(int status, Snapshot entity) {
+    }
+
+    private static final class State {
+        final ResourceType type;
+        final Map<String, String> fields = new LinkedHashMap<>();
+        final Map<Relation, Set<Integer>> links = new EnumMap<>(Relation.class);
+        boolean alive = true;
+
+        State(ResourceType type) {
+            this.type = type;
+            for (Relation relation : Relation.values()) {
+                if (relation.from() == type) links.put(relation, new LinkedHashSet<>());
+            }
+        }
+
+        Snapshot snapshot() {
+            Map<Relation, Set<Integer>> shown = new EnumMap<>(Relation.class);
+            links.forEach((relation, targets) -> {
+                if (!targets.isEmpty()) shown.put(relation, new LinkedHashSet<>(targets));
+            });
+            return new Snapshot(type, new LinkedHashMap<>(fields), shown);
+        }
+    }
+
+    private final Set<Quirk> quirks;
+    private final Map<Integer, State> states = new HashMap<>();
+
+    public ApiModel(Set<Quirk> quirks) {
+        this.quirks = quirks.isEmpty() ? EnumSet.noneOf(Quirk.class) : EnumSet.copyOf(quirks);
+    }
+
+    // Advances the model by one command and returns what the server should answer to it
+    public Expectation apply(Command command) {
+        if (command instanceof Command.Create create) {
+            if (!valid(create.type(), create.fields(), true)) return new Expectation(400, null);
+            State state = new State(create.type());
+            reset(state, create.fields());
+            states.put(create.handle(), state);
+            return new Expectation(201, state.snapshot());
+        }
+        if (command instanceof Command.Replace replace) {
+            State state = live(replace.handle());
+            if (state == null) return new Expectation(404, null);
+            if (!valid(replace.type(), replace.fields(), true)) return new Expectation(400, null);
+            reset(state, replace.fields());
+            if (quirks.contains(Quirk.PUT_DROPS_RELATIONSHIPS)) dropLinks(state, replace.handle());
+            return new Expectation(200, state.snapshot());
+        }
+        if (command instanceof Command.Amend amend) {
+            State state = live(amend.handle());
+            if (state == null) return new Expectation(404, null);
+            if (!valid(amend.type(), amend.fields(), false)) return new Expectation(400, null);
+            amend.fields().forEach((name, value) -> state.fields.put(name, String.valueOf(value)));
+            return new Expectation(200, state.snapshot());
+        }
+        if (command instanceof Command.Delete delete) {
+            State state = live(delete.handle());
+            if (state == null) return new Expectation(404, null);
+            state.alive = false;
+            dropLinks(state, delete.handle());
+            if (!quirks.contains(Quirk.DELETE_KEEPS_ONE_WAY_LINKS)) {
+                for (State other : states.values()) {
+                    other.links.forEach((relation, targets) -> {
+                        if (relation.to() == delete.type()) targets.remove(delete.handle());
+                    });
+                }
+            }
+            return new Expectation(200, null);
+        }
+        if (command instanceof Command.Link link) {
+            State from = live(link.from());
+            if (from == null || live(link.to()) == null) return new Expectation(404, null);
+            from.links.get(link.relation()).add(link.to());
+            if (link.relation().twoWay()) states.get(link.to()).links.get(link.relation().reverse()).add(link.from());
+            return new Expectation(201, null);
+        }
+        if (command instanceof Command.Unlink unlink) {
+            State from = live(unlink.from());
+            if (from == null && quirks.contains(Quirk.UNLINK_MISSING_PARENT_FAILS) && linked(unlink.relation(), unlink.to())) {
+                return new Expectation(400, null);
+            }
+            if (from == null || !from.links.get(unlink.relation()).remove(unlink.to())) return new Expectation(404, null);
+            if (unlink.relation().twoWay()) unlinkReverse(unlink.relation(), unlink.from(), unlink.to());
+            return new Expectation(200, null);
+        }
+        Command.Read read = (Command.Read) command;
+        State state = live(read.handle());
+        return state == null ? new Expectation(404, null) : new Expectation(200, state.snapshot());
+    }
+
+    public boolean alive(int handle) {
+        return live(handle) != null;
+    }
+
+    // Handles ever created of a type, dead ones included, in creation order
+    public List<Integer> handles(ResourceType type) {
+        List<Integer> handles = new ArrayList<>();
+        states.forEach((handle, state) -> {
+            if (state.type == type) handles.add(handle);
+        });
+        handles.sort(null);
+        return handles;
+    }
+
+    public Set<Integer> links(int handle, Relation relation) {
+        State state = states.get(handle);
+        return state == null ? Set.of() : state.links.get(relation);
+    }
+
+    private State live(int handle) {
+        State state = states.get(handle);
+        return state != null && state.alive ? state : null;
+    }
+
+    private boolean linked(Relation relation, int to) {
+        for (State state : states.values()) {
+            if (state.alive && state.type == relation.from() && state.links.get(relation).contains(to)) return true;
+        }
+        return false;
+    }
+
+    private void unlinkReverse(Relation relation, int from, int to) {
+        State target = states.get(to);
+        if (target != null) target.links.get(relation.reverse()).remove(from);
+    }
+
+    // Every link the object made goes, and with it the reverse link from the other end
+    private void dropLinks(State state, int handle) {
+        state.links.forEach((relation, targets) -> {
+            for (int target : targets) unlinkReverse(relation, handle, target);
+            targets.clear();
+        });
+    }
+
+    private static void reset(State state, Map<String, Object> values) {
+        SCHEMA.get(state.type).forEach((name, field) -> state.fields.put(name, field == Field.BOOLEAN ? "false" : ""));
+        values.forEach((name, value) -> state.fields.put(name, String.valueOf(value)));
+    }
+
+    // complete: a create or PUT, where a missing required field is an error
+    static boolean valid(ResourceType type, Map<String, Object> values, boolean complete) {
+        Map<String, Field> schema = SCHEMA.get(type);
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            Field field = schema.get(entry.getKey());
+            if (field == null) return false;
+            if ((field == Field.BOOLEAN) != (entry.getValue() instanceof Boolean)) return false;
+            if (field == Field.REQUIRED_TEXT && entry.getValue().toString().isBlank()) return false;
+        }
+        for (Map.Entry<String, Field> entry : schema.entrySet()) {
+            if (complete && entry.getValue() == Field.REQUIRED_TEXT && !values.containsKey(entry.getKey())) return false;
+        }
+        return true;
+    }
+
+    private static Map<String, Field> fields(Object... pairs) {
+        Map<String, Field> fields = new LinkedHashMap<>();
+        for (int i = 0; i < pairs.length; i += 2) fields.put((String) pairs[i], (Field) pairs[i + 1]);
+        return fields;
+    }
+}
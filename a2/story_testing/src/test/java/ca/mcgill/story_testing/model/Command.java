@@ -0,0 +1,170 @@
+package ca.mcgill.story_testing.model;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+import org.json.JSONObject;
+
+import ca.mcgill.story_testing.load.ResourceType;
+
+// One API call of a generated sequence. Objects are named by handle, the position of the Create that made them, not
+// by server id: a sequence replays against whatever ids the server hands out, and a handle whose Create was shrunk
+// away (or was rejected) stands for an object that does not exist.
+public sealed interface Command {
+    String method();
+
+    // ids maps a handle to the server id it is bound to
+    String path(IntFunction<String> ids);
+
+    // null when the request has no body
+    String body(IntFunction<String> ids);
+
+    // The type of the object a handle used by this command stands for
+    ResourceType typeOf(int handle);
+
+    // "POST /todos/{todo#3}/tasksof {"id":"{project#5}"}"
+    default String render() {
+        IntFunction<String> names = handle -> "{" + name(handle) + "}";
+        String body = body(names);
+        return method() + " " + path(names) + (body == null ? "" : " " + body);
+    }
+
+    default String name(int handle) {
+        return name(typeOf(handle), handle);
+    }
+
+    // todo#3, or todo#missing for a handle no Create ever used
+    static String name(ResourceType type, int handle) {
+        return type.label().toLowerCase(Locale.ROOT) + "#" + (handle < 0 ? "missing" : handle);
+    }
+
+    // fields hold Strings and Booleans, and may be invalid on purpose
+    record Create(ResourceType type, int handle, Map<String, Object> fields) implements Command {
+        public ResourceType typeOf(int handle) {
+            return type;
+        }
+
+        public String method() {
+            return "POST";
+        }
+
+        public String path(IntFunction<String> ids) {
+            return type.path();
+        }
+
+        public String body(IntFunction<String> ids) {
+            return new JSONObject(fields).toString();
+        }
+    }
+
+    // PUT: fields left out go back to their defaults
+    record Replace(ResourceType type, int handle, Map<String, Object> fields) implements Command {
+        public ResourceType typeOf(int handle) {
+            return type;
+        }
+
+        public String method() {
+            return "PUT";
+        }
+
+        public String path(IntFunction<String> ids) {
+            return type.path() + "/" + ids.apply(handle);
+        }
+
+        public String body(IntFunction<String> ids) {
+            return new JSONObject(fields).toString();
+        }
+    }
+
+    // POST to the object: only the given fields change
+    record Amend(ResourceType type, int handle, Map<String, Object> fields) implements Command {
+        public ResourceType typeOf(int handle) {
+            return type;
+        }
+
+        public String method() {
+            return "POST";
+        }
+
+        public String path(IntFunction<String> ids) {
+            return type.path() + "/" + ids.apply(handle);
+        }
+
+        public String body(IntFunction<String> ids) {
+            return new JSONObject(fields).toString();
+        }
+    }
+
+    record Delete(ResourceType type, int handle) implements Command {
+        public ResourceType typeOf(int handle) {
+            return type;
+        }
+
+        public String method() {
+            return "DELETE";
+        }
+
+        public String path(IntFunction<String> ids) {
+            return type.path() + "/" + ids.apply(handle);
+        }
+
+        public String body(IntFunction<String> ids) {
+            return null;
+        }
+    }
+
+    record Link(Relation relation, int from, int to) implements Command {
+        public ResourceType typeOf(int handle) {
+            return handle == from ? relation.from() : relation.to();
+        }
+
+        public String method() {
+            return "POST";
+        }
+
+        public String path(IntFunction<String> ids) {
+            return relation.from().path() + "/" + ids.apply(from) + "/" + relation.field();
+        }
+
+        public String body(IntFunction<String> ids) {
+            return new JSONObject().put("id", ids.apply(to)).toString();
+        }
+    }
+
+    record Unlink(Relation relation, int from, int to) implements Command {
+        public ResourceType typeOf(int handle) {
+            return handle == from ? relation.from() : relation.to();
+        }
+
+        public String method() {
+            return "DELETE";
+        }
+
+        public String path(IntFunction<String> ids) {
+            return relation.from().path() + "/" + ids.apply(from) + "/" + relation.field() + "/" + ids.apply(to);
+        }
+
+        public String body(IntFunction<String> ids) {
+            return null;
+        }
+    }
+
+    record Read(ResourceType type, int handle) implements Command {
+        public ResourceType typeOf(int handle) {
+            return type;
+        }
+
+        public String method() {
+            return "GET";
+        }
+
+        public String path(IntFunction<String> ids) {
+            return type.path() + "/" + ids.apply(handle);
+        }
+
+        public String body(IntFunction<String> ids) {
+            return null;
+        }
+    }
+}
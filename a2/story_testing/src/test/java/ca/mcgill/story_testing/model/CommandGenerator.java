@@ -0,0 +1,127 @@
+package ca.mcgill.story_testing.model;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+import ca.mcgill.story_testing.load.ResourceType;
+
+// Random command sequences over todos, projects and categories. A private ApiModel follows along so most commands
+// hit live objects and existing links; about one in ten targets a deleted or never-created object, and some bodies
+// are invalid on purpose, so the 400 and 404 paths get their share.
+public final class CommandGenerator {
+    private static final String TEXT = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789 -";
+    private static final ResourceType[] TYPES = ResourceType.values();
+    private static final Relation[] RELATIONS = Relation.values();
+
+    private final SplittableRandom random;
+    private final Set<ApiModel.Quirk> quirks;
+
+    public CommandGenerator(SplittableRandom random, Set<ApiModel.Quirk> quirks) {
+        this.random = random;
+        this.quirks = quirks;
+    }
+
+    public List<Command> sequence(int length) {
+        ApiModel model = new ApiModel(quirks);
+        List<Command> commands = new ArrayList<>(length);
+        for (int index = 0; index < length; index++) {
+            Command command = next(model, index);
+            model.apply(command);
+            commands.add(command);
+        }
+        return commands;
+    }
+
+    private Command next(ApiModel model, int index) {
+        int roll = random.nextInt(100);
+        ResourceType type = TYPES[random.nextInt(TYPES.length)];
+        if (roll < 22 || model.handles(type).isEmpty()) {
+            return new Command.Create(type, index, random.nextInt(100) < 8 ? invalid(type) : fields(type, true));
+        }
+        if (roll < 40) return new Command.Read(type, pick(model, type));
+        if (roll < 58) {
+            Relation relation = RELATIONS[random.nextInt(RELATIONS.length)];
+            return new Command.Link(relation, pick(model, relation.from()), pick(model, relation.to()));
+        }
+        if (roll < 66) {
+            Relation relation = RELATIONS[random.nextInt(RELATIONS.length)];
+            int from = pick(model, relation.from());
+            List<Integer> linked = new ArrayList<>(model.links(from, relation));
+            int to = !linked.isEmpty() && random.nextInt(100) < 85
+                    ? linked.get(random.nextInt(linked.size())) : pick(model, relation.to());
+            return new Command.Unlink(relation, from, to);
+        }
+        if (roll < 76) {
+            return new Command.Amend(type, pick(model, type), random.nextInt(100) < 8 ? invalid(type) : fields(type, false));
+        }
+        if (roll < 84) {
+            return new Command.Replace(type, pick(model, type), random.nextInt(100) < 8 ? invalid(type) : fields(type, true));
+        }
+        return new Command.Delete(type, pick(model, type));
+    }
+
+    // A live object nine times in ten; otherwise any object of the type, dead or not, or one that never existed
+    private int pick(ApiModel model, ResourceType type) {
+        List<Integer> handles = model.handles(type);
+        List<Integer> live = new ArrayList<>();
+        for (int handle : handles) {
+            if (model.alive(handle)) live.add(handle);
+        }
+        if (!live.isEmpty() && random.nextInt(10) != 0) return live.get(random.nextInt(live.size()));
+        if (handles.isEmpty() || random.nextInt(3) == 0) return -1;
+        return handles.get(random.nextInt(handles.size()));
+    }
+
+    // complete: every required field is there; otherwise a non-empty random subset of the fields
+    private Map<String, Object> fields(ResourceType type, boolean complete) {
+        Map<String, Object> values = new LinkedHashMap<>();
+        ApiModel.SCHEMA.get(type).forEach((name, field) -> {
+            boolean required = complete && field == ApiModel.Field.REQUIRED_TEXT;
+            if (required || random.nextBoolean()) values.put(name, value(field));
+        });
+        if (values.isEmpty()) {
+            String name = ApiModel.SCHEMA.get(type).keySet().iterator().next();
+            values.put(name, value(ApiModel.SCHEMA.get(type).get(name)));
+        }
+        return values;
+    }
+
+    private Object value(ApiModel.Field field) {
+        if (field == ApiModel.Field.BOOLEAN) return random.nextBoolean();
+        int length = random.nextInt(field == ApiModel.Field.REQUIRED_TEXT ? 1 : 0, 13);
+        StringBuilder text = new StringBuilder(length);
+        for (int i = 0; i < length; i++) text.append(TEXT.charAt(random.nextInt(TEXT.length())));
+        return text.toString();
+    }
+
+    // A complete body with one thing wrong: no or an empty required title, a string for a boolean, an unknown field
+    private Map<String, Object> invalid(ResourceType type) {
+        Map<String, Object> values = fields(type, true);
+        Map<String, ApiModel.Field> schema = ApiModel.SCHEMA.get(type);
+        switch (random.nextInt(3)) {
+            case 0 -> {
+                if (schema.get("title") == ApiModel.Field.REQUIRED_TEXT) {
+                    if (random.nextBoolean()) values.remove("title");
+                    else values.put("title", "");
+                    return values;
+                }
+            }
+            case 1 -> {
+                for (Map.Entry<String, ApiModel.Field> entry : schema.entrySet()) {
+                    if (entry.getValue() == ApiModel.Field.BOOLEAN) {
+                        values.put(entry.getKey(), String.valueOf(random.nextBoolean()));
+                        return values;
+                    }
+                }
+            }
+            default -> {
+            }
+        }
+        values.put("bogus", value(ApiModel.Field.TEXT));
+        return values;
+    }
+}
@@ -0,0 +1,159 @@
+package ca.mcgill.story_testing.model;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import ca.mcgill.story_testing.fixtures.CanonicalJson;
+import ca.mcgill.story_testing.http.JdkHttpTransport;
+import ca.mcgill.story_testing.http.RequestPolicy;
+import ca.mcgill.story_testing.server.TodoServer;
+
+// Random create/link/update/delete sequences checked against ApiModel, on many parallel streams against one server.
+// Streams only touch objects they created, so they cannot see each other. The first disagreement stops every stream;
+// its sequence is replayed alone and shrunk with ddmin to the shortest run that still fails the same way.
+// -Dstory.model.streams=8 .length=60 (commands per sequence) .duration=30 (s) .port=4710 .seed=<n>
+// .quirks=PUT_DROPS_RELATIONSHIPS,DELETE_KEEPS_ONE_WAY_LINKS,UNLINK_MISSING_PARENT_FAILS (the server deviations to
+// tolerate, see ApiModel.Quirk; empty for none)
+public class ModelCheckRunner {
+    public static final Path REPORT = Path.of("build/perf/model-check.json");
+    private static final String QUIRKS = "PUT_DROPS_RELATIONSHIPS,DELETE_KEEPS_ONE_WAY_LINKS,UNLINK_MISSING_PARENT_FAILS";
+
+    record Found(int stream, List<Command> sequence, SequenceRunner.Failure failure) {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int streams = Integer.getInteger("story.model.streams", 8);
+        int length = Integer.getInteger("story.model.length", 60);
+        long duration = Long.getLong("story.model.duration", 30) * 1_000_000_000L;
+        int port = Integer.getInteger("story.model.port", 4710);
+        long seed = Long.getLong("story.model.seed", System.nanoTime());
+        Set<ApiModel.Quirk> quirks = EnumSet.noneOf(ApiModel.Quirk.class);
+        for (String name : System.getProperty("story.model.quirks", QUIRKS).split(",")) {
+            if (!name.isBlank()) quirks.add(ApiModel.Quirk.valueOf(name.trim().toUpperCase(Locale.ROOT)));
+        }
+
+        System.out.println("=== Model check: random API sequences against a reference model ===");
+        System.out.println(streams + " streams x " + length + " commands per sequence for " + duration / 1_000_000_000L
+                + " s, seed " + seed);
+        System.out.println("Tolerated server quirks: " + (quirks.isEmpty() ? "none" : quirks));
+
+        AtomicReference<Found> found = new AtomicReference<>();
+        long[] sequences = new long[streams];
+        List<SequenceRunner> runners = new ArrayList<>();
+        long elapsed;
+        Found first;
+        List<Command> minimal = null;
+        SequenceRunner.Failure minimalFailure = null;
+        int shrinkTests = 0;
+        try (TodoServer server = TodoServer.start(port)) {
+            JdkHttpTransport transport = JdkHttpTransport.create(server.baseUrl(), RequestPolicy.NONE);
+            ExecutorService pool = Executors.newFixedThreadPool(streams, runnable -> {
+                Thread thread = new Thread(runnable, "model-stream");
+                thread.setDaemon(true);
+                return thread;
+            });
+            SplittableRandom root = new SplittableRandom(seed);
+            List<Future<?>> futures = new ArrayList<>();
+            long start = System.nanoTime();
+            long deadline = start + duration;
+            for (int s = 0; s < streams; s++) {
+                int stream = s;
+                CommandGenerator generator = new CommandGenerator(root.split(), quirks);
+                SequenceRunner runner = new SequenceRunner(transport, quirks);
+                runners.add(runner);
+                futures.add(pool.submit(() -> {
+                    while (found.get() == null && System.nanoTime() < deadline) {
+                        List<Command> sequence = generator.sequence(length);
+                        SequenceRunner.Failure failure = runner.run(sequence);
+                        sequences[stream]++;
+                        if (failure != null) {
+                            found.compareAndSet(null, new Found(stream, sequence.subList(0, failure.index() + 1), failure));
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) future.get();
+            elapsed = System.nanoTime() - start;
+            pool.shutdown();
+
+            first = found.get();
+            if (first != null) {
+                System.out.println("\nStream " + first.stream() + " failed after " + first.sequence().size()
+                        + " commands: " + first.failure().message());
+                SequenceRunner replay = new SequenceRunner(transport, quirks);
+                String signature = first.failure().signature();
+                SequenceRunner.Failure again = replay.run(first.sequence());
+                if (again == null || !again.signature().equals(signature)) {
+                    System.out.println("Did not fail the same way when replayed alone: it needs the other streams");
+                    minimal = first.sequence();
+                    minimalFailure = first.failure();
+                } else {
+                    Shrinker.Result<Command> shrunk = Shrinker.ddmin(first.sequence(), candidate -> {
+                        SequenceRunner.Failure failure = replay.run(candidate);
+                        return failure != null && failure.signature().equals(signature);
+                    });
+                    minimal = shrunk.minimal();
+                    SequenceRunner.Failure last = replay.run(minimal);
+                    minimalFailure = last != null ? last : first.failure();
+                    shrinkTests = shrunk.tests();
+                }
+            }
+        }
+
+        long requests = 0;
+        Map<String, Long> coverage = new TreeMap<>();
+        for (SequenceRunner runner : runners) {
+            requests += runner.requests();
+            runner.coverage().forEach((key, count) -> coverage.merge(key, count, Long::sum));
+        }
+        long total = 0;
+        for (long count : sequences) total += count;
+        System.out.printf(Locale.ROOT, "%n%d sequences, %d requests in %.1f s (%.0f req/s)%n", total, requests,
+                elapsed / 1e9, requests / (elapsed / 1e9));
+        System.out.println("Command and status coverage:");
+        coverage.forEach((key, count) -> System.out.printf(Locale.ROOT, "  %-16s %d%n", key, count));
+
+        JSONObject report = new JSONObject()
+                .put("seed", seed).put("streams", streams).put("length", length)
+                .put("quirks", new JSONArray(quirks.stream().map(Enum::name).toList()))
+                .put("sequences", total).put("requests", requests).put("seconds", elapsed / 1e9)
+                .put("coverage", new JSONObject(coverage));
+        if (minimal != null) {
+            System.out.println("\nMinimal reproduction (" + minimal.size() + " of " + first.sequence().size()
+                    + " commands, " + shrinkTests + " replays):");
+            JSONArray steps = new JSONArray();
+            for (int i = 0; i < minimal.size(); i++) {
+                System.out.printf("  %2d. %s%n", i + 1, minimal.get(i).render());
+                steps.put(minimal.get(i).render());
+            }
+            System.out.println("  => " + minimalFailure.message());
+            report.put("failure", new JSONObject()
+                    .put("signature", minimalFailure.signature())
+                    .put("message", minimalFailure.message())
+                    .put("original", first.sequence().size())
+                    .put("steps", steps));
+        }
+        Files.createDirectories(REPORT.getParent());
+        Files.writeString(REPORT, CanonicalJson.write(report, true) + "\n", StandardCharsets.UTF_8);
+        System.out.println("Report: " + REPORT.toAbsolutePath());
+        if (minimal != null) System.exit(1);
+        System.out.println("Every answer matched the model.");
+    }
+}
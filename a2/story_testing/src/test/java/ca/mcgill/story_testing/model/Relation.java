@@ -0,0 +1,54 @@
+package ca.mcgill.story_testing.model;
+
+import ca.mcgill.story_testing.load.ResourceType;
+
+// The Todo Manager's relationships: POST /{from}/{id}/{field} {"id": ...} links, DELETE /{from}/{id}/{field}/{id}
+// unlinks. Each comes in a pair with its reverse. Linking or unlinking tasksof does the same to tasks and the other
+// way round; a category link only changes the side it was made from. Deleting an object, though, takes the reverse
+// of each link it made with it, for every pair.
+public enum Relation {
+    TASKSOF(ResourceType.TODOS, "tasksof", ResourceType.PROJECTS),
+    TASKS(ResourceType.PROJECTS, "tasks", ResourceType.TODOS),
+    TODO_CATEGORIES(ResourceType.TODOS, "categories", ResourceType.CATEGORIES),
+    PROJECT_CATEGORIES(ResourceType.PROJECTS, "categories", ResourceType.CATEGORIES),
+    CATEGORY_TODOS(ResourceType.CATEGORIES, "todos", ResourceType.TODOS),
+    CATEGORY_PROJECTS(ResourceType.CATEGORIES, "projects", ResourceType.PROJECTS);
+
+    private final ResourceType from;
+    private final String field;
+    private final ResourceType to;
+
+    Relation(ResourceType from, String field, ResourceType to) {
+        this.from = from;
+        this.field = field;
+        this.to = to;
+    }
+
+    public ResourceType from() {
+        return from;
+    }
+
+    public String field() {
+        return field;
+    }
+
+    public ResourceType to() {
+        return to;
+    }
+
+    public Relation reverse() {
+        return switch (this) {
+            case TASKSOF -> TASKS;
+            case TASKS -> TASKSOF;
+            case TODO_CATEGORIES -> CATEGORY_TODOS;
+            case CATEGORY_TODOS -> TODO_CATEGORIES;
+            case PROJECT_CATEGORIES -> CATEGORY_PROJECTS;
+            case CATEGORY_PROJECTS -> PROJECT_CATEGORIES;
+        };
+    }
+
+    // true when linking or unlinking one end does the same to the other
+    public boolean twoWay() {
+        return this == TASKSOF || this == TASKS;
+    }
+}
@@ -0,0 +1,145 @@
+package ca.mcgill.story_testing.model;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.http.HttpResponse;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.IntFunction;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import ca.mcgill.story_testing.http.HttpTransport;
+import ca.mcgill.story_testing.load.ResourceType;
+
+// Plays a command sequence against the server, checking every answer against a fresh ApiModel, and stops at the
+// first disagreement. Not thread-safe: each stream has its own runner.
+public final class SequenceRunner {
+    // No handle is ever bound to it
+    private static final String MISSING_ID = "0";
+
+    // signature says what went wrong without ids or values, so shrinking keeps chasing the same problem
+    public record Failure(int index, String signature, String message) {
+    }
+
+    private final HttpTransport transport;
+    private final Set<ApiModel.Quirk> quirks;
+    // "Link 201" -> how often a command of that kind got that status
+    private final Map<String, Long> coverage = new TreeMap<>();
+    private long requests;
+
+    public SequenceRunner(HttpTransport transport, Set<ApiModel.Quirk> quirks) {
+        this.transport = transport;
+        this.quirks = quirks;
+    }
+
+    public long requests() {
+        return requests;
+    }
+
+    public Map<String, Long> coverage() {
+        return coverage;
+    }
+
+    // null when every answer matched the model
+    public Failure run(List<Command> commands) throws InterruptedException {
+        ApiModel model = new ApiModel(quirks);
+        Map<Integer, String> ids = new HashMap<>();
+        Map<String, Integer> handles = new HashMap<>();
+        IntFunction<String> idOf = handle -> ids.getOrDefault(handle, MISSING_ID);
+        for (int index = 0; index < commands.size(); index++) {
+            Command command = commands.get(index);
+            ApiModel.Expectation expected = model.apply(command);
+            HttpResponse<String> response;
+            try {
+                response = transport.send(command.method(), command.path(idOf), command.body(idOf));
+            } catch (IOException e) {
+                throw new UncheckedIOException(command.render(), e);
+            }
+            requests++;
+            String kind = command.getClass().getSimpleName();
+            coverage.merge(kind + " " + response.statusCode(), 1L, Long::sum);
+            if (response.statusCode() != expected.status()) {
+                return new Failure(index, kind + ": status " + response.statusCode() + ", expected " + expected.status(),
+                        command.render() + " answered " + response.statusCode() + " instead of " + expected.status()
+                                + ": " + abbreviate(response.body()));
+            }
+            if (command instanceof Command.Create create && expected.status() == 201) {
+                String id = new JSONObject(response.body()).getString("id");
+                ids.put(create.handle(), id);
+                handles.put(create.type().path() + "/" + id, create.handle());
+            }
+            if (expected.entity() != null) {
+                ApiModel.Snapshot snapshot = expected.entity();
+                JSONObject actual = command instanceof Command.Read
+                        ? new JSONObject(response.body()).getJSONArray(snapshot.type().path().substring(1)).getJSONObject(0)
+                        : new JSONObject(response.body());
+                String difference = compare(snapshot, actual, handles, command instanceof Command.Read);
+                if (difference != null) {
+                    return new Failure(index, kind + " " + snapshot.type().path() + ": " + difference,
+                            command.render() + ": " + difference + " differs, expected " + describe(snapshot)
+                                    + ", got " + abbreviate(actual.toString()));
+                }
+            }
+        }
+        return null;
+    }
+
+    // The first field or relationship (by name) that does not match, or null; links only count on reads, the other
+    // answers echo the fields alone
+    private static String compare(ApiModel.Snapshot expected, JSONObject actual, Map<String, Integer> handles,
+                                  boolean links) {
+        for (Map.Entry<String, String> field : expected.fields().entrySet()) {
+            if (!field.getValue().equals(actual.optString(field.getKey(), null))) return field.getKey();
+        }
+        for (String key : actual.keySet()) {
+            if (!key.equals("id") && !expected.fields().containsKey(key) && relation(expected.type(), key) == null) {
+                return key;
+            }
+        }
+        if (!links) return null;
+        for (Relation relation : Relation.values()) {
+            if (relation.from() != expected.type()) continue;
+            Set<String> want = new TreeSet<>();
+            for (int handle : expected.links().getOrDefault(relation, Set.of())) {
+                want.add(Command.name(relation.to(), handle));
+            }
+            Set<String> got = new TreeSet<>();
+            JSONArray linked = actual.optJSONArray(relation.field());
+            for (int i = 0; linked != null && i < linked.length(); i++) {
+                String id = linked.getJSONObject(i).getString("id");
+                Integer handle = handles.get(relation.to().path() + "/" + id);
+                // an id this sequence never created: another stream's object, or one made up by the server
+                got.add(handle == null ? relation.to().path() + "/" + id : Command.name(relation.to(), handle));
+            }
+            if (!want.equals(got)) return relation.field();
+        }
+        return null;
+    }
+
+    private static Relation relation(ResourceType type, String field) {
+        for (Relation relation : Relation.values()) {
+            if (relation.from() == type && relation.field().equals(field)) return relation;
+        }
+        return null;
+    }
+
+    private static String describe(ApiModel.Snapshot snapshot) {
+        StringBuilder text = new StringBuilder(new JSONObject(snapshot.fields()).toString());
+        snapshot.links().forEach((relation, targets) -> {
+            text.append(' ').append(relation.field()).append('=');
+            targets.forEach(handle -> text.append(Command.name(relation.to(), handle)).append(','));
+            text.setLength(text.length() - 1);
+        });
+        return text.toString();
+    }
+
+    private static String abbreviate(String text) {
+        return text.length() <= 300 ? text : text.substring(0, 300) + "...";
+    }
+}
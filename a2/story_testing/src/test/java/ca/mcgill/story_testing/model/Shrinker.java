@@ -0,0 +1,54 @@
+package ca.mcgill.story_testing.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Zeller's delta debugging (ddmin): cuts a failing input into n chunks, keeps any chunk or complement that still
+// fails and otherwise doubles n, until no single element can go. The result is 1-minimal: dropping any one element
+// makes the failure disappear.
+public final class Shrinker {
+    public interface Test<T> {
+        boolean fails(List<T> input) throws InterruptedException;
+    }
+
+    public record Result<T>(List<T> minimal, int tests) {
+    }
+
+    private Shrinker() {
+    }
+
+    public static <T> Result<T> ddmin(List<T> failing, Test<T> test) throws InterruptedException {
+        List<T> current = new ArrayList<>(failing);
+        int n = 2;
+        int tests = 0;
+        while (current.size() >= 2) {
+            int chunk = (current.size() + n - 1) / n;
+            boolean reduced = false;
+            for (int start = 0; start < current.size() && !reduced; start += chunk) {
+                List<T> subset = new ArrayList<>(current.subList(start, Math.min(start + chunk, current.size())));
+                tests++;
+                if (test.fails(subset)) {
+                    current = subset;
+                    n = 2;
+                    reduced = true;
+                }
+            }
+            // With two chunks each complement is the other chunk, already tried
+            for (int start = 0; n > 2 && start < current.size() && !reduced; start += chunk) {
+                List<T> complement = new ArrayList<>(current.subList(0, start));
+                complement.addAll(current.subList(Math.min(start + chunk, current.size()), current.size()));
+                tests++;
+                if (test.fails(complement)) {
+                    current = complement;
+                    n = Math.max(n - 1, 2);
+                    reduced = true;
+                }
+            }
+            if (!reduced) {
+                if (n >= current.size()) break;
+                n = Math.min(n * 2, current.size());
+            }
+        }
+        return new Result<>(current, tests);
+    }
+}
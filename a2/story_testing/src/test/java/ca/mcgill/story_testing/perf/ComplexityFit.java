@@ -0,0 +1,91 @@
+package ca.mcgill.story_testing.perf;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+// Least-squares fits of cost = a + b * f(n) for f = 1, log n and n, compared by BIC so that the extra parameter
+// of the growing models has to pay for itself. Models with a negative slope are not candidates.
+public final class ComplexityFit {
+    public enum Model {
+        CONSTANT("O(1)"), LOGARITHMIC("O(log n)"), LINEAR("O(n)");
+
+        private final String label;
+
+        Model(String label) {
+            this.label = label;
+        }
+
+        public String label() {
+            return label;
+        }
+
+        double f(double n) {
+            return switch (this) {
+                case CONSTANT -> 0;
+                case LOGARITHMIC -> Math.log(Math.max(1, n));
+                case LINEAR -> n;
+            };
+        }
+    }
+
+    public record Fit(Model model, double intercept, double slope, double rss, double bic, double r2) {
+        public double predict(double n) {
+            return intercept + slope * model.f(n);
+        }
+
+        // predict(to) / predict(from); > 1 means the cost grows over that range
+        public double growth(double from, double to) {
+            double base = predict(from);
+            return base <= 0 ? Double.POSITIVE_INFINITY : predict(to) / base;
+        }
+    }
+
+    private ComplexityFit() {
+    }
+
+    public static List<Fit> fitAll(double[] n, double[] y) {
+        if (n.length != y.length || n.length == 0) throw new IllegalArgumentException("need matching, non-empty samples");
+        double mean = Samples.of(y).mean();
+        double total = 0;
+        for (double value : y) {
+            total += (value - mean) * (value - mean);
+        }
+        List<Fit> fits = new ArrayList<>();
+        for (Model model : Model.values()) {
+            double slope = 0;
+            double intercept = mean;
+            if (model != Model.CONSTANT) {
+                double fMean = 0;
+                for (double size : n) {
+                    fMean += model.f(size);
+                }
+                fMean /= n.length;
+                double covariance = 0;
+                double variance = 0;
+                for (int i = 0; i < n.length; i++) {
+                    covariance += (model.f(n[i]) - fMean) * (y[i] - mean);
+                    variance += (model.f(n[i]) - fMean) * (model.f(n[i]) - fMean);
+                }
+                if (variance == 0) continue;
+                slope = covariance / variance;
+                if (slope < 0) continue;
+                intercept = mean - slope * fMean;
+            }
+            double rss = 0;
+            for (int i = 0; i < n.length; i++) {
+                double residual = y[i] - (intercept + slope * model.f(n[i]));
+                rss += residual * residual;
+            }
+            int parameters = model == Model.CONSTANT ? 1 : 2;
+            double bic = n.length * Math.log(Math.max(rss, 1e-12) / n.length) + parameters * Math.log(n.length);
+            double r2 = total == 0 ? 1 : 1 - rss / total;
+            fits.add(new Fit(model, intercept, slope, rss, bic, r2));
+        }
+        return fits;
+    }
+
+    public static Fit best(double[] n, double[] y) {
+        return fitAll(n, y).stream().min(Comparator.comparingDouble(Fit::bic)).orElseThrow();
+    }
+}
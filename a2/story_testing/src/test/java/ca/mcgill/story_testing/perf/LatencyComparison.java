@@ -0,0 +1,116 @@
+package ca.mcgill.story_testing.perf;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+// Is the candidate's latency distribution worse than the baseline's? Works on LatencyHistograms, so every bucket
+// (~3% wide) is one tie group and both sides share the bucket layout.
+public final class LatencyComparison {
+    // u: Mann-Whitney U of the candidate; superiority: P(candidate > baseline) + P(tie) / 2, 0.5 when alike;
+    // pSlower: one-sided p-value of "candidate tends to be slower" (normal approximation, tie and continuity corrected)
+    public record MannWhitney(double u, double z, double superiority, double pSlower) {
+    }
+
+    // Median of candidate / median of baseline with a percentile bootstrap interval; pSlower is the share of resamples
+    // in which the candidate was not slower
+    public record Interval(double estimate, double lower, double upper, double pSlower) {
+    }
+
+    private LatencyComparison() {
+    }
+
+    public static MannWhitney mannWhitney(LatencyHistogram baseline, LatencyHistogram candidate) {
+        List<long[]> a = buckets(baseline);
+        List<long[]> b = buckets(candidate);
+        double na = baseline.count();
+        double nb = candidate.count();
+        if (na == 0 || nb == 0) return new MannWhitney(0, 0, 0.5, 1);
+        double n = na + nb;
+        double rankSum = 0;
+        double ties = 0;
+        double seen = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.size() || j < b.size()) {
+            long bound = Math.min(i < a.size() ? a.get(i)[0] : Long.MAX_VALUE, j < b.size() ? b.get(j)[0] : Long.MAX_VALUE);
+            long countA = i < a.size() && a.get(i)[0] == bound ? a.get(i++)[1] : 0;
+            long countB = j < b.size() && b.get(j)[0] == bound ? b.get(j++)[1] : 0;
+            double group = countA + countB;
+            // Everything in the bucket shares the average of the ranks it spans
+            rankSum += countB * (seen + (group + 1) / 2);
+            ties += group * group * group - group;
+            seen += group;
+        }
+        double u = rankSum - nb * (nb + 1) / 2;
+        double mean = na * nb / 2;
+        double variance = na * nb / 12 * ((n + 1) - ties / (n * (n - 1)));
+        double z = variance <= 0 ? 0 : (u - mean - 0.5) / Math.sqrt(variance);
+        return new MannWhitney(u, z, u / (na * nb), 1 - normalCdf(z));
+    }
+
+    // Bootstraps whole rounds, not single samples: latencies within one measuring window are correlated (GC, JIT,
+    // the other JVM on the same cores), so resampling them one by one gives intervals far too narrow. Rounds are
+    // grouped by fork (a fresh pair of server JVMs), and two JVMs of the same jar can settle a few tens of percent
+    // apart, so forks are drawn first and rounds within each drawn fork second. Round i of the baseline and of the
+    // candidate ran back to back and are drawn together.
+    public static Interval medianRatio(List<List<LatencyHistogram>> baselineForks,
+                                       List<List<LatencyHistogram>> candidateForks, int resamples, double confidence,
+                                       SplittableRandom random) {
+        if (baselineForks.isEmpty() || baselineForks.size() != candidateForks.size()) {
+            throw new IllegalArgumentException("Need the same, non-zero number of forks on both sides");
+        }
+        LatencyHistogram baseline = new LatencyHistogram();
+        LatencyHistogram candidate = new LatencyHistogram();
+        for (int f = 0; f < baselineForks.size(); f++) {
+            if (baselineForks.get(f).isEmpty() || baselineForks.get(f).size() != candidateForks.get(f).size()) {
+                throw new IllegalArgumentException("Fork " + f + " needs the same, non-zero number of rounds on both sides");
+            }
+            baselineForks.get(f).forEach(baseline::merge);
+            candidateForks.get(f).forEach(candidate::merge);
+        }
+        double estimate = ratio(baseline, candidate);
+        double[] ratios = new double[resamples];
+        int notSlower = 0;
+        int forks = baselineForks.size();
+        for (int r = 0; r < resamples; r++) {
+            LatencyHistogram a = new LatencyHistogram();
+            LatencyHistogram b = new LatencyHistogram();
+            for (int f = 0; f < forks; f++) {
+                int fork = random.nextInt(forks);
+                int rounds = baselineForks.get(fork).size();
+                for (int k = 0; k < rounds; k++) {
+                    int round = random.nextInt(rounds);
+                    a.merge(baselineForks.get(fork).get(round));
+                    b.merge(candidateForks.get(fork).get(round));
+                }
+            }
+            ratios[r] = ratio(a, b);
+            if (ratios[r] <= 1) notSlower++;
+        }
+        Arrays.sort(ratios);
+        double tail = (1 - confidence) / 2;
+        return new Interval(estimate, ratios[(int) Math.floor(tail * (resamples - 1))],
+                ratios[(int) Math.ceil((1 - tail) * (resamples - 1))], (notSlower + 1.0) / (resamples + 1.0));
+    }
+
+    private static double ratio(LatencyHistogram baseline, LatencyHistogram candidate) {
+        return (double) candidate.percentile(50) / Math.max(1, baseline.percentile(50));
+    }
+
+    private static List<long[]> buckets(LatencyHistogram histogram) {
+        List<long[]> buckets = new ArrayList<>();
+        histogram.forEachBucket((upperBound, count) -> buckets.add(new long[]{upperBound, count}));
+        return buckets;
+    }
+
+    // Abramowitz and Stegun 7.1.26, absolute error below 1.5e-7
+    static double normalCdf(double z) {
+        double x = Math.abs(z) / Math.sqrt(2);
+        double t = 1 / (1 + 0.3275911 * x);
+        double erf = 1 - t * (0.254829592 + t * (-0.284496736 + t * (1.421413741 + t * (-1.453152027 + t * 1.061405429))))
+                * Math.exp(-x * x);
+        return z >= 0 ? (1 + erf) / 2 : (1 - erf) / 2;
+    }
+}
@@ -0,0 +1,173 @@
+package ca.mcgill.story_testing.perf;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+// Log-linear histogram of nanosecond latencies: exact below 64 ns, then 32 buckets per power of two (~3% error).
+// Fixed layout, so histograms from other threads, runs or processes merge by adding counts. Safe for concurrent record.
+public final class LatencyHistogram {
+    private static final int SUB_BITS = 5;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS - 1) * SUB_COUNT + 2 * SUB_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder total = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+    private final LongAccumulator min = new LongAccumulator(Math::min, Long.MAX_VALUE);
+
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(index(value));
+        total.increment();
+        sum.add(value);
+        max.accumulate(value);
+        min.accumulate(value);
+    }
+
+    // The same latency `count` times over
+    public void record(long nanos, long count) {
+        long value = Math.max(0, nanos);
+        counts.addAndGet(index(value), count);
+        total.add(count);
+        sum.add(value * count);
+        max.accumulate(value);
+        min.accumulate(value);
+    }
+
+    public long count() {
+        return total.sum();
+    }
+
+    public long sum() {
+        return sum.sum();
+    }
+
+    public long max() {
+        return max.get();
+    }
+
+    public long min() {
+        return count() == 0 ? 0 : min.get();
+    }
+
+    public double mean() {
+        long count = count();
+        return count == 0 ? 0 : sum.sum() / (double) count;
+    }
+
+    // Upper bound of the bucket holding the given percentile (0-100), capped at the recorded maximum
+    public long percentile(double percentile) {
+        long count = count();
+        if (count == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) return Math.min(highestValue(i), max());
+        }
+        return max();
+    }
+
+    // Number of recorded values <= nanos, at bucket resolution
+    public long countAtOrBelow(long nanos) {
+        long seen = 0;
+        for (int i = 0; i < BUCKETS && lowestValue(i) <= nanos; i++) {
+            seen += counts.get(i);
+        }
+        return seen;
+    }
+
+    public void merge(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            long value = other.counts.get(i);
+            if (value != 0) counts.addAndGet(i, value);
+        }
+        total.add(other.total.sum());
+        sum.add(other.sum.sum());
+        max.accumulate(other.max.get());
+        min.accumulate(other.min.get());
+    }
+
+    public LatencyHistogram copy() {
+        LatencyHistogram copy = new LatencyHistogram();
+        copy.merge(this);
+        return copy;
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        total.reset();
+        sum.reset();
+        max.reset();
+        min.reset();
+    }
+
+    // Visits non-empty buckets in increasing order with their inclusive upper bound
+    public void forEachBucket(BucketVisitor visitor) {
+        for (int i = 0; i < BUCKETS; i++) {
+            long count = counts.get(i);
+            if (count != 0) visitor.visit(highestValue(i), count);
+        }
+    }
+
+    public interface BucketVisitor {
+        void visit(long upperBoundNanos, long count);
+    }
+
+    // Sparse form for reports and for shipping between processes: {"count","sum","min","max","buckets":[[i,n],...]}
+    public JSONObject toJson() {
+        JSONArray buckets = new JSONArray();
+        for (int i = 0; i < BUCKETS; i++) {
+            long count = counts.get(i);
+            if (count != 0) buckets.put(new JSONArray().put(i).put(count));
+        }
+        return new JSONObject()
+                .put("count", count())
+                .put("sum", sum.sum())
+                .put("min", min())
+                .put("max", max())
+                .put("buckets", buckets);
+    }
+
+    public static LatencyHistogram fromJson(JSONObject json) {
+        LatencyHistogram histogram = new LatencyHistogram();
+        JSONArray buckets = json.getJSONArray("buckets");
+        for (int i = 0; i < buckets.length(); i++) {
+            JSONArray bucket = buckets.getJSONArray(i);
+            histogram.counts.set(bucket.getInt(0), bucket.getLong(1));
+        }
+        histogram.total.add(json.getLong("count"));
+        histogram.sum.add(json.getLong("sum"));
+        if (json.getLong("count") > 0) {
+            histogram.max.accumulate(json.getLong("max"));
+            histogram.min.accumulate(json.getLong("min"));
+        }
+        return histogram;
+    }
+
+    static int index(long value) {
+        if (value < 2 * SUB_COUNT) return (int) value;
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return shift * SUB_COUNT + (int) (value >>> shift);
+    }
+
+    static long lowestValue(int index) {
+        if (index < 2 * SUB_COUNT) return index;
+        int shift = index / SUB_COUNT - 1;
+        return (long) (index % SUB_COUNT + SUB_COUNT) << shift;
+    }
+
+    static long highestValue(int index) {
+        if (index < 2 * SUB_COUNT) return index;
+        int shift = index / SUB_COUNT - 1;
+        long next = (long) (index % SUB_COUNT + SUB_COUNT + 1) << shift;
+        return next - 1;
+    }
+}
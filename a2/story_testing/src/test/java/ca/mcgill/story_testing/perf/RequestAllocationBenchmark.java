@@ -0,0 +1,150 @@
+package ca.mcgill.story_testing.perf;
+
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.json.JSONObject;
+
+import ca.mcgill.story_testing.http.JdkHttpTransport;
+import ca.mcgill.story_testing.http.JsonTemplate;
+import ca.mcgill.story_testing.http.RequestTemplate;
+import ca.mcgill.story_testing.stepdefs.SharedTestContext;
+
+// Bytes allocated and time per request for the step-definition way of building a request (JSONObject, builder,
+// ofString) against RequestTemplate + JsonTemplate. JMH is not on the classpath; allocation comes from
+// com.sun.management.ThreadMXBean, summed over all threads. -Dstory.perf.send=<n> also sends n PUTs per variant to
+// the running server, which adds the HttpClient's own allocations. For a JFR recording see 'gradle requestAllocation'.
+public class RequestAllocationBenchmark {
+    public static final String ITERATIONS_PROPERTY = "story.perf.iterations";
+    public static final String SEND_PROPERTY = "story.perf.send";
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private static final String[] TITLES = new String[64];
+    private static final String[] DESCRIPTIONS = new String[64];
+
+    static {
+        for (int i = 0; i < TITLES.length; i++) {
+            TITLES[i] = "Todo-" + Integer.toString(i * 7919, 36);
+            DESCRIPTIONS[i] = "load description " + Integer.toString(i * 104729, 36);
+        }
+    }
+
+    interface Variant {
+        HttpRequest build(int i);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int iterations = Integer.getInteger(ITERATIONS_PROPERTY, 200_000);
+        int sends = Integer.getInteger(SEND_PROPERTY, 0);
+        String baseUrl = System.getProperty(SharedTestContext.BASE_URL_PROPERTY, "http://localhost:4567");
+
+        JsonTemplate body = JsonTemplate.compile("{\"title\":${title},\"description\":${description},\"doneStatus\":${doneStatus}}");
+        JsonTemplate.Filler filler = body.newFiller(4096);
+        RequestTemplate create = RequestTemplate.of(baseUrl, "POST", "/todos");
+        RequestTemplate update = RequestTemplate.of(baseUrl, "PUT", "/todos/{id}");
+
+        Map<String, Variant> variants = new LinkedHashMap<>();
+        variants.put("POST json-builder", i -> jsonBuilder(baseUrl, "/todos", "POST", i));
+        variants.put("POST template", i -> create.request(fill(filler, i)));
+        variants.put("PUT json-builder", i -> jsonBuilder(baseUrl, "/todos/" + (i & 1023), "PUT", i));
+        variants.put("PUT template", i -> update.request(i & 1023, fill(filler, i)));
+
+        System.out.println("=== Request Allocation (" + iterations + " requests per variant, build only) ===");
+        System.out.printf("%-20s %12s %10s%n", "variant", "bytes/req", "ns/req");
+        for (Map.Entry<String, Variant> variant : variants.entrySet()) {
+            measure(variant.getValue(), iterations / 4);
+            long[] result = measure(variant.getValue(), iterations);
+            System.out.printf("%-20s %12.1f %10.1f%n", variant.getKey(), result[0] / (double) iterations, result[1] / (double) iterations);
+        }
+
+        if (sends > 0) {
+            send(baseUrl, sends, filler, update);
+        }
+    }
+
+    // The step definitions' path: a JSONObject from the current fields, then HttpRequest.Builder and ofString
+    private static HttpRequest jsonBuilder(String baseUrl, String endpoint, String method, int i) {
+        Map<String, String> fields = new HashMap<>();
+        fields.put("title", TITLES[i & 63]);
+        fields.put("description", DESCRIPTIONS[i & 63]);
+        fields.put("doneStatus", (i & 1) == 0 ? "true" : "false");
+        JSONObject json = new JSONObject();
+        for (Map.Entry<String, String> entry : fields.entrySet()) {
+            if (entry.getKey().equals("doneStatus")) {
+                json.put(entry.getKey(), Boolean.parseBoolean(entry.getValue()));
+            } else {
+                json.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + endpoint))
+                .header("Content-Type", "application/json")
+                .method(method, HttpRequest.BodyPublishers.ofString(json.toString()))
+                .build();
+    }
+
+    private static ByteBuffer fill(JsonTemplate.Filler filler, int i) {
+        return filler.start().string(TITLES[i & 63]).string(DESCRIPTIONS[i & 63]).bool((i & 1) == 0).finish();
+    }
+
+    // {allocated bytes, elapsed ns}; the sink keeps the JIT from dropping unused requests
+    private static long[] measure(Variant variant, int iterations) {
+        long sink = 0;
+        long bytes = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink += variant.build(i).hashCode();
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = allocatedBytes() - bytes;
+        if (sink == 42) System.out.print("");
+        return new long[] {allocated, elapsed};
+    }
+
+    private static void send(String baseUrl, int sends, JsonTemplate.Filler filler, RequestTemplate update) throws Exception {
+        JdkHttpTransport transport = new JdkHttpTransport(HttpClient.newHttpClient(), baseUrl);
+        HttpResponse<String> created = transport.send("POST", "/todos", "{\"title\":\"allocation probe\"}");
+        if (created.statusCode() != 201) {
+            throw new IllegalStateException("Could not create a todo at " + baseUrl + ": " + created.statusCode());
+        }
+        long id = Long.parseLong(new JSONObject(created.body()).getString("id"));
+        Map<String, Variant> variants = new LinkedHashMap<>();
+        variants.put("PUT json-builder", i -> jsonBuilder(baseUrl, "/todos/" + id, "PUT", i));
+        variants.put("PUT template", i -> update.request(id, fill(filler, i)));
+        try {
+            System.out.println("=== Request Allocation (" + sends + " PUTs per variant, sent, all threads) ===");
+            System.out.printf("%-20s %12s %10s%n", "variant", "bytes/req", "us/req");
+            for (Map.Entry<String, Variant> variant : variants.entrySet()) {
+                long bytes = allocatedBytes();
+                long start = System.nanoTime();
+                for (int i = 0; i < sends; i++) {
+                    HttpResponse<Void> response = transport.send(variant.getValue().build(i), HttpResponse.BodyHandlers.discarding());
+                    if (response.statusCode() != 200) {
+                        throw new IllegalStateException(variant.getKey() + " returned " + response.statusCode());
+                    }
+                }
+                long elapsed = System.nanoTime() - start;
+                System.out.printf("%-20s %12.1f %10.1f%n", variant.getKey(),
+                        (allocatedBytes() - bytes) / (double) sends, elapsed / 1000.0 / sends);
+            }
+        } finally {
+            transport.send("DELETE", "/todos/" + id, null);
+        }
+    }
+
+    private static long allocatedBytes() {
+        long total = 0;
+        for (long bytes : THREADS.getThreadAllocatedBytes(THREADS.getAllThreadIds())) {
+            if (bytes > 0) total += bytes;
+        }
+        return total;
+    }
+}
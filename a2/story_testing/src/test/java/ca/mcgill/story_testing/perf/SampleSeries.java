@@ -0,0 +1,123 @@
+package ca.mcgill.story_testing.perf;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+// Request latencies in the order they finished, with their start times, kept so that SteadyState can cut the warm-up
+// off once the run is over. Not thread-safe: concurrent workers each fill their own series and merge them afterwards.
+// A series built with a capacity holds at most that many samples: once full it keeps every other one and from then
+// on records every stride-th sample offered, each kept sample standing for `stride` requests.
+public final class SampleSeries {
+    private final int capacity;
+    private long[] starts;
+    private long[] latencies;
+    private int count;
+    private int stride = 1;
+    private long offered;
+
+    public SampleSeries() {
+        this(Integer.MAX_VALUE);
+    }
+
+    public SampleSeries(int capacity) {
+        if (capacity < 2) throw new IllegalArgumentException("Capacity must be at least 2: " + capacity);
+        this.capacity = capacity;
+        this.starts = new long[Math.min(1024, capacity)];
+        this.latencies = new long[starts.length];
+    }
+
+    public void record(long startNanos, long latencyNanos) {
+        if (offered++ % stride != 0) return;
+        if (count == capacity) {
+            thin();
+            if ((offered - 1) % stride != 0) return;
+        }
+        if (count == starts.length) {
+            int size = (int) Math.min(capacity, 2L * count);
+            starts = Arrays.copyOf(starts, size);
+            latencies = Arrays.copyOf(latencies, size);
+        }
+        starts[count] = startNanos;
+        latencies[count] = latencyNanos;
+        count++;
+    }
+
+    public int count() {
+        return count;
+    }
+
+    public int stride() {
+        return stride;
+    }
+
+    // Keeps the samples at even positions, i.e. those offered at multiples of the doubled stride
+    private void thin() {
+        int kept = 0;
+        for (int i = 0; i < count; i += 2) {
+            starts[kept] = starts[i];
+            latencies[kept] = latencies[i];
+            kept++;
+        }
+        count = kept;
+        stride *= 2;
+    }
+
+    // One series in end order from series that are each in end order (every worker's are, as it records a request
+    // when it has finished). Series thinned less than the most thinned one are brought to its stride first.
+    public static SampleSeries merge(List<SampleSeries> series) {
+        int stride = 1;
+        long total = 0;
+        for (SampleSeries s : series) stride = Math.max(stride, s.stride);
+        for (SampleSeries s : series) total += s.count / (stride / s.stride) + 1;
+        SampleSeries merged = new SampleSeries();
+        merged.stride = stride;
+        merged.starts = new long[(int) Math.max(1, Math.min(Integer.MAX_VALUE - 8, total))];
+        merged.latencies = new long[merged.starts.length];
+        // Cursors ordered by the end of the sample they point at: {series, position, step}
+        PriorityQueue<int[]> cursors = new PriorityQueue<>((a, b) -> Long.compare(end(series, a), end(series, b)));
+        for (int i = 0; i < series.size(); i++) {
+            if (series.get(i).count > 0) cursors.add(new int[] {i, 0, stride / series.get(i).stride});
+        }
+        while (!cursors.isEmpty()) {
+            int[] cursor = cursors.poll();
+            SampleSeries s = series.get(cursor[0]);
+            merged.starts[merged.count] = s.starts[cursor[1]];
+            merged.latencies[merged.count] = s.latencies[cursor[1]];
+            merged.count++;
+            cursor[1] += cursor[2];
+            if (cursor[1] < s.count) cursors.add(cursor);
+        }
+        return merged;
+    }
+
+    private static long end(List<SampleSeries> series, int[] cursor) {
+        SampleSeries s = series.get(cursor[0]);
+        return s.starts[cursor[1]] + s.latencies[cursor[1]];
+    }
+
+    // Warm-up runs from the first start to the end of the last warm-up request, the steady part from there to the
+    // last request's end. Counts and the histogram are scaled back up by the stride.
+    public SteadyState.Window steadyState() {
+        SteadyState.Cut cut = SteadyState.ofLatencies(latencies, count);
+        int from = cut.stable() ? cut.warmup() : 0;
+        LatencyHistogram latency = new LatencyHistogram();
+        long first = Long.MAX_VALUE;
+        long boundary = Long.MIN_VALUE;
+        long last = Long.MIN_VALUE;
+        for (int i = 0; i < count; i++) {
+            long end = starts[i] + latencies[i];
+            first = Math.min(first, starts[i]);
+            last = Math.max(last, end);
+            if (i < from) {
+                boundary = Math.max(boundary, end);
+            } else {
+                latency.record(latencies[i], stride);
+            }
+        }
+        if (count == 0) return new SteadyState.Window(0, 0, 0, 0, latency, false, cut.reason());
+        if (from == 0) boundary = first;
+        return new SteadyState.Window((long) from * stride, boundary - first, (long) (count - from) * stride,
+                last - boundary, latency, cut.stable(), cut.reason());
+    }
+}
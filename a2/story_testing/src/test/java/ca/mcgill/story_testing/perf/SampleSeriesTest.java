@@ -0,0 +1,76 @@
+package ca.mcgill.story_testing.perf;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class SampleSeriesTest {
+    // Two workers whose requests interleave in time come out as one series in end order
+    @Test
+    void mergeOrdersByEnd() {
+        SampleSeries a = new SampleSeries();
+        SampleSeries b = new SampleSeries();
+        for (int i = 0; i < 100; i++) {
+            a.record(i * 20, 10);
+            b.record(i * 20 + 5, 10);
+        }
+        SampleSeries merged = SampleSeries.merge(List.of(a, b));
+        assertEquals(200, merged.count());
+        SteadyState.Window steady = merged.steadyState();
+        assertTrue(steady.stable());
+        assertEquals(0, steady.warmupSamples());
+        assertEquals(200, steady.samples());
+        assertEquals(99 * 20 + 15, steady.nanos());
+        assertEquals(200, steady.latency().count());
+    }
+
+    // The slow first requests of one worker end among the other's fast ones, and are cut where they end
+    @Test
+    void warmupIsCutInEndOrder() {
+        SampleSeries a = new SampleSeries();
+        SampleSeries b = new SampleSeries();
+        for (int i = 0; i < 200; i++) {
+            a.record(i * 1_000L, i < 20 ? 8_000 : 1_000);
+            b.record(i * 1_000L + 500, 1_000);
+        }
+        SteadyState.Window steady = SampleSeries.merge(List.of(a, b)).steadyState();
+        assertTrue(steady.stable(), steady.describe());
+        assertTrue(steady.warmupSamples() >= 20 && steady.warmupSamples() <= 100, steady.describe());
+        assertEquals(400, steady.warmupSamples() + steady.samples());
+        assertTrue(steady.latency().max() < 8_000, "max " + steady.latency().max());
+    }
+
+    // A full series keeps every other sample, again each time it fills up; each kept one stands for `stride`
+    @Test
+    void fullSeriesThins() {
+        SampleSeries series = new SampleSeries(100);
+        for (int i = 0; i < 1024; i++) series.record(i * 10L, 5);
+        assertEquals(16, series.stride());
+        assertEquals(1024 / 16, series.count());
+        SteadyState.Window steady = series.steadyState();
+        assertTrue(steady.stable());
+        assertEquals(1024, steady.warmupSamples() + steady.samples());
+        assertEquals(steady.samples(), steady.latency().count());
+
+        // Merged with a series thinned less, both end up at the larger stride
+        SampleSeries other = new SampleSeries();
+        for (int i = 0; i < 160; i++) other.record(i * 10L + 1, 5);
+        SampleSeries merged = SampleSeries.merge(List.of(series, other));
+        assertEquals(16, merged.stride());
+        assertEquals(1024 / 16 + 160 / 16, merged.count());
+    }
+
+    @Test
+    void unsettledRunKeepsEverySample() {
+        SampleSeries series = new SampleSeries();
+        for (int i = 0; i < 30; i++) series.record(i, 100);
+        SteadyState.Window steady = series.steadyState();
+        assertFalse(steady.stable());
+        assertEquals(0, steady.warmupSamples());
+        assertEquals(30, steady.latency().count());
+    }
+}
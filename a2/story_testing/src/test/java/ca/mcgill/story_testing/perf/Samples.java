@@ -0,0 +1,116 @@
+package ca.mcgill.story_testing.perf;
+
+import java.util.Arrays;
+
+// Growable array of primitive doubles with the summary statistics the experiment runners need.
+public final class Samples {
+    private double[] values;
+    private int size;
+
+    public Samples() {
+        this(64);
+    }
+
+    public Samples(int capacity) {
+        values = new double[Math.max(1, capacity)];
+    }
+
+    public static Samples of(double... values) {
+        Samples samples = new Samples(values.length);
+        for (double value : values) {
+            samples.add(value);
+        }
+        return samples;
+    }
+
+    public void add(double value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size++] = value;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public double get(int index) {
+        if (index >= size) throw new IndexOutOfBoundsException(index);
+        return values[index];
+    }
+
+    public double[] toArray() {
+        return Arrays.copyOf(values, size);
+    }
+
+    // Samples [from, to) as a new instance
+    public Samples slice(int from, int to) {
+        Samples slice = new Samples(to - from);
+        for (int i = from; i < to; i++) {
+            slice.add(values[i]);
+        }
+        return slice;
+    }
+
+    public double sum() {
+        double sum = 0;
+        for (int i = 0; i < size; i++) {
+            sum += values[i];
+        }
+        return sum;
+    }
+
+    public double mean() {
+        return size == 0 ? Double.NaN : sum() / size;
+    }
+
+    // Sample variance (n - 1)
+    public double variance() {
+        if (size < 2) return 0;
+        double mean = mean();
+        double squares = 0;
+        for (int i = 0; i < size; i++) {
+            squares += (values[i] - mean) * (values[i] - mean);
+        }
+        return squares / (size - 1);
+    }
+
+    public double stddev() {
+        return Math.sqrt(variance());
+    }
+
+    public double min() {
+        double min = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < size; i++) {
+            min = Math.min(min, values[i]);
+        }
+        return min;
+    }
+
+    public double max() {
+        double max = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < size; i++) {
+            max = Math.max(max, values[i]);
+        }
+        return max;
+    }
+
+    public double median() {
+        return percentile(50);
+    }
+
+    // Linear interpolation between closest ranks, percentile in 0-100
+    public double percentile(double percentile) {
+        if (size == 0) return Double.NaN;
+        double[] sorted = toArray();
+        Arrays.sort(sorted);
+        double rank = percentile / 100.0 * (size - 1);
+        int lower = (int) Math.floor(rank);
+        int upper = (int) Math.ceil(rank);
+        return sorted[lower] + (sorted[upper] - sorted[lower]) * (rank - lower);
+    }
+}
@@ -0,0 +1,78 @@
+package ca.mcgill.story_testing.perf;
+
+import java.util.Locale;
+
+// MSER-5 warm-up detection: the values are averaged in batches of 5 and the cut is the number of leading batches
+// whose removal minimizes the variance of the remaining batch means divided by their count, i.e. the squared standard
+// error of what is left. A cut in the second half of the run means it was still settling when it ended, and fewer
+// than MIN_BATCHES batches are too few to tell; either way the run has no steady state and its numbers should not be
+// published. Latency series are cut on log latency so that a few slow outliers do not decide where warm-up ends.
+public final class SteadyState {
+    public static final int BATCH = 5;
+    public static final int MIN_BATCHES = 10;
+
+    // warmup: leading values to drop; reason says why a run is not stable
+    public record Cut(int warmup, boolean stable, String reason) {
+    }
+
+    // A series split at its cut: warm-up count and duration, then the steady part with its latency histogram and
+    // duration. When the run is not stable nothing is dropped and latency holds every sample.
+    public record Window(long warmupSamples, long warmupNanos, long samples, long nanos, LatencyHistogram latency,
+                         boolean stable, String reason) {
+        public double throughput() {
+            return nanos == 0 ? 0 : samples / (nanos / 1e9);
+        }
+
+        public String describe() {
+            return stable
+                    ? String.format(Locale.ROOT, "warm-up %d requests in %.2f s", warmupSamples, warmupNanos / 1e9)
+                    : "NO STEADY STATE (" + reason + ")";
+        }
+    }
+
+    private SteadyState() {
+    }
+
+    public static Cut mser5(double[] values, int count) {
+        int batches = count / BATCH;
+        if (batches < MIN_BATCHES) {
+            return new Cut(0, false, count + " samples, at least " + BATCH * MIN_BATCHES + " needed");
+        }
+        double[] means = new double[batches];
+        for (int b = 0; b < batches; b++) {
+            double sum = 0;
+            for (int i = b * BATCH; i < (b + 1) * BATCH; i++) sum += values[i];
+            means[b] = sum / BATCH;
+        }
+        // Suffix sums from the end, so every candidate cut costs O(1); ties go to the shorter warm-up. Taken about the
+        // last mean, so that a flat series gives exact zeros rather than rounding noise that would favour a late cut.
+        double reference = means[batches - 1];
+        double sum = 0;
+        double squares = 0;
+        double best = Double.POSITIVE_INFINITY;
+        int cut = 0;
+        for (int d = batches - 1; d >= 0; d--) {
+            double mean = means[d] - reference;
+            sum += mean;
+            squares += mean * mean;
+            int kept = batches - d;
+            if (kept < 2) continue;
+            double statistic = Math.max(0, squares - sum * sum / kept) / ((double) kept * kept);
+            if (statistic <= best) {
+                best = statistic;
+                cut = d;
+            }
+        }
+        if (cut > batches / 2) {
+            return new Cut(cut * BATCH, false, "still settling: cut at batch " + cut + " of " + batches);
+        }
+        return new Cut(cut * BATCH, true, "");
+    }
+
+    // Cut of a latency series in nanoseconds, taken on log latency
+    public static Cut ofLatencies(long[] nanos, int count) {
+        double[] logs = new double[count];
+        for (int i = 0; i < count; i++) logs[i] = Math.log(Math.max(1, nanos[i]));
+        return mser5(logs, count);
+    }
+}
@@ -0,0 +1,75 @@
+package ca.mcgill.story_testing.perf;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+class SteadyStateTest {
+    @Test
+    void flatSeriesKeepsEverything() {
+        SteadyState.Cut cut = SteadyState.mser5(noisy(1000, 0), 1000);
+        assertTrue(cut.stable());
+        assertTrue(cut.warmup() <= 50, "cut at " + cut.warmup());
+
+        // Equal values whose squares do not cancel exactly must still give no warm-up
+        double[] constant = new double[100];
+        Arrays.fill(constant, Math.log(5));
+        assertEquals(new SteadyState.Cut(0, true, ""), SteadyState.mser5(constant, 100));
+    }
+
+    // 100 slow values falling to the baseline, then 900 at it
+    @Test
+    void warmupRampIsCutOff() {
+        double[] values = noisy(1000, 100);
+        SteadyState.Cut cut = SteadyState.mser5(values, 1000);
+        assertTrue(cut.stable());
+        assertTrue(cut.warmup() >= 50 && cut.warmup() <= 150, "cut at " + cut.warmup());
+        assertEquals(0, cut.warmup() % SteadyState.BATCH);
+    }
+
+    @Test
+    void monotoneSeriesIsStillSettling() {
+        double[] values = new double[1000];
+        for (int i = 0; i < values.length; i++) values[i] = i;
+        SteadyState.Cut cut = SteadyState.mser5(values, values.length);
+        assertFalse(cut.stable());
+        assertTrue(cut.reason().startsWith("still settling"), cut.reason());
+    }
+
+    @Test
+    void fewerThanFiftySamplesAreTooFew() {
+        SteadyState.Cut cut = SteadyState.mser5(noisy(49, 0), 49);
+        assertFalse(cut.stable());
+        assertEquals(0, cut.warmup());
+        assertEquals("49 samples, at least 50 needed", cut.reason());
+        double[] constant = new double[50];
+        Arrays.fill(constant, 3.0);
+        assertTrue(SteadyState.mser5(constant, 50).stable());
+    }
+
+    @Test
+    void latenciesAreCutOnTheirLogarithm() {
+        long[] nanos = new long[1000];
+        double[] values = noisy(1000, 100);
+        for (int i = 0; i < nanos.length; i++) nanos[i] = Math.round(Math.exp(values[i]));
+        SteadyState.Cut cut = SteadyState.ofLatencies(nanos, nanos.length);
+        assertTrue(cut.stable());
+        assertTrue(cut.warmup() >= 50 && cut.warmup() <= 150, "cut at " + cut.warmup());
+    }
+
+    // Around log(1 ms) with +-5% noise; the first `ramp` values fall linearly from three times higher
+    static double[] noisy(int count, int ramp) {
+        SplittableRandom random = new SplittableRandom(42);
+        double[] values = new double[count];
+        for (int i = 0; i < count; i++) {
+            double base = Math.log(1e6) * (1 + random.nextDouble(-0.05, 0.05));
+            values[i] = i < ramp ? base * (3 - 2.0 * i / ramp) : base;
+        }
+        return values;
+    }
+}
@@ -0,0 +1,32 @@
+package ca.mcgill.story_testing.plugins;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import ca.mcgill.story_testing.scenarios.DurationHistory;
+import ca.mcgill.story_testing.stepdefs.ScenarioHooks;
+import io.cucumber.plugin.ConcurrentEventListener;
+import io.cucumber.plugin.event.EventPublisher;
+import io.cucumber.plugin.event.TestCaseFinished;
+import io.cucumber.plugin.event.TestRunFinished;
+
+// Feeds the duration of every finished scenario into the shared history used to balance shards.
+public class DurationHistoryPlugin implements ConcurrentEventListener {
+    private final Map<String, Long> samples = new LinkedHashMap<>();
+
+    @Override
+    public void setEventPublisher(EventPublisher publisher) {
+        publisher.registerHandlerFor(TestCaseFinished.class, this::onTestCaseFinished);
+        publisher.registerHandlerFor(TestRunFinished.class, event -> flush());
+    }
+
+    private synchronized void onTestCaseFinished(TestCaseFinished event) {
+        String key = ScenarioHooks.scenarioKey(event.getTestCase().getUri(), event.getTestCase().getLocation().getLine());
+        samples.put(key, event.getResult().getDuration().toMillis());
+    }
+
+    private synchronized void flush() {
+        DurationHistory.load().update(samples);
+        samples.clear();
+    }
+}
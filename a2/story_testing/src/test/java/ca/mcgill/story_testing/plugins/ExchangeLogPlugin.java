@@ -0,0 +1,45 @@
+package ca.mcgill.story_testing.plugins;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import ca.mcgill.story_testing.events.ExchangeLog;
+import ca.mcgill.story_testing.stepdefs.ScenarioHooks;
+import io.cucumber.plugin.ConcurrentEventListener;
+import io.cucumber.plugin.event.EventPublisher;
+import io.cucumber.plugin.event.HookTestStep;
+import io.cucumber.plugin.event.PickleStepTestStep;
+import io.cucumber.plugin.event.TestCase;
+import io.cucumber.plugin.event.TestCaseFinished;
+import io.cucumber.plugin.event.TestCaseStarted;
+import io.cucumber.plugin.event.TestRunFinished;
+import io.cucumber.plugin.event.TestStepStarted;
+
+// Tags the exchanges in ExchangeLog with the scenario and step running on the same thread, and flushes the log.
+public class ExchangeLogPlugin implements ConcurrentEventListener {
+    private static final AtomicBoolean announced = new AtomicBoolean();
+
+    @Override
+    public void setEventPublisher(EventPublisher publisher) {
+        if (!ExchangeLog.enabled()) return;
+        publisher.registerHandlerFor(TestCaseStarted.class, event -> {
+            TestCase testCase = event.getTestCase();
+            ExchangeLog.global().enterScenario(ScenarioHooks.scenarioKey(testCase.getUri(), testCase.getLocation().getLine()));
+        });
+        publisher.registerHandlerFor(TestStepStarted.class, event -> {
+            if (event.getTestStep() instanceof PickleStepTestStep step) {
+                ExchangeLog.global().enterStep(step.getStep().getKeyword() + step.getStep().getText());
+            } else if (event.getTestStep() instanceof HookTestStep hook) {
+                ExchangeLog.global().enterStep(hook.getHookType() + " hook " + hook.getCodeLocation());
+            }
+        });
+        publisher.registerHandlerFor(TestCaseFinished.class, event -> ExchangeLog.global().enterScenario(null));
+        publisher.registerHandlerFor(TestRunFinished.class, event -> {
+            ExchangeLog log = ExchangeLog.global();
+            log.flush();
+            if (log.dropped() > 0 || !announced.getAndSet(true)) {
+                System.out.println("Exchange log: " + log.file() + " (" + log.written() + " exchanges"
+                        + (log.dropped() > 0 ? ", " + log.dropped() + " dropped" : "") + ")");
+            }
+        });
+    }
+}
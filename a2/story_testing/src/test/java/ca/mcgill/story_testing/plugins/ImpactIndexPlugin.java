@@ -0,0 +1,56 @@
+package ca.mcgill.story_testing.plugins;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import ca.mcgill.story_testing.impact.EndpointLog;
+import ca.mcgill.story_testing.impact.ImpactAnalyzer;
+import ca.mcgill.story_testing.impact.ImpactIndex;
+import ca.mcgill.story_testing.scenarios.FeatureIndex;
+import ca.mcgill.story_testing.scenarios.ScenarioRef;
+import ca.mcgill.story_testing.stepdefs.ScenarioHooks;
+import io.cucumber.plugin.ConcurrentEventListener;
+import io.cucumber.plugin.event.EventPublisher;
+import io.cucumber.plugin.event.Status;
+import io.cucumber.plugin.event.TestCaseFinished;
+import io.cucumber.plugin.event.TestRunFinished;
+
+// Records what every finished scenario depended on and which endpoints it called, for ImpactTestRunner.
+public class ImpactIndexPlugin implements ConcurrentEventListener {
+    private final Map<String, Boolean> results = new LinkedHashMap<>();
+    private final Map<String, Set<String>> endpoints = new LinkedHashMap<>();
+
+    @Override
+    public void setEventPublisher(EventPublisher publisher) {
+        publisher.registerHandlerFor(TestCaseFinished.class, this::onTestCaseFinished);
+        publisher.registerHandlerFor(TestRunFinished.class, event -> flush());
+    }
+
+    private synchronized void onTestCaseFinished(TestCaseFinished event) {
+        String key = ScenarioHooks.scenarioKey(event.getTestCase().getUri(), event.getTestCase().getLocation().getLine());
+        results.put(key, event.getResult().getStatus() == Status.PASSED);
+        endpoints.put(key, EndpointLog.drain(key));
+    }
+
+    private synchronized void flush() {
+        if (results.isEmpty()) return;
+        ImpactAnalyzer analyzer = ImpactAnalyzer.fromSystemProperties();
+        Map<String, ImpactIndex.Entry> entries = new LinkedHashMap<>();
+        for (ScenarioRef scenario : FeatureIndex.scan()) {
+            Boolean passed = results.get(scenario.key());
+            if (passed == null) continue;
+            ImpactIndex.Entry current = analyzer.current(scenario);
+            // A failed run may stop early, so keep the endpoints seen before as well
+            Set<String> touched = new TreeSet<>(endpoints.get(scenario.key()));
+            if (!passed) touched.addAll(current.endpoints());
+            entries.put(scenario.key(), new ImpactIndex.Entry(current.fingerprint(), current.glue(), current.steps(),
+                    current.dependencies(), touched, passed));
+        }
+        analyzer.index().update(entries);
+        analyzer.saveHashes();
+        results.clear();
+        endpoints.clear();
+    }
+}
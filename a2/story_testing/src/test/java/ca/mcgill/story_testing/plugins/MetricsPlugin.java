@@ -0,0 +1,34 @@
+package ca.mcgill.story_testing.plugins;
+
+import java.util.List;
+
+import ca.mcgill.story_testing.metrics.Metrics;
+import ca.mcgill.story_testing.metrics.MetricsServer;
+import io.cucumber.plugin.ConcurrentEventListener;
+import io.cucumber.plugin.event.EventPublisher;
+import io.cucumber.plugin.event.TestCaseFinished;
+import io.cucumber.plugin.event.TestRunFinished;
+import io.cucumber.plugin.event.TestRunStarted;
+
+// Counts scenario results into Metrics, starts the metrics server when -Dstory.metrics.port is set and prints what
+// the request policy's retries, timeouts and hedges did at the end of the run.
+public class MetricsPlugin implements ConcurrentEventListener {
+    // Runners that start Cucumber once per feature would otherwise repeat the same summary
+    private static List<String> printed = List.of();
+
+    @Override
+    public void setEventPublisher(EventPublisher publisher) {
+        publisher.registerHandlerFor(TestRunStarted.class, event -> MetricsServer.startIfConfigured());
+        publisher.registerHandlerFor(TestCaseFinished.class,
+                event -> Metrics.global().scenarioFinished(event.getResult().getStatus().name()));
+        publisher.registerHandlerFor(TestRunFinished.class, event -> printPolicySummary());
+    }
+
+    private static synchronized void printPolicySummary() {
+        List<String> summary = Metrics.global().policySummary();
+        if (summary.isEmpty() || summary.equals(printed)) return;
+        printed = summary;
+        System.out.println("Request policy (first attempt -> with policy):");
+        summary.forEach(line -> System.out.println("  " + line));
+    }
+}
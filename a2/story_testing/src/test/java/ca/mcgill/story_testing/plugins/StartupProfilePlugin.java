@@ -0,0 +1,78 @@
+package ca.mcgill.story_testing.plugins;
+
+import java.lang.management.ManagementFactory;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import io.cucumber.plugin.ConcurrentEventListener;
+import io.cucumber.plugin.event.EventPublisher;
+import io.cucumber.plugin.event.PickleStepTestStep;
+import io.cucumber.plugin.event.StepDefinedEvent;
+import io.cucumber.plugin.event.TestCaseStarted;
+import io.cucumber.plugin.event.TestRunFinished;
+import io.cucumber.plugin.event.TestRunStarted;
+import io.cucumber.plugin.event.TestSourceParsed;
+import io.cucumber.plugin.event.TestSourceRead;
+import io.cucumber.plugin.event.TestStepFinished;
+import io.cucumber.plugin.event.TestStepStarted;
+
+// Prints where the time goes between JVM start and the first executed step, relative to JVM start.
+public class StartupProfilePlugin implements ConcurrentEventListener {
+    private final long jvmStartMillis = ManagementFactory.getRuntimeMXBean().getStartTime();
+    private final Map<String, Long> milestones = new LinkedHashMap<>();
+    private long classesAtFirstStep;
+    private long jitMillisAtFirstStep;
+    private boolean firstStepFinished;
+
+    public StartupProfilePlugin() {
+        mark("plugin created", Instant.now());
+    }
+
+    @Override
+    public void setEventPublisher(EventPublisher publisher) {
+        publisher.registerHandlerFor(TestSourceRead.class, event -> markOnce("first feature read", event.getInstant()));
+        publisher.registerHandlerFor(TestSourceParsed.class, event -> markOnce("first feature parsed", event.getInstant()));
+        publisher.registerHandlerFor(StepDefinedEvent.class, event -> markOnce("glue loaded", event.getInstant()));
+        publisher.registerHandlerFor(TestRunStarted.class, event -> markOnce("test run started", event.getInstant()));
+        publisher.registerHandlerFor(TestCaseStarted.class, event -> markOnce("first scenario started", event.getInstant()));
+        publisher.registerHandlerFor(TestStepStarted.class, this::onStepStarted);
+        publisher.registerHandlerFor(TestStepFinished.class, this::onStepFinished);
+        publisher.registerHandlerFor(TestRunFinished.class, event -> print());
+    }
+
+    private synchronized void onStepStarted(TestStepStarted event) {
+        if (event.getTestStep() instanceof PickleStepTestStep && !milestones.containsKey("first step started")) {
+            mark("first step started", event.getInstant());
+            classesAtFirstStep = ManagementFactory.getClassLoadingMXBean().getTotalLoadedClassCount();
+            jitMillisAtFirstStep = ManagementFactory.getCompilationMXBean().getTotalCompilationTime();
+        }
+    }
+
+    private synchronized void onStepFinished(TestStepFinished event) {
+        if (event.getTestStep() instanceof PickleStepTestStep && !firstStepFinished) {
+            firstStepFinished = true;
+            mark("first step finished", event.getInstant());
+        }
+    }
+
+    private synchronized void mark(String milestone, Instant instant) {
+        milestones.put(milestone, instant.toEpochMilli() - jvmStartMillis);
+    }
+
+    private synchronized void markOnce(String milestone, Instant instant) {
+        if (!milestones.containsKey(milestone)) {
+            mark(milestone, instant);
+        }
+    }
+
+    private synchronized void print() {
+        System.out.println("\n=== Startup Profile (ms since JVM start) ===");
+        milestones.entrySet().stream()
+                .sorted(Map.Entry.comparingByValue())
+                .forEach(entry -> System.out.printf("%-24s %6d%n", entry.getKey(), entry.getValue()));
+        System.out.println("Classes loaded at first step: " + classesAtFirstStep);
+        System.out.println("JIT compile time at first step: " + jitMillisAtFirstStep + " ms");
+        System.out.println("JVM arguments: " + String.join(" ", ManagementFactory.getRuntimeMXBean().getInputArguments()));
+    }
+}
@@ -0,0 +1,99 @@
+package ca.mcgill.story_testing.results;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// One fixed-width column of the results store in its own file, mapped in segments of 2^20 values as it grows, so
+// value i sits in the same segment of every column. Values live in the page cache, not on the heap; absolute gets and
+// puts only, so readers never move a shared position. Segments are only ever added, so readers take the current
+// array without a lock and only mapping a new segment does.
+final class Column implements AutoCloseable {
+    static final int SEGMENT_VALUES = 1 << 20;
+
+    private final Path file;
+    private final FileChannel channel;
+    private final int width;
+    private volatile MappedByteBuffer[] segments = new MappedByteBuffer[0];
+
+    Column(Path file, int width) {
+        this.file = file;
+        this.width = width;
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open column " + file, e);
+        }
+    }
+
+    int width() {
+        return width;
+    }
+
+    // The mapped segment holding values [s * SEGMENT_VALUES, (s + 1) * SEGMENT_VALUES), mapping it (and growing the
+    // file) on first use; value i of the segment starts at byte i * width
+    MappedByteBuffer segment(int s) {
+        MappedByteBuffer[] current = segments;
+        return s < current.length ? current[s] : map(s);
+    }
+
+    private synchronized MappedByteBuffer map(int s) {
+        long bytes = (long) SEGMENT_VALUES * width;
+        MappedByteBuffer[] grown = segments;
+        if (s < grown.length) return grown[s];
+        grown = Arrays.copyOf(grown, s + 1);
+        for (int i = segments.length; i <= s; i++) {
+            try {
+                grown[i] = channel.map(FileChannel.MapMode.READ_WRITE, i * bytes, bytes);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to map " + file, e);
+            }
+        }
+        segments = grown;
+        return grown[s];
+    }
+
+    void putLong(long index, long value) {
+        segment((int) (index / SEGMENT_VALUES)).putLong((int) (index % SEGMENT_VALUES) * width, value);
+    }
+
+    void putShort(long index, short value) {
+        segment((int) (index / SEGMENT_VALUES)).putShort((int) (index % SEGMENT_VALUES) * width, value);
+    }
+
+    // Copies count values from index first into target at targetFirst through the file channels; the target must not
+    // have mapped that range yet
+    void copyTo(long first, long count, Column target, long targetFirst) {
+        force();
+        long from = first * width;
+        long end = (first + count) * width;
+        try {
+            target.channel.position(targetFirst * width);
+            while (from < end) {
+                long copied = channel.transferTo(from, end - from, target.channel);
+                if (copied <= 0) throw new IllegalStateException(file + " ends before value " + (first + count));
+                from += copied;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to copy " + file + " to " + target.file, e);
+        }
+    }
+
+    void force() {
+        for (MappedByteBuffer segment : segments) segment.force();
+    }
+
+    @Override
+    public void close() {
+        force();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to close column " + file, e);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package ca.mcgill.story_testing.results;
+
+import java.util.Locale;
+import java.util.Map;
+
+// Looks at the results store from the command line (-Dstory.results.command=...):
+// list (default) prints every run; show=<id> the per-endpoint summary of one run; compact=<keep> folds all but the
+// newest <keep> raw runs into histograms; baseline=<kind> the latest run of a kind, e.g. "loadTest /todos".
+public class ResultsRunner {
+    public static final String COMMAND_PROPERTY = "story.results.command";
+
+    public static void main(String[] args) {
+        String command = System.getProperty(COMMAND_PROPERTY, "list");
+        String argument = command.contains("=") ? command.substring(command.indexOf('=') + 1) : "";
+        try (ResultsStore store = ResultsStore.open()) {
+            switch (command.contains("=") ? command.substring(0, command.indexOf('=')) : command) {
+                case "list" -> list(store);
+                case "show" -> show(store, store.latest(run -> run.id() == Integer.parseInt(argument))
+                        .orElseThrow(() -> new IllegalArgumentException("No run " + argument)));
+                case "compact" -> {
+                    long before = rawSamples(store);
+                    int compacted = store.compact(Integer.parseInt(argument));
+                    System.out.println("Compacted " + compacted + " runs, raw samples " + before + " -> " + rawSamples(store));
+                }
+                case "baseline" -> show(store, store.latest(run -> run.info().kind().equals(argument))
+                        .orElseThrow(() -> new IllegalArgumentException("No run of kind " + argument)));
+                default -> throw new IllegalArgumentException("Unknown command " + command
+                        + ", expected list, show=<id>, compact=<keep> or baseline=<kind>");
+            }
+        }
+    }
+
+    private static void list(ResultsStore store) {
+        System.out.printf("%-5s | %-20s | %-24s | %-8s | %-7s | %-7s | %-20s | %s%n",
+                "Run", "Started", "Kind", "Jar", "Level", "Workers", "Seed", "Samples");
+        System.out.println("-".repeat(118));
+        for (ResultsStore.Run run : store.runs()) {
+            System.out.printf(Locale.ROOT, "%-5d | %-20s | %-24s | %-8s | %-7d | %-7d | %-20d | %d%s%n",
+                    run.id(), run.started().toString().substring(0, 19), run.info().kind(), run.info().jarVersion(),
+                    run.info().level(), run.info().concurrency(), run.info().seed(), run.count(),
+                    run.compacted() ? " (compacted)" : "");
+        }
+    }
+
+    private static void show(ResultsStore store, ResultsStore.Run run) {
+        System.out.println("Run " + run.id() + ": " + run.info().kind() + " against " + run.info().jar() + ", level "
+                + run.info().level() + ", " + run.info().concurrency() + " workers, seed " + run.info().seed()
+                + ", started " + run.started());
+        long start = System.nanoTime();
+        Map<String, ResultsStore.EndpointSummary> summary = store.summarize(run);
+        System.out.printf("%-24s | %-9s | %-7s | %-9s | %-9s | %-9s%n", "Endpoint", "Requests", "Errors", "p50(ms)", "p99(ms)", "max(ms)");
+        summary.forEach((endpoint, s) -> System.out.printf(Locale.ROOT, "%-24s | %-9d | %-7d | %-9.2f | %-9.2f | %-9.2f%n",
+                endpoint, s.count(), s.errors(), s.latency().percentile(50) / 1e6, s.latency().percentile(99) / 1e6,
+                s.latency().max() / 1e6));
+        System.out.printf(Locale.ROOT, "%s in %.1f ms%n", run.compacted() ? "Read from the manifest" : "Scanned "
+                + run.count() + " samples", (System.nanoTime() - start) / 1e6);
+    }
+
+    private static long rawSamples(ResultsStore store) {
+        return store.runs().stream().filter(run -> !run.compacted()).mapToLong(ResultsStore.Run::count).sum();
+    }
+}
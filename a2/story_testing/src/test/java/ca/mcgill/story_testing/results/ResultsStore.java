@@ -0,0 +1,420 @@
+package ca.mcgill.story_testing.results;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import ca.mcgill.story_testing.fixtures.CanonicalJson;
+import ca.mcgill.story_testing.perf.LatencyHistogram;
+
+// Append-only store of per-request samples from load runs, in build/results unless -Dstory.results.dir says otherwise.
+// Samples go into four mapped columns (endpoint, status, start, latency: 20 bytes a sample) and a run is one
+// contiguous range of them. manifest.json lists the runs with their metadata and is only ever replaced whole, so a
+// run appears once its writer commits and a crash mid-run leaves nothing half-visible. Compaction turns the samples of
+// old runs into per-endpoint histograms and rewrites the columns without them into the next generation directory.
+// One process at a time: the store holds a file lock while open.
+public final class ResultsStore implements AutoCloseable {
+    public static final String DIR_PROPERTY = "story.results.dir";
+    public static final Path DEFAULT_DIR = Path.of("build/results");
+    private static final String MANIFEST = "manifest.json";
+    private static final Pattern VERSION = Pattern.compile("(\\d+(?:\\.\\d+)+)");
+
+    // What a run was: kind names the workload ("loadTest todos"), jar the server it ran against
+    public record RunInfo(String kind, long seed, String jar, int level, int concurrency) {
+        // "1.5.5" from runTodoManagerRestAPI-1.5.5.jar
+        public String jarVersion() {
+            Matcher matcher = VERSION.matcher(Path.of(jar).getFileName().toString());
+            return matcher.find() ? matcher.group(1) : "unknown";
+        }
+    }
+
+    // Samples [first, first + count) of the current generation; summary is null until the run is compacted, after
+    // which it stands in for the samples
+    public record Run(int id, RunInfo info, Instant started, long first, long count, Map<String, EndpointSummary> summary) {
+        public boolean compacted() {
+            return summary != null;
+        }
+    }
+
+    // errors: requests answered 4xx/5xx or not at all
+    public record EndpointSummary(long count, long errors, LatencyHistogram latency) {
+    }
+
+    public interface SampleVisitor {
+        // startNanos counts from the start of the run; status 0 means no response
+        void sample(String endpoint, long startNanos, long latencyNanos, int status);
+    }
+
+    private final Path directory;
+    private final FileChannel lockChannel;
+    private final FileLock lock;
+    private final List<Run> runs = new ArrayList<>();
+    private final List<String> endpoints = new ArrayList<>();
+    private final Map<String, Short> endpointIds = new HashMap<>();
+    private int generation;
+    private Columns columns;
+    private Writer writer;
+
+    private ResultsStore(Path directory) {
+        this.directory = directory;
+        try {
+            Files.createDirectories(directory);
+            lockChannel = FileChannel.open(directory.resolve("lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            lock = lockChannel.tryLock();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open results store " + directory, e);
+        }
+        if (lock == null) throw new IllegalStateException("Results store " + directory + " is in use by another process");
+        Path manifest = directory.resolve(MANIFEST);
+        if (Files.exists(manifest)) readManifest(manifest);
+        columns = new Columns(generationDirectory(generation));
+    }
+
+    public static ResultsStore open() {
+        return open(Path.of(System.getProperty(DIR_PROPERTY, DEFAULT_DIR.toString())));
+    }
+
+    public static ResultsStore open(Path directory) {
+        return new ResultsStore(directory);
+    }
+
+    public synchronized List<Run> runs() {
+        return List.copyOf(runs);
+    }
+
+    // The newest run matching the filter, e.g. the baseline for a new run with the same kind, level and concurrency
+    public synchronized Optional<Run> latest(Predicate<Run> filter) {
+        for (int i = runs.size() - 1; i >= 0; i--) {
+            if (filter.test(runs.get(i))) return Optional.of(runs.get(i));
+        }
+        return Optional.empty();
+    }
+
+    public synchronized Writer begin(RunInfo info) {
+        if (writer != null) throw new IllegalStateException("Run " + writer.id + " is still being written");
+        writer = new Writer(nextId(), info, end());
+        return writer;
+    }
+
+    // Count, errors and latency histogram per endpoint, from one pass over three columns (start is never read)
+    public Map<String, EndpointSummary> summarize(Run run) {
+        if (run.compacted()) return run.summary();
+        Columns view;
+        List<String> names;
+        synchronized (this) {
+            view = columns;
+            names = List.copyOf(endpoints);
+        }
+        long[] counts = new long[names.size()];
+        long[] errors = new long[names.size()];
+        LatencyHistogram[] latency = new LatencyHistogram[names.size()];
+        long end = run.first() + run.count();
+        for (long i = run.first(); i < end; ) {
+            int s = (int) (i / Column.SEGMENT_VALUES);
+            int from = (int) (i % Column.SEGMENT_VALUES);
+            int to = (int) Math.min(Column.SEGMENT_VALUES, from + (end - i));
+            MappedByteBuffer endpoint = view.endpoint.segment(s);
+            MappedByteBuffer status = view.status.segment(s);
+            MappedByteBuffer nanos = view.latency.segment(s);
+            for (int k = from; k < to; k++) {
+                int id = endpoint.getShort(k * 2);
+                int code = status.getShort(k * 2);
+                counts[id]++;
+                if (code == 0 || code >= 400) errors[id]++;
+                if (latency[id] == null) latency[id] = new LatencyHistogram();
+                latency[id].record(nanos.getLong(k * 8));
+            }
+            i += to - from;
+        }
+        Map<String, EndpointSummary> summary = new LinkedHashMap<>();
+        for (int id = 0; id < names.size(); id++) {
+            if (counts[id] > 0) summary.put(names.get(id), new EndpointSummary(counts[id], errors[id], latency[id]));
+        }
+        return summary;
+    }
+
+    // Every sample of a run in the order it was appended
+    public void scan(Run run, SampleVisitor visitor) {
+        if (run.compacted()) throw new IllegalStateException("Run " + run.id() + " was compacted to histograms");
+        Columns view;
+        List<String> names;
+        synchronized (this) {
+            view = columns;
+            names = List.copyOf(endpoints);
+        }
+        long end = run.first() + run.count();
+        for (long i = run.first(); i < end; ) {
+            int s = (int) (i / Column.SEGMENT_VALUES);
+            int from = (int) (i % Column.SEGMENT_VALUES);
+            int to = (int) Math.min(Column.SEGMENT_VALUES, from + (end - i));
+            MappedByteBuffer endpoint = view.endpoint.segment(s);
+            MappedByteBuffer status = view.status.segment(s);
+            MappedByteBuffer start = view.start.segment(s);
+            MappedByteBuffer nanos = view.latency.segment(s);
+            for (int k = from; k < to; k++) {
+                visitor.sample(names.get(endpoint.getShort(k * 2)), start.getLong(k * 8), nanos.getLong(k * 8),
+                        status.getShort(k * 2));
+            }
+            i += to - from;
+        }
+    }
+
+    // Keeps the samples of the newest keepRaw uncompacted runs and replaces the older ones by their summaries;
+    // returns the number of runs compacted
+    public synchronized int compact(int keepRaw) {
+        if (writer != null) throw new IllegalStateException("Cannot compact while run " + writer.id + " is being written");
+        List<Run> raw = runs.stream().filter(run -> !run.compacted()).toList();
+        List<Run> old = raw.subList(0, Math.max(0, raw.size() - keepRaw));
+        if (old.isEmpty()) return 0;
+        Columns next = new Columns(generationDirectory(generation + 1));
+        List<Run> rewritten = new ArrayList<>();
+        long position = 0;
+        for (Run run : runs) {
+            if (run.compacted()) {
+                rewritten.add(run);
+            } else if (old.contains(run)) {
+                rewritten.add(new Run(run.id(), run.info(), run.started(), 0, run.count(), summarize(run)));
+            } else {
+                columns.copyTo(run.first(), run.count(), next, position);
+                rewritten.add(new Run(run.id(), run.info(), run.started(), position, run.count(), null));
+                position += run.count();
+            }
+        }
+        Columns previous = columns;
+        int previousGeneration = generation;
+        runs.clear();
+        runs.addAll(rewritten);
+        columns = next;
+        generation++;
+        writeManifest();
+        previous.close();
+        delete(generationDirectory(previousGeneration));
+        return old.size();
+    }
+
+    @Override
+    public synchronized void close() {
+        // A writer still open is dropped: its samples sit past the committed end and the next run overwrites them
+        writer = null;
+        columns.close();
+        try {
+            lock.release();
+            lockChannel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to unlock results store " + directory, e);
+        }
+    }
+
+    // Appends the samples of one run; safe to call from many load workers at once
+    public final class Writer {
+        private final int id;
+        private final RunInfo info;
+        private final Instant started = Instant.now();
+        private final long origin = System.nanoTime();
+        private final long first;
+        private long next;
+        private boolean committed;
+
+        private Writer(int id, RunInfo info, long first) {
+            this.id = id;
+            this.info = info;
+            this.first = first;
+            this.next = first;
+        }
+
+        public int id() {
+            return id;
+        }
+
+        // startNanos is a System.nanoTime() reading taken when the request went out. The endpoint id is resolved
+        // before the writer lock is taken: commit() holds the store's lock while it waits for the writer's.
+        public void append(String endpoint, long startNanos, long latencyNanos, int status) {
+            short endpointId = endpointId(endpoint);
+            synchronized (this) {
+                if (committed) throw new IllegalStateException("Run " + id + " is already committed");
+                Columns target = columns;
+                target.endpoint.putShort(next, endpointId);
+                target.status.putShort(next, (short) status);
+                target.start.putLong(next, startNanos - origin);
+                target.latency.putLong(next, latencyNanos);
+                next++;
+            }
+        }
+
+        // Makes the run visible in runs() and the manifest; appending afterwards fails
+        public Run commit() {
+            synchronized (ResultsStore.this) {
+                synchronized (this) {
+                    if (committed) throw new IllegalStateException("Run " + id + " is already committed");
+                    committed = true;
+                    if (writer != this) throw new IllegalStateException("Run " + id + " was dropped when the store closed");
+                    columns.force();
+                    Run run = new Run(id, info, started, first, next - first, null);
+                    runs.add(run);
+                    writer = null;
+                    writeManifest();
+                    return run;
+                }
+            }
+        }
+    }
+
+    private synchronized short endpointId(String endpoint) {
+        Short id = endpointIds.get(endpoint);
+        if (id != null) return id;
+        if (endpoints.size() == Short.MAX_VALUE) throw new IllegalStateException("Too many distinct endpoints");
+        short created = (short) endpoints.size();
+        endpoints.add(endpoint);
+        endpointIds.put(endpoint, created);
+        return created;
+    }
+
+    private int nextId() {
+        return runs.isEmpty() ? 1 : runs.get(runs.size() - 1).id() + 1;
+    }
+
+    // One past the last committed sample
+    private long end() {
+        long end = 0;
+        for (Run run : runs) {
+            if (!run.compacted()) end = Math.max(end, run.first() + run.count());
+        }
+        return end;
+    }
+
+    private Path generationDirectory(int generation) {
+        return directory.resolve("gen-" + generation);
+    }
+
+    private void readManifest(Path manifest) {
+        JSONObject json;
+        try {
+            json = new JSONObject(Files.readString(manifest, StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read " + manifest, e);
+        }
+        generation = json.getInt("generation");
+        JSONArray names = json.getJSONArray("endpoints");
+        for (int i = 0; i < names.length(); i++) endpointId(names.getString(i));
+        JSONArray list = json.getJSONArray("runs");
+        for (int i = 0; i < list.length(); i++) {
+            JSONObject run = list.getJSONObject(i);
+            Map<String, EndpointSummary> summary = null;
+            JSONObject compacted = run.optJSONObject("summary");
+            if (compacted != null) {
+                summary = new LinkedHashMap<>();
+                for (String endpoint : compacted.keySet()) {
+                    JSONObject entry = compacted.getJSONObject(endpoint);
+                    summary.put(endpoint, new EndpointSummary(entry.getLong("count"), entry.getLong("errors"),
+                            LatencyHistogram.fromJson(entry.getJSONObject("latency"))));
+                }
+            }
+            runs.add(new Run(run.getInt("id"),
+                    new RunInfo(run.getString("kind"), run.getLong("seed"), run.getString("jar"), run.getInt("level"),
+                            run.getInt("concurrency")),
+                    Instant.parse(run.getString("started")), run.getLong("first"), run.getLong("count"), summary));
+        }
+        runs.sort(Comparator.comparingInt(Run::id));
+    }
+
+    private void writeManifest() {
+        JSONArray list = new JSONArray();
+        for (Run run : runs) {
+            JSONObject json = new JSONObject()
+                    .put("id", run.id()).put("kind", run.info().kind()).put("seed", run.info().seed())
+                    .put("jar", run.info().jar()).put("jarVersion", run.info().jarVersion())
+                    .put("level", run.info().level()).put("concurrency", run.info().concurrency())
+                    .put("started", run.started().toString()).put("first", run.first()).put("count", run.count());
+            if (run.compacted()) {
+                JSONObject summary = new JSONObject();
+                run.summary().forEach((endpoint, entry) -> summary.put(endpoint, new JSONObject()
+                        .put("count", entry.count()).put("errors", entry.errors()).put("latency", entry.latency().toJson())));
+                json.put("summary", summary);
+            }
+            list.put(json);
+        }
+        JSONObject manifest = new JSONObject().put("generation", generation)
+                .put("endpoints", new JSONArray(endpoints)).put("runs", list);
+        Path target = directory.resolve(MANIFEST);
+        Path temporary = directory.resolve(MANIFEST + ".tmp");
+        try {
+            Files.writeString(temporary, CanonicalJson.write(manifest, true) + "\n", StandardCharsets.UTF_8);
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write " + target, e);
+        }
+    }
+
+    private static void delete(Path directory) {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.toList()) Files.delete(file);
+            Files.delete(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to delete " + directory, e);
+        }
+    }
+
+    // The four columns of one generation
+    private static final class Columns implements AutoCloseable {
+        final Column endpoint;
+        final Column status;
+        final Column start;
+        final Column latency;
+
+        Columns(Path directory) {
+            try {
+                Files.createDirectories(directory);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to create " + directory, e);
+            }
+            endpoint = new Column(directory.resolve("endpoint.i16"), 2);
+            status = new Column(directory.resolve("status.i16"), 2);
+            start = new Column(directory.resolve("start.i64"), 8);
+            latency = new Column(directory.resolve("latency.i64"), 8);
+        }
+
+        void copyTo(long first, long count, Columns target, long targetFirst) {
+            endpoint.copyTo(first, count, target.endpoint, targetFirst);
+            status.copyTo(first, count, target.status, targetFirst);
+            start.copyTo(first, count, target.start, targetFirst);
+            latency.copyTo(first, count, target.latency, targetFirst);
+        }
+
+        void force() {
+            endpoint.force();
+            status.force();
+            start.force();
+            latency.force();
+        }
+
+        @Override
+        public void close() {
+            endpoint.close();
+            status.close();
+            start.close();
+            latency.close();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package ca.mcgill.story_testing.results;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ResultsStoreTest {
+    private static final ResultsStore.RunInfo INFO = new ResultsStore.RunInfo("test", 1, "runTodoManagerRestAPI-1.5.5.jar", 0, 4);
+    private static final String[] ENDPOINTS = {"GET /todos", "POST /todos", "PUT /todos/{id}"};
+
+    @TempDir
+    Path directory;
+
+    // More samples than one mapped segment, so that reads and writes cross a segment boundary
+    @Test
+    void appendCommitScanRoundTrip() {
+        int samples = Column.SEGMENT_VALUES + 1000;
+        ResultsStore.Run run;
+        try (ResultsStore store = ResultsStore.open(directory)) {
+            ResultsStore.Writer writer = store.begin(INFO);
+            long origin = System.nanoTime();
+            for (int i = 0; i < samples; i++) {
+                writer.append(ENDPOINTS[i % 3], origin + i, 1000 + i, i % 10 == 0 ? 500 : 200);
+            }
+            run = writer.commit();
+            assertEquals(samples, run.count());
+            assertThrows(IllegalStateException.class, () -> writer.append(ENDPOINTS[0], origin, 1, 200));
+        }
+
+        // Reopened from the manifest
+        try (ResultsStore store = ResultsStore.open(directory)) {
+            assertEquals(List.of(run.id()), store.runs().stream().map(ResultsStore.Run::id).toList());
+            ResultsStore.Run reopened = store.runs().get(0);
+            long[] seen = new long[1];
+            store.scan(reopened, (endpoint, startNanos, latencyNanos, status) -> {
+                long i = seen[0]++;
+                assertEquals(ENDPOINTS[(int) (i % 3)], endpoint);
+                assertEquals(1000 + i, latencyNanos);
+                assertEquals(i % 10 == 0 ? 500 : 200, status);
+            });
+            assertEquals(samples, seen[0]);
+
+            Map<String, ResultsStore.EndpointSummary> summary = store.summarize(reopened);
+            assertEquals(3, summary.size());
+            assertEquals(samples, summary.values().stream().mapToLong(ResultsStore.EndpointSummary::count).sum());
+            assertEquals((samples + 9) / 10, summary.values().stream().mapToLong(ResultsStore.EndpointSummary::errors).sum());
+
+            // Compacted, the run keeps its counts as histograms
+            assertEquals(1, store.compact(0));
+            ResultsStore.Run compacted = store.runs().get(0);
+            assertTrue(compacted.compacted());
+            assertEquals(summary.get("GET /todos").count(), store.summarize(compacted).get("GET /todos").count());
+            assertThrows(IllegalStateException.class, () -> store.scan(compacted, (e, s, l, c) -> { }));
+        }
+    }
+
+    // A commit while workers are still appending must neither deadlock nor lose a sample appended before it
+    @Test
+    void commitWhileAppending() {
+        assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+            for (int round = 0; round < 20; round++) {
+                try (ResultsStore store = ResultsStore.open(directory.resolve("round-" + round))) {
+                    ResultsStore.Writer writer = store.begin(INFO);
+                    AtomicLong appended = new AtomicLong();
+                    CountDownLatch started = new CountDownLatch(4);
+                    List<Thread> workers = new ArrayList<>();
+                    for (int w = 0; w < 4; w++) {
+                        String endpoint = "GET /endpoint-" + w;
+                        Thread worker = new Thread(() -> {
+                            started.countDown();
+                            try {
+                                while (true) {
+                                    writer.append(endpoint, System.nanoTime(), 1, 200);
+                                    appended.incrementAndGet();
+                                }
+                            } catch (IllegalStateException committed) {
+                                // the run was committed
+                            }
+                        });
+                        workers.add(worker);
+                        worker.start();
+                    }
+                    started.await();
+                    ResultsStore.Run run = writer.commit();
+                    for (Thread worker : workers) worker.join();
+                    assertEquals(appended.get(), run.count());
+                    Map<String, Long> counts = new HashMap<>();
+                    store.scan(run, (endpoint, startNanos, latencyNanos, status) -> counts.merge(endpoint, 1L, Long::sum));
+                    assertEquals(run.count(), counts.values().stream().mapToLong(Long::longValue).sum());
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,234 @@
+package ca.mcgill.story_testing.scenarios;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import ca.mcgill.story_testing.events.ExchangeLog;
+import ca.mcgill.story_testing.fixtures.CanonicalJson;
+import ca.mcgill.story_testing.fixtures.FixtureMode;
+import ca.mcgill.story_testing.fixtures.Fixtures;
+import ca.mcgill.story_testing.perf.SampleSeries;
+import ca.mcgill.story_testing.perf.SteadyState;
+import ca.mcgill.story_testing.server.TodoServer;
+import ca.mcgill.story_testing.stepdefs.SharedTestContext;
+
+// Runs every scenario `repeat` times, each one as its own Cucumber run, side by side: "platform" on a fixed pool of
+// `threads` threads, "virtual" on a new virtual thread per scenario. Either way at most `inFlight` scenarios are
+// submitted and not yet finished. Scenarios keep their state per thread (SharedTestContext), so a live server would be
+// wiped by its neighbours; they replay fixtures by default, every answer delayed by story.fixtures.latency (default
+// 20 ms) to stand in for the server. With -Dstory.concurrent.servers=N they run live instead, each on one of N servers
+// (ports 4650 and up) leased for the length of the scenario. Before JDK 21 "virtual" falls back to a platform thread
+// per scenario. After an untimed pass, durations of scenarios that finished while the in-flight limit was still
+// reached are cut with SteadyState; scen/s counts the steady part only, overall/s the whole run.
+// -Dstory.concurrent.modes=platform,virtual .threads=8 .inFlight=64 .repeat=20 .servers=0
+public class ConcurrentScenarioRunner {
+    public static final String MODES_PROPERTY = "story.concurrent.modes";
+    public static final String THREADS_PROPERTY = "story.concurrent.threads";
+    public static final String IN_FLIGHT_PROPERTY = "story.concurrent.inFlight";
+    public static final String REPEAT_PROPERTY = "story.concurrent.repeat";
+    public static final String SERVERS_PROPERTY = "story.concurrent.servers";
+    public static final Path REPORT = Path.of("build/perf/concurrent-scenarios.json");
+    private static final int FIRST_PORT = 4650;
+
+    public record Result(String mode, String executor, int scenarios, long failures, long nanos, SteadyState.Window steady,
+                         int peakThreads) {
+        double overall() {
+            return nanos == 0 ? 0 : scenarios / (nanos / 1e9);
+        }
+
+        JSONObject toJson() {
+            JSONObject json = new JSONObject().put("mode", mode).put("executor", executor).put("scenarios", scenarios)
+                    .put("failures", failures).put("seconds", round(nanos / 1e9)).put("overallPerSecond", round(overall()))
+                    .put("peakPlatformThreads", peakThreads).put("stable", steady.stable())
+                    .put("warmupScenarios", steady.warmupSamples());
+            if (!steady.stable()) return json.put("reason", steady.reason());
+            return json.put("perSecond", round(steady.throughput()))
+                    .put("p50Ms", round(steady.latency().percentile(50) / 1e6))
+                    .put("p99Ms", round(steady.latency().percentile(99) / 1e6));
+        }
+    }
+
+    private record Backend(ExecutorService executor, String description) {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int servers = Integer.getInteger(SERVERS_PROPERTY, 0);
+        // Read once by SharedTestContext and ExchangeLog, so they must be in place before the first scenario
+        if (System.getProperty(Fixtures.MODE_PROPERTY) == null) {
+            System.setProperty(Fixtures.MODE_PROPERTY, servers > 0 ? "live" : "replay");
+        }
+        boolean replay = FixtureMode.parse(System.getProperty(Fixtures.MODE_PROPERTY)) == FixtureMode.REPLAY;
+        if (replay && System.getProperty(Fixtures.LATENCY_PROPERTY) == null) {
+            System.setProperty(Fixtures.LATENCY_PROPERTY, "20");
+        }
+        if (System.getProperty(ExchangeLog.ENABLED_PROPERTY) == null) {
+            System.setProperty(ExchangeLog.ENABLED_PROPERTY, "false");
+        }
+        if (!replay && servers == 0) {
+            throw new IllegalArgumentException("Live scenarios wipe the server they run on; set " + SERVERS_PROPERTY);
+        }
+
+        List<String> modes = Arrays.asList(System.getProperty(MODES_PROPERTY, "platform,virtual").split(","));
+        int threads = Integer.getInteger(THREADS_PROPERTY, 8);
+        int inFlight = Integer.getInteger(IN_FLIGHT_PROPERTY, 64);
+        int repeat = Integer.getInteger(REPEAT_PROPERTY, 20);
+        List<ScenarioRef> scenarios = FeatureIndex.scan();
+        List<ScenarioRef> work = new ArrayList<>();
+        for (int i = 0; i < repeat; i++) work.addAll(scenarios);
+        System.out.printf(Locale.ROOT, "%d scenarios x %d, %s, at most %d in flight%n", scenarios.size(), repeat,
+                replay ? "replayed with " + System.getProperty(Fixtures.LATENCY_PROPERTY) + " ms per answer"
+                        : "live on " + servers + " servers", inFlight);
+
+        List<TodoServer> started = new ArrayList<>();
+        List<Result> results = new ArrayList<>();
+        try {
+            BlockingQueue<String> pool = null;
+            if (servers > 0) {
+                pool = new ArrayBlockingQueue<>(servers);
+                for (int i = 0; i < servers; i++) {
+                    TodoServer server = TodoServer.start(FIRST_PORT + i);
+                    started.add(server);
+                    pool.add(server.baseUrl());
+                }
+            }
+            // One untimed pass first, so that neither mode pays for class loading and the JIT
+            long warmup = System.nanoTime();
+            Result untimed = run("platform", scenarios, threads, inFlight, pool);
+            System.out.printf(Locale.ROOT, "Warm-up: %d scenarios in %.2f s, left out%n", untimed.scenarios(),
+                    (System.nanoTime() - warmup) / 1e9);
+            for (String mode : modes) {
+                Result result = run(mode.trim(), work, threads, inFlight, pool);
+                results.add(result);
+                System.out.printf(Locale.ROOT, "  %-8s %d scenarios in %.2f s, %d failed, %s%n", result.mode(),
+                        result.scenarios(), result.nanos() / 1e9, result.failures(), result.steady().describe());
+            }
+        } finally {
+            for (TodoServer server : started) server.close();
+        }
+
+        System.out.println("\n" + "=".repeat(112));
+        System.out.printf("%-8s | %-44s | %-10s | %-10s | %-8s | %-8s | %-8s | %s%n", "Mode", "Executor", "scen/s",
+                "overall/s", "p50 ms", "p99 ms", "failed", "peak threads");
+        System.out.println("-".repeat(112));
+        JSONArray report = new JSONArray();
+        for (Result r : results) {
+            report.put(r.toJson());
+            if (!r.steady().stable()) {
+                System.out.printf("%-8s | %-44s | %s%n", r.mode(), r.executor(), r.steady().describe());
+                continue;
+            }
+            System.out.printf(Locale.ROOT, "%-8s | %-44s | %-10.1f | %-10.1f | %-8.1f | %-8.1f | %-8d | %d%n", r.mode(),
+                    r.executor(), r.steady().throughput(), r.overall(), r.steady().latency().percentile(50) / 1e6,
+                    r.steady().latency().percentile(99) / 1e6, r.failures(), r.peakThreads());
+        }
+        System.out.println("=".repeat(112));
+        Files.createDirectories(REPORT.getParent());
+        Files.writeString(REPORT, CanonicalJson.write(new JSONObject().put("scenarios", scenarios.size())
+                .put("repeat", repeat).put("threads", threads).put("inFlight", inFlight).put("replay", replay)
+                .put("latencyMs", replay ? Long.getLong(Fixtures.LATENCY_PROPERTY, 0) : 0).put("servers", servers)
+                .put("java", Runtime.version().toString()).put("runs", report), true) + "\n", StandardCharsets.UTF_8);
+        System.out.println("Report: " + REPORT.toAbsolutePath());
+        System.exit(results.stream().anyMatch(r -> r.failures() > 0) ? 1 : 0);
+    }
+
+    static Result run(String mode, List<ScenarioRef> work, int threads, int inFlight, BlockingQueue<String> pool)
+            throws InterruptedException {
+        Backend backend = backend(mode, threads);
+        Semaphore permits = new Semaphore(inFlight);
+        Queue<long[]> finished = new ConcurrentLinkedQueue<>();
+        LongAdder failures = new LongAdder();
+        ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+        mx.resetPeakThreadCount();
+        long start = System.nanoTime();
+        long held;
+        try {
+            for (ScenarioRef scenario : work) {
+                permits.acquire();
+                backend.executor().execute(() -> {
+                    try {
+                        String server = pool == null ? null : pool.take();
+                        try {
+                            if (server != null) SharedTestContext.getInstance().useServer(server);
+                            long begin = System.nanoTime();
+                            byte status = CucumberLauncher.runQuietly(List.of(scenario));
+                            finished.add(new long[] {begin, System.nanoTime() - begin});
+                            if (status != 0) {
+                                failures.increment();
+                                System.out.println("  FAILED " + scenario.location());
+                            }
+                        } finally {
+                            if (server != null) pool.add(server);
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } catch (RuntimeException | Error e) {
+                        failures.increment();
+                        System.out.println("  FAILED " + scenario.location() + ": " + e);
+                    } finally {
+                        permits.release();
+                    }
+                });
+            }
+            held = System.nanoTime();
+            permits.acquire(inFlight);
+        } finally {
+            backend.executor().shutdownNow();
+        }
+        long nanos = System.nanoTime() - start;
+        backend.executor().awaitTermination(10, TimeUnit.SECONDS);
+        // Once the last scenario is submitted fewer and fewer are in flight, so only those finished before then count
+        SampleSeries series = new SampleSeries();
+        for (long[] sample : finished) {
+            if (sample[0] + sample[1] <= held) series.record(sample[0], sample[1]);
+        }
+        return new Result(mode, backend.description(), work.size(), failures.sum(), nanos, series.steadyState(),
+                mx.getPeakThreadCount());
+    }
+
+    private static Backend backend(String mode, int threads) {
+        switch (mode) {
+            case "platform":
+                return new Backend(Executors.newFixedThreadPool(threads), "fixed pool of " + threads + " platform threads");
+            case "virtual":
+                try {
+                    // Looked up so that the runner still builds and runs on JDK 17
+                    ExecutorService executor = (ExecutorService) Executors.class
+                            .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+                    return new Backend(executor, "virtual thread per scenario");
+                } catch (NoSuchMethodException e) {
+                    // Idle threads end at once, so a new platform thread is started for (nearly) every scenario
+                    return new Backend(new ThreadPoolExecutor(0, Integer.MAX_VALUE, 0, TimeUnit.SECONDS, new SynchronousQueue<>()),
+                            "platform thread per scenario (JDK " + Runtime.version().feature() + ")");
+                } catch (ReflectiveOperationException e) {
+                    throw new IllegalStateException("Cannot create a virtual thread executor", e);
+                }
+            default:
+                throw new IllegalArgumentException("Unknown mode " + mode + ", expected platform or virtual");
+        }
+    }
+
+    static double round(double value) {
+        return Math.round(value * 1000) / 1000.0;
+    }
+}
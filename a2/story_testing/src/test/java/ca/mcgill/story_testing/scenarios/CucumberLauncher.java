@@ -0,0 +1,71 @@
+package ca.mcgill.story_testing.scenarios;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+
+import io.cucumber.core.cli.Main;
+import io.cucumber.core.eventbus.IncrementingUuidGenerator;
+
+// Runs a selection of scenarios through the Cucumber CLI, the same way RandomOrderTestRunner runs whole features.
+public final class CucumberLauncher {
+    public static final String GLUE = "ca.mcgill.story_testing.stepdefs";
+
+    private CucumberLauncher() {
+    }
+
+    public static byte run(List<ScenarioRef> scenarios, List<String> plugins) {
+        return Main.run(arguments(scenarios, plugins).toArray(String[]::new));
+    }
+
+    // No plugins and no summary, for callers that only need the exit status and run many times in one JVM. Every run
+    // instantiates each UuidGenerator Cucumber ships and the 255th IncrementingUuidGenerator refuses to start, even
+    // though the random one is used; that run is simply started again, any other provider failure is not.
+    public static byte runQuietly(List<ScenarioRef> scenarios) {
+        List<String> args = arguments(scenarios, List.of());
+        args.add(0, "--no-summary");
+        try {
+            return Main.run(args.toArray(String[]::new));
+        } catch (ServiceConfigurationError e) {
+            if (!String.valueOf(e.getMessage()).contains(IncrementingUuidGenerator.class.getName())) throw e;
+            return Main.run(args.toArray(String[]::new));
+        }
+    }
+
+    // Cucumber sorts the features it is given by path, so an exact feature order needs one run per feature.
+    // Plugins that write a single report file only keep the last run; use console plugins here.
+    public static byte runInOrder(List<ScenarioRef> scenarios, List<String> plugins) {
+        byte worst = 0;
+        int start = 0;
+        for (int i = 1; i <= scenarios.size(); i++) {
+            if (i == scenarios.size() || !scenarios.get(i).feature().equals(scenarios.get(start).feature())) {
+                worst = (byte) Math.max(worst, run(scenarios.subList(start, i), plugins));
+                start = i;
+            }
+        }
+        return worst;
+    }
+
+    public static List<String> arguments(List<ScenarioRef> scenarios, List<String> plugins) {
+        List<String> args = new ArrayList<>();
+        args.add("--glue");
+        args.add(GLUE);
+        for (String plugin : plugins) {
+            args.add("--plugin");
+            args.add(plugin);
+        }
+        // One "path:line:line" argument per feature, in order of first appearance
+        Map<Path, StringBuilder> features = new LinkedHashMap<>();
+        for (ScenarioRef scenario : scenarios) {
+            features.computeIfAbsent(scenario.feature(), feature -> new StringBuilder(feature.toAbsolutePath().toString()))
+                    .append(':').append(scenario.line());
+        }
+        for (StringBuilder feature : features.values()) {
+            args.add(feature.toString());
+        }
+        return args;
+    }
+}
@@ -0,0 +1,106 @@
+package ca.mcgill.story_testing.scenarios;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.json.JSONObject;
+
+import ca.mcgill.story_testing.fixtures.CanonicalJson;
+
+// Exponentially weighted average duration (ms) per scenario key, shared by every runner and shard on the machine.
+public class DurationHistory {
+    public static final String FILE_PROPERTY = "story.durations.file";
+    public static final String DEFAULT_FILE = "build/history/scenario-durations.json";
+    private static final double WEIGHT = 0.3;
+
+    private final Path file;
+    private final Map<String, Double> millis;
+
+    private DurationHistory(Path file, Map<String, Double> millis) {
+        this.file = file;
+        this.millis = millis;
+    }
+
+    public static DurationHistory load() {
+        return load(Path.of(System.getProperty(FILE_PROPERTY, DEFAULT_FILE)));
+    }
+
+    public static DurationHistory load(Path file) {
+        return new DurationHistory(file, read(file));
+    }
+
+    public boolean isEmpty() {
+        return millis.isEmpty();
+    }
+
+    public Double get(String scenarioKey) {
+        return millis.get(scenarioKey);
+    }
+
+    // Known average, else the median of the known scenarios, else the step count alone
+    public double estimate(ScenarioRef scenario) {
+        Double known = millis.get(scenario.key());
+        if (known != null) {
+            return known;
+        }
+        if (millis.isEmpty()) {
+            return Math.max(1, scenario.steps().size());
+        }
+        List<Double> values = new ArrayList<>(millis.values());
+        Collections.sort(values);
+        return values.get(values.size() / 2);
+    }
+
+    // Merges new samples under a file lock so that concurrent shards do not overwrite each other
+    public synchronized void update(Map<String, Long> samples) {
+        if (samples.isEmpty()) return;
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            Path lockFile = file.resolveSibling(file.getFileName() + ".lock");
+            try (FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                // Released when the channel closes
+                channel.lock();
+                millis.putAll(read(file));
+                for (Map.Entry<String, Long> sample : samples.entrySet()) {
+                    millis.merge(sample.getKey(), sample.getValue().doubleValue(),
+                            (old, latest) -> old * (1 - WEIGHT) + latest * WEIGHT);
+                }
+                JSONObject json = new JSONObject();
+                for (Map.Entry<String, Double> entry : millis.entrySet()) {
+                    json.put(entry.getKey(), Math.round(entry.getValue() * 10) / 10.0);
+                }
+                Files.writeString(file, CanonicalJson.write(json, true) + "\n", StandardCharsets.UTF_8);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to update duration history " + file, e);
+        }
+    }
+
+    private static Map<String, Double> read(Path file) {
+        Map<String, Double> millis = new TreeMap<>();
+        if (!Files.exists(file)) {
+            return millis;
+        }
+        try {
+            String text = Files.readString(file, StandardCharsets.UTF_8);
+            if (text.isBlank()) return millis;
+            JSONObject json = new JSONObject(text);
+            for (String key : json.keySet()) {
+                millis.put(key, json.getDouble(key));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read duration history " + file, e);
+        }
+        return millis;
+    }
+}
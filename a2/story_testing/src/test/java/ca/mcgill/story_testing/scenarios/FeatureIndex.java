@@ -0,0 +1,182 @@
+package ca.mcgill.story_testing.scenarios;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+// Line-based reader for the subset of Gherkin used by the stories; enough to enumerate scenarios without Cucumber.
+public final class FeatureIndex {
+    public static final String FEATURE_PATH = "src/test/resources/ca/mcgill/story_testing/features";
+    private static final Pattern STEP = Pattern.compile("^(Given|When|Then|And|But|\\*)\\s+(.*)$");
+
+    private FeatureIndex() {
+    }
+
+    public static List<ScenarioRef> scan() {
+        return scan(Path.of(FEATURE_PATH));
+    }
+
+    public static List<ScenarioRef> scan(Path directory) {
+        List<ScenarioRef> scenarios = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.filter(path -> path.toString().endsWith(".feature")).sorted().toList()) {
+                scenarios.addAll(parse(file));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to list features in " + directory, e);
+        }
+        return scenarios;
+    }
+
+    public static List<ScenarioRef> parse(Path feature) {
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(feature, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read " + feature, e);
+        }
+
+        List<ScenarioRef> scenarios = new ArrayList<>();
+        List<String> background = new ArrayList<>();
+        List<String> steps = null;
+        String name = null;
+        int line = 0;
+        boolean outline = false;
+        int exampleRows = 0;
+        boolean inBackground = false;
+        boolean inDocString = false;
+        List<String> header = null;
+
+        for (int i = 0; i < lines.size(); i++) {
+            String text = lines.get(i).trim();
+            if (text.startsWith("\"\"\"") || text.startsWith("```")) {
+                inDocString = !inDocString;
+                continue;
+            }
+            if (inDocString || text.isEmpty() || text.startsWith("#") || text.startsWith("@")) {
+                continue;
+            }
+            if (text.startsWith("Background:")) {
+                addScenario(scenarios, feature, name, line, steps, outline && exampleRows > 0);
+                inBackground = true;
+                steps = null;
+            } else if (text.startsWith("Scenario Outline:") || text.startsWith("Scenario Template:")) {
+                addScenario(scenarios, feature, name, line, steps, outline && exampleRows > 0);
+                inBackground = false;
+                outline = true;
+                exampleRows = 0;
+                name = text.substring(text.indexOf(':') + 1).trim();
+                line = i + 1;
+                steps = new ArrayList<>(background);
+                header = null;
+            } else if (text.startsWith("Scenario:") || text.startsWith("Example:")) {
+                addScenario(scenarios, feature, name, line, steps, outline && exampleRows > 0);
+                inBackground = false;
+                outline = false;
+                name = text.substring(text.indexOf(':') + 1).trim();
+                line = i + 1;
+                steps = new ArrayList<>(background);
+            } else if (text.startsWith("Examples:") || text.startsWith("Scenarios:")) {
+                header = null;
+            } else if (text.startsWith("|")) {
+                // Tables under a step are step arguments; under Examples each row after the header is a scenario
+                if (outline && steps != null && isExamplesRow(lines, i)) {
+                    List<String> cells = cells(text);
+                    if (header == null) {
+                        header = cells;
+                    } else {
+                        scenarios.add(new ScenarioRef(feature, i + 1, name, substitute(steps, header, cells)));
+                        exampleRows++;
+                    }
+                }
+            } else {
+                Matcher matcher = STEP.matcher(text);
+                if (matcher.matches()) {
+                    if (inBackground) {
+                        background.add(matcher.group(2));
+                    } else if (steps != null) {
+                        steps.add(matcher.group(2));
+                    }
+                }
+            }
+        }
+        addScenario(scenarios, feature, name, line, steps, outline && exampleRows > 0);
+        return scenarios;
+    }
+
+    // Data table rows and doc string lines attached to steps, which the scenario step texts leave out
+    public static List<String> stepArguments(Path feature) {
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(feature, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read " + feature, e);
+        }
+        List<String> arguments = new ArrayList<>();
+        boolean inDocString = false;
+        for (int i = 0; i < lines.size(); i++) {
+            String text = lines.get(i).trim();
+            if (text.startsWith("\"\"\"") || text.startsWith("```")) {
+                inDocString = !inDocString;
+                arguments.add(text);
+            } else if (inDocString || (text.startsWith("|") && !isExamplesRow(lines, i))) {
+                arguments.add(text);
+            }
+        }
+        return arguments;
+    }
+
+    // An outline without example rows runs once, like a plain scenario
+    private static void addScenario(List<ScenarioRef> scenarios, Path feature, String name, int line, List<String> steps, boolean expanded) {
+        if (steps != null && !expanded) {
+            scenarios.add(new ScenarioRef(feature, line, name, List.copyOf(steps)));
+        }
+    }
+
+    private static boolean isExamplesRow(List<String> lines, int index) {
+        for (int i = index - 1; i >= 0; i--) {
+            String text = lines.get(i).trim();
+            if (text.isEmpty() || text.startsWith("#") || text.startsWith("|") || text.startsWith("@")) continue;
+            return text.startsWith("Examples:") || text.startsWith("Scenarios:");
+        }
+        return false;
+    }
+
+    private static List<String> cells(String row) {
+        String inner = row.substring(1, row.lastIndexOf('|'));
+        List<String> cells = new ArrayList<>();
+        for (String cell : inner.split("\\|", -1)) {
+            cells.add(cell.trim());
+        }
+        return cells;
+    }
+
+    private static List<String> substitute(List<String> steps, List<String> header, List<String> values) {
+        List<String> result = new ArrayList<>(steps.size());
+        for (String step : steps) {
+            String text = step;
+            for (int i = 0; i < header.size() && i < values.size(); i++) {
+                text = text.replace("<" + header.get(i) + ">", values.get(i));
+            }
+            result.add(text);
+        }
+        return result;
+    }
+
+    public static Map<Path, List<ScenarioRef>> byFeature(List<ScenarioRef> scenarios) {
+        Map<Path, List<ScenarioRef>> features = new LinkedHashMap<>();
+        for (ScenarioRef scenario : scenarios) {
+            features.computeIfAbsent(scenario.feature(), feature -> new ArrayList<>()).add(scenario);
+        }
+        return features;
+    }
+}
@@ -0,0 +1,23 @@
+package ca.mcgill.story_testing.scenarios;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import ca.mcgill.story_testing.stepdefs.ScenarioHooks;
+
+// One executable scenario (an outline contributes one per example row); steps include the Background.
+public record ScenarioRef(Path feature, int line, String name, List<String> steps) {
+
+    public String key() {
+        return ScenarioHooks.scenarioKey(feature.toUri(), line);
+    }
+
+    public String featureName() {
+        String name = feature.getFileName().toString();
+        return name.substring(0, name.length() - 8);
+    }
+
+    public String location() {
+        return feature.toAbsolutePath() + ":" + line;
+    }
+}
@@ -0,0 +1,102 @@
+package ca.mcgill.story_testing.server;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+// A Todo Manager API process started from the jar on its own port, for runs that need an isolated server.
+public class TodoServer implements AutoCloseable {
+    public static final String JAR_PROPERTY = "story.server.jar";
+    public static final String DEFAULT_JAR = "../runTodoManagerRestAPI-1.5.5.jar";
+    private static final Duration STARTUP_TIMEOUT = Duration.ofSeconds(60);
+
+    private final Process process;
+    private final int port;
+
+    private TodoServer(Process process, int port) {
+        this.process = process;
+        this.port = port;
+    }
+
+    public static TodoServer start(int port) throws IOException, InterruptedException {
+        return start(Path.of(System.getProperty(JAR_PROPERTY, DEFAULT_JAR)), port);
+    }
+
+    public static TodoServer start(Path jar, int port) throws IOException, InterruptedException {
+        if (!Files.exists(jar)) {
+            throw new IllegalStateException("Todo Manager jar not found: " + jar.toAbsolutePath());
+        }
+        // A server already listening there would answer the readiness probe and hide a failed start
+        try (ServerSocket probe = new ServerSocket(port)) {
+            probe.setReuseAddress(true);
+        } catch (IOException e) {
+            throw new IllegalStateException("Port " + port + " is already in use", e);
+        }
+
+        Path log = Path.of("build", "servers", "server-" + port + ".log");
+        Files.createDirectories(log.getParent());
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        Process process = new ProcessBuilder(java, "-jar", jar.toAbsolutePath().toString(), "-port=" + port)
+                .redirectErrorStream(true)
+                .redirectOutput(log.toFile())
+                .start();
+        TodoServer server = new TodoServer(process, port);
+        server.awaitReady();
+        return server;
+    }
+
+    public int port() {
+        return port;
+    }
+
+    public String baseUrl() {
+        return "http://localhost:" + port;
+    }
+
+    public long pid() {
+        return process.pid();
+    }
+
+    private void awaitReady() throws InterruptedException {
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(1)).build();
+        HttpRequest probe = HttpRequest.newBuilder(URI.create(baseUrl() + "/todos")).timeout(Duration.ofSeconds(2)).build();
+        long deadline = System.nanoTime() + STARTUP_TIMEOUT.toNanos();
+        while (System.nanoTime() < deadline) {
+            if (!process.isAlive()) {
+                throw new IllegalStateException("Todo Manager on port " + port + " exited with " + process.exitValue()
+                        + ", see build" + File.separator + "servers" + File.separator + "server-" + port + ".log");
+            }
+            try {
+                if (client.send(probe, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                    return;
+                }
+            } catch (IOException e) {
+                // not listening yet
+            }
+            Thread.sleep(100);
+        }
+        close();
+        throw new IllegalStateException("Todo Manager on port " + port + " did not start within " + STARTUP_TIMEOUT.toSeconds() + "s");
+    }
+
+    @Override
+    public void close() {
+        process.destroy();
+        try {
+            if (!process.waitFor(10, TimeUnit.SECONDS)) {
+                process.destroyForcibly().waitFor();
+            }
+        } catch (InterruptedException e) {
+            process.destroyForcibly();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
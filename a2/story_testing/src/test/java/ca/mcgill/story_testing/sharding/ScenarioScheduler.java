@@ -0,0 +1,114 @@
+package ca.mcgill.story_testing.sharding;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import ca.mcgill.story_testing.scenarios.DurationHistory;
+import ca.mcgill.story_testing.scenarios.ScenarioRef;
+
+// Longest-first (LPT) assignment of scenarios onto workers by historical duration. Inside a worker the scenarios of
+// a feature stay together so its Background runs back to back on a warm server; Cucumber keeps file order within a
+// feature, so the feature group is the unit reordered there. A seed perturbs the estimates by up to +/- jitter and
+// shuffles the groups: each seed gives a new ordering while the balance stays within the jitter of plain LPT.
+public class ScenarioScheduler {
+    public static final String SEED_PROPERTY = "story.order.seed";
+    public static final String JITTER_PROPERTY = "story.order.jitter";
+    private static final double DEFAULT_JITTER = 0.2;
+
+    private final DurationHistory history;
+    private final Random random;
+    private final double jitter;
+
+    public ScenarioScheduler(DurationHistory history) {
+        this(history, null, 0);
+    }
+
+    public ScenarioScheduler(DurationHistory history, Long seed, double jitter) {
+        if (jitter < 0 || jitter >= 1) {
+            throw new IllegalArgumentException("Jitter must be in [0, 1), got " + jitter);
+        }
+        this.history = history;
+        this.random = seed == null ? null : new Random(seed);
+        this.jitter = seed == null ? 0 : jitter;
+    }
+
+    public static ScenarioScheduler fromSystemProperties(DurationHistory history) {
+        String seed = System.getProperty(SEED_PROPERTY);
+        return new ScenarioScheduler(history, seed == null ? null : Long.parseLong(seed), jitterFromSystemProperties());
+    }
+
+    public static double jitterFromSystemProperties() {
+        return Double.parseDouble(System.getProperty(JITTER_PROPERTY, String.valueOf(DEFAULT_JITTER)));
+    }
+
+    public List<Shard> schedule(List<ScenarioRef> scenarios, int workers) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("Worker count must be at least 1, got " + workers);
+        }
+        Map<ScenarioRef, Double> estimates = new HashMap<>();
+        for (ScenarioRef scenario : scenarios) {
+            double estimate = history.estimate(scenario);
+            if (random != null) {
+                estimate *= 1 + jitter * (2 * random.nextDouble() - 1);
+            }
+            estimates.put(scenario, estimate);
+        }
+
+        List<ScenarioRef> longestFirst = new ArrayList<>(scenarios);
+        longestFirst.sort(Comparator.comparingDouble((ScenarioRef scenario) -> estimates.get(scenario)).reversed()
+                .thenComparing(ScenarioRef::key));
+        List<List<ScenarioRef>> assigned = new ArrayList<>();
+        double[] load = new double[workers];
+        for (int i = 0; i < workers; i++) {
+            assigned.add(new ArrayList<>());
+        }
+        for (ScenarioRef scenario : longestFirst) {
+            int lightest = 0;
+            for (int i = 1; i < workers; i++) {
+                if (load[i] < load[lightest]) lightest = i;
+            }
+            assigned.get(lightest).add(scenario);
+            load[lightest] += estimates.get(scenario);
+        }
+
+        List<Shard> plan = new ArrayList<>();
+        for (int i = 0; i < workers; i++) {
+            plan.add(new Shard(i, orderWithinWorker(assigned.get(i), estimates), load[i]));
+        }
+        return plan;
+    }
+
+    private List<ScenarioRef> orderWithinWorker(List<ScenarioRef> scenarios, Map<ScenarioRef, Double> estimates) {
+        Map<Path, List<ScenarioRef>> groups = new LinkedHashMap<>();
+        for (ScenarioRef scenario : scenarios) {
+            groups.computeIfAbsent(scenario.feature(), feature -> new ArrayList<>()).add(scenario);
+        }
+        List<List<ScenarioRef>> ordered = new ArrayList<>(groups.values());
+        for (List<ScenarioRef> group : ordered) {
+            group.sort(Comparator.comparingInt(ScenarioRef::line));
+        }
+        if (random != null) {
+            Collections.shuffle(ordered, random);
+        } else {
+            ordered.sort(Comparator.comparingDouble((List<ScenarioRef> group) -> total(group, estimates)).reversed());
+        }
+        List<ScenarioRef> result = new ArrayList<>(scenarios.size());
+        ordered.forEach(result::addAll);
+        return result;
+    }
+
+    private static double total(List<ScenarioRef> group, Map<ScenarioRef, Double> estimates) {
+        double total = 0;
+        for (ScenarioRef scenario : group) {
+            total += estimates.get(scenario);
+        }
+        return total;
+    }
+}
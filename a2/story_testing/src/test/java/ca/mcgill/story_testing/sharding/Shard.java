@@ -0,0 +1,8 @@
+package ca.mcgill.story_testing.sharding;
+
+import java.util.List;
+
+import ca.mcgill.story_testing.scenarios.ScenarioRef;
+
+public record Shard(int index, List<ScenarioRef> scenarios, double estimatedMillis) {
+}
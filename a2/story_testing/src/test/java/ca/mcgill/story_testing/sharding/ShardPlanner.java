@@ -0,0 +1,109 @@
+package ca.mcgill.story_testing.sharding;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import ca.mcgill.story_testing.scenarios.DurationHistory;
+import ca.mcgill.story_testing.scenarios.FeatureIndex;
+import ca.mcgill.story_testing.scenarios.ScenarioRef;
+
+// Balances shards by historical duration: scenarios through ScenarioScheduler, or whole features longest first.
+public final class ShardPlanner {
+    private ShardPlanner() {
+    }
+
+    public static List<Shard> plan(List<ScenarioRef> scenarios, DurationHistory history, int count, boolean wholeFeatures) {
+        if (!wholeFeatures) {
+            return ScenarioScheduler.fromSystemProperties(history).schedule(scenarios, count);
+        }
+        if (count < 1) {
+            throw new IllegalArgumentException("Shard count must be at least 1, got " + count);
+        }
+        List<List<ScenarioRef>> units = new ArrayList<>(FeatureIndex.byFeature(scenarios).values());
+        units.sort(Comparator.comparingDouble((List<ScenarioRef> unit) -> estimate(unit, history)).reversed()
+                .thenComparing(unit -> unit.get(0).key()));
+
+        List<List<ScenarioRef>> assigned = new ArrayList<>();
+        double[] load = new double[count];
+        for (int i = 0; i < count; i++) {
+            assigned.add(new ArrayList<>());
+        }
+        for (List<ScenarioRef> unit : units) {
+            int lightest = 0;
+            for (int i = 1; i < count; i++) {
+                if (load[i] < load[lightest]) lightest = i;
+            }
+            assigned.get(lightest).addAll(unit);
+            load[lightest] += estimate(unit, history);
+        }
+
+        List<Shard> shards = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            shards.add(new Shard(i, assigned.get(i), load[i]));
+        }
+        return shards;
+    }
+
+    private static double estimate(List<ScenarioRef> unit, DurationHistory history) {
+        double total = 0;
+        for (ScenarioRef scenario : unit) {
+            total += history.estimate(scenario);
+        }
+        return total;
+    }
+
+    public static void write(List<Shard> shards, Path file) {
+        JSONArray json = new JSONArray();
+        for (Shard shard : shards) {
+            JSONArray locations = new JSONArray();
+            for (ScenarioRef scenario : shard.scenarios()) {
+                locations.put(scenario.key());
+            }
+            json.put(new JSONObject().put("index", shard.index()).put("estimatedMillis", shard.estimatedMillis()).put("scenarios", locations));
+        }
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            Files.writeString(file, json.toString(2), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write shard plan " + file, e);
+        }
+    }
+
+    public static List<Shard> read(Path file, List<ScenarioRef> scenarios) {
+        Map<String, ScenarioRef> byKey = new HashMap<>();
+        for (ScenarioRef scenario : scenarios) {
+            byKey.put(scenario.key(), scenario);
+        }
+        List<Shard> shards = new ArrayList<>();
+        try {
+            JSONArray json = new JSONArray(Files.readString(file, StandardCharsets.UTF_8));
+            for (int i = 0; i < json.length(); i++) {
+                JSONObject shard = json.getJSONObject(i);
+                List<ScenarioRef> refs = new ArrayList<>();
+                JSONArray keys = shard.getJSONArray("scenarios");
+                for (int j = 0; j < keys.length(); j++) {
+                    ScenarioRef scenario = byKey.get(keys.getString(j));
+                    if (scenario == null) {
+                        throw new IllegalStateException("Shard plan " + file + " refers to unknown scenario " + keys.getString(j));
+                    }
+                    refs.add(scenario);
+                }
+                shards.add(new Shard(shard.getInt("index"), refs, shard.getDouble("estimatedMillis")));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read shard plan " + file, e);
+        }
+        return shards;
+    }
+}
@@ -0,0 +1,102 @@
+package ca.mcgill.story_testing.sharding;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+// Combines the Cucumber JSON reports of all shards into build/shards/cucumber.json, one entry per feature.
+public final class ShardReportMerger {
+    public static final String MERGED_REPORT = "cucumber.json";
+
+    private ShardReportMerger() {
+    }
+
+    public record Summary(int shards, int scenarios, int passed, int failed, long scenarioMillis) {
+        @Override
+        public String toString() {
+            return "Shard reports: " + shards + "\nScenarios: " + scenarios + " (passed " + passed + ", failed " + failed + ")"
+                    + "\nSummed scenario time: " + scenarioMillis + " ms";
+        }
+    }
+
+    public static void main(String[] args) {
+        Path directory = args.length > 0 ? Path.of(args[0]) : ShardRunner.REPORT_DIR;
+        Summary summary = merge(directory);
+        System.out.println(summary);
+        System.exit(summary.failed() == 0 ? 0 : 1);
+    }
+
+    public static Summary merge(Path directory) {
+        List<Path> reports;
+        try (Stream<Path> files = Files.list(directory)) {
+            reports = files.filter(path -> path.getFileName().toString().matches("shard-\\d+\\.json")).sorted().toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to list shard reports in " + directory, e);
+        }
+
+        Map<String, JSONObject> features = new LinkedHashMap<>();
+        int scenarios = 0;
+        int failed = 0;
+        long nanos = 0;
+        for (Path report : reports) {
+            JSONArray shardFeatures = new JSONArray(read(report));
+            for (int i = 0; i < shardFeatures.length(); i++) {
+                JSONObject feature = shardFeatures.getJSONObject(i);
+                JSONArray elements = feature.optJSONArray("elements");
+                JSONObject merged = features.computeIfAbsent(feature.getString("uri"),
+                        uri -> new JSONObject(feature.toMap()).put("elements", new JSONArray()));
+                if (elements == null) continue;
+                for (int j = 0; j < elements.length(); j++) {
+                    JSONObject element = elements.getJSONObject(j);
+                    merged.getJSONArray("elements").put(element);
+                    if (!"scenario".equals(element.optString("type"))) continue;
+                    scenarios++;
+                    boolean passed = true;
+                    for (String part : List.of("before", "steps", "after")) {
+                        JSONArray steps = element.optJSONArray(part);
+                        if (steps == null) continue;
+                        for (int k = 0; k < steps.length(); k++) {
+                            JSONObject result = steps.getJSONObject(k).getJSONObject("result");
+                            nanos += result.optLong("duration");
+                            passed &= "passed".equals(result.optString("status"));
+                        }
+                    }
+                    if (!passed) failed++;
+                }
+            }
+        }
+
+        JSONArray output = new JSONArray();
+        for (JSONObject feature : features.values()) {
+            List<Object> elements = new ArrayList<>(feature.getJSONArray("elements").toList());
+            elements.sort(Comparator.comparingInt(element -> ((Map<?, ?>) element).get("line") instanceof Number line ? line.intValue() : 0));
+            feature.put("elements", new JSONArray(elements));
+            output.put(feature);
+        }
+        try {
+            Files.writeString(directory.resolve(MERGED_REPORT), output.toString(2), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write merged report", e);
+        }
+        return new Summary(reports.size(), scenarios, scenarios - failed, failed, nanos / 1_000_000);
+    }
+
+    private static String read(Path file) {
+        try {
+            return Files.readString(file, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read " + file, e);
+        }
+    }
+}
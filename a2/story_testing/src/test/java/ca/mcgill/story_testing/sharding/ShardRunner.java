@@ -0,0 +1,67 @@
+package ca.mcgill.story_testing.sharding;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import ca.mcgill.story_testing.fixtures.FixtureMode;
+import ca.mcgill.story_testing.fixtures.Fixtures;
+import ca.mcgill.story_testing.scenarios.CucumberLauncher;
+import ca.mcgill.story_testing.scenarios.DurationHistory;
+import ca.mcgill.story_testing.scenarios.FeatureIndex;
+import ca.mcgill.story_testing.scenarios.ScenarioRef;
+import ca.mcgill.story_testing.server.TodoServer;
+import ca.mcgill.story_testing.stepdefs.SharedTestContext;
+
+// Runs one shard. Unless story.baseUrl is given (or fixtures are replayed) it starts its own server on 4600 + index.
+public class ShardRunner {
+    public static final String INDEX_PROPERTY = "story.shard.index";
+    public static final String COUNT_PROPERTY = "story.shard.count";
+    public static final String PORT_PROPERTY = "story.shard.port";
+    public static final String PLAN_PROPERTY = "story.shard.plan";
+    public static final String BY_FEATURE_PROPERTY = "story.shard.byFeature";
+    public static final Path REPORT_DIR = Path.of("build", "shards");
+
+    public static void main(String[] args) throws Exception {
+        int count = Integer.getInteger(COUNT_PROPERTY, 1);
+        int index = Integer.getInteger(INDEX_PROPERTY, 0);
+        System.exit(run(index, count));
+    }
+
+    public static int run(int index, int count) throws Exception {
+        List<ScenarioRef> scenarios = FeatureIndex.scan();
+        String planFile = System.getProperty(PLAN_PROPERTY);
+        List<Shard> shards = planFile != null
+                ? ShardPlanner.read(Path.of(planFile), scenarios)
+                : ShardPlanner.plan(scenarios, DurationHistory.load(), count, Boolean.getBoolean(BY_FEATURE_PROPERTY));
+        if (index < 0 || index >= shards.size()) {
+            throw new IllegalArgumentException("Shard index " + index + " is outside 0.." + (shards.size() - 1));
+        }
+        Shard shard = shards.get(index);
+        System.out.printf("=== Shard %d of %d: %d scenarios, estimated %.0f ms ===%n",
+                index + 1, shards.size(), shard.scenarios().size(), shard.estimatedMillis());
+        if (shard.scenarios().isEmpty()) {
+            return 0;
+        }
+
+        Files.createDirectories(REPORT_DIR);
+        List<String> plugins = List.of(
+                "progress",
+                "json:" + REPORT_DIR.resolve("shard-" + index + ".json"),
+                "junit:" + REPORT_DIR.resolve("shard-" + index + ".xml"),
+                "ca.mcgill.story_testing.plugins.DurationHistoryPlugin",
+                "ca.mcgill.story_testing.plugins.ImpactIndexPlugin",
+                "ca.mcgill.story_testing.plugins.MetricsPlugin",
+                "ca.mcgill.story_testing.plugins.ExchangeLogPlugin");
+
+        boolean replay = FixtureMode.parse(System.getProperty(Fixtures.MODE_PROPERTY)) == FixtureMode.REPLAY;
+        if (replay || System.getProperty(SharedTestContext.BASE_URL_PROPERTY) != null) {
+            return CucumberLauncher.run(shard.scenarios(), plugins);
+        }
+        int port = Integer.getInteger(PORT_PROPERTY, 4600 + index);
+        try (TodoServer server = TodoServer.start(port)) {
+            System.setProperty(SharedTestContext.BASE_URL_PROPERTY, server.baseUrl());
+            return CucumberLauncher.run(shard.scenarios(), plugins);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package ca.mcgill.story_testing.sharding;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import ca.mcgill.story_testing.scenarios.DurationHistory;
+import ca.mcgill.story_testing.scenarios.FeatureIndex;
+import ca.mcgill.story_testing.stepdefs.SharedTestContext;
+
+// Plans the shards once, runs each in its own JVM (and server) on this machine, then merges the reports.
+public class ShardedTestRunner {
+
+    public static void main(String[] args) throws Exception {
+        int count = Integer.getInteger(ShardRunner.COUNT_PROPERTY, 2);
+        System.exit(run(count));
+    }
+
+    public static int run(int count) throws IOException, InterruptedException {
+        List<Shard> shards = ShardPlanner.plan(FeatureIndex.scan(), DurationHistory.load(), count,
+                Boolean.getBoolean(ShardRunner.BY_FEATURE_PROPERTY));
+        clearReports();
+        // Every shard reads the same plan, so history updates from early finishers cannot reshuffle the others
+        Path plan = ShardRunner.REPORT_DIR.resolve("plan.json");
+        ShardPlanner.write(shards, plan);
+
+        System.out.println("\n=== Sharded Test Runner ===");
+        for (Shard shard : shards) {
+            System.out.printf("Shard %d: %d scenarios, estimated %.0f ms%n", shard.index() + 1, shard.scenarios().size(), shard.estimatedMillis());
+        }
+
+        long start = System.nanoTime();
+        List<Process> processes = new ArrayList<>();
+        for (Shard shard : shards) {
+            processes.add(launch(shard.index(), count, plan));
+        }
+        List<Integer> failed = new ArrayList<>();
+        for (int i = 0; i < processes.size(); i++) {
+            int exit = processes.get(i).waitFor();
+            System.out.printf("Shard %d finished with exit code %d (log: %s)%n", i + 1, exit, logFile(i));
+            if (exit != 0) failed.add(i + 1);
+        }
+        long wallMillis = (System.nanoTime() - start) / 1_000_000;
+
+        ShardReportMerger.Summary summary = ShardReportMerger.merge(ShardRunner.REPORT_DIR);
+        System.out.println("\n=== Sharded Summary ===");
+        System.out.println("Shards: " + count);
+        System.out.println("Wall time: " + wallMillis + " ms");
+        System.out.println(summary);
+        if (!failed.isEmpty()) {
+            System.out.println("Failed shards: " + failed);
+            return 1;
+        }
+        return summary.failed() == 0 ? 0 : 1;
+    }
+
+    private static Process launch(int index, int count, Path plan) throws IOException {
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        List<String> command = new ArrayList<>();
+        command.add(java);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        for (String name : System.getProperties().stringPropertyNames()) {
+            // Each shard gets its own server, so a shared story.baseUrl is deliberately not passed on
+            if (name.startsWith("story.") && !name.equals(SharedTestContext.BASE_URL_PROPERTY)) {
+                command.add("-D" + name + "=" + System.getProperty(name));
+            }
+        }
+        command.add("-D" + ShardRunner.INDEX_PROPERTY + "=" + index);
+        command.add("-D" + ShardRunner.COUNT_PROPERTY + "=" + count);
+        command.add("-D" + ShardRunner.PLAN_PROPERTY + "=" + plan);
+        command.add(ShardRunner.class.getName());
+        return new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(logFile(index).toFile())
+                .start();
+    }
+
+    private static Path logFile(int index) {
+        return ShardRunner.REPORT_DIR.resolve("shard-" + index + ".log");
+    }
+
+    private static void clearReports() throws IOException {
+        Files.createDirectories(ShardRunner.REPORT_DIR);
+        try (Stream<Path> files = Files.list(ShardRunner.REPORT_DIR)) {
+            for (Path file : files.filter(path -> path.getFileName().toString().startsWith("shard-")).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+}
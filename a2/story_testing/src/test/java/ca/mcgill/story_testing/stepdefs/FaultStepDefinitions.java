@@ -0,0 +1,113 @@
+package ca.mcgill.story_testing.stepdefs;
+
+import java.io.IOException;
+import java.net.http.HttpTimeoutException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import ca.mcgill.story_testing.faults.FaultProxy;
+import ca.mcgill.story_testing.fixtures.FixtureMode;
+import ca.mcgill.story_testing.fixtures.Fixtures;
+import ca.mcgill.story_testing.http.RequestPolicy;
+import io.cucumber.java.After;
+import io.cucumber.java.Before;
+import io.cucumber.java.en.Given;
+import io.cucumber.java.en.Then;
+import io.cucumber.java.en.When;
+
+// Steps that put a FaultProxy between the scenario and the API; scenarios tagged @faults need the live server.
+public class FaultStepDefinitions {
+    private final SharedTestContext context = SharedTestContext.getInstance();
+    private FaultProxy proxy;
+    private IOException lastError;
+
+    @Before("@faults")
+    public void requireLiveServer() {
+        assumeTrue(FixtureMode.parse(System.getProperty(Fixtures.MODE_PROPERTY)) == FixtureMode.LIVE,
+                "Fault injection needs the live server, not recorded fixtures");
+    }
+
+    @After("@faults")
+    public void stopProxy() {
+        if (proxy != null) {
+            proxy.close();
+            proxy = null;
+        }
+    }
+
+    // ----------------- Given -----------------
+    @Given("the API answers {string} after {int} ms")
+    public void delayRoute(String route, int millis) {
+        proxy().configure(route, rule -> rule.withLatency("fixed:" + millis));
+    }
+
+    @Given("the API answers {string} with latency {string}")
+    public void delayRouteWithDistribution(String route, String distribution) {
+        proxy().configure(route, rule -> rule.withLatency(distribution));
+    }
+
+    @Given("the API fails {string} with status {int}")
+    public void failRoute(String route, int status) {
+        proxy().configure(route, rule -> rule.withErrors(1.0, status));
+    }
+
+    @Given("the API fails {double} of {string} requests with status {int}")
+    public void failShareOfRoute(double rate, String route, int status) {
+        proxy().configure(route, rule -> rule.withErrors(rate, status));
+    }
+
+    @Given("the API resets connections for {string}")
+    public void resetRoute(String route) {
+        proxy().configure(route, rule -> rule.withResets(1.0));
+    }
+
+    @Given("the API sends responses at {int} bytes per second")
+    public void limitBandwidth(int bytesPerSecond) {
+        proxy().configure("*", rule -> rule.withBandwidth(bytesPerSecond));
+    }
+
+    @Given("requests time out after {int} ms")
+    public void limitResponseTime(int millis) {
+        context.usePolicy(RequestPolicy.parse("timeout=" + millis));
+    }
+
+    // ----------------- When -----------------
+    @When("I send a {word} request to {string} that may fail")
+    public void sendRequestThatMayFail(String method, String endpoint) throws InterruptedException {
+        lastError = null;
+        try {
+            context.sendRequest(method, endpoint, null);
+        } catch (IOException e) {
+            lastError = e;
+        }
+    }
+
+    // ----------------- Then -----------------
+    @Then("the request should fail with a connection error")
+    public void verifyConnectionError() {
+        assertNotNull(lastError, "Request should have failed without a response");
+    }
+
+    @Then("the request should fail with a timeout")
+    public void verifyTimeout() {
+        assertInstanceOf(HttpTimeoutException.class, lastError, "Request should have timed out");
+    }
+
+    @Then("the request should have taken at least {int} ms")
+    public void verifyMinimumDuration(int millis) {
+        long took = TimeUnit.NANOSECONDS.toMillis(context.getLastRequestNanos());
+        assertTrue(took >= millis, "Request took " + took + " ms, expected at least " + millis + " ms");
+    }
+
+    private FaultProxy proxy() {
+        if (proxy == null) {
+            proxy = FaultProxy.start(context.getBaseUrl());
+            context.routeThrough(proxy.baseUrl());
+        }
+        return proxy;
+    }
+}
@@ -0,0 +1,111 @@
+package ca.mcgill.story_testing.stepdefs;
+
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.cucumber.datatable.DataTable;
+import io.cucumber.java.en.Given;
+import io.cucumber.java.en.Then;
+import io.cucumber.java.en.When;
+
+// Steps for collection queries with ?field=value filters, checked item by item and against the unfiltered list.
+public class FilterStepDefinitions {
+    private final SharedTestContext context = SharedTestContext.getInstance();
+    private String collection;
+    private String query;
+
+    // ----------------- Given -----------------
+    @Given("the following {word} exist:")
+    public void createObjects(String collection, DataTable table) throws IOException, InterruptedException {
+        for (Map<String, String> row : table.asMaps()) {
+            JSONObject data = new JSONObject();
+            for (Map.Entry<String, String> entry : row.entrySet()) {
+                String value = entry.getValue() == null ? "" : entry.getValue();
+                if (value.equals("true") || value.equals("false")) {
+                    data.put(entry.getKey(), Boolean.parseBoolean(value));
+                } else {
+                    data.put(entry.getKey(), value);
+                }
+            }
+            context.sendRequest("POST", "/" + collection, data.toString());
+            assertEquals(201, context.getResponse().statusCode(), "Creating " + data + " in /" + collection + " should succeed");
+        }
+    }
+
+    // ----------------- When -----------------
+    @When("I request {word} filtered by {string}")
+    public void requestFiltered(String collection, String query) throws IOException, InterruptedException {
+        this.collection = collection;
+        this.query = query;
+        context.sendRequest("GET", "/" + collection + "?" + query, null);
+    }
+
+    // ----------------- Then -----------------
+    @Then("every item in the response should match the filter")
+    public void verifyEveryItemMatches() {
+        JSONArray items = items();
+        for (String parameter : query.split("&")) {
+            String[] pair = parameter.split("=", 2);
+            String field = URLDecoder.decode(pair[0], StandardCharsets.UTF_8);
+            String value = pair.length > 1 ? URLDecoder.decode(pair[1], StandardCharsets.UTF_8) : "";
+            for (int i = 0; i < items.length(); i++) {
+                JSONObject item = items.getJSONObject(i);
+                assertEquals(value, item.optString(field, null), "Item " + item + " should have " + field + " = " + value);
+            }
+        }
+    }
+
+    @Then("the response should contain exactly the {word} {string}")
+    public void verifyExactTitles(String collection, String titles) {
+        assertEquals(collection, this.collection, "The last request should have been to /" + collection);
+        List<String> expected = new ArrayList<>(Arrays.stream(titles.split(",")).map(String::trim).toList());
+        List<String> actual = new ArrayList<>();
+        JSONArray items = items();
+        for (int i = 0; i < items.length(); i++) actual.add(items.getJSONObject(i).getString("title"));
+        expected.sort(null);
+        actual.sort(null);
+        assertEquals(expected, actual, "Filtered " + collection + " should be exactly " + expected);
+    }
+
+    @Then("the response should contain no {word}")
+    public void verifyNoItems(String collection) {
+        assertEquals(collection, this.collection, "The last request should have been to /" + collection);
+        assertEquals(0, items().length(), "Filtered " + collection + " should be empty");
+    }
+
+    @Then("the filtered response should be smaller than the unfiltered one")
+    public void verifySmallerThanUnfiltered() throws IOException, InterruptedException {
+        int filtered = bytes();
+        context.sendRequest("GET", "/" + collection, null);
+        int unfiltered = bytes();
+        assertTrue(filtered < unfiltered, "Filtered response (" + filtered + " bytes) should be smaller than the unfiltered one ("
+                + unfiltered + " bytes)");
+    }
+
+    @Then("the filtered response should be the same size as the unfiltered one")
+    public void verifySameSizeAsUnfiltered() throws IOException, InterruptedException {
+        int filtered = bytes();
+        context.sendRequest("GET", "/" + collection, null);
+        assertEquals(bytes(), filtered, "An ignored query parameter should not change the response size");
+    }
+
+    private JSONArray items() {
+        JSONObject body = new JSONObject(context.getResponse().body());
+        assertTrue(body.has(collection), "Response should contain a " + collection + " field");
+        return body.getJSONArray(collection);
+    }
+
+    private int bytes() {
+        return context.getResponse().body().getBytes(StandardCharsets.UTF_8).length;
+    }
+}
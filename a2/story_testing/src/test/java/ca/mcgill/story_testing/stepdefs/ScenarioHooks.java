@@ -0,0 +1,28 @@
+package ca.mcgill.story_testing.stepdefs;
+
+import java.net.URI;
+
+import io.cucumber.java.After;
+import io.cucumber.java.Before;
+import io.cucumber.java.Scenario;
+
+public class ScenarioHooks {
+    private final SharedTestContext context = SharedTestContext.getInstance();
+
+    // Runs before the reset hooks of the step definitions so the scenario is known when the transport is built
+    @Before(order = 0)
+    public void beginScenario(Scenario scenario) {
+        context.beginScenario(scenarioKey(scenario.getUri(), scenario.getLine()));
+    }
+
+    @After(order = 0)
+    public void endScenario() {
+        context.endScenario();
+    }
+
+    // Feature file name and line, e.g. "Story1_CreatingProject.feature:18"; stable across classpath and file runs
+    public static String scenarioKey(URI uri, int line) {
+        String path = uri.toString();
+        return path.substring(path.lastIndexOf('/') + 1) + ":" + line;
+    }
+}
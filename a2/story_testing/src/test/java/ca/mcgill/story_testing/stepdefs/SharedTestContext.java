@@ -1,39 +1,75 @@
 package ca.mcgill.story_testing.stepdefs;
 
 import java.io.IOException;
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import org.json.JSONObject;
 
+import ca.mcgill.story_testing.events.ExchangeLog;
+import ca.mcgill.story_testing.events.LoggedTransport;
+import ca.mcgill.story_testing.fixtures.FixtureSession;
+import ca.mcgill.story_testing.fixtures.Fixtures;
+import ca.mcgill.story_testing.http.HttpTransport;
+import ca.mcgill.story_testing.http.JdkHttpTransport;
+import ca.mcgill.story_testing.http.PipelinedHttpTransport;
+import ca.mcgill.story_testing.http.PolicyTransport;
+import ca.mcgill.story_testing.http.RequestPolicy;
+import ca.mcgill.story_testing.impact.EndpointLog;
+import ca.mcgill.story_testing.metrics.MeteredTransport;
+import ca.mcgill.story_testing.metrics.Metrics;
+
 public class SharedTestContext {
-    private static SharedTestContext instance;
+    public static final String BASE_URL_PROPERTY = "story.baseUrl";
+    // "jdk" (default) or "pipelined" for http.PipelinedHttpTransport
+    public static final String CLIENT_PROPERTY = "story.http.client";
+    private static final boolean PIPELINED = "pipelined".equalsIgnoreCase(System.getProperty(CLIENT_PROPERTY, "jdk"));
+    // One context per thread, so that scenarios running side by side (ConcurrentScenarioRunner) never share one;
+    // a sequential run stays on one thread and so keeps a single context
+    private static final ThreadLocal<SharedTestContext> instance = ThreadLocal.withInitial(SharedTestContext::new);
+    private static final Fixtures fixtures = Fixtures.fromSystemProperties();
+    private static final RequestPolicy defaultPolicy = RequestPolicy.fromSystemProperties();
+    // Clients of the servers scenarios run against (story.baseUrl, or those passed to useServer) by URL and the
+    // timeouts they apply, shared by every thread's context: each one starts its own selector thread, and every
+    // reset() would otherwise make another. Other URLs, such as a FaultProxy's new port per scenario, are not kept.
+    private static final Map<String, HttpTransport> clients = new ConcurrentHashMap<>();
     
     private HttpResponse<String> response;
-    private final String BASE_URL = "http://localhost:4567";
+    private String serverUrl = System.getProperty(BASE_URL_PROPERTY, "http://localhost:4567");
     private Map<String, String> currentFields;
     private JSONObject lastCreatedResource;
     private JSONObject lastCreatedTodo;
     private JSONObject lastCreatedProject;
     private JSONObject lastCreatedCategory;
-    private HttpClient httpClient;
+    private HttpTransport transport;
+    private String baseUrl;
+    private RequestPolicy policy;
+    private FixtureSession fixtureSession = fixtures.openSession(null);
+    private String scenarioKey;
+    private long lastRequestNanos;
+    // This context's own client of a URL routed through, closed when the context moves on
+    private HttpTransport routedClient;
 
     private SharedTestContext() {
+        Metrics.global().watchServer(serverUrl);
         reset();
     }
 
     public static SharedTestContext getInstance() {
-        if (instance == null) {
-            instance = new SharedTestContext();
-        }
-        return instance;
+        return instance.get();
+    }
+
+    // This thread's scenarios talk to another server from now on, e.g. one leased from a pool
+    public void useServer(String baseUrl) {
+        serverUrl = baseUrl;
+        reset();
     }
 
     public void reset() {
-        httpClient = HttpClient.newHttpClient();
+        baseUrl = serverUrl;
+        policy = defaultPolicy;
+        transport = createTransport();
         currentFields = new HashMap<>();
         lastCreatedResource = null;
         lastCreatedTodo = null;
@@ -41,8 +77,52 @@ public class SharedTestContext {
         lastCreatedCategory = null;
     }
 
+    // Sends the rest of the scenario's requests to another server, e.g. a FaultProxy in front of the API
+    public void routeThrough(String baseUrl) {
+        this.baseUrl = baseUrl;
+        transport = createTransport();
+    }
+
+    // Timeouts, retries and hedging for the rest of the scenario; -Dstory.http.policy sets the default
+    public void usePolicy(RequestPolicy policy) {
+        this.policy = policy;
+        transport = createTransport();
+    }
+
+    public String getBaseUrl() {
+        return serverUrl;
+    }
+
+    // Fixtures record and replay what the policy finally returned, so retries and hedges only happen live
+    private HttpTransport createTransport() {
+        closeRoutedClient();
+        String url = baseUrl;
+        RequestPolicy applied = policy;
+        boolean shared = url.equals(serverUrl);
+        HttpTransport created = new MeteredTransport(fixtureSession.transport(url, () -> new PolicyTransport(
+                shared ? client(url, applied) : routedClient(url, applied), applied, Metrics.global())), Metrics.global());
+        return ExchangeLog.enabled() ? new LoggedTransport(created, ExchangeLog.global()) : created;
+    }
+
+    private static HttpTransport client(String url, RequestPolicy policy) {
+        return clients.computeIfAbsent(url + " " + policy.connectTimeout() + " " + policy.timeout(), key -> PIPELINED
+                ? new PipelinedHttpTransport(url, policy) : JdkHttpTransport.create(url, policy));
+    }
+
+    private HttpTransport routedClient(String url, RequestPolicy policy) {
+        routedClient = PIPELINED ? new PipelinedHttpTransport(url, policy) : JdkHttpTransport.create(url, policy);
+        return routedClient;
+    }
+
+    // A JDK HttpClient has no close() before JDK 21; its selector thread ends once the client is unreachable
+    private void closeRoutedClient() {
+        if (routedClient instanceof PipelinedHttpTransport pipelined) pipelined.close();
+        routedClient = null;
+    }
+
     public void cleanup() {
-        httpClient = null;
+        closeRoutedClient();
+        transport = null;
         currentFields = null;
         lastCreatedResource = null;
         lastCreatedTodo = null;
@@ -50,6 +130,18 @@ public class SharedTestContext {
         lastCreatedCategory = null;
     }
 
+    public void beginScenario(String scenarioKey) {
+        this.scenarioKey = scenarioKey;
+        fixtureSession = fixtures.openSession(scenarioKey);
+    }
+
+    public void endScenario() {
+        closeRoutedClient();
+        fixtureSession.close();
+        fixtureSession = fixtures.openSession(null);
+        scenarioKey = null;
+    }
+
     // Getters and setters
     public HttpResponse<String> getResponse() { 
         return response; 
@@ -99,22 +191,20 @@ public class SharedTestContext {
         this.lastCreatedCategory = obj; 
     }
 
+    // Time taken by the last request, also when it failed
+    public long getLastRequestNanos() {
+        return lastRequestNanos;
+    }
+
     // HTTP request helper
     public HttpResponse<String> sendRequest(String method, String endpoint, String body) throws IOException, InterruptedException {
-        HttpRequest.Builder requestBuilder = HttpRequest.newBuilder()
-                .uri(URI.create(BASE_URL + endpoint));
-                
-        switch (method.toUpperCase()) {
-            case "GET" -> requestBuilder.GET();
-            case "POST" -> requestBuilder.header("Content-Type", "application/json")
-                    .POST(HttpRequest.BodyPublishers.ofString(body != null ? body : ""));
-            case "PUT" -> requestBuilder.header("Content-Type", "application/json")
-                    .PUT(HttpRequest.BodyPublishers.ofString(body != null ? body : ""));
-            case "DELETE" -> requestBuilder.DELETE();
-            default -> throw new IllegalArgumentException("Unsupported HTTP method: " + method);
+        EndpointLog.record(scenarioKey, method, endpoint);
+        long start = System.nanoTime();
+        try {
+            response = transport.send(method, endpoint, body);
+        } finally {
+            lastRequestNanos = System.nanoTime() - start;
         }
-        
-        response = httpClient.send(requestBuilder.build(), HttpResponse.BodyHandlers.ofString());
         return response;
     }
 }
\ No newline at end of file
@@ -0,0 +1,39 @@
+@faults
+Feature: Behaviour under server faults
+  As a maintainer of the TODO List API tests
+  I want to slow down or break the API on purpose
+  So that I know how the client reacts when the server is slow or flaky
+
+  Background:
+    Given the Todos API service is running
+    And the system has been reset to a clean state
+
+  Scenario: Alternate Flow - Slow server
+    Given the API answers "GET /todos" after 300 ms
+    When I request all todos
+    Then the operation should succeed with status 200
+    And the request should have taken at least 300 ms
+
+  Scenario: Error Flow - Server error on one route
+    Given the API fails "GET /todos/{id}" with status 503
+    When I request the todo with id 100
+    Then the operation should fail with status 503
+    And the error message should include "Injected fault: 503"
+
+  Scenario: Error Flow - Server slower than the client timeout
+    Given the API answers "GET /todos" after 2000 ms
+    And requests time out after 300 ms
+    When I send a GET request to "/todos" that may fail
+    Then the request should fail with a timeout
+
+  Scenario: Error Flow - Connection reset
+    Given the API resets connections for "GET /projects"
+    When I send a GET request to "/projects" that may fail
+    Then the request should fail with a connection error
+
+  Scenario: Alternate Flow - Limited bandwidth
+    Given there are existing todos in the system
+    And the API sends responses at 1000 bytes per second
+    When I request all todos
+    Then the operation should succeed with status 200
+    And the request should have taken at least 200 ms
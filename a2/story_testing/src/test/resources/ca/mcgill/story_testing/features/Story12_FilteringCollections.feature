@@ -0,0 +1,55 @@
+Feature: Filter todos and projects
+  As a user of the TODO List API
+  I want to retrieve only the todos or projects whose fields have given values
+  So that I do not have to download and search the whole collection
+
+  Background:
+    Given the Todos API service is running
+    And the system has been reset to a clean state
+    And the following todos exist:
+      | title        | doneStatus | description |
+      | buy milk     | false      | groceries   |
+      | pay rent     | true       | bills       |
+      | call plumber | false      | house       |
+      | buy bread    | true       | groceries   |
+
+  Scenario: Normal Flow - Filter todos by done status
+    When I request todos filtered by "doneStatus=false"
+    Then the operation should succeed with status 200
+    And every item in the response should match the filter
+    And the response should contain exactly the todos "buy milk, call plumber"
+    And the filtered response should be smaller than the unfiltered one
+
+  Scenario: Normal Flow - Filter todos by a title with a space
+    When I request todos filtered by "title=pay%20rent"
+    Then the operation should succeed with status 200
+    And every item in the response should match the filter
+    And the response should contain exactly the todos "pay rent"
+
+  Scenario: Normal Flow - Filter projects by completion
+    Given the following projects exist:
+      | title     | completed | active |
+      | Garden    | true      | false  |
+      | Kitchen   | false     | true   |
+      | Garage    | false     | false  |
+    When I request projects filtered by "completed=false"
+    Then the operation should succeed with status 200
+    And every item in the response should match the filter
+    And the response should contain exactly the projects "Kitchen, Garage"
+
+  Scenario: Alternate Flow - Combine filters on two fields
+    When I request todos filtered by "description=groceries&doneStatus=true"
+    Then the operation should succeed with status 200
+    And every item in the response should match the filter
+    And the response should contain exactly the todos "buy bread"
+
+  Scenario: Alternate Flow - Filter values must match exactly
+    When I request todos filtered by "title=Buy%20milk"
+    Then the operation should succeed with status 200
+    And the response should contain no todos
+
+  Scenario: Alternate Flow - Unknown query parameters are ignored
+    When I request todos filtered by "fields=title"
+    Then the operation should succeed with status 200
+    And the response should contain exactly the todos "buy milk, pay rent, call plumber, buy bread"
+    And the filtered response should be the same size as the unfiltered one